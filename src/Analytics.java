@@ -0,0 +1,474 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * The Analytics class is a command-line tool that reads any number of game traces, written by
+ * {@link TraceWriter}, and score files, and prints aggregate statistics over all of them:
+ * <ul>
+ *     <li>the distribution of trip profits and penalties,</li>
+ *     <li>a heatmap of collisions by lane and distance up the road,</li>
+ *     <li>the time from a passenger coming into view to their being picked up,</li>
+ *     <li>the priority of waiting passengers and the fares quoted, in the rain and in the sun,</li>
+ *     <li>a survival curve: the share of games still going after a number of frames, and</li>
+ *     <li>the distribution of the scores in the score files.</li>
+ * </ul>
+ * Files are read in parallel, one file per task, and each trace is read one frame at a time
+ * into fixed-size bins, so the memory taken does not grow with the number or length of the
+ * traces. The partial statistics of each task are merged at the end.
+ *
+ * Usage:
+ *   java Analytics [--y-bin pixels] [--survival-bin frames] [--value-bin amount] file or directory...
+ * Directories are searched for *.trace and *.csv files. Other files are read as traces, unless
+ * their name ends with .csv.
+ */
+public class Analytics {
+    private static final String TRACE_SUFFIX = ".trace";
+    private static final String SCORES_SUFFIX = ".csv";
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+
+    private final double[] lanes;
+    private int yBin = 1000;
+    private int survivalBin = 500;
+    private double valueBin = 10;
+    private final List<Path> files = new ArrayList<>();
+
+    /**
+     * Constructs a new Analytics run for the given road.
+     *
+     * @param gameProps Properties containing the lane centres.
+     */
+    public Analytics(Properties gameProps) {
+        lanes = new double[Integer.parseInt(gameProps.getProperty("roadLanes.count"))];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = Double.parseDouble(gameProps.getProperty("roadLaneCenter" + (i + 1)));
+        }
+    }
+
+    /**
+     * Analyses the files named on the command line.
+     *
+     * @param args Command-line arguments.
+     */
+    public static void main(String[] args) {
+        Analytics analytics = new Analytics(IOUtils.readPropertiesFile("res/app.properties"));
+        try {
+            analytics.parseArguments(args);
+        } catch (IllegalArgumentException | UncheckedIOException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: java Analytics [--y-bin pixels] [--survival-bin frames] [--value-bin amount] "
+                    + "file or directory...");
+            System.exit(-1);
+        }
+        long start = System.nanoTime();
+        Summary summary = analytics.run();
+        summary.print();
+        System.out.printf(Locale.ROOT, "%d files in %.1f s%n", analytics.files.size(), (System.nanoTime() - start) / 1e9);
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                addFiles(Paths.get(args[i]));
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            String value = args[++i];
+            switch (args[i - 1]) {
+                case "--y-bin" -> yBin = Integer.parseInt(value);
+                case "--survival-bin" -> survivalBin = Integer.parseInt(value);
+                case "--value-bin" -> valueBin = Double.parseDouble(value);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i - 1]);
+            }
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No traces or score files given");
+        }
+    }
+
+    private void addFiles(Path path) {
+        if (!Files.isDirectory(path)) {
+            files.add(path);
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            walk.filter(Files::isRegularFile)
+                    .filter(file -> file.toString().endsWith(TRACE_SUFFIX) || file.toString().endsWith(SCORES_SUFFIX))
+                    .sorted()
+                    .forEach(files::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads every file, in parallel, and merges their statistics.
+     *
+     * @return The statistics over all the files.
+     */
+    public Summary run() {
+        return files.parallelStream().collect(() -> new Summary(lanes, yBin, survivalBin, valueBin),
+                Summary::addFile, Summary::merge);
+    }
+
+    /**
+     * The Summary class holds the statistics of some of the files. Each task of a run fills in
+     * one of its own, and the summaries of the tasks are merged into one.
+     */
+    public static class Summary {
+        private final double[] lanes;
+        private final int yBin;
+        private final int survivalBin;
+
+        private int traces = 0;
+        private int scoreFiles = 0;
+        private int unreadable = 0;
+        private long frames = 0;
+
+        private final Histogram profits;
+        private final Histogram penalties;
+        private final Histogram scores;
+        private final Histogram pickupWaits;
+        private final long[][] collisions;
+
+        // The rain and the sun
+        private final long[] weatherFrames = new long[2];
+        private final long[] waitingPassengers = new long[2];
+        private final long[] prioritySums = new long[2];
+        private final Histogram[] fares;
+
+        // Games lost, and games won or cut short, by the bin of their length in frames
+        private long[] lost = new long[16];
+        private long[] censored = new long[16];
+
+        private Summary(double[] lanes, int yBin, int survivalBin, double valueBin) {
+            this.lanes = lanes;
+            this.yBin = yBin;
+            this.survivalBin = survivalBin;
+            profits = new Histogram(valueBin);
+            penalties = new Histogram(valueBin);
+            scores = new Histogram(valueBin);
+            pickupWaits = new Histogram(survivalBin / 10.0);
+            fares = new Histogram[] {new Histogram(valueBin), new Histogram(valueBin)};
+            collisions = new long[lanes.length][16];
+        }
+
+        private void addFile(Path file) {
+            try {
+                if (file.toString().endsWith(SCORES_SUFFIX)) {
+                    addScores(file);
+                    scoreFiles++;
+                } else {
+                    addTrace(file);
+                    traces++;
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println(file + ": " + e);
+                unreadable++;
+            }
+        }
+
+        private void addScores(Path file) throws IOException {
+            try (Stream<String> lines = Files.lines(file)) {
+                lines.forEach(line -> {
+                    String[] fields = line.split(",");
+                    if (fields.length == 2) {
+                        try {
+                            scores.add(Double.parseDouble(fields[1]));
+                        } catch (NumberFormatException e) {
+                            // Not a score; a heading, perhaps
+                        }
+                    }
+                });
+            }
+        }
+
+        private void addTrace(Path file) throws IOException {
+            Map<Integer, Waiting> waiting = new HashMap<>();
+            int lastFrame = 0;
+            boolean gameOver = false;
+            boolean won = false;
+            try (TraceReader reader = new TraceReader(file.toString())) {
+                int typeCount = reader.getEventTypeNames().length;
+                int[] types = new int[GameEvent.Type.values().length];
+                Arrays.fill(types, -1);
+                for (int i = 0; i < typeCount; i++) {
+                    types[GameEvent.Type.valueOf(reader.getEventTypeNames()[i]).ordinal()] = i;
+                }
+                int collision = types[GameEvent.Type.CAR_COLLISION.ordinal()];
+                int pickup = types[GameEvent.Type.PASSENGER_PICKED_UP.ordinal()];
+                int tripCompleted = types[GameEvent.Type.TRIP_COMPLETED.ordinal()];
+                int windowHeight = reader.getWindowHeight();
+
+                while (reader.next()) {
+                    NetState state = reader.getState();
+                    int frame = state.getFrame();
+                    int weather = state.hasStatus(NetState.RAINING) ? 0 : 1;
+                    weatherFrames[weather]++;
+                    frames++;
+
+                    for (int e = 0; e < reader.getEventCount(); e++) {
+                        int type = reader.getEventType(e);
+                        if (type == collision) {
+                            addCollision(reader.getEventX(e), reader.getEventY(e));
+                        } else if (type == pickup) {
+                            fares[weather].add(reader.getEventValue(e));
+                            Waiting passenger = nearest(waiting, reader.getEventX(e), reader.getEventY(e));
+                            if (passenger != null) {
+                                pickupWaits.add(frame - passenger.since);
+                                passenger.since = -1;
+                            }
+                        } else if (type == tripCompleted) {
+                            profits.add(reader.getEventValue(e));
+                            penalties.add(reader.getEventPenalty(e));
+                        }
+                    }
+
+                    // Passengers are timed from when they first come into view while waiting
+                    for (int i = 0; i < state.size(); i++) {
+                        int flags = state.getFlags(i);
+                        if (NetState.kindOf(state.getId(i)) != NetState.PASSENGER || (flags & NetState.FLAG_IDLE) == 0) {
+                            continue;
+                        }
+                        waitingPassengers[weather]++;
+                        prioritySums[weather] += flags >>> NetState.PRIORITY_SHIFT;
+                        double x = NetState.dequantise(state.getX(i));
+                        double y = NetState.dequantise(state.getY(i));
+                        double screenY = y + NetState.dequantise(state.getOffset());
+                        Waiting passenger = waiting.get(state.getId(i));
+                        if (passenger == null && screenY >= 0 && screenY <= windowHeight) {
+                            passenger = new Waiting(frame);
+                            waiting.put(state.getId(i), passenger);
+                        }
+                        if (passenger != null && passenger.since >= 0) {
+                            passenger.x = x;
+                            passenger.y = y;
+                            passenger.lastSeen = frame;
+                        }
+                    }
+                    // Those no longer waiting, picked up or not, are forgotten
+                    for (Iterator<Waiting> it = waiting.values().iterator(); it.hasNext(); ) {
+                        Waiting passenger = it.next();
+                        if (passenger.since < 0 || passenger.lastSeen != frame) {
+                            it.remove();
+                        }
+                    }
+
+                    lastFrame = frame;
+                    gameOver = state.hasStatus(NetState.GAME_OVER);
+                    won = state.hasStatus(NetState.WON);
+                }
+            }
+            int bin = lastFrame / survivalBin;
+            if (gameOver && !won) {
+                lost = grow(lost, bin);
+                lost[bin]++;
+            } else {
+                censored = grow(censored, bin);
+                censored[bin]++;
+            }
+        }
+
+        private static Waiting nearest(Map<Integer, Waiting> waiting, double x, double y) {
+            Waiting nearest = null;
+            double nearestDistance = Double.MAX_VALUE;
+            for (Waiting passenger : waiting.values()) {
+                double distance = Math.hypot(passenger.x - x, passenger.y - y);
+                if (passenger.since >= 0 && distance < nearestDistance) {
+                    nearest = passenger;
+                    nearestDistance = distance;
+                }
+            }
+            return nearest;
+        }
+
+        private void addCollision(double x, double y) {
+            int lane = 0;
+            for (int i = 1; i < lanes.length; i++) {
+                if (Math.abs(lanes[i] - x) < Math.abs(lanes[lane] - x)) {
+                    lane = i;
+                }
+            }
+            // The road runs up the screen, so the distance travelled is the negative of y
+            int bin = (int) Math.max(0, -y / yBin);
+            collisions[lane] = grow(collisions[lane], bin);
+            collisions[lane][bin]++;
+        }
+
+        private static long[] grow(long[] bins, int bin) {
+            return bin < bins.length ? bins : Arrays.copyOf(bins, Math.max(bin + 1, bins.length * 2));
+        }
+
+        private Summary merge(Summary other) {
+            traces += other.traces;
+            scoreFiles += other.scoreFiles;
+            unreadable += other.unreadable;
+            frames += other.frames;
+            profits.merge(other.profits);
+            penalties.merge(other.penalties);
+            scores.merge(other.scores);
+            pickupWaits.merge(other.pickupWaits);
+            for (int i = 0; i < lanes.length; i++) {
+                collisions[i] = mergeBins(collisions[i], other.collisions[i]);
+            }
+            for (int i = 0; i < 2; i++) {
+                weatherFrames[i] += other.weatherFrames[i];
+                waitingPassengers[i] += other.waitingPassengers[i];
+                prioritySums[i] += other.prioritySums[i];
+                fares[i].merge(other.fares[i]);
+            }
+            lost = mergeBins(lost, other.lost);
+            censored = mergeBins(censored, other.censored);
+            return this;
+        }
+
+        private static long[] mergeBins(long[] bins, long[] other) {
+            long[] merged = grow(bins, other.length - 1);
+            for (int i = 0; i < other.length; i++) {
+                merged[i] += other[i];
+            }
+            return merged;
+        }
+
+        /**
+         * Prints the statistics.
+         */
+        public void print() {
+            System.out.printf(Locale.ROOT, "%d traces (%d frames), %d score files, %d unreadable%n",
+                    traces, frames, scoreFiles, unreadable);
+            profits.print("trip profit");
+            penalties.print("trip penalty");
+            pickupWaits.print("frames to pickup");
+            scores.print("score");
+
+            String[] weatherNames = {"rain", "sun"};
+            for (int i = 0; i < 2; i++) {
+                System.out.printf(Locale.ROOT, "%s: %d frames, %.2f mean priority of waiting passengers%n",
+                        weatherNames[i], weatherFrames[i], prioritySums[i] / (double) Math.max(1, waitingPassengers[i]));
+                fares[i].print("  fare in the " + weatherNames[i]);
+            }
+
+            int bins = 0;
+            for (long[] lane : collisions) {
+                for (int i = 0; i < lane.length; i++) {
+                    if (lane[i] > 0) {
+                        bins = Math.max(bins, i + 1);
+                    }
+                }
+            }
+            System.out.println("collisions by distance up the road, per lane:");
+            for (int bin = 0; bin < bins; bin++) {
+                StringBuilder row = new StringBuilder(String.format(Locale.ROOT, "  %7d", bin * yBin));
+                for (long[] lane : collisions) {
+                    row.append(String.format(Locale.ROOT, " %6d", bin < lane.length ? lane[bin] : 0));
+                }
+                System.out.println(row);
+            }
+
+            // Kaplan-Meier: games won or cut short leave the count at risk without ending
+            long atRisk = Arrays.stream(lost).sum() + Arrays.stream(censored).sum();
+            double survival = 1;
+            System.out.println("survival by frames played:");
+            for (int bin = 0; bin < Math.max(lost.length, censored.length) && atRisk > 0; bin++) {
+                long ended = bin < lost.length ? lost[bin] : 0;
+                long left = bin < censored.length ? censored[bin] : 0;
+                if (ended + left == 0) {
+                    continue;
+                }
+                survival *= 1 - ended / (double) atRisk;
+                System.out.printf(Locale.ROOT, "  %7d %.3f (%d at risk, %d lost, %d won or cut short)%n",
+                        (bin + 1) * survivalBin, survival, atRisk, ended, left);
+                atRisk -= ended + left;
+            }
+        }
+    }
+
+    /*
+     * A passenger waiting in view, where they were last seen along the road and when they first
+     * came into view, or -1 once they have been picked up.
+     */
+    private static class Waiting {
+        private int since;
+        private int lastSeen;
+        private double x;
+        private double y;
+
+        private Waiting(int since) {
+            this.since = since;
+        }
+    }
+
+    /*
+     * A histogram of fixed-width bins from 0, with the count, sum and extremes of the values, so
+     * percentiles can be told to within a bin without keeping the values.
+     */
+    private static class Histogram {
+        private final double width;
+        private long[] bins = new long[16];
+        private long count = 0;
+        private double sum = 0;
+        private double min = Double.MAX_VALUE;
+        private double max = -Double.MAX_VALUE;
+
+        private Histogram(double width) {
+            this.width = width;
+        }
+
+        private void add(double value) {
+            int bin = (int) Math.max(0, value / width);
+            bins = Summary.grow(bins, bin);
+            bins[bin]++;
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        private void merge(Histogram other) {
+            bins = Summary.mergeBins(bins, other.bins);
+            count += other.count;
+            sum += other.sum;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+
+        private double percentile(double fraction) {
+            long rank = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for (int i = 0; i < bins.length; i++) {
+                seen += bins[i];
+                if (seen >= rank) {
+                    return Math.min(max, (i + 1) * width);
+                }
+            }
+            return max;
+        }
+
+        private void print(String name) {
+            if (count == 0) {
+                System.out.printf(Locale.ROOT, "%s: none%n", name);
+                return;
+            }
+            StringBuilder line = new StringBuilder(String.format(Locale.ROOT,
+                    "%s: %d, mean %.2f, min %.2f", name, count, sum / count, min));
+            for (double fraction : PERCENTILES) {
+                line.append(String.format(Locale.ROOT, ", p%d %.2f", Math.round(fraction * 100), percentile(fraction)));
+            }
+            line.append(String.format(Locale.ROOT, ", max %.2f", max));
+            System.out.println(line);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The AssetPreloader class gets every asset of the game ready while the player is still on the
+ * home and player info screens, so that starting a game, or ending one, does not stall.
+ * Worker threads read the world and weather files into the {@link WorldTemplate} cache, and
+ * read the image and font files ahead so they come from memory. An image or font can only be created on
+ * the render thread, where it is uploaded to the graphics card, so each one read is queued, and
+ * the render thread creates a few of them every frame within a time budget.
+ * Every image named in the game properties is preloaded, with every size of the font used.
+ */
+public class AssetPreloader {
+    private final List<String> images = new ArrayList<>();
+    private final List<Integer> fontSizes = new ArrayList<>();
+    private final Properties gameProps;
+    private final String font;
+    private final long uploadBudgetNanos;
+    private final ExecutorService pool;
+    private final List<Future<?>> reads = new ArrayList<>();
+    private final Queue<Runnable> uploads = new ConcurrentLinkedQueue<>();
+    private int uploaded = 0;
+
+    /**
+     * Constructs a new AssetPreloader for the assets named in the given properties.
+     *
+     * @param gameProps Properties containing the images, fonts, world files and preloader settings.
+     */
+    public AssetPreloader(Properties gameProps) {
+        for (String key : gameProps.stringPropertyNames()) {
+            String value = gameProps.getProperty(key);
+            if (key.toLowerCase().contains("image")) {
+                // Numbered images, such as the other cars', come in as many types as there are
+                if (value.contains("%d")) {
+                    String types = gameProps.getProperty(key.substring(0, key.lastIndexOf('.') + 1) + "types", "1");
+                    for (int i = 1; i <= Integer.parseInt(types); i++) {
+                        images.add(String.format(value, i));
+                    }
+                } else {
+                    images.add(value);
+                }
+            } else if (key.endsWith("fontSize") && !fontSizes.contains(Integer.parseInt(value))) {
+                fontSizes.add(Integer.parseInt(value));
+            }
+        }
+        font = gameProps.getProperty("font");
+        this.gameProps = gameProps;
+        uploadBudgetNanos = (long) (Double.parseDouble(gameProps.getProperty("assets.preload.uploadMillis")) * 1_000_000);
+        pool = Executors.newFixedThreadPool(Integer.parseInt(gameProps.getProperty("assets.preload.threads")), task -> {
+            Thread thread = new Thread(task, "asset-preloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts reading every asset on the worker threads.
+     */
+    public void start() {
+        reads.add(pool.submit(() -> WorldTemplate.get(gameProps)));
+        for (String image : images) {
+            reads.add(pool.submit(() -> {
+                readAhead(image);
+                uploads.add(() -> Assets.getImage(image));
+            }));
+        }
+        reads.add(pool.submit(() -> {
+            readAhead(font);
+            for (int size : fontSizes) {
+                uploads.add(() -> Assets.getFont(font, size));
+            }
+        }));
+        pool.shutdown();
+    }
+
+    private static void readAhead(String path) {
+        try {
+            Files.readAllBytes(Paths.get(path));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Creates the images and fonts read so far, until the time budget of a frame is spent.
+     * Must be called on the render thread.
+     */
+    public void uploadSome() {
+        long start = System.nanoTime();
+        Runnable upload;
+        while (System.nanoTime() - start < uploadBudgetNanos && (upload = uploads.poll()) != null) {
+            upload.run();
+            uploaded++;
+        }
+    }
+
+    /**
+     * Waits for every asset to be read and creates the images and fonts left, so none is loaded
+     * on the first frame of a game. Must be called on the render thread.
+     */
+    public void finish() {
+        for (Future<?> read : reads) {
+            try {
+                read.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+        Runnable upload;
+        while ((upload = uploads.poll()) != null) {
+            upload.run();
+            uploaded++;
+        }
+    }
+
+    /**
+     * Checks whether every asset has been read and created.
+     *
+     * @return true if the preloader is done, false otherwise.
+     */
+    public boolean isDone() {
+        return pool.isTerminated() && uploads.isEmpty();
+    }
+
+    /**
+     * Returns the number of images and fonts created so far.
+     *
+     * @return The number of uploads.
+     */
+    public int getUploaded() {
+        return uploaded;
+    }
+}
@@ -0,0 +1,76 @@
+import bagel.Font;
+import bagel.Image;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The Assets class loads and caches the images and fonts used by the game so that
+ * every entity sharing a sprite also shares a single Image. In headless mode (used by
+ * command-line tools that run the simulation without a window) no asset is ever loaded
+ * and every lookup returns null, which the render methods treat as "draw nothing".
+ * The world and weather files are cached too, in every mode, so only the first game reads
+ * them. Every cache is safe to fill from any thread, which lets {@link AssetPreloader} read
+ * files ahead of time.
+ */
+public class Assets {
+    private static final Map<String, Image> IMAGES = new ConcurrentHashMap<>();
+    private static final Map<String, Font> FONTS = new ConcurrentHashMap<>();
+    private static final Map<String, String[][]> TABLES = new ConcurrentHashMap<>();
+    private static volatile boolean headless = false;
+
+    /**
+     * Switches headless mode on or off. Must be called before any game screen is created.
+     *
+     * @param headless true to skip loading images and fonts, false for normal rendering.
+     */
+    public static void setHeadless(boolean headless) {
+        Assets.headless = headless;
+    }
+
+    /**
+     * Returns whether the game is running without a window.
+     *
+     * @return true if running headless, false otherwise.
+     */
+    public static boolean isHeadless() {
+        return headless;
+    }
+
+    /**
+     * Returns the cached image for the given path, loading it on first use.
+     *
+     * @param imagePath The file path to the image.
+     * @return The image, or null when running headless.
+     */
+    public static Image getImage(String imagePath) {
+        if (headless) {
+            return null;
+        }
+        return IMAGES.computeIfAbsent(imagePath, Image::new);
+    }
+
+    /**
+     * Returns the cached font for the given path and size, loading it on first use.
+     *
+     * @param fontPath The file path to the font.
+     * @param size The font size.
+     * @return The font, or null when running headless.
+     */
+    public static Font getFont(String fontPath, int size) {
+        if (headless) {
+            return null;
+        }
+        return FONTS.computeIfAbsent(fontPath + "#" + size, key -> new Font(fontPath, size));
+    }
+
+    /**
+     * Returns the cached rows of the given comma-separated file, reading it on first use.
+     *
+     * @param path The file path to the CSV file.
+     * @return The rows, which are shared and must not be changed.
+     */
+    public static String[][] getTable(String path) {
+        return TABLES.computeIfAbsent(path, IOUtils::readCommaSeparatedFile);
+    }
+}
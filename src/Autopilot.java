@@ -0,0 +1,28 @@
+/**
+ * The Autopilot interface is implemented by scripted drivers that play the game in place
+ * of a human. Once per frame it reads the simulation state of a game play session and
+ * decides which of UP, LEFT, RIGHT and DOWN are held down for that frame.
+ */
+public interface Autopilot {
+    /**
+     * Decides the key states for the next frame. The key states are cleared before the call.
+     *
+     * @param game The game play session to read the simulation state from.
+     * @param keys The key states to fill in.
+     */
+    void decide(GamePlayScreen game, KeyStates keys);
+
+    /**
+     * Creates an autopilot from its class name, as given on a command line.
+     *
+     * @param className The name of a class implementing Autopilot with a no-argument constructor.
+     * @return The new autopilot.
+     */
+    static Autopilot forName(String className) {
+        try {
+            return (Autopilot) Class.forName(className).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Not an autopilot: " + className, e);
+        }
+    }
+}
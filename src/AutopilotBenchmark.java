@@ -0,0 +1,71 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The AutopilotBenchmark class is a command-line load generator. It plays a batch of headless
+ * seeded sessions driven by an autopilot on all cores and reports the simulation throughput
+ * and the average cost of one autopilot decision.
+ *
+ * Usage:
+ *   java AutopilotBenchmark [sessions] [threads] [autopilot class]
+ */
+public class AutopilotBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Optional session count, thread count and autopilot class name.
+     */
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        String autopilotClass = args.length > 2 ? args[2] : ReferenceAutopilot.class.getName();
+
+        Assets.setHeadless(true);
+        Properties gameProps = IOUtils.readPropertiesFile("res/app.properties");
+        Properties messageProps = IOUtils.readPropertiesFile("res/message_en.properties");
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            long seed = i;
+            results.add(pool.submit(() -> play(gameProps, messageProps, seed, Autopilot.forName(autopilotClass))));
+        }
+
+        long frames = 0, decisionNanos = 0, wins = 0;
+        for (Future<long[]> result : results) {
+            long[] session = result.get();
+            frames += session[0];
+            decisionNanos += session[1];
+            wins += session[2];
+        }
+        pool.shutdown();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf(Locale.ROOT, "%d sessions on %d threads in %.2f s, %d won%n", sessions, threads, seconds, wins);
+        System.out.printf(Locale.ROOT, "%.0f frames/s, %.2f us per autopilot decision%n",
+                frames / seconds, decisionNanos / 1000.0 / frames);
+    }
+
+    private static long[] play(Properties gameProps, Properties messageProps, long seed, Autopilot autopilot) {
+        GamePlayScreen game = new GamePlayScreen(gameProps, messageProps, "BENCHMARK", seed);
+        KeyStates keys = new KeyStates();
+        long decisionNanos = 0;
+        boolean over;
+        do {
+            long start = System.nanoTime();
+            keys.clear();
+            autopilot.decide(game, keys);
+            decisionNanos += System.nanoTime() - start;
+            over = game.update(keys);
+        } while (!over);
+        return new long[] {game.getFrameCounter(), decisionNanos, game.didPlayerWin() ? 1 : 0};
+    }
+}
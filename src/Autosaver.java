@@ -0,0 +1,85 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The Autosaver class writes game snapshots to a file on a background thread, so the game
+ * thread only pays for taking the snapshot and never waits for the disk. Only the latest
+ * snapshot matters: one handed over while an older one is still waiting replaces it.
+ */
+public class Autosaver {
+    private final String filename;
+    private final AtomicReference<byte[]> pending = new AtomicReference<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean discarded = false;
+
+    /**
+     * Constructs a new Autosaver writing to the given file, and starts its thread.
+     *
+     * @param filename The name of the file.
+     */
+    public Autosaver(String filename) {
+        this.filename = filename;
+        thread = new Thread(this::run, "autosave");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Hands a snapshot over to be written. Snapshots handed over after the autosaver was
+     * closed are ignored.
+     *
+     * @param snapshot The snapshot.
+     */
+    public void save(byte[] snapshot) {
+        if (!running) {
+            return;
+        }
+        pending.set(snapshot);
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Writes the snapshot still waiting, if any, and stops the thread.
+     */
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the thread without writing the snapshot still waiting and deletes the file,
+     * as when the game is over and there is nothing left to restore.
+     */
+    public void discard() {
+        discarded = true;
+        close();
+        try {
+            Files.deleteIfExists(Paths.get(filename));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            boolean stopping = !running;
+            byte[] snapshot = pending.getAndSet(null);
+            if (snapshot != null && !discarded) {
+                IOUtils.writeBytesToFile(filename, snapshot);
+            } else if (stopping) {
+                break;
+            } else {
+                LockSupport.park(this);
+            }
+        }
+    }
+}
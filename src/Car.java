@@ -1,3 +1,8 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Properties;
+
 /**
  * The abstract Car class represents a vehicle in the game that extends
  * GameEntity and implements the Collision interface. It includes properties
@@ -6,9 +11,13 @@
 public abstract class Car extends GameEntity implements Collision {
     private double speedX;
     private double speedY;
+    private double cruiseSpeedY;
+    private double targetX = Double.NaN;
     private double health;
     private double damage;
-    private int collisionDuration;
+    private final TimingWheel.Timer recovery = new TimingWheel.Timer(this::recover);
+    private final TimingWheel.Timer bounceStep = new TimingWheel.Timer(this::updateBounceFrame);
+    private final TimingWheel.Timer reviveEnd = new TimingWheel.Timer(() -> revive = false);
     private int collisionTimeout;
     private double collisionDamage;
     private int bounceTimeout;
@@ -28,31 +37,38 @@ public abstract class Car extends GameEntity implements Collision {
     public Car(double x, double y, String imagePath) {
         super(x, y, imagePath);
         this.collisionTimeout = 200;
-        this.collisionDuration = 0;
         this.bounceTimeout = 0;    
         this.bounceSpeed = 1;
         this.lowerHigher = false;
     }
 
+    // The invincibility after a collision ran out: the car is revived for a frame
+    private void recover() {
+        isInvincible = false;
+        revive = true;
+        getTimers().schedule(reviveEnd, 1);
+    }
+
     /**
-     * Renders the car, handles collision behavior, and manages the bounce animation.
+     * Renders the car, at half opacity while it is invincible, unless it was destroyed.
+     *
+     * @param queue The render queue of the frame.
      */
     @Override
-    public void render() {
-        if (collisionDuration > 0) {
-            collisionDuration--;
-            if (collisionDuration == 0){
-                isInvincible = false;
-                revive = true;
-            }
-        } else{
-            revive = false;
-        }
+    public void render(RenderQueue queue) {
         if (!isDestroyed) {
-            super.render(isInvincible);
+            super.render(queue, isInvincible);
         }
+    }
 
-        updateBounceFrame();
+    /**
+     * Returns the layer cars are drawn in.
+     *
+     * @return The layer.
+     */
+    @Override
+    public int getLayer() {
+        return RenderQueue.CARS;
     }
 
     /**
@@ -64,17 +80,14 @@ public abstract class Car extends GameEntity implements Collision {
     @Override
     public boolean checkCollision(Collision other) {
         if (other instanceof Car otherCar) {
-            double distance = this.distanceTo(otherCar.getPosition());
             double collisionRange = this.getRadius() + otherCar.getRadius();
-            return distance <= collisionRange;
+            return this.isWithin(otherCar, collisionRange);
         } else if (other instanceof Driver driver) {
-            double distance = this.distanceTo(driver.getPosition());
             double collisionRange = this.getRadius() + driver.getRadius();
-            return distance <= collisionRange;
+            return this.isWithin(driver, collisionRange);
         } else if (other instanceof Fireball fireball) {
-            double distance = this.distanceTo(fireball.getPosition());
             double collisionRange = this.getRadius() + fireball.getRadius();
-            return distance <= collisionRange;
+            return this.isWithin(fireball, collisionRange);
         }
         return false;
     }
@@ -88,7 +101,7 @@ public abstract class Car extends GameEntity implements Collision {
     @Override
     public void onCollision(Collision other) {
         if(!isInvincible){
-            if (collisionDuration == 0) {
+            if (!recovery.isScheduled()) {
                 if (other instanceof Taxi taxi) {
                     this.health -= taxi.getDamage();
                     this.bounceSpeed = 1;
@@ -107,7 +120,9 @@ public abstract class Car extends GameEntity implements Collision {
                     this.bounceSpeed = 1;
                 }
 
-                collisionDuration = collisionTimeout;
+                getTimers().schedule(recovery, collisionTimeout);
+                // A car hit again as it revives stays revived until it recovers once more
+                getTimers().cancel(reviveEnd);
                 isInvincible = true;
             }
             if (this.getClass() != Taxi.class) {
@@ -116,6 +131,7 @@ public abstract class Car extends GameEntity implements Collision {
                 if (this.health <= 0) {
                     this.setY(-50);
                     this.setX(-50);
+                    this.jumped();
                     this.isInvincible = true; // so it doesn't need to spawn smoke
                 }
             }
@@ -132,14 +148,14 @@ public abstract class Car extends GameEntity implements Collision {
      */
     public void bounce(Collision other){
         if (other instanceof Car otherCar) {
-            bounceTimeout = 10;
+            startBounce();
             if (this.getY() > otherCar.getY()){
                 this.lowerHigher = true;
             } else {
                 this.lowerHigher = false;
             }
         } else if (other instanceof Driver driver) {
-            bounceTimeout = 10;
+            startBounce();
             if (this.getY() > driver.getY()){
                 this.lowerHigher = true;
             } else {
@@ -148,8 +164,15 @@ public abstract class Car extends GameEntity implements Collision {
         }
     }
 
+    private void startBounce() {
+        bounceTimeout = 10;
+        if (!bounceStep.isScheduled()) {
+            getTimers().schedule(bounceStep, 1);
+        }
+    }
+
     /**
-     * Updates the frame for the bounce animation when the car is in a bouncing state.
+     * Moves the car one frame along its bounce, on each frame of the bounce.
      */
     public void updateBounceFrame(){
         if (bounceTimeout > 0){
@@ -159,6 +182,9 @@ public abstract class Car extends GameEntity implements Collision {
             } else {
                 this.setY(this.getY() - bounceSpeed);
             }
+            if (bounceTimeout > 0) {
+                getTimers().schedule(bounceStep, 1);
+            }
         }
     }
 
@@ -168,7 +194,7 @@ public abstract class Car extends GameEntity implements Collision {
      * @return true if it is time to spawn smoke, false otherwise.
      */
     public boolean isTimeToSpawnSmoke() {
-        return collisionDuration == 0;
+        return !recovery.isScheduled();
     }
 
     /**
@@ -176,6 +202,115 @@ public abstract class Car extends GameEntity implements Collision {
      */
     public abstract void update();
 
+    /* Traffic behaviour */
+    /**
+     * Slows the car down to the speed of a slower car ahead. The car never goes faster
+     * than its cruising speed.
+     *
+     * @param speedY The speed to follow at along the Y-axis.
+     */
+    public void follow(double speedY) {
+        this.speedY = Math.max(0, Math.min(cruiseSpeedY, speedY));
+    }
+
+    /**
+     * Returns the car to its cruising speed once the road ahead is clear.
+     */
+    public void cruise() {
+        this.speedY = cruiseSpeedY;
+    }
+
+    /**
+     * Starts moving the car sideways into another lane.
+     *
+     * @param laneCenter The x-coordinate of the centre of the lane to move into.
+     */
+    public void changeLane(double laneCenter) {
+        this.targetX = laneCenter;
+    }
+
+    /**
+     * Moves the car sideways towards the lane it is changing into, at its speed along
+     * the X-axis. Wrecked cars stay where they are.
+     */
+    public void steer() {
+        if (isDestroyed) {
+            targetX = Double.NaN;
+        }
+        if (!isChangingLane()) {
+            return;
+        }
+        double dx = targetX - getX();
+        if (Math.abs(dx) <= speedX) {
+            setX(targetX);
+            targetX = Double.NaN;
+        } else {
+            setX(getX() + Math.signum(dx) * speedX);
+        }
+    }
+
+    /**
+     * Returns whether the car is moving into another lane.
+     *
+     * @return true if the car is changing lane, false otherwise.
+     */
+    public boolean isChangingLane() {
+        return !Double.isNaN(targetX);
+    }
+
+    /* Snapshots */
+    /**
+     * Writes the car's position, speeds, health and collision state to a game snapshot.
+     *
+     * @param out The snapshot to write to.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        super.writeState(out);
+        out.writeDouble(speedY);
+        out.writeDouble(cruiseSpeedY);
+        out.writeDouble(targetX);
+        out.writeDouble(health);
+        out.writeInt(getTimers().getRemaining(recovery));
+        out.writeInt(bounceTimeout);
+        out.writeInt(bounceSpeed);
+        out.writeBoolean(lowerHigher);
+        out.writeBoolean(isInvincible);
+        out.writeBoolean(isDestroyed);
+        out.writeBoolean(revive);
+    }
+
+    /**
+     * Restores the car's position, speeds, health and collision state from a game snapshot.
+     *
+     * @param in The snapshot to read from.
+     * @throws IOException If the snapshot cannot be read.
+     */
+    @Override
+    public void readState(DataInput in) throws IOException {
+        super.readState(in);
+        speedY = in.readDouble();
+        cruiseSpeedY = in.readDouble();
+        targetX = in.readDouble();
+        health = in.readDouble();
+        int recovering = in.readInt();
+        bounceTimeout = in.readInt();
+        bounceSpeed = in.readInt();
+        lowerHigher = in.readBoolean();
+        isInvincible = in.readBoolean();
+        isDestroyed = in.readBoolean();
+        revive = in.readBoolean();
+        if (recovering > 0) {
+            getTimers().schedule(recovery, recovering);
+        } else if (revive) {
+            getTimers().schedule(reviveEnd, 1);
+        }
+        if (bounceTimeout > 0) {
+            getTimers().schedule(bounceStep, 1);
+        }
+    }
+
     /* Getters and setters */
     /**
      * Returns the car's health
@@ -222,6 +357,15 @@ public abstract class Car extends GameEntity implements Collision {
         return this.speedY;
     }
 
+    /**
+     * Returns the speed the car drives at along the Y-axis when nothing is in its way.
+     *
+     * @return The cruising speed of the car.
+     */
+    public double getCruiseSpeedY() {
+        return this.cruiseSpeedY;
+    }
+
     /**
      * Returns whether the car is currently invincible.
      *
@@ -249,6 +393,15 @@ public abstract class Car extends GameEntity implements Collision {
         this.health = health;
     }
 
+    /**
+     * Reads the settings of the car again from the game properties, after they changed while
+     * the game runs. Cars without settings to read again leave this empty.
+     *
+     * @param gameProps The game properties.
+     */
+    public void applySettings(Properties gameProps) {
+    }
+
     /**
      * Sets the damage value the car can inflict.
      *
@@ -268,12 +421,13 @@ public abstract class Car extends GameEntity implements Collision {
     }
 
     /**
-     * Sets the speed of the car along the Y-axis.
+     * Sets the speed of the car along the Y-axis, which also becomes its cruising speed.
      *
      * @param speedY The new speed along the Y-axis.
      */
     public void setSpeedY(double speedY) {
         this.speedY = speedY;
+        this.cruiseSpeedY = speedY;
     }
 
     /**
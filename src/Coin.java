@@ -1,3 +1,6 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Properties;
 
 /**
@@ -6,7 +9,6 @@ import java.util.Properties;
  * the player (Taxi or Driver) to provide a Coin Power.
  */
 public class Coin extends GameEntity implements Collision{
-    private final double RADIUS;
     private boolean isCollected = false;
 
     /**
@@ -18,16 +20,18 @@ public class Coin extends GameEntity implements Collision{
      */
     public Coin(double x, double y, Properties gameProps){
         super(x, y, gameProps.getProperty("gameObjects.coin.image"));
-        this.RADIUS = Double.parseDouble(gameProps.getProperty("gameObjects.coin.radius"));
+        this.setRadius(Double.parseDouble(gameProps.getProperty("gameObjects.coin.radius")));
     }
 
     /**
      * Renders the coin on the screen if it has not been collected.
+     *
+     * @param queue The render queue of the frame.
      */
     @Override
-    public void render() {
+    public void render(RenderQueue queue) {
         if (!isCollected) {
-            super.render();
+            super.render(queue);
         }
     }
 
@@ -43,13 +47,13 @@ public class Coin extends GameEntity implements Collision{
         if (other instanceof Taxi taxi && !isCollected) {
             // Cast the Collision to Taxi
             double distance = this.distanceTo(taxi.getPosition());
-            double collisionRange = RADIUS + taxi.getRadius();
+            double collisionRange = this.getRadius() + taxi.getRadius();
 
             return distance <= collisionRange;
         } else if (other instanceof Driver driver && !isCollected) {
             // Cast the Collision to Driver
             double distance = this.distanceTo(driver.getPosition());
-            double collisionRange = RADIUS + driver.getRadius();
+            double collisionRange = this.getRadius() + driver.getRadius();
             return distance <= collisionRange;
         }
         return false;
@@ -64,4 +68,37 @@ public class Coin extends GameEntity implements Collision{
     public void onCollision(Collision other) {
         isCollected = true;
     }
+
+    /**
+     * Returns whether the coin has been collected.
+     *
+     * @return true if the coin was collected, false otherwise.
+     */
+    public boolean isCollected() {
+        return isCollected;
+    }
+
+    /**
+     * Writes the coin's position and whether it was collected to a game snapshot.
+     *
+     * @param out The snapshot to write to.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        super.writeState(out);
+        out.writeBoolean(isCollected);
+    }
+
+    /**
+     * Restores the coin's position and whether it was collected from a game snapshot.
+     *
+     * @param in The snapshot to read from.
+     * @throws IOException If the snapshot cannot be read.
+     */
+    @Override
+    public void readState(DataInput in) throws IOException {
+        super.readState(in);
+        isCollected = in.readBoolean();
+    }
 }
@@ -0,0 +1,85 @@
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * The CollisionBenchmark class is a command-line benchmark of the narrow phase of collision
+ * detection. For growing batches of candidate pairs, about a tenth of them touching, it times the
+ * batch kernel of {@link CollisionKernel} against the same test done a pair at a time with a
+ * square root each, checks that both find the same pairs, and reports the cost per pair.
+ *
+ * Usage:
+ *   java CollisionBenchmark [max pairs] [rounds]
+ */
+public class CollisionBenchmark {
+    // The width and height of the area the pairs are spread over, and their touching distance
+    private static final double AREA = 1000;
+    private static final double RANGE = 100;
+    private static final int WARMUP_ROUNDS = 20000;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Optional largest pair count and number of measured rounds per pair count.
+     */
+    public static void main(String[] args) {
+        int maxPairs = args.length > 0 ? Integer.parseInt(args[0]) : 16384;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+        System.out.println("pairs,batch ns per pair,scalar ns per pair,speedup,touching");
+        for (int pairs = 64; pairs <= maxPairs; pairs *= 4) {
+            Random random = new Random(pairs);
+            double[] ax = new double[pairs];
+            double[] ay = new double[pairs];
+            double[] bx = new double[pairs];
+            double[] by = new double[pairs];
+            double[] ranges = new double[pairs];
+            for (int i = 0; i < pairs; i++) {
+                ax[i] = random.nextDouble() * AREA;
+                ay[i] = random.nextDouble() * AREA;
+                // Half the pairs are close together, as the candidates of a broad phase are
+                double spread = i % 2 == 0 ? 2 * RANGE : AREA;
+                bx[i] = ax[i] + (random.nextDouble() - 0.5) * spread;
+                by[i] = ay[i] + (random.nextDouble() - 0.5) * spread;
+                ranges[i] = RANGE * (0.5 + random.nextDouble() * 0.5);
+            }
+            double[] slack = new double[pairs];
+            long[] batchHits = new long[CollisionKernel.maskLength(pairs)];
+            long[] scalarHits = new long[CollisionKernel.maskLength(pairs)];
+
+            int work = Math.max(1, WARMUP_ROUNDS * 64 / pairs);
+            time(true, ax, ay, bx, by, ranges, pairs, slack, batchHits, work);
+            time(false, ax, ay, bx, by, ranges, pairs, slack, scalarHits, work);
+            int measured = Math.max(1, rounds * 64 / pairs);
+            long batch = time(true, ax, ay, bx, by, ranges, pairs, slack, batchHits, measured);
+            long scalar = time(false, ax, ay, bx, by, ranges, pairs, slack, scalarHits, measured);
+
+            for (int w = 0; w < batchHits.length; w++) {
+                if (batchHits[w] != scalarHits[w]) {
+                    System.out.println("The batch and scalar tests disagree for " + pairs + " pairs");
+                    break;
+                }
+            }
+            int touching = CollisionKernel.within(ax, ay, bx, by, ranges, pairs, slack, batchHits);
+            double perPair = (double) measured * pairs;
+            System.out.printf(Locale.ROOT, "%d,%.2f,%.2f,%.2f,%d%n", pairs, batch / perPair, scalar / perPair,
+                    (double) scalar / batch, touching);
+        }
+    }
+
+    private static long time(boolean batch, double[] ax, double[] ay, double[] bx, double[] by, double[] ranges,
+                             int pairs, double[] slack, long[] hits, int rounds) {
+        long start = System.nanoTime();
+        int touching = 0;
+        for (int r = 0; r < rounds; r++) {
+            touching += batch
+                    ? CollisionKernel.within(ax, ay, bx, by, ranges, pairs, slack, hits)
+                    : CollisionKernel.withinScalar(ax, ay, bx, by, ranges, pairs, hits);
+        }
+        long nanos = System.nanoTime() - start;
+        // Keeps the work from being optimised away
+        if (touching < 0) {
+            System.out.println(touching);
+        }
+        return nanos;
+    }
+}
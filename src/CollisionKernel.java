@@ -0,0 +1,214 @@
+import java.util.Arrays;
+
+/**
+ * The CollisionKernel class holds the narrow phase of collision detection for batches of
+ * candidate pairs, once a broad phase such as {@link Traffic} or {@link RoadIndex} has found
+ * which entities may touch. Rather than asking each pair for its distance, with a square root
+ * each, the coordinates and touching distances of a whole batch are kept in primitive arrays and
+ * squared distances are compared against squared touching distances.
+ *
+ * Each kernel runs in two passes: a branch-free loop over the arrays that works out how far
+ * inside its touching distance every pair is, which the JIT compiler turns into SIMD
+ * instructions on processors that have them, then a pass packing the signs into a bit mask,
+ * 64 pairs to a word. {@link #withinScalar} is the same test a pair at a time, as the entities
+ * themselves do it, for comparison.
+ * A CollisionKernel object is a batch of positions to test against one position, such as the
+ * coins on the road against the taxi.
+ */
+public class CollisionKernel {
+    private static final int WORD_SHIFT = 6;
+
+    // A batch of positions tested against one position, kept in arrays reused for every batch
+    private int size = 0;
+    private double[] xs = new double[64];
+    private double[] ys = new double[64];
+    private double[] ranges = new double[64];
+    private double[] slack = new double[64];
+    private long[] hits = new long[1];
+
+    /**
+     * Empties the batch.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Adds a position to the batch.
+     *
+     * @param x The x-coordinate of the position.
+     * @param y The y-coordinate of the position.
+     * @param range The distance from the position at which it touches, such as the sum of two radii.
+     * @return The index of the position in the batch.
+     */
+    public int add(double x, double y, double range) {
+        if (size == xs.length) {
+            int capacity = size * 2;
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            ranges = Arrays.copyOf(ranges, capacity);
+            slack = Arrays.copyOf(slack, capacity);
+            hits = Arrays.copyOf(hits, maskLength(capacity));
+        }
+        xs[size] = x;
+        ys[size] = y;
+        ranges[size] = range;
+        return size++;
+    }
+
+    /**
+     * Sets the touching distance of a position already in the batch, so the batch can be tested
+     * against another position with a different radius.
+     *
+     * @param i The index of the position in the batch.
+     * @param range The new touching distance.
+     */
+    public void setRange(int i, double range) {
+        ranges[i] = range;
+    }
+
+    /**
+     * Finds which positions of the batch touch the given position.
+     *
+     * @param x The x-coordinate of the position to test against.
+     * @param y The y-coordinate of the position to test against.
+     * @return The number of positions that touch.
+     */
+    public int test(double x, double y) {
+        return within(x, y, xs, ys, ranges, size, slack, hits);
+    }
+
+    /**
+     * Checks whether a position of the batch touched in the last test.
+     *
+     * @param i The index of the position in the batch.
+     * @return true if it touched, false otherwise.
+     */
+    public boolean isHit(int i) {
+        return isHit(hits, i);
+    }
+
+    /**
+     * Returns the number of positions in the batch.
+     *
+     * @return The number of positions.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds which pairs of positions are within their touching distance of each other.
+     * Pair i is the position (ax[i], ay[i]) and the position (bx[i], by[i]).
+     *
+     * @param ax The x-coordinates of the first position of each pair.
+     * @param ay The y-coordinates of the first position of each pair.
+     * @param bx The x-coordinates of the second position of each pair.
+     * @param by The y-coordinates of the second position of each pair.
+     * @param ranges The touching distance of each pair, such as the sum of two radii.
+     * @param count The number of pairs.
+     * @param slack Working space for at least count pairs.
+     * @param hits The mask to set, with bit i of word i / 64 set if pair i touches. It must hold
+     *             at least {@link #maskLength(int)} words.
+     * @return The number of pairs that touch.
+     */
+    public static int within(double[] ax, double[] ay, double[] bx, double[] by, double[] ranges,
+                             int count, double[] slack, long[] hits) {
+        for (int i = 0; i < count; i++) {
+            double dx = ax[i] - bx[i];
+            double dy = ay[i] - by[i];
+            slack[i] = ranges[i] * ranges[i] - (dx * dx + dy * dy);
+        }
+        return pack(slack, count, hits);
+    }
+
+    /**
+     * Finds which of many positions are within their touching distance of one position.
+     *
+     * @param x The x-coordinate of the position to test against.
+     * @param y The y-coordinate of the position to test against.
+     * @param xs The x-coordinates of the positions.
+     * @param ys The y-coordinates of the positions.
+     * @param ranges The touching distance of each position, such as the sum of two radii.
+     * @param count The number of positions.
+     * @param slack Working space for at least count positions.
+     * @param hits The mask to set, with bit i of word i / 64 set if position i touches. It must
+     *             hold at least {@link #maskLength(int)} words.
+     * @return The number of positions that touch.
+     */
+    public static int within(double x, double y, double[] xs, double[] ys, double[] ranges,
+                             int count, double[] slack, long[] hits) {
+        for (int i = 0; i < count; i++) {
+            double dx = xs[i] - x;
+            double dy = ys[i] - y;
+            slack[i] = ranges[i] * ranges[i] - (dx * dx + dy * dy);
+        }
+        return pack(slack, count, hits);
+    }
+
+    /**
+     * Finds which pairs of positions are within their touching distance of each other one pair
+     * at a time, by their distances, the way the entities test a single pair.
+     *
+     * @param ax The x-coordinates of the first position of each pair.
+     * @param ay The y-coordinates of the first position of each pair.
+     * @param bx The x-coordinates of the second position of each pair.
+     * @param by The y-coordinates of the second position of each pair.
+     * @param ranges The touching distance of each pair.
+     * @param count The number of pairs.
+     * @param hits The mask to set, as for {@link #within(double[], double[], double[], double[], double[], int, double[], long[])}.
+     * @return The number of pairs that touch.
+     */
+    public static int withinScalar(double[] ax, double[] ay, double[] bx, double[] by, double[] ranges,
+                                   int count, long[] hits) {
+        int touching = 0;
+        for (int w = 0; w < maskLength(count); w++) {
+            hits[w] = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            double dx = ax[i] - bx[i];
+            double dy = ay[i] - by[i];
+            if (Math.sqrt(dx * dx + dy * dy) <= ranges[i]) {
+                hits[i >>> WORD_SHIFT] |= 1L << i;
+                touching++;
+            }
+        }
+        return touching;
+    }
+
+    /**
+     * Checks whether a pair or position is set in a mask.
+     *
+     * @param hits The mask.
+     * @param i The index of the pair or position.
+     * @return true if it touches, false otherwise.
+     */
+    public static boolean isHit(long[] hits, int i) {
+        return (hits[i >>> WORD_SHIFT] & 1L << i) != 0;
+    }
+
+    /**
+     * Returns the number of words a mask needs for the given number of pairs.
+     *
+     * @param count The number of pairs.
+     * @return The number of words.
+     */
+    public static int maskLength(int count) {
+        return (count + 63) >>> WORD_SHIFT;
+    }
+
+    private static int pack(double[] slack, int count, long[] hits) {
+        int touching = 0;
+        for (int w = 0; w < maskLength(count); w++) {
+            long word = 0;
+            int end = Math.min(count, (w + 1) << WORD_SHIFT);
+            for (int i = w << WORD_SHIFT; i < end; i++) {
+                // A pair touches when its slack is not negative, so when the sign bit is clear
+                word |= (~Double.doubleToRawLongBits(slack[i]) >>> 63) << i;
+            }
+            hits[w] = word;
+            touching += Long.bitCount(word);
+        }
+        return touching;
+    }
+}
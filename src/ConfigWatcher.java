@@ -0,0 +1,217 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The ConfigWatcher class notices when the game properties file or the world and weather files
+ * change on disk while the game runs, so settings can be tuned without restarting it.
+ * A background thread watches the folders of the files, waits for a burst of writes to settle,
+ * and parses the files that changed. The game thread polls for the parsed result once a frame
+ * and applies it between two frames, so it never waits for a file to be read or parsed.
+ * A file that cannot be parsed, such as one caught half written, is skipped until it changes
+ * again.
+ */
+public class ConfigWatcher {
+    // How long the files must stay unchanged before they are read
+    private static final long SETTLE_MILLIS = 150;
+
+    /**
+     * The Changes class holds what was read since the game last polled: the new properties,
+     * the new world, or both.
+     */
+    public static class Changes {
+        private final Properties gameProps;
+        private final WorldTemplate world;
+
+        private Changes(Properties gameProps, WorldTemplate world) {
+            this.gameProps = gameProps;
+            this.world = world;
+        }
+
+        /**
+         * Returns the game properties read again.
+         *
+         * @return The properties, or null if the properties file did not change.
+         */
+        public Properties getGameProperties() {
+            return gameProps;
+        }
+
+        /**
+         * Returns the world and weather read again.
+         *
+         * @return The world, or null if neither the world nor the weather file changed.
+         */
+        public WorldTemplate getWorld() {
+            return world;
+        }
+    }
+
+    private final Path propertiesFile;
+    private final WatchService watchService;
+    private final Set<Path> watchedFolders = new HashSet<>();
+    private final AtomicReference<Changes> pending = new AtomicReference<>();
+    private final Thread thread;
+
+    // Owned by the watcher thread
+    private Path worldFile;
+    private Path weatherFile;
+    private String worldName;
+    private String weatherName;
+
+    /**
+     * Constructs a new ConfigWatcher for the given properties file and the world and weather
+     * files it names, and starts its thread.
+     *
+     * @param propertiesFile The name of the game properties file.
+     * @param gameProps The game properties read from it.
+     * @throws IOException If the folders of the files cannot be watched.
+     */
+    public ConfigWatcher(String propertiesFile, Properties gameProps) throws IOException {
+        this.propertiesFile = Paths.get(propertiesFile).toAbsolutePath().normalize();
+        watchService = FileSystems.getDefault().newWatchService();
+        watch(this.propertiesFile);
+        setWorldFiles(gameProps);
+        thread = new Thread(this::run, "config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Takes what was read since the last poll. Never waits.
+     *
+     * @return The changes, or null if nothing changed.
+     */
+    public Changes poll() {
+        return pending.getAndSet(null);
+    }
+
+    /**
+     * Stops watching the files.
+     */
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        thread.interrupt();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Set<Path> changed = new HashSet<>();
+                collect(watchService.take(), changed);
+                // Editors often write a file in several steps, so wait until the writes stop
+                WatchKey key;
+                while ((key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    collect(key, changed);
+                }
+                reload(changed);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> changed) {
+        Path folder = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path name) {
+                changed.add(folder.resolve(name).normalize());
+            }
+        }
+        key.reset();
+    }
+
+    private void reload(Set<Path> changed) {
+        Properties gameProps = null;
+        if (changed.contains(propertiesFile)) {
+            gameProps = readProperties();
+            if (gameProps != null) {
+                // The properties may name other world and weather files, read from now on
+                String oldWorld = worldName;
+                String oldWeather = weatherName;
+                setWorldFiles(gameProps);
+                if (!worldName.equals(oldWorld) || !weatherName.equals(oldWeather)) {
+                    changed.add(worldFile);
+                }
+            }
+        }
+        WorldTemplate world = null;
+        if (changed.contains(worldFile) || changed.contains(weatherFile)) {
+            world = readWorld();
+        }
+        if (gameProps == null && world == null) {
+            return;
+        }
+        // Changes the game has not taken yet are merged with the new ones
+        Changes older = pending.get();
+        while (true) {
+            Changes merged = new Changes(gameProps != null ? gameProps : older == null ? null : older.gameProps,
+                    world != null ? world : older == null ? null : older.world);
+            if (pending.compareAndSet(older, merged)) {
+                break;
+            }
+            older = pending.get();
+        }
+    }
+
+    private Properties readProperties() {
+        Properties gameProps = new Properties();
+        try (BufferedReader reader = Files.newBufferedReader(propertiesFile)) {
+            gameProps.load(reader);
+            return gameProps;
+        } catch (IOException | IllegalArgumentException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private WorldTemplate readWorld() {
+        try {
+            return WorldTemplate.fromRows(IOUtils.readCommaSeparatedRows(worldName),
+                    IOUtils.readCommaSeparatedRows(weatherName));
+        } catch (IOException | RuntimeException e) {
+            // A file missing for a moment, caught half written or with a mistake in it is read
+            // again once it changes, and the game keeps the world it has until then
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private void setWorldFiles(Properties gameProps) {
+        worldName = gameProps.getProperty("gamePlay.objectsFile");
+        weatherName = gameProps.getProperty("gamePlay.weatherFile");
+        worldFile = Paths.get(worldName).toAbsolutePath().normalize();
+        weatherFile = Paths.get(weatherName).toAbsolutePath().normalize();
+        watch(worldFile);
+        watch(weatherFile);
+    }
+
+    private void watch(Path file) {
+        Path folder = file.getParent();
+        if (folder == null || !watchedFolders.add(folder)) {
+            return;
+        }
+        try {
+            folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,17 +1,20 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Properties;
 
 /**
- * The Driver class represents the player character in the game. It implements
- * the Singleton pattern to ensure that only one Driver instance is created.
+ * The Driver class represents the player character in the game. Each game play
+ * session owns its own Driver, so several sessions can run side by side.
  * The Driver can move in various directions, sync its position with a Taxi,
  * and handle collisions with other objects in the game.
  */
 public class Driver extends GameEntity implements Collision{
-    private static Driver instance;
-    private int collisionDuration;
+    private final TimingWheel.Timer recovery = new TimingWheel.Timer(() -> isInvincible = false);
+    private final TimingWheel.Timer bounceStep = new TimingWheel.Timer(this::updateBounceFrame);
     private final int collisionTimeout;
-    private final double WALK_SPEED_X;
-    private final double WALK_SPEED_Y;
+    private double WALK_SPEED_X;
+    private double WALK_SPEED_Y;
     private final double MAX_HEALTH;
     private double health;
     private boolean inTaxi = true; // driver starts inside the taxi in every world
@@ -21,9 +24,16 @@ public class Driver extends GameEntity implements Collision{
     private final int bounceSpeed;
     private boolean lowerHigher = false;
 
-    private Driver(double x, double y, Properties gameProps){
+    /**
+     * Constructs a new Driver at the given position, initialising walking speed, health
+     * and radius from the game properties.
+     *
+     * @param x The x-coordinate for the driver's initial position.
+     * @param y The y-coordinate for the driver's initial position.
+     * @param gameProps The properties for configuring the driver.
+     */
+    public Driver(double x, double y, Properties gameProps){
         super(x, y, gameProps.getProperty("gameObjects.driver.image"));
-        this.collisionDuration = 0;
         this.collisionTimeout = 200;
         this.WALK_SPEED_X = Double.parseDouble(gameProps.getProperty("gameObjects.driver.walkSpeedX"));
         this.WALK_SPEED_Y = Double.parseDouble(gameProps.getProperty("gameObjects.driver.walkSpeedY"));
@@ -35,19 +45,13 @@ public class Driver extends GameEntity implements Collision{
     }
 
     /**
-     * Returns the singleton instance of the Driver. If the instance does not
-     * exist, it creates one.
+     * Reads the walking speeds of the driver again from the game properties.
      *
-     * @param x The x-coordinate for the driver's initial position.
-     * @param y The y-coordinate for the driver's initial position.
-     * @param gameProps The properties for configuring the driver.
-     * @return The singleton instance of the Driver.
+     * @param gameProps The game properties.
      */
-    public static Driver getInstance(double x, double y, Properties gameProps) {
-        if (instance == null) {
-            instance = new Driver(x, y, gameProps);
-        }
-        return instance;
+    public void applySettings(Properties gameProps) {
+        this.WALK_SPEED_X = Double.parseDouble(gameProps.getProperty("gameObjects.driver.walkSpeedX"));
+        this.WALK_SPEED_Y = Double.parseDouble(gameProps.getProperty("gameObjects.driver.walkSpeedY"));
     }
 
     /**
@@ -96,8 +100,8 @@ public class Driver extends GameEntity implements Collision{
      */
     public void syncWithTaxi(Taxi taxi) {
         if (inTaxi) {
-            instance.setX(taxi.getX());
-            instance.setY(taxi.getY());
+            this.setX(taxi.getX());
+            this.setY(taxi.getY());
         }
     }
 
@@ -108,8 +112,9 @@ public class Driver extends GameEntity implements Collision{
      */
     public void taxiDestroyed(TaxiDamaged taxi) {
         inTaxi = false;
-        instance.setX(taxi.getX() - 50);
-        instance.setY(taxi.getY());
+        this.setX(taxi.getX() - 50);
+        this.setY(taxi.getY());
+        this.jumped();
     }
 
     /**
@@ -149,24 +154,29 @@ public class Driver extends GameEntity implements Collision{
     }
 
     /**
-     * Renders the driver if they are not inside the taxi and manages the invincibility state.
+     * Renders the driver if they are not inside the taxi, at half opacity while invincible.
+     *
+     * @param queue The render queue of the frame.
      */
     @Override
-    public void render() {
-        if (collisionDuration > 0) {
-            collisionDuration--;
-            if (collisionDuration == 0) {
-                isInvincible = false;
-            }
-        }
+    public void render(RenderQueue queue) {
         if (!inTaxi) {
-            super.render(isInvincible);
+            super.render(queue, isInvincible);
         }
-        updateBounceFrame();
     }
 
     /**
-     * Updates the driver's bounce animation when in a bouncing state.
+     * Returns the layer the driver is drawn in, above the cars.
+     *
+     * @return The layer.
+     */
+    @Override
+    public int getLayer() {
+        return RenderQueue.DRIVER;
+    }
+
+    /**
+     * Moves the driver one frame along their bounce, on each frame of the bounce.
      */
     public void updateBounceFrame() {
         if (bounceTimeout > 0) {
@@ -176,6 +186,9 @@ public class Driver extends GameEntity implements Collision{
             } else {
                 this.setY(this.getY() - bounceSpeed);
             }
+            if (bounceTimeout > 0) {
+                getTimers().schedule(bounceStep, 1);
+            }
         }
     }
 
@@ -205,16 +218,13 @@ public class Driver extends GameEntity implements Collision{
     @Override
     public boolean checkCollision(Collision other) {
         if (other instanceof Taxi taxi){
-            double distance = this.distanceTo(taxi.getPosition());
-            return distance <= 10;
+            return this.isWithin(taxi, 10);
         } else if (other instanceof Car car){
-            double distance = this.distanceTo(car.getPosition());
             double collisionRange = this.getRadius() + car.getRadius();
-            return distance <= collisionRange;
+            return this.isWithin(car, collisionRange);
         } else if (other instanceof Fireball fireball){
-            double distance = this.distanceTo(fireball.getPosition());
             double collisionRange = this.getRadius() + fireball.getRadius();
-            return distance <= collisionRange;
+            return this.isWithin(fireball, collisionRange);
         }
         return false;
     }
@@ -227,7 +237,7 @@ public class Driver extends GameEntity implements Collision{
      */
     @Override
     public void onCollision(Collision other) {
-        if (collisionDuration == 0) {
+        if (!recovery.isScheduled()) {
             if (other instanceof EnemyCar enemyCar){
                 this.health -= enemyCar.getDamage();
             } else if (other instanceof OtherCar otherCar){
@@ -238,7 +248,7 @@ public class Driver extends GameEntity implements Collision{
             if (this.health <= 0){
                 this.isDead = true;
             }
-            collisionDuration = collisionTimeout;
+            getTimers().schedule(recovery, collisionTimeout);
             isInvincible = true;
         }
     }
@@ -252,6 +262,51 @@ public class Driver extends GameEntity implements Collision{
         if (other instanceof Car otherCar) {
             bounceTimeout = 10;
             lowerHigher = this.getY() > otherCar.getY();
+            if (!bounceStep.isScheduled()) {
+                getTimers().schedule(bounceStep, 1);
+            }
+        }
+    }
+
+    /**
+     * Writes the driver's position, health and collision state to a game snapshot.
+     *
+     * @param out The snapshot to write to.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        super.writeState(out);
+        out.writeInt(getTimers().getRemaining(recovery));
+        out.writeDouble(health);
+        out.writeBoolean(inTaxi);
+        out.writeBoolean(isDead);
+        out.writeBoolean(isInvincible);
+        out.writeInt(bounceTimeout);
+        out.writeBoolean(lowerHigher);
+    }
+
+    /**
+     * Restores the driver's position, health and collision state from a game snapshot.
+     *
+     * @param in The snapshot to read from.
+     * @throws IOException If the snapshot cannot be read.
+     */
+    @Override
+    public void readState(DataInput in) throws IOException {
+        super.readState(in);
+        int recovering = in.readInt();
+        health = in.readDouble();
+        inTaxi = in.readBoolean();
+        isDead = in.readBoolean();
+        isInvincible = in.readBoolean();
+        bounceTimeout = in.readInt();
+        lowerHigher = in.readBoolean();
+        if (recovering > 0) {
+            getTimers().schedule(recovery, recovering);
+        }
+        if (bounceTimeout > 0) {
+            getTimers().schedule(bounceStep, 1);
         }
     }
 }
@@ -9,7 +9,6 @@ import java.util.ArrayList;
  * and damage. The class also includes random speed generation for movement.
  */
 public class EnemyCar extends Car{
-    private static final Random random = new Random();
 
     /**
      * Constructs a new EnemyCar instance with the given position
@@ -18,6 +17,20 @@ public class EnemyCar extends Car{
      * @param x The initial x-coordinate of the enemy car.
      * @param y The initial y-coordinate of the enemy car.
      * @param gameProps Properties containing enemy car-specific configurations.
+     * @param random The random number generator of the game session.
+     */
+    public EnemyCar(double x, double y, Properties gameProps, Random random){
+        this(x, y, gameProps);
+        this.setSpeedY(getRandomSpeedY(gameProps, random));
+    }
+
+    /**
+     * Constructs a new EnemyCar instance that stands still until its speed is set,
+     * as when a saved game is restored.
+     *
+     * @param x The initial x-coordinate of the enemy car.
+     * @param y The initial y-coordinate of the enemy car.
+     * @param gameProps Properties containing enemy car-specific configurations.
      */
     public EnemyCar(double x, double y, Properties gameProps){
         super(x, y, gameProps.getProperty("gameObjects.enemyCar.image"));
@@ -25,7 +38,18 @@ public class EnemyCar extends Car{
         this.setHealth(Double.parseDouble(gameProps.getProperty("gameObjects.enemyCar.health")));
         this.setDamage(Double.parseDouble(gameProps.getProperty("gameObjects.enemyCar.damage")));
         this.setSpeedX(Double.parseDouble(gameProps.getProperty("gameObjects.otherCar.speedX")));
-        this.setSpeedY(getRandomSpeedY(gameProps));
+    }
+
+    /**
+     * Reads the damage and sideways speed of the enemy car again from the game properties. The
+     * speed along the Y-axis drawn for the car is kept.
+     *
+     * @param gameProps The game properties.
+     */
+    @Override
+    public void applySettings(Properties gameProps) {
+        this.setDamage(Double.parseDouble(gameProps.getProperty("gameObjects.enemyCar.damage")));
+        this.setSpeedX(Double.parseDouble(gameProps.getProperty("gameObjects.otherCar.speedX")));
     }
 
     /**
@@ -33,9 +57,10 @@ public class EnemyCar extends Car{
      * and maximum Y-axis speed values defined in the game properties.
      *
      * @param gameProps Properties containing the minimum and maximum Y-axis speed values.
+     * @param random The random number generator of the game session.
      * @return A randomly generated Y-axis speed within the specified range.
      */
-    public static double getRandomSpeedY(Properties gameProps) {
+    public static double getRandomSpeedY(Properties gameProps, Random random) {
         double minSpeedY = Double.parseDouble(gameProps.getProperty("gameObjects.enemyCar.minSpeedY"));
         double maxSpeedY = Double.parseDouble(gameProps.getProperty("gameObjects.enemyCar.maxSpeedY"));
         return minSpeedY + (maxSpeedY - minSpeedY) * random.nextDouble();
@@ -43,17 +68,19 @@ public class EnemyCar extends Car{
 
     /**
      * Updates the position of the enemy car by moving it along the Y-axis.
-     * The car moves upwards based on its speed along the Y-axis.
+     * The car moves upwards based on its speed along the Y-axis, and sideways while
+     * changing lane.
      */
     @Override
     public void update(){
+        steer();
         setY(getY() - getSpeedY());
     }
 
     // Add this method to render fireballs
     @Override
-    public void render() {
-        super.render();
+    public void render(RenderQueue queue) {
+        super.render(queue);
     }
 
     public boolean getAlive(){
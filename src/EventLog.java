@@ -0,0 +1,58 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * The EventLog class writes every game event as a line of comma separated values
+ * (frame, type, x, y, value, flags) to a file. It is meant to run as a background handler
+ * of the GameEventBus, so the game thread never waits for the disk.
+ */
+public class EventLog implements GameEventHandler {
+    private final PrintWriter out;
+
+    /**
+     * Constructs a new EventLog appending to the given file.
+     *
+     * @param filename The name of the file.
+     */
+    public EventLog(String filename) {
+        PrintWriter writer = null;
+        try {
+            writer = new PrintWriter(new BufferedWriter(new FileWriter(filename, true)));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        this.out = writer;
+    }
+
+    /**
+     * Writes one event, and flushes the file at the end of each batch.
+     *
+     * @param event The event.
+     * @param endOfBatch true if this is the last event available for now.
+     */
+    @Override
+    public void onEvent(GameEvent event, boolean endOfBatch) {
+        // An event played again after a rewind was written the first time
+        if (out == null || event.isReplayed()) {
+            return;
+        }
+        out.printf(Locale.ROOT, "%d,%s,%.2f,%.2f,%.2f,%d%n", event.getFrame(), event.getType(),
+                event.getX(), event.getY(), event.getValue(), event.getFlags());
+        if (endOfBatch) {
+            out.flush();
+        }
+    }
+
+    /**
+     * Closes the file.
+     */
+    @Override
+    public void onShutdown() {
+        if (out != null) {
+            out.close();
+        }
+    }
+}
@@ -1,3 +1,6 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Properties;
 
 /**
@@ -5,8 +8,8 @@ import java.util.Properties;
  * It moves upwards on the screen and disappears when it collides with another object.
  */
 public class Fireball extends GameEntity implements Collision{
-    private final double damage;
-    private final double speedY;
+    private double damage;
+    private double speedY;
     private boolean alive;
 
     /**
@@ -25,18 +28,45 @@ public class Fireball extends GameEntity implements Collision{
         this.alive = true;
     }
 
+    /**
+     * Reads the damage and speed of the fireball again from the game properties.
+     *
+     * @param gameProps The game properties.
+     */
+    public void applySettings(Properties gameProps) {
+        this.damage = Double.parseDouble(gameProps.getProperty("gameObjects.fireball.damage"));
+        this.speedY = Double.parseDouble(gameProps.getProperty("gameObjects.fireball.shootSpeedY"));
+    }
+
     /**
      * Renders the fireball on the screen if it is still alive.
-     * The fireball moves upwards based on its speed.
+     *
+     * @param queue The render queue of the frame.
      */
     @Override
-    public void render() {
+    public void render(RenderQueue queue) {
         if (alive) {
-            super.render();
+            super.render(queue);
         }
+    }
+
+    /**
+     * Moves the fireball upwards based on its speed.
+     */
+    public void update() {
         this.setY(this.getY() - speedY);
     }
 
+    /**
+     * Returns the layer fireballs are drawn in.
+     *
+     * @return The layer.
+     */
+    @Override
+    public int getLayer() {
+        return RenderQueue.EFFECTS;
+    }
+
     /**
      * Checks if the fireball has collided with another object.
      *
@@ -62,6 +92,7 @@ public class Fireball extends GameEntity implements Collision{
         //set off screen
         this.setY(-20);
         this.setX(-20);
+        this.jumped();
     }
 
     /**
@@ -81,4 +112,28 @@ public class Fireball extends GameEntity implements Collision{
     public boolean getAlive() {
         return alive;
     }
+
+    /**
+     * Writes the fireball's position and whether it is alive to a game snapshot.
+     *
+     * @param out The snapshot to write to.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        super.writeState(out);
+        out.writeBoolean(alive);
+    }
+
+    /**
+     * Restores the fireball's position and whether it is alive from a game snapshot.
+     *
+     * @param in The snapshot to read from.
+     * @throws IOException If the snapshot cannot be read.
+     */
+    @Override
+    public void readState(DataInput in) throws IOException {
+        super.readState(in);
+        alive = in.readBoolean();
+    }
 }
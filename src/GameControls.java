@@ -0,0 +1,17 @@
+import bagel.Keys;
+
+/**
+ * The GameControls interface provides the key states that drive a game play session.
+ * It is implemented by the live keyboard input as well as by scripted drivers used
+ * for headless sessions.
+ */
+@FunctionalInterface
+public interface GameControls {
+    /**
+     * Checks whether the given key is currently held down.
+     *
+     * @param key The key to check.
+     * @return true if the key is held down, false otherwise.
+     */
+    boolean isDown(Keys key);
+}
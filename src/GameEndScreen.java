@@ -1,8 +1,6 @@
 import bagel.*;
 import java.util.Properties;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Arrays;
 
 /**
  * The GameEndScreen class represents the screen shown at the end of the game,
@@ -13,7 +11,7 @@ public class GameEndScreen {
     private final Font SCORES_FONT;
     private final Font STATUS_FONT;
     private final String STATUS_TEXT;
-    private final String SCORES_FILE;
+    private final Leaderboard leaderboard;
     private final String SCORES_TITLE;
     private final int SCORES_Y;
     private final int STATUS_Y;
@@ -27,18 +25,19 @@ public class GameEndScreen {
      * @param won A boolean indicating whether the player won or lost the game.
      */
     public GameEndScreen(Properties gameProps, Properties messageProps, boolean won) {
-        BACKGROUND = new Image(gameProps.getProperty("backgroundImage.gameEnd"));
+        BACKGROUND = Assets.getImage(gameProps.getProperty("backgroundImage.gameEnd"));
 
-        SCORES_FONT = new Font(gameProps.getProperty("font"),
+        SCORES_FONT = Assets.getFont(gameProps.getProperty("font"),
                 Integer.parseInt(gameProps.getProperty("gameEnd.scores.fontSize")));
-        SCORES_TITLE = messageProps.getProperty("gameEnd.highestScores");
+        SCORES_TITLE = String.format(messageProps.getProperty("gameEnd.highestScores"),
+                Integer.parseInt(gameProps.getProperty("leaderboard.topCount")));
         SCORES_Y = Integer.parseInt(gameProps.getProperty("gameEnd.scores.y"));
 
-        STATUS_FONT = new Font(gameProps.getProperty("font"),
+        STATUS_FONT = Assets.getFont(gameProps.getProperty("font"),
                 Integer.parseInt(gameProps.getProperty("gameEnd.status.fontSize")));
         STATUS_Y = Integer.parseInt(gameProps.getProperty("gameEnd.status.y"));
 
-        this.SCORES_FILE = gameProps.getProperty("gameEnd.scoresFile");
+        this.leaderboard = Leaderboard.open(gameProps);
 
         if (won) {
             STATUS_TEXT = messageProps.getProperty("gameEnd.won");
@@ -49,7 +48,7 @@ public class GameEndScreen {
     }
 
     /**
-     * Show whether the game is won or lost and the top 5 scores.
+     * Show whether the game is won or lost and the top scores of the leaderboard.
      * @param input The current mouse/keyboard input.
      * @return true if SPACE key is pressed, false otherwise.
      */
@@ -59,7 +58,7 @@ public class GameEndScreen {
         SCORES_FONT.drawString(SCORES_TITLE, (Window.getWidth() - SCORES_FONT.getWidth(SCORES_TITLE)) / 2.0,
                 SCORES_Y);
 
-        // Render the top scores from the CSV file
+        // Render the top scores kept by the leaderboard
         renderTopScores();
 
         // Render the end game message (win/loss)
@@ -69,13 +68,13 @@ public class GameEndScreen {
     }
 
     private void renderTopScores() {
-        String[][] allScores = IOUtils.readCommaSeparatedFile(SCORES_FILE);
-        List<String[]> sortedScores = getTopScores(allScores);
+        List<Leaderboard.Score> topScores = leaderboard.getTopScores();
 
         // Render each score in the format "i - j"
-        for (int i = 0; i < sortedScores.size(); i++) {
-            String[] scoreEntry = sortedScores.get(i);
-            String scoreLine = (i + 1) + " - " + scoreEntry[0] + " - " + scoreEntry[1];
+        for (int i = 0; i < topScores.size(); i++) {
+            Leaderboard.Score scoreEntry = topScores.get(i);
+            String scoreLine = (i + 1) + " - " + scoreEntry.getPlayer() + " - "
+                    + String.format("%.2f", scoreEntry.getScore());
             double scoreLineX = (Window.getWidth() - SCORES_FONT.getWidth(scoreLine)) / 2.0;
 
             int SCORE_LINE_SPACING = 40;
@@ -83,24 +82,4 @@ public class GameEndScreen {
             SCORES_FONT.drawString(scoreLine, scoreLineX, scoreLineY);
         }
     }
-
-    private List<String[]> getTopScores(String[][] allScores) {
-        // Convert array to list for easier manipulation
-        List<String[]> scoreList = new ArrayList<>(Arrays.asList(allScores));
-
-        // Sort scores by the numeric value (assuming the format is "name,score")
-        scoreList.sort((a, b) -> {
-            double scoreA = Double.parseDouble(a[1]);
-            double scoreB = Double.parseDouble(b[1]);
-            return Double.compare(scoreB, scoreA);  // Descending order
-        });
-
-        // Collect the top maxTopScores entries
-        int MAX_TOP_SCORES = 5;
-        if (scoreList.size() > MAX_TOP_SCORES) {
-            return scoreList.subList(0, MAX_TOP_SCORES);
-        } else {
-            return scoreList;
-        }
-    }
 }
@@ -1,6 +1,10 @@
 import bagel.*;
 import bagel.util.Point;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * The GameEntity class represents a basic entity in the game with a position and image.
  * It provides methods for rendering, movement, and collision-related calculations.
@@ -8,8 +12,12 @@ import bagel.util.Point;
  */
 public abstract class GameEntity {
     private Point position;
+    // Where the entity was at the start of the frame, when collisions are checked along paths
+    private Point sweepStart;
     private Image image;
     private double radius;
+    private TimingWheel timers;
+    private int id = -1;
     private static final DrawOptions HALF_OPACITY = new DrawOptions().setBlendColour(1, 1, 1, 0.5);
 
     /**
@@ -21,28 +29,51 @@ public abstract class GameEntity {
      */
     public GameEntity(double x, double y, String imagePath) {
         this.position = new Point(x, y);
-        this.image = new Image(imagePath);
+        this.image = Assets.getImage(imagePath);
     }
 
     /**
-     * Renders the entity on the screen with the option to display it at half opacity
-     * when the entity is in an invincible state.
+     * Records the entity in the render queue, with the option to display it at half opacity
+     * when the entity is in an invincible state. Nothing is drawn when running headless
+     * or when the entity is outside the window. Rendering never changes the entity.
      *
+     * @param queue The render queue of the frame.
      * @param invincible true to render the entity at half opacity, false for normal rendering.
      */
-    public void render(boolean invincible){
-        if (invincible){
-            image.draw(position.x, position.y, HALF_OPACITY);
-        } else {
-            image.draw(position.x, position.y);
+    public void render(RenderQueue queue, boolean invincible){
+        if (isOnScreen()) {
+            queue.draw(getLayer(), image, position.x, position.y, invincible ? HALF_OPACITY : null);
+        }
+    }
+
+    /**
+     * Records the entity in the render queue without any opacity modifications.
+     *
+     * @param queue The render queue of the frame.
+     */
+    public void render(RenderQueue queue){
+        if (isOnScreen()) {
+            queue.draw(getLayer(), image, position.x, position.y);
         }
     }
 
     /**
-     * Renders the entity on the screen without any opacity modifications.
+     * Returns the layer the entity is drawn in, one of the layers of {@link RenderQueue}.
+     *
+     * @return The layer.
      */
-    public void render(){
-        image.draw(position.x, position.y);
+    public int getLayer() {
+        return RenderQueue.ITEMS;
+    }
+
+    private boolean isOnScreen() {
+        if (image == null) {
+            return false;
+        }
+        double halfWidth = image.getWidth() / 2;
+        double halfHeight = image.getHeight() / 2;
+        return position.x + halfWidth >= 0 && position.x - halfWidth <= Window.getWidth()
+                && position.y + halfHeight >= 0 && position.y - halfHeight <= Window.getHeight();
     }
 
     /**
@@ -55,6 +86,60 @@ public abstract class GameEntity {
         return position.distanceTo(other);
     }
 
+    /* Swept collisions */
+    /**
+     * Remembers where the entity is at the start of a frame, so collisions can be checked along
+     * the path it moves during the frame rather than only where it ends up.
+     */
+    public void startSweep() {
+        sweepStart = position;
+    }
+
+    /**
+     * Forgets the path the entity moved along so far this frame, after it jumped to where it is,
+     * so no collision is found along the jump.
+     */
+    public void jumped() {
+        if (sweepStart != null) {
+            sweepStart = position;
+        }
+    }
+
+    /**
+     * Returns how far the entity moved since the start of the frame.
+     *
+     * @return The distance, or 0 if the start of the frame was not remembered.
+     */
+    public double getSweepLength() {
+        return sweepStart == null ? 0 : position.distanceTo(sweepStart);
+    }
+
+    /**
+     * Checks whether this entity and another are within the given distance of each other.
+     * When both remember where they were at the start of the frame, they are taken to have moved
+     * from there in straight lines at steady speeds, and the closest they came during the frame
+     * counts, so a fast entity cannot pass through another between two frames.
+     *
+     * @param other The other entity.
+     * @param range The distance between the centres at which the entities touch.
+     * @return true if the entities came within the distance, false otherwise.
+     */
+    public boolean isWithin(GameEntity other, double range) {
+        if (sweepStart == null || other.sweepStart == null) {
+            return distanceTo(other.position) <= range;
+        }
+        // The closest point of the path of one centre relative to the other
+        double startX = sweepStart.x - other.sweepStart.x;
+        double startY = sweepStart.y - other.sweepStart.y;
+        double moveX = (position.x - other.position.x) - startX;
+        double moveY = (position.y - other.position.y) - startY;
+        double moveSquared = moveX * moveX + moveY * moveY;
+        double t = moveSquared == 0 ? 1 : Math.max(0, Math.min(1, -(startX * moveX + startY * moveY) / moveSquared));
+        double closestX = startX + t * moveX;
+        double closestY = startY + t * moveY;
+        return Math.sqrt(closestX * closestX + closestY * closestY) <= range;
+    }
+
     // Getters
 
     /**
@@ -131,4 +216,68 @@ public abstract class GameEntity {
     public void moveDown(double speed) {
         position = new Point(position.x, position.y + speed);
     }
+
+    /**
+     * Gives the entity the timers of its game, which count down anything the entity waits
+     * for. Must be called before the entity takes part in the game or is restored.
+     *
+     * @param timers The timers of the game.
+     */
+    public void setTimers(TimingWheel timers) {
+        this.timers = timers;
+    }
+
+    /**
+     * Returns the timers of the entity's game.
+     *
+     * @return The timers.
+     */
+    protected TimingWheel getTimers() {
+        return timers;
+    }
+
+    /**
+     * Returns the id of the entity, the order it came into the game in among the entities of
+     * its kind. It stays the same for as long as the entity exists, and games played on the same
+     * road give the same passenger the same id.
+     *
+     * @return The id, or -1 if the entity was not given one.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Sets the id of the entity.
+     *
+     * @param id The order the entity came into the game in among the entities of its kind.
+     */
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    /* Snapshots */
+    /**
+     * Writes the entity's changing state to a game snapshot. Subclasses with more state
+     * write it after their superclass.
+     *
+     * @param out The snapshot to write to.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeDouble(position.x);
+        out.writeDouble(position.y);
+        out.writeInt(id);
+    }
+
+    /**
+     * Restores the entity's changing state from a game snapshot, in the order it was written.
+     *
+     * @param in The snapshot to read from.
+     * @throws IOException If the snapshot cannot be read.
+     */
+    public void readState(DataInput in) throws IOException {
+        position = new Point(in.readDouble(), in.readDouble());
+        id = in.readInt();
+    }
 }
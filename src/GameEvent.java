@@ -0,0 +1,246 @@
+/**
+ * The GameEvent class is one slot of the GameEventBus ring. Slots are allocated once when the
+ * bus is created and reused for every event published into them, so an event is only valid
+ * while it is being handled and must not be kept by a handler.
+ * Every event has a type, the frame it happened on and a position. Collisions also carry the
+ * position of the second party, and some events carry a value and flags:
+ * <ul>
+ *     <li>CAR_COLLISION: the two cars (the first may be the taxi) before they bounced, with
+ *     the smoke and destroyed flags for each.</li>
+ *     <li>PASSENGER_PICKED_UP: where the passenger got in, with their quoted fare as value.</li>
+ *     <li>TRIP_COMPLETED: where the passenger was dropped off, with the trip's profit as value
+ *     and its penalty.</li>
+ *     <li>TAXI_DESTROYED: where the wreck of the taxi was left.</li>
+ *     <li>FIREBALL_HIT: where the fireball hit, with the kind of target in the flags.</li>
+ *     <li>DRIVER_DIED and PASSENGER_DIED: where the player lost the game.</li>
+ * </ul>
+ * An event of a frame played again after a rewind is marked as replayed: it happened before,
+ * so the handlers that keep a record of the game leave it out.
+ */
+public class GameEvent {
+    /**
+     * The kinds of game event.
+     */
+    public enum Type {
+        CAR_COLLISION, PASSENGER_PICKED_UP, TRIP_COMPLETED, TAXI_DESTROYED, FIREBALL_HIT, DRIVER_DIED, PASSENGER_DIED
+    }
+
+    /** Flag of a CAR_COLLISION: smoke rises from the first car. */
+    public static final int FIRST_SMOKES = 1;
+    /** Flag of a CAR_COLLISION: smoke rises from the second car. */
+    public static final int SECOND_SMOKES = 2;
+    /** Flag of a CAR_COLLISION: the first car was destroyed. */
+    public static final int FIRST_DESTROYED = 4;
+    /** Flag of a CAR_COLLISION: the second car was destroyed. */
+    public static final int SECOND_DESTROYED = 8;
+    /** Flag of a FIREBALL_HIT: the fireball hit the taxi. */
+    public static final int HIT_TAXI = 1;
+    /** Flag of a FIREBALL_HIT: the fireball hit the driver. */
+    public static final int HIT_DRIVER = 2;
+    /** Flag of a FIREBALL_HIT: the fireball hit a passenger. */
+    public static final int HIT_PASSENGER = 4;
+    /** Flag of a FIREBALL_HIT: the fireball hit a car. */
+    public static final int HIT_CAR = 8;
+
+    private Type type;
+    private int frame;
+    private double x;
+    private double y;
+    private double otherX;
+    private double otherY;
+    private double value;
+    private double penalty;
+    private int flags;
+    private boolean replayed;
+
+    /**
+     * Clears the slot for a new event of the given type.
+     *
+     * @param type The type of the event.
+     * @param frame The frame the event happened on.
+     * @return This event, for filling in the rest of its details.
+     */
+    public GameEvent reset(Type type, int frame) {
+        this.type = type;
+        this.frame = frame;
+        this.x = 0;
+        this.y = 0;
+        this.otherX = 0;
+        this.otherY = 0;
+        this.value = 0;
+        this.penalty = 0;
+        this.flags = 0;
+        this.replayed = false;
+        return this;
+    }
+
+    /**
+     * Sets the position of the event.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @return This event.
+     */
+    public GameEvent at(double x, double y) {
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+
+    /**
+     * Sets the position of the second party of a collision.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @return This event.
+     */
+    public GameEvent with(double x, double y) {
+        this.otherX = x;
+        this.otherY = y;
+        return this;
+    }
+
+    /**
+     * Sets the value of the event.
+     *
+     * @param value The value, such as a fare or a profit.
+     * @return This event.
+     */
+    public GameEvent value(double value) {
+        this.value = value;
+        return this;
+    }
+
+    /**
+     * Sets the penalty of a completed trip.
+     *
+     * @param penalty The penalty.
+     * @return This event.
+     */
+    public GameEvent penalty(double penalty) {
+        this.penalty = penalty;
+        return this;
+    }
+
+    /**
+     * Sets the flags of the event.
+     *
+     * @param flags The flags, combined with bitwise or.
+     * @return This event.
+     */
+    public GameEvent flags(int flags) {
+        this.flags = flags;
+        return this;
+    }
+
+    /**
+     * Sets whether the event is of a frame played again after a rewind.
+     *
+     * @param replayed true if the frame was played before.
+     * @return This event.
+     */
+    public GameEvent replayed(boolean replayed) {
+        this.replayed = replayed;
+        return this;
+    }
+
+    /**
+     * Returns the type of the event.
+     *
+     * @return The event type.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the frame the event happened on.
+     *
+     * @return The frame number.
+     */
+    public int getFrame() {
+        return frame;
+    }
+
+    /**
+     * Returns the x-coordinate of the event.
+     *
+     * @return The x-coordinate.
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * Returns the y-coordinate of the event.
+     *
+     * @return The y-coordinate.
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Returns the x-coordinate of the second party of a collision.
+     *
+     * @return The x-coordinate.
+     */
+    public double getOtherX() {
+        return otherX;
+    }
+
+    /**
+     * Returns the y-coordinate of the second party of a collision.
+     *
+     * @return The y-coordinate.
+     */
+    public double getOtherY() {
+        return otherY;
+    }
+
+    /**
+     * Returns the value of the event.
+     *
+     * @return The value.
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the penalty of a completed trip.
+     *
+     * @return The penalty, or 0 for other events.
+     */
+    public double getPenalty() {
+        return penalty;
+    }
+
+    /**
+     * Checks whether the event has the given flag.
+     *
+     * @param flag The flag to check.
+     * @return true if the flag is set, false otherwise.
+     */
+    public boolean hasFlag(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    /**
+     * Returns all flags of the event.
+     *
+     * @return The flags.
+     */
+    public int getFlags() {
+        return flags;
+    }
+
+    /**
+     * Checks whether the event is of a frame played again after a rewind.
+     *
+     * @return true if the frame was played before, false otherwise.
+     */
+    public boolean isReplayed() {
+        return replayed;
+    }
+}
@@ -0,0 +1,178 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The GameEventBus class carries game events from the simulation to their consumers without
+ * locks or allocation. Events live in a ring of preallocated slots: the game thread, the only
+ * producer, claims the next slot, fills it in and publishes it by advancing a sequence number.
+ * Every handler keeps its own sequence of the last event it handled, and the producer never
+ * reuses a slot before every handler is past it.
+ * Handlers either run on the game thread, when the game calls {@link #drain()} once per frame,
+ * or on their own background thread, which picks up whatever was published in batches.
+ */
+public class GameEventBus {
+    // How long an idle background handler waits before looking for new events
+    private static final long IDLE_PARK_NANOS = 200_000;
+
+    private final GameEvent[] ring;
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private long claimed = -1;
+
+    private final List<Consumer> gameThreadConsumers = new ArrayList<>();
+    private final List<Consumer> backgroundConsumers = new ArrayList<>();
+    private volatile boolean running = true;
+    private boolean closed = false;
+
+    /**
+     * Constructs a new GameEventBus with the given number of event slots.
+     *
+     * @param size The number of slots, a power of two.
+     */
+    public GameEventBus(int size) {
+        if (Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Event bus size must be a power of two: " + size);
+        }
+        ring = new GameEvent[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new GameEvent();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Adds a handler that runs on the game thread whenever the bus is drained.
+     * Handlers must be added before the first event is published.
+     *
+     * @param handler The handler.
+     */
+    public void addHandler(GameEventHandler handler) {
+        gameThreadConsumers.add(new Consumer(handler));
+    }
+
+    /**
+     * Adds a handler that runs on a background thread of its own.
+     * Handlers must be added before the first event is published.
+     *
+     * @param handler The handler.
+     * @param name The name of the handler's thread.
+     */
+    public void addBackgroundHandler(GameEventHandler handler, String name) {
+        Consumer consumer = new Consumer(handler);
+        backgroundConsumers.add(consumer);
+        Thread thread = new Thread(() -> runInBackground(consumer), name);
+        thread.setDaemon(true);
+        consumer.thread = thread;
+        thread.start();
+    }
+
+    /**
+     * Claims the next event slot and clears it for an event of the given type. The event
+     * becomes visible to the handlers once it is passed to {@link #publish(GameEvent)}.
+     * If the ring is full, the game thread's handlers are drained and then the call waits
+     * for the background handlers to catch up.
+     *
+     * @param type The type of the event.
+     * @param frame The frame the event happened on.
+     * @return The event slot to fill in.
+     */
+    public GameEvent claim(GameEvent.Type type, int frame) {
+        long next = claimed + 1;
+        long wrapPoint = next - ring.length;
+        if (wrapPoint > minimumSequence(gameThreadConsumers)) {
+            drain();
+        }
+        while (wrapPoint > minimumSequence(backgroundConsumers)) {
+            Thread.onSpinWait();
+        }
+        claimed = next;
+        return ring[(int) (next & mask)].reset(type, frame);
+    }
+
+    /**
+     * Publishes the event claimed last.
+     *
+     * @param event The event that was filled in.
+     */
+    public void publish(GameEvent event) {
+        cursor.set(claimed);
+    }
+
+    /**
+     * Runs the game thread's handlers over every event published since the last drain.
+     */
+    public void drain() {
+        long available = cursor.get();
+        for (Consumer consumer : gameThreadConsumers) {
+            consumer.handleUpTo(available);
+        }
+    }
+
+    /**
+     * Drains the game thread's handlers, lets the background handlers finish the events
+     * already published, and stops them. Every handler is then told the bus is shut down.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        drain();
+        running = false;
+        for (Consumer consumer : backgroundConsumers) {
+            LockSupport.unpark(consumer.thread);
+            try {
+                consumer.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Consumer consumer : gameThreadConsumers) {
+            consumer.handler.onShutdown();
+        }
+    }
+
+    private void runInBackground(Consumer consumer) {
+        while (true) {
+            boolean stopping = !running;
+            long available = cursor.get();
+            if (available > consumer.sequence.get()) {
+                consumer.handleUpTo(available);
+            } else if (stopping) {
+                break;
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        consumer.handler.onShutdown();
+    }
+
+    private static long minimumSequence(List<Consumer> consumers) {
+        long minimum = Long.MAX_VALUE;
+        for (Consumer consumer : consumers) {
+            minimum = Math.min(minimum, consumer.sequence.get());
+        }
+        return minimum;
+    }
+
+    private class Consumer {
+        private final GameEventHandler handler;
+        private final AtomicLong sequence = new AtomicLong(-1);
+        private Thread thread;
+
+        private Consumer(GameEventHandler handler) {
+            this.handler = handler;
+        }
+
+        private void handleUpTo(long available) {
+            long next = sequence.get() + 1;
+            for (long seq = next; seq <= available; seq++) {
+                handler.onEvent(ring[(int) (seq & mask)], seq == available);
+            }
+            // Release the handled slots in one go, once the whole batch is done
+            sequence.lazySet(available);
+        }
+    }
+}
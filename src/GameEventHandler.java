@@ -0,0 +1,20 @@
+/**
+ * The GameEventHandler interface is implemented by the consumers of the GameEventBus.
+ * A handler is given the events in the order they were published, in batches of every event
+ * published since it last ran.
+ */
+public interface GameEventHandler {
+    /**
+     * Handles one event. The event slot is reused once the handler returns.
+     *
+     * @param event The event.
+     * @param endOfBatch true if this is the last event available for now.
+     */
+    void onEvent(GameEvent event, boolean endOfBatch);
+
+    /**
+     * Called once after the last event, when the bus is closed.
+     */
+    default void onShutdown() {
+    }
+}
@@ -1,8 +1,20 @@
 import bagel.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Properties;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Random;
+import java.util.Set;
 
 /**
  * The GamePlayScreen class represents the main gameplay screen and manages
@@ -11,7 +23,9 @@ import java.util.Random;
 public class GamePlayScreen {
     private final Properties gameProps;
     private final Properties messageProps;
-    private Random random = new Random();
+    private final SeededRandom random;
+    private final int WINDOW_WIDTH;
+    private final int WINDOW_HEIGHT;
 
     // Background
     private Image BACKGROUND;
@@ -26,31 +40,79 @@ public class GamePlayScreen {
     private Taxi taxi;
     
     private Driver driver;
-    private Passenger currPassenger;
-    private Passenger droppedPassenger;
     private boolean taxiIsMoving = false;
-    private final double TAXI_DETECT_RADIUS;
+    private double TAXI_DETECT_RADIUS;
 
     private final List<InvinciblePower> INVINCIBLE_POWERS = new ArrayList<>();
     private final List<Coin> COINS = new ArrayList<>();
     private final List<Passenger> PASSENGERS = new ArrayList<>();
-    private final List<TripEndFlag> tripEndFlags = new ArrayList<>();
+    // The id the next passenger to come onto the road gets, and the ids taken by other players
+    private int nextPassengerId = 0;
+    private final Set<Integer> takenPassengers = new HashSet<>();
+    // The ids the next entities of each other kind to come into the game get
+    private int nextCoinId = 0;
+    private int nextPowerId = 0;
+    private int nextCarId = 0;
+    private int nextFireballId = 0;
+    private int nextDestroyedTaxiId = 0;
+    private final List<Passenger> nearbyPassengers = new ArrayList<>();
+    private final List<Passenger> arrivedPassengers = new ArrayList<>();
+    // The coins or powers touching the taxi and the driver, each tested in one batch
+    private final CollisionKernel taxiReach = new CollisionKernel();
+    private final CollisionKernel driverReach = new CollisionKernel();
+
+    // Entities standing on the road, indexed by road position so only those near the
+    // window are drawn and only those near the taxi are checked for a pickup
+    private final RoadIndex<Coin> coinIndex = new RoadIndex<>();
+    private final RoadIndex<InvinciblePower> powerIndex = new RoadIndex<>();
+    private final RoadIndex<Passenger> waitingPassengers = new RoadIndex<>();
+    private final RoadIndex<Passenger> standingPassengers = new RoadIndex<>();
+    private double CULL_MARGIN;
+    private static final double TAKEN_PASSENGER_X = -1000;
     private final List<Car> CARS = new ArrayList<>();
+    private final Traffic traffic;
+    private final TrafficAI trafficAI;
+    private final TrafficScheduler trafficScheduler;
+    private final List<Car> nearbyCars = new ArrayList<>();
     private final List<TaxiDamaged> destroyedTaxis = new ArrayList<>();
-    private final List<Smoke> SMOKES = new ArrayList<>();
-    private final List<Fire> FIRES = new ArrayList<>();
+    private final ParticleSystem particles;
+
+    // Game events and their consumers
+    private final GameEventBus eventBus;
+    private final GameStats stats = new GameStats();
+    private final TraceWriter trace;
+    private final ReplayWriter replay;
+    // Off while a replay plays frames it does not show
+    private boolean rendering = true;
     private final List<Fireball> FIREBALLS = new ArrayList<>();
-    private final String[][] WEATHER_CONDITIONS;
+    private WorldTemplate WORLD;
+
+    // Endless road
+    private RoadGenerator road;
+    private long roadSeed;
+    private int nextChunk = 0;
+    private final double RECYCLE_MARGIN;
+
+    // What is drawn during a frame, drawn all at once at the end of it
+    private final RenderQueue renderQueue = new RenderQueue();
+    private final TimingWheel timers = new TimingWheel();
     private int currentWeatherIndex = 0;
 
     // Road Lanes
-    private final double roadLaneCenter1, roadLaneCenter2, roadLaneCenter3;
+    private final double[] ROAD_LANE_CENTERS;
+
+    // Spawn rates (a spawn happens when a roll between 1 and 1000 is a multiple of the rate)
+    private int CAR_SPAWN_RATE;
+    private int ENEMY_CAR_SPAWN_RATE;
+    private int FIREBALL_SPAWN_RATE;
 
     // Trip management
-    private Trip currTrip;
+    private final RidePool ridePool;
+    private final List<Trip> arrivedTrips = new ArrayList<>();
+    private double FLAG_RADIUS;
     private Trip lastTrip = null;
-    private final int TRIP_DETAILS_X;
-    private final int TRIP_DETAILS_Y;
+    private int TRIP_DETAILS_X;
+    private int TRIP_DETAILS_Y;
 
     // Text on screen
     private final Font INFO_FONT;
@@ -60,38 +122,56 @@ public class GamePlayScreen {
     private final String SCORES_FILE;
     private final String PLAYER_NAME;
 
-    private double playerScore = 0.0;
-    private final int SCORE_X;
-    private final int SCORE_Y;
+    private int SCORE_X;
+    private int SCORE_Y;
 
-    private final double TARGET_SCORE;
-    private final int TARGET_X;
-    private final int TARGET_Y;
+    private double TARGET_SCORE;
+    private int TARGET_X;
+    private int TARGET_Y;
 
-    private final int TAXI_HEALTH_X;
-    private final int TAXI_HEALTH_Y;
-    private final int DRIVER_HEALTH_X;
-    private final int DRIVER_HEALTH_Y;
-    private final int PASSENGER_HEALTH_X;
-    private final int PASSENGER_HEALTH_Y;
+    private int TAXI_HEALTH_X;
+    private int TAXI_HEALTH_Y;
+    private int DRIVER_HEALTH_X;
+    private int DRIVER_HEALTH_Y;
+    private int PASSENGER_HEALTH_X;
+    private int PASSENGER_HEALTH_Y;
 
     // Frames
     private int frameCounter = 0;
-    private final int MAX_FRAMES;
-    private final int FRAMES_X;
-    private final int FRAMES_Y;
+    // The newest frame written to the trace and the event log; the frames up to it that are
+    // played again after a rewind are left out of them
+    private int publishedFrame = 0;
+    private int MAX_FRAMES;
+    private int FRAMES_X;
+    private int FRAMES_Y;
 
     // Coin Power
-    private static boolean coinPowered = false;
+    private boolean coinPowered = false;
     private int coinPowerFrames = 0;
-    private final int COIN_POWER_DURATION;
-    private final int COIN_POWER_FRAMES_X;
-    private final int COIN_POWER_FRAMES_Y;
+    private int COIN_POWER_DURATION;
+    private int COIN_POWER_FRAMES_X;
+    private int COIN_POWER_FRAMES_Y;
 
     // Invincible Power
-    private static boolean invinciblePowered = false;
+    private boolean invinciblePowered = false;
     private int invinciblePowerFrames = 0; 
-    private final int INVINCIBLE_POWER_DURATION;
+    private int INVINCIBLE_POWER_DURATION;
+
+    // Snapshots ("STXS" and the format version), and the periodic autosave
+    private static final int SNAPSHOT_MAGIC = 0x53545853;
+    private static final int SNAPSHOT_VERSION = 5;
+    private int lastSnapshotSize = 4096;
+    private final Autosaver autosaver;
+    private final int AUTOSAVE_INTERVAL;
+
+    // Rewind: the recent frames with the keys held down in each, replayed to show a frame
+    private static final Keys[] RECORDED_KEYS = {Keys.UP, Keys.DOWN, Keys.LEFT, Keys.RIGHT};
+    private final RewindBuffer rewindBuffer;
+    private final int REWIND_FAST_STEP;
+    private final KeyStates replayKeys = new KeyStates();
+
+    // Continuous collisions: entities collide if their paths during a frame came close enough
+    private final boolean CONTINUOUS_COLLISIONS;
 
     /**
      * Constructs a new GamePlayScreen instance with the given game and message properties.
@@ -102,9 +182,33 @@ public class GamePlayScreen {
      * @param playerName The name of the player.
      */
     public GamePlayScreen(Properties gameProps, Properties messageProps, String playerName) {
-        BACKGROUND = new Image(gameProps.getProperty("backgroundImage.sunny"));
-        sunnyBackground = new Image(gameProps.getProperty("backgroundImage.sunny"));
-        rainyBackground = new Image(gameProps.getProperty("backgroundImage.raining"));
+        this(gameProps, messageProps, playerName, new SeededRandom());
+        initializeEntities();
+    }
+
+    /**
+     * Constructs a new GamePlayScreen whose random events (car spawns, car speeds and
+     * fireballs) are driven by the given seed, so the same seed and the same controls
+     * always replay the same game.
+     *
+     * @param gameProps Properties containing game-specific configurations such as images, fonts, and scores.
+     * @param messageProps Properties containing in-game messages such as text for earnings and health.
+     * @param playerName The name of the player.
+     * @param seed The seed for the game's random number generator.
+     */
+    public GamePlayScreen(Properties gameProps, Properties messageProps, String playerName, long seed) {
+        this(gameProps, messageProps, playerName, new SeededRandom(seed));
+        initializeEntities();
+    }
+
+    private GamePlayScreen(Properties gameProps, Properties messageProps, String playerName, SeededRandom random) {
+        BACKGROUND = Assets.getImage(gameProps.getProperty("backgroundImage.sunny"));
+        sunnyBackground = Assets.getImage(gameProps.getProperty("backgroundImage.sunny"));
+        rainyBackground = Assets.getImage(gameProps.getProperty("backgroundImage.raining"));
+
+        this.random = random;
+        WINDOW_WIDTH = Integer.parseInt(gameProps.getProperty("window.width"));
+        WINDOW_HEIGHT = Integer.parseInt(gameProps.getProperty("window.height"));
 
         this.SCORES_FILE = gameProps.getProperty("gameEnd.scoresFile");
         this.PLAYER_NAME = playerName;
@@ -112,41 +216,55 @@ public class GamePlayScreen {
         this.gameProps = gameProps;
         this.messageProps = messageProps;
 
-        roadLaneCenter1 = Double.parseDouble(gameProps.getProperty("roadLaneCenter1"));
-        roadLaneCenter2 = Double.parseDouble(gameProps.getProperty("roadLaneCenter2"));
-        roadLaneCenter3 = Double.parseDouble(gameProps.getProperty("roadLaneCenter3"));
-
-        /* Load configurations from properties file */
-        TARGET_SCORE = Double.parseDouble(gameProps.getProperty("gamePlay.target"));
-        TAXI_DETECT_RADIUS = Double.parseDouble(gameProps.getProperty("gameObjects.passenger.taxiDetectRadius"));
-        MAX_FRAMES = Integer.parseInt(gameProps.getProperty("gamePlay.maxFrames"));
-        INFO_FONT = new Font(gameProps.getProperty("font"), Integer.parseInt(gameProps.getProperty("gamePlay.info.fontSize")));
-        COIN_POWER_DURATION = Integer.parseInt(gameProps.getProperty("gameObjects.coin.maxFrames"));
-        INVINCIBLE_POWER_DURATION = Integer.parseInt(gameProps.getProperty("gameObjects.invinciblePower.maxFrames"));
-
-        // Text positions
-        SCORE_X = Integer.parseInt(gameProps.getProperty("gamePlay.earnings.x"));
-        SCORE_Y = Integer.parseInt(gameProps.getProperty("gamePlay.earnings.y"));
-        TARGET_X = Integer.parseInt(gameProps.getProperty("gamePlay.target.x"));
-        TARGET_Y = Integer.parseInt(gameProps.getProperty("gamePlay.target.y"));
-        FRAMES_X = Integer.parseInt(gameProps.getProperty("gamePlay.maxFrames.x"));
-        FRAMES_Y = Integer.parseInt(gameProps.getProperty("gamePlay.maxFrames.y"));
-        TRIP_DETAILS_X = Integer.parseInt(gameProps.getProperty("gamePlay.tripInfo.x"));
-        TRIP_DETAILS_Y = Integer.parseInt(gameProps.getProperty("gamePlay.tripInfo.y"));
-        COIN_POWER_FRAMES_X = Integer.parseInt(gameProps.getProperty("gamePlay.coin.x"));
-        COIN_POWER_FRAMES_Y = Integer.parseInt(gameProps.getProperty("gamePlay.coin.y"));
-        TAXI_HEALTH_X = Integer.parseInt(gameProps.getProperty("gamePlay.taxiHealth.x"));
-        TAXI_HEALTH_Y = Integer.parseInt(gameProps.getProperty("gamePlay.taxiHealth.y"));
-        DRIVER_HEALTH_X = Integer.parseInt(gameProps.getProperty("gamePlay.driverHealth.x"));
-        DRIVER_HEALTH_Y = Integer.parseInt(gameProps.getProperty("gamePlay.driverHealth.y")); 
-        PASSENGER_HEALTH_X = Integer.parseInt(gameProps.getProperty("gamePlay.passengerHealth.x"));
-        PASSENGER_HEALTH_Y = Integer.parseInt(gameProps.getProperty("gamePlay.passengerHealth.y"));
-
-        // Read world file and initialize game entities
-        String[][] worldData = IOUtils.readCommaSeparatedFile(gameProps.getProperty("gamePlay.objectsFile"));
-        // Read weather file and get weather conditions
-        WEATHER_CONDITIONS = IOUtils.readCommaSeparatedFile(gameProps.getProperty("gamePlay.weatherFile"));
-        initializeEntities(worldData);
+        ROAD_LANE_CENTERS = new double[Integer.parseInt(gameProps.getProperty("roadLanes.count"))];
+        for (int i = 0; i < ROAD_LANE_CENTERS.length; i++) {
+            ROAD_LANE_CENTERS[i] = Double.parseDouble(gameProps.getProperty("roadLaneCenter" + (i + 1)));
+        }
+        traffic = new Traffic(ROAD_LANE_CENTERS);
+        particles = new ParticleSystem(gameProps);
+        eventBus = new GameEventBus(Integer.parseInt(gameProps.getProperty("gamePlay.eventBus.size")));
+        eventBus.addHandler(particles);
+        eventBus.addHandler(stats);
+        String eventLogFile = gameProps.getProperty("gamePlay.eventLog", "");
+        if (!eventLogFile.isEmpty()) {
+            eventBus.addBackgroundHandler(new EventLog(eventLogFile), "event-log");
+        }
+        trace = openTrace(gameProps, playerName);
+        if (trace != null) {
+            eventBus.addHandler(trace);
+        }
+        replay = openReplay(gameProps);
+        trafficAI = Boolean.parseBoolean(gameProps.getProperty("traffic.ai.enabled")) ? new TrafficAI(gameProps) : null;
+        trafficScheduler = Boolean.parseBoolean(gameProps.getProperty("traffic.scheduler.enabled"))
+                ? new TrafficScheduler(gameProps, ROAD_LANE_CENTERS, WINDOW_HEIGHT, random) : null;
+
+        ridePool = new RidePool(Integer.parseInt(gameProps.getProperty("gamePlay.pool.capacity")));
+        INFO_FONT = Assets.getFont(gameProps.getProperty("font"), Integer.parseInt(gameProps.getProperty("gamePlay.info.fontSize")));
+        readSettings();
+
+        // Headless sessions are simulations and never autosave
+        String autosaveFile = gameProps.getProperty("gamePlay.autosave.file", "");
+        autosaver = autosaveFile.isEmpty() || Assets.isHeadless() ? null : new Autosaver(autosaveFile);
+        AUTOSAVE_INTERVAL = Integer.parseInt(gameProps.getProperty("gamePlay.autosave.interval"));
+
+        // Headless sessions cannot be rewound, so they don't pay for recording every frame
+        int rewindFrames = Integer.parseInt(gameProps.getProperty("gamePlay.rewind.frames"));
+        rewindBuffer = rewindFrames <= 0 || Assets.isHeadless() ? null : new RewindBuffer(rewindFrames,
+                Integer.parseInt(gameProps.getProperty("gamePlay.rewind.keyframeInterval")),
+                Long.parseLong(gameProps.getProperty("gamePlay.rewind.maxBytes")));
+        REWIND_FAST_STEP = Integer.parseInt(gameProps.getProperty("gamePlay.rewind.fastStep"));
+        CONTINUOUS_COLLISIONS = Boolean.parseBoolean(gameProps.getProperty("gamePlay.collision.continuous"));
+
+        // The world and weather files are only read by the first game. The entities are created
+        // by the caller, unless they come from a snapshot
+        WORLD = WorldTemplate.get(gameProps);
+
+        // An endless road is generated from the game's seed, so a seeded game has the same road
+        RECYCLE_MARGIN = Double.parseDouble(gameProps.getProperty("endless.recycleMargin"));
+        if (Boolean.parseBoolean(gameProps.getProperty("endless.enabled"))) {
+            roadSeed = random.getState();
+            road = new RoadGenerator(gameProps, roadSeed);
+        }
     }
 
     /**
@@ -157,7 +275,32 @@ public class GamePlayScreen {
      * @return true if the game is over, false otherwise.
      */
     public boolean update(Input input) {
+        return update(input::isDown);
+    }
+
+    /**
+     * Advances the game by one frame using the given key states. This is used both for the
+     * live keyboard and for scripted drivers in headless sessions.
+     * While R is held down, the game steps back one frame at a time instead, or several at a
+     * time with LEFT_SHIFT, as far as the rewind buffer reaches. Letting go of R carries on
+     * from the frame shown. The trace and the event log keep the frames as they were first
+     * played, so frames up to the newest one played before are left out of them.
+     *
+     * @param input The key states for this frame.
+     * @return true if the game is over, false otherwise.
+     */
+    public boolean update(GameControls input) {
+        if (rewindBuffer != null && input.isDown(Keys.R)) {
+            rewind(input.isDown(Keys.LEFT_SHIFT) ? REWIND_FAST_STEP : 1);
+            return false;
+        }
+        if (replay != null && !replay.isStarted()) {
+            replay.start(frameCounter, saveSnapshot());
+        }
         frameCounter++;
+        if (CONTINUOUS_COLLISIONS) {
+            startSweeps();
+        }
 
         if (driver.isInTaxi()){
             this.SCROLL_SPEED = taxi.getSPEED_Y();
@@ -172,6 +315,9 @@ public class GamePlayScreen {
             moveBackgroundsDown();
             moveEntitiesDown();
         }
+        if (road != null) {
+            streamRoad();
+        }
 
         if(input.isDown(Keys.LEFT)){
             if(driver.isInTaxi()){
@@ -196,17 +342,22 @@ public class GamePlayScreen {
         }
 
         renderBackgrounds();
+        updateEntities();
         renderEntities();
         spawnCars();
         renderInfo();
 
+        if (trafficAI != null) {
+            traffic.update();
+            trafficAI.update(traffic, CARS);
+        }
         for (Car car: CARS){
             car.update();
         }
         for (Passenger passenger : PASSENGERS) {
             // Adjust passenger priority unless we've dropped them off
             if(!passenger.isAtDestination()){
-                passenger.adjustPriorityForWeather(isRaining);
+                passenger.adjustPriorityForWeather(isRaining, coinPowered);
             }
         }
 
@@ -219,21 +370,204 @@ public class GamePlayScreen {
 
         this.taxiIsMoving = false;
 
-        return isGameOver();
+        // Let the effects and statistics catch up with this frame's events
+        eventBus.drain();
+        boolean gameOver = isGameOver();
+        if (gameOver) {
+            // Closing the bus hands out the events of how the game ended
+            eventBus.close();
+            if (trace != null) {
+                if (frameCounter > publishedFrame) {
+                    trace.endFrame(this, true);
+                }
+                trace.close();
+            }
+            if (autosaver != null) {
+                autosaver.discard();
+            }
+            if (road != null) {
+                road.close();
+            }
+            if (replay != null) {
+                replay.record(frameCounter, keyMask(input),
+                        replay.needsKeyframe(frameCounter) ? saveSnapshot() : null);
+                replay.close();
+            }
+        } else {
+            if (trace != null && frameCounter > publishedFrame) {
+                trace.endFrame(this, false);
+            }
+            recordFrame(input);
+        }
+        publishedFrame = Math.max(publishedFrame, frameCounter);
+        if (rendering) {
+            renderQueue.flush();
+        } else {
+            renderQueue.clear();
+        }
+        return gameOver;
+    }
+
+    /**
+     * Sets whether the frames played from now on are drawn. A replay plays the frames it skips
+     * over without drawing them.
+     *
+     * @param rendering true to draw the frames, false to only play them.
+     */
+    public void setRendering(boolean rendering) {
+        this.rendering = rendering;
+    }
+
+    private ReplayWriter openReplay(Properties gameProps) {
+        String replayFile = gameProps.getProperty("gamePlay.replay.file", "");
+        if (replayFile.isEmpty()) {
+            return null;
+        }
+        try {
+            return new ReplayWriter(replayFile, gameProps,
+                    Integer.parseInt(gameProps.getProperty("gamePlay.replay.keyframeInterval")));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private TraceWriter openTrace(Properties gameProps, String playerName) {
+        String traceFile = gameProps.getProperty("gamePlay.trace.file", "");
+        if (traceFile.isEmpty()) {
+            return null;
+        }
+        try {
+            return new TraceWriter(traceFile, playerName, WINDOW_HEIGHT,
+                    Integer.parseInt(gameProps.getProperty("gamePlay.trace.bufferFrames")),
+                    Integer.parseInt(gameProps.getProperty("gamePlay.trace.chunkFrames")));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /* Settings */
+    // The settings that can change while the game runs, read again when the properties change
+    private void readSettings() {
+        CAR_SPAWN_RATE = Integer.parseInt(gameProps.getProperty("gameObjects.otherCar.spawnRate"));
+        ENEMY_CAR_SPAWN_RATE = Integer.parseInt(gameProps.getProperty("gameObjects.enemyCar.spawnRate"));
+        FIREBALL_SPAWN_RATE = Integer.parseInt(gameProps.getProperty("gameObjects.fireball.spawnRate"));
+
+        TARGET_SCORE = Double.parseDouble(gameProps.getProperty("gamePlay.target"));
+        TAXI_DETECT_RADIUS = Double.parseDouble(gameProps.getProperty("gameObjects.passenger.taxiDetectRadius"));
+        FLAG_RADIUS = Double.parseDouble(gameProps.getProperty("gameObjects.tripEndFlag.radius"));
+        CULL_MARGIN = Double.parseDouble(gameProps.getProperty("gamePlay.cullMargin"));
+        MAX_FRAMES = Integer.parseInt(gameProps.getProperty("gamePlay.maxFrames"));
+        COIN_POWER_DURATION = Integer.parseInt(gameProps.getProperty("gameObjects.coin.maxFrames"));
+        INVINCIBLE_POWER_DURATION = Integer.parseInt(gameProps.getProperty("gameObjects.invinciblePower.maxFrames"));
+
+        // Text positions
+        SCORE_X = Integer.parseInt(gameProps.getProperty("gamePlay.earnings.x"));
+        SCORE_Y = Integer.parseInt(gameProps.getProperty("gamePlay.earnings.y"));
+        TARGET_X = Integer.parseInt(gameProps.getProperty("gamePlay.target.x"));
+        TARGET_Y = Integer.parseInt(gameProps.getProperty("gamePlay.target.y"));
+        FRAMES_X = Integer.parseInt(gameProps.getProperty("gamePlay.maxFrames.x"));
+        FRAMES_Y = Integer.parseInt(gameProps.getProperty("gamePlay.maxFrames.y"));
+        TRIP_DETAILS_X = Integer.parseInt(gameProps.getProperty("gamePlay.tripInfo.x"));
+        TRIP_DETAILS_Y = Integer.parseInt(gameProps.getProperty("gamePlay.tripInfo.y"));
+        COIN_POWER_FRAMES_X = Integer.parseInt(gameProps.getProperty("gamePlay.coin.x"));
+        COIN_POWER_FRAMES_Y = Integer.parseInt(gameProps.getProperty("gamePlay.coin.y"));
+        TAXI_HEALTH_X = Integer.parseInt(gameProps.getProperty("gamePlay.taxiHealth.x"));
+        TAXI_HEALTH_Y = Integer.parseInt(gameProps.getProperty("gamePlay.taxiHealth.y"));
+        DRIVER_HEALTH_X = Integer.parseInt(gameProps.getProperty("gamePlay.driverHealth.x"));
+        DRIVER_HEALTH_Y = Integer.parseInt(gameProps.getProperty("gamePlay.driverHealth.y"));
+        PASSENGER_HEALTH_X = Integer.parseInt(gameProps.getProperty("gamePlay.passengerHealth.x"));
+        PASSENGER_HEALTH_Y = Integer.parseInt(gameProps.getProperty("gamePlay.passengerHealth.y"));
+    }
+
+    /**
+     * Applies the game properties again after they changed, between two frames: spawn rates,
+     * targets, durations, the positions of the text on screen, and the speeds and damages of
+     * the taxi, the driver, the cars and the fireballs. Entities created from now on use the
+     * new properties throughout.
+     */
+    public void applySettings() {
+        readSettings();
+        taxi.applySettings(gameProps);
+        driver.applySettings(gameProps);
+        for (Car car : CARS) {
+            car.applySettings(gameProps);
+        }
+        for (Fireball fireball : FIREBALLS) {
+            fireball.applySettings(gameProps);
+        }
+    }
+
+    /**
+     * Replaces the world of the game after the world or weather file changed, between two
+     * frames. The coins, powers and waiting passengers still above the window are replaced by
+     * those of the new world at the same distance along the road, and the weather follows the
+     * new weather file from the current frame. Has no effect on an endless road, which makes
+     * its own world.
+     *
+     * @param world The new world.
+     */
+    public void applyWorld(WorldTemplate world) {
+        if (road != null) {
+            return;
+        }
+        WORLD = world;
+        for (Iterator<Coin> it = COINS.iterator(); it.hasNext(); ) {
+            Coin coin = it.next();
+            if (coin.getY() < 0 && !coin.isCollected()) {
+                it.remove();
+                coinIndex.remove(coin);
+            }
+        }
+        for (Iterator<InvinciblePower> it = INVINCIBLE_POWERS.iterator(); it.hasNext(); ) {
+            InvinciblePower power = it.next();
+            if (power.getY() < 0 && !power.isCollected()) {
+                it.remove();
+                powerIndex.remove(power);
+            }
+        }
+        for (Iterator<Passenger> it = PASSENGERS.iterator(); it.hasNext(); ) {
+            Passenger passenger = it.next();
+            if (passenger.getY() < 0 && !passenger.isOnGoingTrip() && !passenger.isAtDestination()) {
+                it.remove();
+                waitingPassengers.remove(passenger);
+            }
+        }
+        // The entities of the new world that are still to come
+        addEntities(world, bg_Y, 0);
+
+        currentWeatherIndex = 0;
+        while (currentWeatherIndex < WORLD.getWeatherCount() && WORLD.getWeatherEnd(currentWeatherIndex) < frameCounter) {
+            currentWeatherIndex++;
+        }
     }
 
     /* Backgrounds */
     private void renderBackgrounds() {
-        double bgPos = (Window.getHeight() / 2.0) + (bg_Y % Window.getHeight());
+        updateWeather();
+        if (Assets.isHeadless()) {
+            return;
+        }
+
+        double bgPos = (WINDOW_HEIGHT / 2.0) + (bg_Y % WINDOW_HEIGHT);
+        renderQueue.draw(RenderQueue.BACKGROUND, BACKGROUND, WINDOW_WIDTH / 2.0, bgPos);
+        renderQueue.draw(RenderQueue.BACKGROUND, BACKGROUND, WINDOW_WIDTH / 2.0, bgPos - WINDOW_HEIGHT);
+    }
 
-        // Check weather conditions
-        if (currentWeatherIndex < WEATHER_CONDITIONS.length) {
-            String[] currentWeather = WEATHER_CONDITIONS[currentWeatherIndex];
-            int startFrame = Integer.parseInt(currentWeather[1]);
-            int endFrame = Integer.parseInt(currentWeather[2]);
+    private void updateWeather() {
+        if (road != null) {
+            // The weather of an endless road is that of the stretch at the top of the window
+            isRaining = road.getChunk(Math.max(cameraChunk(), 0)).isRaining(0);
+            BACKGROUND = isRaining ? rainyBackground : sunnyBackground;
+            return;
+        }
+        if (currentWeatherIndex < WORLD.getWeatherCount()) {
+            int startFrame = WORLD.getWeatherStart(currentWeatherIndex);
+            int endFrame = WORLD.getWeatherEnd(currentWeatherIndex);
 
             if (frameCounter >= startFrame && frameCounter <= endFrame) {
-                if (currentWeather[0].equals("RAINING")) {
+                if (WORLD.isRaining(currentWeatherIndex)) {
                     BACKGROUND = rainyBackground;
                     isRaining = true;
                 } else {
@@ -244,9 +578,6 @@ public class GamePlayScreen {
                 currentWeatherIndex++;
             }
         }
-
-        BACKGROUND.draw(Window.getWidth() / 2.0, bgPos);
-        BACKGROUND.draw(Window.getWidth() / 2.0, bgPos - Window.getHeight());
     }
 
     private void moveBackgroundsDown() {
@@ -254,59 +585,121 @@ public class GamePlayScreen {
     }
 
     /* Game Entities */
-    private void initializeEntities(String[][] worldData) {
-        for(String[] entity: worldData) {
-            switch (entity[0]){
-                case "TAXI":
-                    taxi = new Taxi(Double.parseDouble(entity[1]), Double.parseDouble(entity[2]), gameProps);
-                    driver = Driver.getInstance(0, 0, gameProps);
-                    driver.enterTaxi(taxi);
-                    driver.revive();
-                    break;
-                case "COIN":
-                    COINS.add(new Coin(Double.parseDouble(entity[1]), Double.parseDouble(entity[2]), gameProps));
-                    break;
-                case "PASSENGER":
-                    PASSENGERS.add(new Passenger(
-                            Double.parseDouble(entity[1]),
-                            Double.parseDouble(entity[2]),
-                            Integer.parseInt(entity[3]),
-                            Double.parseDouble(entity[4]),
-                            Double.parseDouble(entity[5]),
-                            Integer.parseInt(entity[6]),
-                            gameProps
-                    ));
-                    break;
-                case "DRIVER":
-                    Driver.getInstance(Double.parseDouble(entity[1]), Double.parseDouble(entity[2]), gameProps);
-                    break;
-                case "INVINCIBLE_POWER":
-                    INVINCIBLE_POWERS.add(new InvinciblePower(Double.parseDouble(entity[1]), Double.parseDouble(entity[2]), gameProps));
-                    break;
+    private void initializeEntities() {
+        taxi = withTimers(new Taxi(WORLD.getTaxiX(), WORLD.getTaxiY(), gameProps));
+        driver = withTimers(new Driver(WORLD.getDriverX(), WORLD.getDriverY(), gameProps));
+        // An endless road brings its own coins, powers and passengers as it goes
+        if (road == null) {
+            addEntities(WORLD, 0);
+        }
+        // The driver always starts a game inside the taxi
+        driver.enterTaxi(taxi);
+    }
+
+    private void addEntities(WorldTemplate template, double yShift) {
+        addEntities(template, yShift, Double.POSITIVE_INFINITY);
+    }
+
+    // Adds the entities of a template, moved down by yShift, that end up above the given y
+    private void addEntities(WorldTemplate template, double yShift, double belowY) {
+        for (int i = 0; i < template.getCoinCount(); i++) {
+            if (template.getCoinY(i) + yShift >= belowY) {
+                continue;
+            }
+            Coin coin = new Coin(template.getCoinX(i), template.getCoinY(i) + yShift, gameProps);
+            coin.setId(nextCoinId++);
+            COINS.add(coin);
+            coinIndex.add(coin);
+        }
+        for (int i = 0; i < template.getPowerCount(); i++) {
+            if (template.getPowerY(i) + yShift >= belowY) {
+                continue;
+            }
+            InvinciblePower power = new InvinciblePower(template.getPowerX(i), template.getPowerY(i) + yShift, gameProps);
+            power.setId(nextPowerId++);
+            INVINCIBLE_POWERS.add(power);
+            powerIndex.add(power);
+        }
+        for (int i = 0; i < template.getPassengerCount(); i++) {
+            if (template.getPassengerY(i) + yShift >= belowY) {
+                continue;
+            }
+            Passenger passenger = withTimers(new Passenger(template.getPassengerX(i), template.getPassengerY(i) + yShift,
+                    template.getPassengerPriority(i), template.getPassengerEndX(i),
+                    template.getPassengerYDistance(i), template.getPassengerUmbrella(i), gameProps));
+            passenger.setId(nextPassengerId++);
+            PASSENGERS.add(passenger);
+            waitingPassengers.add(passenger);
+            // A passenger another player picked up before this game reached them
+            if (takenPassengers.contains(passenger.getId())) {
+                moveTakenPassenger(passenger);
             }
         }
     }
 
-    private void renderEntities() {
-        taxi.render();
+    private <T extends GameEntity> T withTimers(T entity) {
+        entity.setTimers(timers);
+        return entity;
+    }
 
-        for (TaxiDamaged destroyedTaxi : destroyedTaxis){
-            destroyedTaxi.render();
+    /* Endless road */
+    // The chunk at the top of the window; chunk 0 starts there at the start of the game
+    private int cameraChunk() {
+        return (int) Math.floor(bg_Y / road.getChunkLength());
+    }
+
+    private void streamRoad() {
+        // A chunk comes onto the road while it is still a chunk length above the window
+        double length = road.getChunkLength();
+        while (bg_Y - nextChunk * length > -length) {
+            addEntities(road.getChunk(nextChunk), bg_Y);
+            nextChunk++;
         }
+        road.advance(Math.max(cameraChunk(), 0));
+        recycleEntities(length);
+    }
 
-        for (Coin coin : COINS) {
-            coin.render();
+    // Drops what the road has left behind, and cars that drove too far ahead to come back
+    private void recycleEntities(double aheadLimit) {
+        double behind = WINDOW_HEIGHT + RECYCLE_MARGIN;
+        for (Iterator<Coin> it = COINS.iterator(); it.hasNext(); ) {
+            Coin coin = it.next();
+            if (coin.getY() > behind) {
+                it.remove();
+                coinIndex.remove(coin);
+            }
         }
-        for (InvinciblePower power : INVINCIBLE_POWERS) {
-            power.render();
+        for (Iterator<InvinciblePower> it = INVINCIBLE_POWERS.iterator(); it.hasNext(); ) {
+            InvinciblePower power = it.next();
+            if (power.getY() > behind) {
+                it.remove();
+                powerIndex.remove(power);
+            }
         }
-        for (Passenger passenger : PASSENGERS) {
-            passenger.render();
+        // Passengers riding along, waiting at their flag or last shown in the trip details stay
+        for (Iterator<Passenger> it = PASSENGERS.iterator(); it.hasNext(); ) {
+            Passenger passenger = it.next();
+            if (passenger.getY() > behind && !passenger.isOnGoingTrip() && ridePool.getFlag(passenger) == null
+                    && (lastTrip == null || lastTrip.getPassenger() != passenger)) {
+                it.remove();
+                waitingPassengers.remove(passenger);
+                standingPassengers.remove(passenger);
+            }
         }
-        for (TripEndFlag flag : tripEndFlags) {
-            flag.render();
+        for (Iterator<Car> it = CARS.iterator(); it.hasNext(); ) {
+            Car car = it.next();
+            if (car.getY() > behind || car.getY() < -aheadLimit) {
+                it.remove();
+                traffic.remove(car);
+            }
         }
+        destroyedTaxis.removeIf(destroyedTaxi -> destroyedTaxi.getY() > behind);
+        FIREBALLS.removeIf(fireball -> !fireball.getAlive() || fireball.getY() < -RECYCLE_MARGIN
+                || fireball.getY() > behind);
+    }
 
+    // Collisions and bounces wear off, and effects and fireballs move on
+    private void updateEntities() {
         for (Car car : CARS) {
             if (car instanceof EnemyCar enemyCar) {
                 if (enemyCar.getAlive()) {
@@ -315,35 +708,70 @@ public class GamePlayScreen {
                     }
                     if (enemyCar.getRevive()) {
                         //enemy cars has getRandomSpeedY method
-                        car.setSpeedY(enemyCar.getRandomSpeedY(gameProps));
+                        car.setSpeedY(EnemyCar.getRandomSpeedY(gameProps, random));
                     }
                 }
             }
             if (car instanceof OtherCar otherCar){
                 if (otherCar.getRevive()){
                     //other cars has getRandomSpeedY method
-                    car.setSpeedY(otherCar.getRandomSpeedY(gameProps));
+                    car.setSpeedY(OtherCar.getRandomSpeedY(gameProps, random));
                 }
             }
-            car.render();
-        }
-        for (Smoke smoke : SMOKES) {
-            smoke.render();
-        }
-
-        for (Fire fire : FIRES) {
-            fire.render();
         }
+        particles.update();
 
         for (Fireball fireball : FIREBALLS) {
             if (fireball.getAlive()){
-                fireball.render();
+                fireball.update();
             }
         }
 
-        Driver driver = Driver.getInstance(0, 0, gameProps);
+        // Cars are revived, above, on the frame after their invincibility runs out
+        timers.advance();
         driver.syncWithTaxi(taxi);
-        driver.render();
+    }
+
+    private void renderEntities() {
+        if (Assets.isHeadless()) {
+            return;
+        }
+        taxi.render(renderQueue);
+
+        for (TaxiDamaged destroyedTaxi : destroyedTaxis){
+            destroyedTaxi.render(renderQueue);
+        }
+
+        // Only the standing entities near the window are visited
+        double top = -CULL_MARGIN;
+        double bottom = WINDOW_HEIGHT + CULL_MARGIN;
+        coinIndex.forEachBetween(top, bottom, this::render);
+        powerIndex.forEachBetween(top, bottom, this::render);
+        waitingPassengers.forEachBetween(top, bottom, this::render);
+        standingPassengers.forEachBetween(top, bottom, this::render);
+        for (Trip trip : ridePool.getActiveTrips()) {
+            trip.getPassenger().render(renderQueue);
+        }
+        for (Passenger passenger : ridePool.getDroppedPassengers()) {
+            passenger.render(renderQueue);
+        }
+        for (TripEndFlag flag : ridePool.getFlags()) {
+            flag.render(renderQueue);
+        }
+
+        for (Car car : CARS) {
+            car.render(renderQueue);
+        }
+        particles.render(renderQueue);
+
+        for (Fireball fireball : FIREBALLS) {
+            fireball.render(renderQueue);
+        }
+        driver.render(renderQueue);
+    }
+
+    private void render(GameEntity entity) {
+        entity.render(renderQueue);
     }
 
     private void moveEntitiesDown() {
@@ -366,35 +794,30 @@ public class GamePlayScreen {
         for (Passenger passenger : PASSENGERS) {
             passenger.moveDown(SCROLL_SPEED);
         }
-        for (TripEndFlag flag : tripEndFlags) {
+        coinIndex.scroll(SCROLL_SPEED);
+        powerIndex.scroll(SCROLL_SPEED);
+        waitingPassengers.scroll(SCROLL_SPEED);
+        standingPassengers.scroll(SCROLL_SPEED);
+        for (TripEndFlag flag : ridePool.getFlags()) {
             flag.moveDown(SCROLL_SPEED);
         }
+        ridePool.scroll(SCROLL_SPEED);
         for (Car car: CARS){
             car.moveDown(SCROLL_SPEED);
         }
-
-        for (Smoke smoke : SMOKES) {
-            smoke.moveDown(SCROLL_SPEED);
-        }
-        for (Fire fire : FIRES) {
-            fire.moveDown(SCROLL_SPEED);
-        }
+        particles.moveDown(SCROLL_SPEED);
     }
 
     /* Spawning new taxi */
     private void spawnNewTaxi(){
         double lane = selectTaxiRandomLane();
         double y = selectTaxiRandomYCoordinate();
-        taxi = new Taxi(lane, y, gameProps);
+        taxi = withTimers(new Taxi(lane, y, gameProps));
     }
 
     private double selectTaxiRandomLane() {
-        int laneNumber = random.nextInt(2); // Random lane: 0 or 1
-        return switch (laneNumber) {
-            case 0 -> roadLaneCenter1;
-            case 1 -> roadLaneCenter3;
-            default -> roadLaneCenter1; // Fallback in case something goes wrong
-        };
+        int laneNumber = random.nextInt(2); // Random lane: the leftmost or the rightmost
+        return laneNumber == 0 ? ROAD_LANE_CENTERS[0] : ROAD_LANE_CENTERS[ROAD_LANE_CENTERS.length - 1];
     }
 
     private double selectTaxiRandomYCoordinate() {
@@ -405,138 +828,164 @@ public class GamePlayScreen {
 
     /* Spawning other cars & enemy cars */
     private void spawnCars(){
+        if (trafficScheduler != null) {
+            trafficScheduler.update(frameCounter, traffic, this::spawnCar);
+            return;
+        }
         int randomInt = random.nextInt(1000) + 1;
 
-        if (randomInt % 200  == 0){
+        if (randomInt % CAR_SPAWN_RATE == 0){
             double lane = selectOtherCarRandomLane();
             double y = selectOtherCarRandomYCoordinate();
 
             // determine whether we should spawn a normal or enemy car
-            if (randomInt%400 == 0){
-                CARS.add(new EnemyCar(lane, y, gameProps));
-            } else {
-                CARS.add(new OtherCar(lane, y, gameProps));
-            }
+            spawnCar(randomInt % ENEMY_CAR_SPAWN_RATE == 0 ? TrafficScheduler.ENEMY_CAR : TrafficScheduler.OTHER_CAR,
+                    lane, y);
         }
     }
 
+    private void spawnCar(int type, double x, double y) {
+        Car car;
+        if (type == TrafficScheduler.ENEMY_CAR) {
+            car = new EnemyCar(x, y, gameProps, random);
+        } else {
+            car = new OtherCar(x, y, gameProps, random);
+        }
+        car.setTimers(timers);
+        car.setId(nextCarId++);
+        CARS.add(car);
+        traffic.add(car);
+    }
+
     private double selectOtherCarRandomLane() {
-        int laneNumber = random.nextInt(3); // Random lane: 0, 1, or 2
-        return switch (laneNumber) {
-            case 0 -> roadLaneCenter1;
-            case 1 -> roadLaneCenter2;
-            case 2 -> roadLaneCenter3;
-            default -> roadLaneCenter1; // Fallback in case something goes wrong
-        };
+        return ROAD_LANE_CENTERS[random.nextInt(ROAD_LANE_CENTERS.length)];
     }
 
     private double selectOtherCarRandomYCoordinate() {
-        return random.nextBoolean() ? -50 : 768;
+        return random.nextBoolean() ? -50 : WINDOW_HEIGHT;
     }
 
     private void spawnFireball(EnemyCar enemyCar){
         int randomInt = random.nextInt(1000) + 1;
-        if (randomInt % 300  == 0){
+        if (randomInt % FIREBALL_SPAWN_RATE == 0){
             double fireballX = enemyCar.getX();
             double fireballY = (enemyCar.getY() - enemyCar.getRadius()) - 10 ; // Spawn just after the enemy car
-            FIREBALLS.add(new Fireball(fireballX, fireballY, gameProps));
+            Fireball fireball = new Fireball(fireballX, fireballY, gameProps);
+            fireball.setId(nextFireballId++);
+            FIREBALLS.add(fireball);
         }
     }
 
     /* Text on screen */
     private void renderInfo() {
+        if (Assets.isHeadless()) {
+            return;
+        }
         // Render the total score
-        INFO_FONT.drawString(messageProps.getProperty("gamePlay.earnings") +
-                String.format("%.2f", playerScore), SCORE_X, SCORE_Y);
+        renderQueue.drawString(RenderQueue.INFO, INFO_FONT, messageProps.getProperty("gamePlay.earnings") +
+                String.format("%.2f", stats.getScore()), SCORE_X, SCORE_Y);
 
-        // Render the target score
-        INFO_FONT.drawString(messageProps.getProperty("gamePlay.target")
-                + String.format("%.2f", TARGET_SCORE), TARGET_X, TARGET_Y);
+        // Render the target score and the remaining number of frames, which an endless road has none of
+        if (road == null) {
+            renderQueue.drawString(RenderQueue.INFO, INFO_FONT, messageProps.getProperty("gamePlay.target")
+                    + String.format("%.2f", TARGET_SCORE), TARGET_X, TARGET_Y);
 
-        // Render the remaining number of frames
-        int framesRemaining = MAX_FRAMES - frameCounter;
-        INFO_FONT.drawString(messageProps.getProperty("gamePlay.remFrames") +
-                framesRemaining, FRAMES_X, FRAMES_Y);
+            int framesRemaining = MAX_FRAMES - frameCounter;
+            renderQueue.drawString(RenderQueue.INFO, INFO_FONT, messageProps.getProperty("gamePlay.remFrames") +
+                    framesRemaining, FRAMES_X, FRAMES_Y);
+        }
 
-        INFO_FONT.drawString(messageProps.getProperty("gamePlay.taxiHealth") +
+        renderQueue.drawString(RenderQueue.INFO, INFO_FONT, messageProps.getProperty("gamePlay.taxiHealth") +
                 taxi.getHealth(), TAXI_HEALTH_X, TAXI_HEALTH_Y);
-        INFO_FONT.drawString(messageProps.getProperty("gamePlay.driverHealth") +
-                Driver.getInstance(0, 0, gameProps).getHealth(), DRIVER_HEALTH_X, DRIVER_HEALTH_Y); 
+        renderQueue.drawString(RenderQueue.INFO, INFO_FONT, messageProps.getProperty("gamePlay.driverHealth") +
+                driver.getHealth(), DRIVER_HEALTH_X, DRIVER_HEALTH_Y);
         
+        // Show the health of the most injured passenger riding along
         double passengerHealth = 100;
-        if (currPassenger != null){
-            passengerHealth = currPassenger.getHealth();
+        for (Trip trip : ridePool.getActiveTrips()) {
+            passengerHealth = Math.min(passengerHealth, trip.getPassenger().getHealth());
         }
-        INFO_FONT.drawString(messageProps.getProperty("gamePlay.passengerHealth") +
+        renderQueue.drawString(RenderQueue.INFO, INFO_FONT, messageProps.getProperty("gamePlay.passengerHealth") +
                 passengerHealth, PASSENGER_HEALTH_X, PASSENGER_HEALTH_Y);
     }
 
     /**
      * Renders the details of the current trip on the screen, including expected earnings and penalties.
+     * When several passengers ride along, the trip of the latest one is shown.
      */
     public void renderCurrentTripDetails() {
-        INFO_FONT.drawString(messageProps.getProperty("gamePlay.onGoingTrip.title"), 35, TRIP_DETAILS_Y);
-        INFO_FONT.drawString(messageProps.getProperty("gamePlay.trip.expectedEarning")
+        if (Assets.isHeadless()) {
+            return;
+        }
+        Trip currTrip = ridePool.getLatestTrip();
+        renderQueue.drawString(RenderQueue.INFO, INFO_FONT, messageProps.getProperty("gamePlay.onGoingTrip.title"),
+                35, TRIP_DETAILS_Y);
+        renderQueue.drawString(RenderQueue.INFO, INFO_FONT, messageProps.getProperty("gamePlay.trip.expectedEarning")
                         + String.format("%.1f", currTrip.getEarnings()), TRIP_DETAILS_X, TRIP_DETAILS_Y + 30);
-        INFO_FONT.drawString(messageProps.getProperty("gamePlay.trip.penalty") +
-                        currPassenger.getPriority(), TRIP_DETAILS_X, TRIP_DETAILS_Y + 60);
+        renderQueue.drawString(RenderQueue.INFO, INFO_FONT, messageProps.getProperty("gamePlay.trip.penalty") +
+                        currTrip.getPassenger().getPriority(), TRIP_DETAILS_X, TRIP_DETAILS_Y + 60);
     }
 
     /**
      * Renders the details of the last completed trip on the screen, including earnings, priority, and penalty.
      */
     public void renderLastTripDetails() {
-        INFO_FONT.drawString(messageProps.getProperty("gamePlay.completedTrip.title"), 35, TRIP_DETAILS_Y);
-        INFO_FONT.drawString(messageProps.getProperty("gamePlay.trip.expectedEarning")
+        if (Assets.isHeadless()) {
+            return;
+        }
+        renderQueue.drawString(RenderQueue.INFO, INFO_FONT, messageProps.getProperty("gamePlay.completedTrip.title"),
+                35, TRIP_DETAILS_Y);
+        renderQueue.drawString(RenderQueue.INFO, INFO_FONT, messageProps.getProperty("gamePlay.trip.expectedEarning")
                         + String.format("%.1f",lastTrip.getEarnings()), TRIP_DETAILS_X, TRIP_DETAILS_Y + 30);
-        INFO_FONT.drawString(messageProps.getProperty("gamePlay.trip.priority")
+        renderQueue.drawString(RenderQueue.INFO, INFO_FONT, messageProps.getProperty("gamePlay.trip.priority")
                         + lastTrip.getPassenger().getPriority(), TRIP_DETAILS_X, TRIP_DETAILS_Y + 60);
-        INFO_FONT.drawString(messageProps.getProperty("gamePlay.trip.penalty")
+        renderQueue.drawString(RenderQueue.INFO, INFO_FONT, messageProps.getProperty("gamePlay.trip.penalty")
                         + String.format("%.2f", lastTrip.getPenalty()), TRIP_DETAILS_X, TRIP_DETAILS_Y + 90);
     }
 
     /* Passenger Logic */
     private void checkForPassengerPickup() {
-        for (Passenger passenger : PASSENGERS) {
-            if (!passenger.isInTaxi() && !passenger.isAtDestination()) {
-                if (canPickUp(passenger)) {
-                    passenger.moveToTaxi(taxi.getPosition());
-                    if (passenger.isInTaxi()) {
-                        currPassenger = passenger;
-                        TripEndFlag newFlag = new TripEndFlag(passenger.getEndX(), passenger.getY()-passenger.getYDistance(),
-                                currPassenger, gameProps);
-                        tripEndFlags.add(newFlag);
-                        currTrip = new Trip(passenger, newFlag, gameProps);
-                    }
-                }
-            }
+        // Only the distance depends on the passenger, so the waiting passengers are
+        // searched only while the taxi is ready to take someone
+        if (!canPickUp()) {
+            return;
         }
-    }
+        nearbyPassengers.clear();
+        waitingPassengers.findNear(taxi.getPosition(), TAXI_DETECT_RADIUS, nearbyPassengers);
 
-    private boolean canPickUp(Passenger passenger) {
-        boolean taxiStopped = (!taxiIsMoving);
-        boolean taxiEmpty = true;
-        if(currPassenger!=null){
-            if(currPassenger.isInTaxi()){
-                taxiEmpty= false;
+        for (Passenger passenger : nearbyPassengers) {
+            if (!canPickUp()) {
+                break;
+            }
+            passenger.moveToTaxi(taxi.getPosition());
+            if (passenger.isInTaxi()) {
+                waitingPassengers.remove(passenger);
+                eventBus.publish(newEvent(GameEvent.Type.PASSENGER_PICKED_UP, passenger.getX(), passenger.getY())
+                        .value(passenger.getQuotedFare()));
+                TripEndFlag newFlag = new TripEndFlag(passenger.getEndX(), passenger.getY()-passenger.getYDistance(),
+                        passenger, gameProps);
+                ridePool.startTrip(new Trip(passenger, newFlag, gameProps), newFlag);
+            } else {
+                waitingPassengers.moved(passenger);
             }
         }
+    }
 
-        // Taxi must be adjacent to passenger
-        double distance = taxi.getPosition().distanceTo(passenger.getPosition());
-        boolean adjacent = (distance <= TAXI_DETECT_RADIUS);
+    private boolean canPickUp() {
+        boolean taxiStopped = (!taxiIsMoving);
+        boolean seatFree = ridePool.hasFreeSeat();
 
         // Driver must be in taxi
         boolean driverInTaxi = driver.isInTaxi();
 
-        return taxiEmpty && taxiStopped && adjacent && driverInTaxi;
+        return seatFree && taxiStopped && driverInTaxi;
     }
 
     /* Driver management */
     /**
      * Manages the driver's interaction with the taxi. If the driver collides with the taxi,
      * the driver enters the taxi, and if the driver is invincible, the taxi becomes invincible as well.
-     * Additionally, if there is a current passenger, the passenger is picked up.
+     * Additionally, any passengers on a trip get back in the taxi.
      */
     public void manageDriver(){
         if (driver.checkCollision(taxi)){
@@ -544,9 +993,9 @@ public class GamePlayScreen {
             if (driver.getInvincible()){
                 taxi.setInvincible(true);
             }
-            // Harsh way to get the passenger in the taxi
-            if (currPassenger != null){
-                currPassenger.pickUp();
+            // Harsh way to get the passengers in the taxi
+            for (Trip trip : ridePool.getActiveTrips()) {
+                trip.getPassenger().pickUp();
             }
         }
     }
@@ -554,73 +1003,79 @@ public class GamePlayScreen {
     /* Trip Management */
     private void manageTrip() {
 
-        if (currTrip != null && !currTrip.isCompleted()) {
+        if (ridePool.getLatestTrip() != null) {
             renderCurrentTripDetails();
         }
 
-        // If there is a dropped passenger, manage its movement
-        if (droppedPassenger != null) {
-            // Find the flag corresponding to the dropped passenger
-            TripEndFlag passengerFlag = findFlagForPassenger(droppedPassenger);
-
-            if (passengerFlag != null) {
-                droppedPassenger.moveToEndFlag(passengerFlag.getPosition());
-
-                // Check if the dropped passenger has reached their flag
-                if (droppedPassenger.reachedFlag(passengerFlag.getPosition())) {
-                    tripEndFlags.remove(passengerFlag); // Remove the flag once reached
-                    droppedPassenger = null;
-                }
-            }
+        // Dropped passengers walk to their flags, and stay standing there once reached
+        arrivedPassengers.clear();
+        ridePool.moveDroppedPassengers(arrivedPassengers);
+        for (Passenger passenger : arrivedPassengers) {
+            standingPassengers.add(passenger);
         }
 
-        // Manage the current passenger's trip logic
-        if (currPassenger != null) {
-            // Sync passenger movements with taxi
-            if (currPassenger.isInTaxi()) {
-                currPassenger.setX(taxi.getX());
-                currPassenger.setY(taxi.getY());
+        // Sync the movements of the passengers on a trip with the taxi, or with the driver
+        // when the taxi was destroyed
+        for (Trip trip : ridePool.getActiveTrips()) {
+            Passenger passenger = trip.getPassenger();
+            if (passenger.isInTaxi()) {
+                passenger.setX(taxi.getX());
+                passenger.setY(taxi.getY());
             } else {
-                currPassenger.syncDriver(driver);
+                passenger.syncDriver(driver);
             }
+        }
 
-
-            // Check if the taxi is adjacent to or past the flag
-            TripEndFlag currentFlag = findFlagForPassenger(currPassenger);
-            if (currentFlag != null && !taxiIsMoving && currentFlag.atFlag(taxi.getPosition()) && !currTrip.isCompleted() && currPassenger.isInTaxi()) {
-                currTrip.completeTrip(taxi.getPosition());
-                playerScore += currTrip.getProfit();
-                currPassenger.dropOff();
-                droppedPassenger = currPassenger; // Set the dropped passenger
-                currPassenger = null; // Reset current passenger
-                lastTrip = currTrip;
+        // Drop off every passenger whose flag the stopped taxi is adjacent to or past
+        if (!taxiIsMoving) {
+            arrivedTrips.clear();
+            ridePool.findArrivals(taxi.getPosition(), FLAG_RADIUS, arrivedTrips);
+            for (Trip trip : arrivedTrips) {
+                trip.completeTrip(taxi.getPosition());
+                eventBus.publish(newEvent(GameEvent.Type.TRIP_COMPLETED, taxi.getX(), taxi.getY())
+                        .value(trip.getProfit()).penalty(trip.getPenalty()));
+                trip.getPassenger().dropOff();
+                ridePool.dropOff(trip);
+                lastTrip = trip;
             }
         }
 
-        if (lastTrip != null && (currTrip == null || currTrip.isCompleted())) {
+        if (lastTrip != null && ridePool.getLatestTrip() == null) {
             renderLastTripDetails();
         }
     }
 
-    private TripEndFlag findFlagForPassenger(Passenger passenger) {
-        for (TripEndFlag flag : tripEndFlags) {
-            if (flag.isForPassenger(passenger)) {
-                return flag;
-            }
+    /* Coins and powers */
+    // Tests every coin or power against the taxi and the driver at once; collecting one moves
+    // neither, so the tests hold for the whole loop over them
+    private void findPickUps(List<? extends GameEntity> items) {
+        taxiReach.clear();
+        driverReach.clear();
+        for (GameEntity item : items) {
+            taxiReach.add(item.getX(), item.getY(), item.getRadius() + taxi.getRadius());
+            driverReach.add(item.getX(), item.getY(), item.getRadius() + driver.getRadius());
         }
-        return null;
+        taxiReach.test(taxi.getX(), taxi.getY());
+        driverReach.test(driver.getX(), driver.getY());
     }
 
     /* Invincible Power */
     private void manageInvinciblePower(){
-        for (InvinciblePower power : INVINCIBLE_POWERS) {
-            if (power.checkCollision(taxi)) {
+        findPickUps(INVINCIBLE_POWERS);
+        for (int i = 0; i < INVINCIBLE_POWERS.size(); i++) {
+            InvinciblePower power = INVINCIBLE_POWERS.get(i);
+            if (power.isCollected()) {
+                continue;
+            }
+            if (taxiReach.isHit(i)) {
                 power.onCollision(taxi);
+                powerIndex.remove(power);
                 invinciblePowerFrames = 0;
                 invinciblePowered = true;
                 taxi.setInvincible(true);
-            } else if (power.checkCollision(driver)) {
+            } else if (driverReach.isHit(i)) {
                 power.onCollision(driver);
+                powerIndex.remove(power);
                 invinciblePowerFrames = 0;
                 invinciblePowered = true;
                 driver.setInvincible(true);
@@ -644,30 +1099,40 @@ public class GamePlayScreen {
      * Manages the player's score and coin power, updating passenger priority if needed.
      */
     public void manageCoinPower(){
-        for (Coin coin : COINS) {
-            if(coin.checkCollision(taxi)){
+        findPickUps(COINS);
+        for (int i = 0; i < COINS.size(); i++) {
+            Coin coin = COINS.get(i);
+            if (coin.isCollected()) {
+                continue;
+            }
+            if (taxiReach.isHit(i)) {
                 coin.onCollision(taxi);
+                coinIndex.remove(coin);
                 coinPowerFrames = 0;
                 coinPowered = true;
-            } else if (coin.checkCollision(driver)) {
+            } else if (driverReach.isHit(i)) {
                 coin.onCollision(driver);
+                coinIndex.remove(coin);
                 coinPowerFrames = 0;
                 coinPowered = true;
             }
         }
         if(coinPowerFrames < COIN_POWER_DURATION && coinPowered){
             coinPowerFrames++;
-            INFO_FONT.drawString(Integer.toString(coinPowerFrames), COIN_POWER_FRAMES_X, COIN_POWER_FRAMES_Y);
+            if (!Assets.isHeadless()) {
+                renderQueue.drawString(RenderQueue.INFO, INFO_FONT, Integer.toString(coinPowerFrames),
+                        COIN_POWER_FRAMES_X, COIN_POWER_FRAMES_Y);
+            }
 
-            if(currPassenger != null) {
-                currPassenger.increasePriority();
-                currTrip.updateEarnings();
+            for (Trip trip : ridePool.getActiveTrips()) {
+                trip.getPassenger().increasePriority();
+                trip.updateEarnings();
             }
         }
         else {
-            if(currPassenger != null){
-                currPassenger.decreasePriority();
-                currTrip.updateEarnings();
+            for (Trip trip : ridePool.getActiveTrips()) {
+                trip.getPassenger().decreasePriority();
+                trip.updateEarnings();
             }
             coinPowered = false;
         }
@@ -678,22 +1143,97 @@ public class GamePlayScreen {
      *
      * @return true if coin power is active, false otherwise.
      */
-    public static boolean isCoinPowered(){
+    public boolean isCoinPowered(){
         return coinPowered;
     }
 
     /* Car collisions */
+    private void startSweeps() {
+        taxi.startSweep();
+        driver.startSweep();
+        for (Car car : CARS) {
+            car.startSweep();
+        }
+        for (Fireball fireball : FIREBALLS) {
+            fireball.startSweep();
+        }
+        for (Trip trip : ridePool.getActiveTrips()) {
+            trip.getPassenger().startSweep();
+        }
+    }
+
     private void manageCarsCollisions() {
+        traffic.update();
+        if (CONTINUOUS_COLLISIONS) {
+            // Two entities can only have touched during the frame if they are now no further
+            // apart than touching plus the distance both of them moved
+            double farthest = Math.max(taxi.getSweepLength(), driver.getSweepLength());
+            for (Car car : CARS) {
+                farthest = Math.max(farthest, car.getSweepLength());
+            }
+            for (Fireball fireball : FIREBALLS) {
+                farthest = Math.max(farthest, fireball.getSweepLength());
+            }
+            for (Trip trip : ridePool.getActiveTrips()) {
+                farthest = Math.max(farthest, trip.getPassenger().getSweepLength());
+            }
+            traffic.setReachMargin(2 * farthest);
+        }
+
         // Check collisions between taxi and enemy and other cars
         if (!taxi.getInvincible() && !driver.getInvincible()){
-            for (Car car: CARS){
+            for (Fireball fireball : FIREBALLS) {
+                if (fireball.getAlive()){
+                    if (driver.checkCollision(fireball)) {
+                        publishFireballHit(fireball, GameEvent.HIT_DRIVER);
+                        driver.onCollision(fireball);
+                        fireball.onCollision(driver);
+                    }
+                    for (Trip trip : ridePool.getActiveTrips()) {
+                        Passenger passenger = trip.getPassenger();
+                        if (passenger.checkCollision(fireball)) {
+                            publishFireballHit(fireball, GameEvent.HIT_PASSENGER);
+                            passenger.onCollision(fireball);
+                            fireball.onCollision(passenger);
+                        }
+                    }
+
+                    if (taxi.checkCollision(fireball)){
+                        publishFireballHit(fireball, GameEvent.HIT_TAXI);
+                        taxi.onCollision(fireball);
+                        fireball.onCollision(taxi);
+                    }
+                }
+            }
+
+            // Only the cars in reach of the taxi, the driver, a passenger or a fireball can be hit
+            nearbyCars.clear();
+            traffic.findNear(taxi, nearbyCars);
+            traffic.findNear(driver, nearbyCars);
+            for (Trip trip : ridePool.getActiveTrips()) {
+                traffic.findNear(trip.getPassenger(), nearbyCars);
+            }
+            for (Fireball fireball : FIREBALLS) {
+                if (fireball.getAlive()) {
+                    traffic.findNear(fireball, nearbyCars);
+                }
+            }
+            traffic.sortBySpawnOrder(nearbyCars);
+
+            for (int i = 0; i < nearbyCars.size(); i++) {
+                Car car = nearbyCars.get(i);
+                double carLastX = car.getX();
+                double carLastY = car.getY();
                 if (taxi.checkCollision(car)){
-                    // Spawn smoke once if it's time
+                    // Smoke rises once if it's time
+                    double taxiLastX = taxi.getX();
+                    double taxiLastY = taxi.getY();
+                    int flags = 0;
                     if (taxi.isTimeToSpawnSmoke()) {
-                        SMOKES.add(new Smoke(taxi.getX(), taxi.getY(), gameProps));
+                        flags |= GameEvent.FIRST_SMOKES;
                     }
                     if (car.isTimeToSpawnSmoke()) {
-                        SMOKES.add(new Smoke(car.getX(), car.getY(), gameProps));
+                        flags |= GameEvent.SECOND_SMOKES;
                     }
                     taxi.onCollision(car);
                     car.onCollision(taxi);
@@ -702,23 +1242,34 @@ public class GamePlayScreen {
                     taxi.bounce(car);
                     car.bounce(taxi);
 
-                    //Spawn fire
+                    // Fire bursts from the destroyed cars
                     if (taxi.getDestroyed()) {
-                        destroyedTaxis.add(new TaxiDamaged(taxi.getX(), taxi.getY(), gameProps));
+                        flags |= GameEvent.FIRST_DESTROYED;
+                    }
+                    if (car.getDestroyed()) {
+                        flags |= GameEvent.SECOND_DESTROYED;
+                    }
+                    eventBus.publish(newEvent(GameEvent.Type.CAR_COLLISION, taxiLastX, taxiLastY)
+                            .with(carLastX, carLastY).flags(flags));
+
+                    if (taxi.getDestroyed()) {
+                        TaxiDamaged destroyedTaxi = withTimers(new TaxiDamaged(taxi.getX(), taxi.getY(), gameProps));
+                        destroyedTaxi.setId(nextDestroyedTaxiId++);
+                        destroyedTaxis.add(destroyedTaxi);
+                        eventBus.publish(newEvent(GameEvent.Type.TAXI_DESTROYED, taxi.getX(), taxi.getY()));
                         spawnNewTaxi();
+                        // The new taxi may land next to cars that are still to be checked
+                        traffic.findNear(taxi, car, nearbyCars);
+                        traffic.sortBySpawnOrder(nearbyCars.subList(i + 1, nearbyCars.size()));
                         if (driver.isInTaxi()){
                             driver.taxiDestroyed(destroyedTaxis.get(destroyedTaxis.size()-1));
-                            if (currPassenger != null){
-                                currPassenger.taxiDestroyed(destroyedTaxis.get(destroyedTaxis.size()-1));
+                            for (Trip trip : ridePool.getActiveTrips()) {
+                                trip.getPassenger().taxiDestroyed(destroyedTaxis.get(destroyedTaxis.size()-1));
                             }
                         }
                         if (taxi.getInvincible()){
                             driver.setInvincible(true);
                         }
-                        FIRES.add(new Fire(destroyedTaxis.get(destroyedTaxis.size()-1).getX(), destroyedTaxis.get(destroyedTaxis.size()-1).getY(), gameProps));
-                    }
-                    if (car.getDestroyed()) {
-                        FIRES.add(new Fire(car.getX(), car.getY(), gameProps));
                     }
                 } else if (driver.checkCollision(car)){
                     driver.onCollision(car);
@@ -727,51 +1278,40 @@ public class GamePlayScreen {
                     driver.bounce(car);
                     car.bounce(driver);
                 }
-                else if (currPassenger != null && currPassenger.checkCollision(car)){
-                    currPassenger.onCollision(car);
-                    car.onCollision(currPassenger);
+                else {
+                    for (Trip trip : ridePool.getActiveTrips()) {
+                        Passenger passenger = trip.getPassenger();
+                        if (passenger.checkCollision(car)) {
+                            passenger.onCollision(car);
+                            car.onCollision(passenger);
+                        }
+                    }
                 }
 
                 for (Fireball fireball : FIREBALLS) {
-                    if (fireball.getAlive()){
-                        if (driver.checkCollision(fireball)) {
-                            driver.onCollision(fireball);
-                            fireball.onCollision(driver);
-                        }
-                        if (currPassenger != null) {
-                            if (currPassenger.checkCollision(fireball)) {
-                                currPassenger.onCollision(fireball);
-                                fireball.onCollision(currPassenger);
-                            }
-                        }
-
-                        if (taxi.checkCollision(fireball)){
-                            taxi.onCollision(fireball);
-                            fireball.onCollision(taxi);
-                        }
-                        if (car instanceof EnemyCar enemyCar) {
-                            if (enemyCar.checkCollision(fireball)) {
-                                enemyCar.onCollision(fireball);
-                                fireball.onCollision(enemyCar);
-                            }
-                        } else if (car instanceof OtherCar otherCar) {
-                            if (otherCar.checkCollision(fireball)) {
-                                otherCar.onCollision(fireball);
-                                fireball.onCollision(otherCar);
-                            }
-                        }
+                    if (fireball.getAlive() && car.checkCollision(fireball)) {
+                        publishFireballHit(fireball, GameEvent.HIT_CAR);
+                        car.onCollision(fireball);
+                        fireball.onCollision(car);
                     }
                 }
+
+                // Wrecked cars are moved off the road, so their neighbours change
+                if (car.getX() != carLastX || car.getY() != carLastY) {
+                    traffic.moved(car);
+                }
             }
         }
-        // Check collisions between all enemy and other cars
-        for (int i = 0; i < CARS.size(); i++) {
-            Car car1 = CARS.get(i);
+        // Check collisions between all enemy and other cars, looking only at the
+        // neighbours of each car in its lane and the lanes next to it
+        for (Car car1 : CARS) {
             if (car1.getInvincible()){
                 continue;
             }
-            for (int j = i + 1; j < CARS.size(); j++) {
-                Car car2 = CARS.get(j);
+            nearbyCars.clear();
+            traffic.findLaterNeighbours(car1, nearbyCars);
+            for (int i = 0; i < nearbyCars.size(); i++) {
+                Car car2 = nearbyCars.get(i);
                 if (car2.getInvincible()){
                     continue;
                 }
@@ -780,12 +1320,13 @@ public class GamePlayScreen {
                     double car1lasty = car1.getY();
                     double car2lastx = car2.getX();
                     double car2lasty = car2.getY();
-                    // Spawn smoke once if it's time
+                    // Smoke rises once if it's time
+                    int flags = 0;
                     if (car1.isTimeToSpawnSmoke()) {
-                        SMOKES.add(new Smoke(car1.getX(), car1.getY(), gameProps));
+                        flags |= GameEvent.FIRST_SMOKES;
                     }
                     if (car2.isTimeToSpawnSmoke()) {
-                        SMOKES.add(new Smoke(car2.getX(), car2.getY(), gameProps));
+                        flags |= GameEvent.SECOND_SMOKES;
                     }
                     car1.onCollision(car2);
                     car2.onCollision(car1);
@@ -794,21 +1335,47 @@ public class GamePlayScreen {
                     car1.bounce(car2);
                     car2.bounce(car1);
 
-                    // Spawn fire
+                    // Fire bursts from the destroyed cars
                     if (car1.getDestroyed()) {
-                        FIRES.add(new Fire(car1lastx, car1lasty, gameProps));
+                        flags |= GameEvent.FIRST_DESTROYED;
                     }
                     if (car2.getDestroyed()) {
-                        FIRES.add(new Fire(car2lastx, car2lasty, gameProps));
+                        flags |= GameEvent.SECOND_DESTROYED;
+                    }
+                    eventBus.publish(newEvent(GameEvent.Type.CAR_COLLISION, car1lastx, car1lasty)
+                            .with(car2lastx, car2lasty).flags(flags));
+
+                    // Wrecked cars are moved off the road, so their neighbours change
+                    boolean car1Moved = car1.getX() != car1lastx || car1.getY() != car1lasty;
+                    boolean car2Moved = car2.getX() != car2lastx || car2.getY() != car2lasty;
+                    if (car1Moved && car2Moved) {
+                        traffic.moved(car1, car2);
+                    } else if (car1Moved) {
+                        traffic.moved(car1);
+                    } else if (car2Moved) {
+                        traffic.moved(car2);
+                    }
+                    if (car1Moved) {
+                        nearbyCars.subList(i + 1, nearbyCars.size()).clear();
+                        traffic.findLaterNeighbours(car1, car2, nearbyCars);
                     }
                 }
             }
         }
     }
 
+    /* Game events */
+    private GameEvent newEvent(GameEvent.Type type, double x, double y) {
+        return eventBus.claim(type, frameCounter).at(x, y).replayed(frameCounter <= publishedFrame);
+    }
+
+    private void publishFireballHit(Fireball fireball, int target) {
+        eventBus.publish(newEvent(GameEvent.Type.FIREBALL_HIT, fireball.getX(), fireball.getY()).flags(target));
+    }
+
     // Check if the taxi is out of bounds
     private boolean isTaxiOutOfBounds() {
-        return taxi.getY() > Window.getHeight()+taxi.getRadius();
+        return taxi.getY() > WINDOW_HEIGHT + taxi.getRadius();
     }
 
     /* Manage Stats */
@@ -821,32 +1388,595 @@ public class GamePlayScreen {
         return playerWon;
     }
 
+    /**
+     * Returns the player's total earnings so far.
+     *
+     * @return The player's score.
+     */
+    public double getPlayerScore() {
+        return stats.getScore();
+    }
+
+    /**
+     * Returns the number of frames played so far.
+     *
+     * @return The frame counter.
+     */
+    public int getFrameCounter() {
+        return frameCounter;
+    }
+
+    /* Simulation state, read by autopilots and the multiplayer host */
+
+    /**
+     * Returns the player's current taxi.
+     *
+     * @return The taxi.
+     */
+    public Taxi getTaxi() {
+        return taxi;
+    }
+
+    /**
+     * Returns the driver of this session.
+     *
+     * @return The driver.
+     */
+    public Driver getDriver() {
+        return driver;
+    }
+
+    /**
+     * Returns the distance within which a waiting passenger notices a stopped taxi.
+     *
+     * @return The taxi detect radius.
+     */
+    public double getTaxiDetectRadius() {
+        return TAXI_DETECT_RADIUS;
+    }
+
+    /**
+     * Returns the trips in progress, in the order the passengers were picked up.
+     *
+     * @return A read-only view of the active trips.
+     */
+    public List<Trip> getActiveTrips() {
+        return ridePool.getActiveTrips();
+    }
+
+    /**
+     * Returns whether the taxi has a free seat for another passenger.
+     *
+     * @return true if a seat is free, false otherwise.
+     */
+    public boolean hasFreeSeat() {
+        return ridePool.hasFreeSeat();
+    }
+
+    /**
+     * Returns a read-only view of all passengers in the world.
+     *
+     * @return The passengers.
+     */
+    public List<Passenger> getPassengers() {
+        return Collections.unmodifiableList(PASSENGERS);
+    }
+
+    /**
+     * Returns a read-only view of all other and enemy cars in the world.
+     *
+     * @return The cars.
+     */
+    public List<Car> getCars() {
+        return Collections.unmodifiableList(CARS);
+    }
+
+    /**
+     * Returns a read-only view of all fireballs in the world.
+     *
+     * @return The fireballs.
+     */
+    public List<Fireball> getFireballs() {
+        return Collections.unmodifiableList(FIREBALLS);
+    }
+
+    /**
+     * Returns a read-only view of all coins in the world, including those collected.
+     *
+     * @return The coins.
+     */
+    public List<Coin> getCoins() {
+        return Collections.unmodifiableList(COINS);
+    }
+
+    /**
+     * Returns a read-only view of all invincibility power-ups in the world, including those collected.
+     *
+     * @return The power-ups.
+     */
+    public List<InvinciblePower> getInvinciblePowers() {
+        return Collections.unmodifiableList(INVINCIBLE_POWERS);
+    }
+
+    /**
+     * Returns a read-only view of the taxis destroyed so far.
+     *
+     * @return The destroyed taxis.
+     */
+    public List<TaxiDamaged> getDestroyedTaxis() {
+        return Collections.unmodifiableList(destroyedTaxis);
+    }
+
+    /**
+     * Returns every trip end flag on the road.
+     *
+     * @return The flags.
+     */
+    public Collection<TripEndFlag> getTripEndFlags() {
+        return Collections.unmodifiableCollection(ridePool.getFlags());
+    }
+
+    /**
+     * Returns how far the background has scrolled.
+     *
+     * @return The background offset.
+     */
+    public double getBackgroundOffset() {
+        return bg_Y;
+    }
+
+    /**
+     * Checks whether the game is being recorded to a replay file.
+     *
+     * @return true if a replay is recorded, false otherwise.
+     */
+    public boolean isRecordingReplay() {
+        return replay != null;
+    }
+
+    /**
+     * Returns whether it is raining.
+     *
+     * @return true if it is raining, false otherwise.
+     */
+    public boolean isRaining() {
+        return isRaining;
+    }
+
+    /**
+     * Takes a waiting passenger off the road, as when a player in another session on the same
+     * road picked them up first. Like a wrecked car, the passenger is moved off the road. A
+     * passenger this game has not reached yet, or has already left behind, is taken off the road
+     * should they come onto it.
+     *
+     * @param id The id of the passenger, as given by {@link Passenger#getId()}.
+     */
+    public void takePassenger(int id) {
+        if (!takenPassengers.add(id)) {
+            return;
+        }
+        for (Passenger passenger : PASSENGERS) {
+            if (passenger.getId() == id) {
+                moveTakenPassenger(passenger);
+                return;
+            }
+        }
+    }
+
+    private void moveTakenPassenger(Passenger passenger) {
+        if (passenger.isOnGoingTrip() || passenger.isAtDestination()) {
+            return;
+        }
+        waitingPassengers.remove(passenger);
+        passenger.setX(TAKEN_PASSENGER_X);
+        passenger.jumped();
+    }
+
     private boolean isGameOver() {
-        if (frameCounter >= MAX_FRAMES || isTaxiOutOfBounds()) {
+        // An endless road has no frame limit and no target
+        if ((road == null && frameCounter >= MAX_FRAMES) || isTaxiOutOfBounds()) {
             playerWon = false;
             savePlayerScore();
             return true;
         }
-        if(playerScore >= TARGET_SCORE){
+        if(road == null && stats.getScore() >= TARGET_SCORE){
             playerWon = true;
             savePlayerScore();
             return true;
         }
         if (driver.isDead()){
+            eventBus.publish(newEvent(GameEvent.Type.DRIVER_DIED, driver.getX(), driver.getY()));
             playerWon = false;
             savePlayerScore();
             return true;
         }
-        if (currPassenger != null && currPassenger.isDead()){
-            playerWon = false;
-            savePlayerScore();
-            return true;
+        for (Trip trip : ridePool.getActiveTrips()) {
+            if (trip.getPassenger().isDead()) {
+                eventBus.publish(newEvent(GameEvent.Type.PASSENGER_DIED, trip.getPassenger().getX(), trip.getPassenger().getY()));
+                playerWon = false;
+                savePlayerScore();
+                return true;
+            }
         }
         return false;
     }
 
     private void savePlayerScore() {
-        IOUtils.writeLineToFile(SCORES_FILE, PLAYER_NAME + "," + String.format("%.2f", playerScore));
+        // Headless sessions are simulations and never touch the shared scores file, and
+        // neither do replays, which turn it off
+        if (Assets.isHeadless() || SCORES_FILE.isEmpty()) {
+            return;
+        }
+        Leaderboard.open(gameProps).submit(PLAYER_NAME, stats.getScore());
+    }
+
+    /* Snapshots */
+    /**
+     * Saves the whole state of the game between two frames into a compact binary snapshot:
+     * every entity, the trips with their passengers and flags, the frame counter, the weather,
+     * the power timers, the statistics and the state of the random number generator.
+     * A snapshot restored with the same game properties plays on exactly like this game.
+     *
+     * @return The snapshot.
+     */
+    public byte[] saveSnapshot() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(lastSnapshotSize);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeShort(SNAPSHOT_VERSION);
+            out.writeUTF(PLAYER_NAME);
+            writeState(out);
+        } catch (IOException e) {
+            // Writing to memory never fails
+            throw new UncheckedIOException(e);
+        }
+        lastSnapshotSize = bytes.size();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Restores a game from a snapshot taken by {@link #saveSnapshot()}. The game continues
+     * from the frame after the one the snapshot was taken on.
+     *
+     * @param snapshot The snapshot.
+     * @param gameProps Properties containing game-specific configurations, the same the snapshot was saved with.
+     * @param messageProps Properties containing in-game messages such as text for earnings and health.
+     * @return The restored game.
+     * @throws IOException If the snapshot is damaged or was saved in another format version.
+     */
+    public static GamePlayScreen restoreSnapshot(byte[] snapshot, Properties gameProps, Properties messageProps)
+            throws IOException {
+        DataInputStream in = openSnapshot(snapshot);
+        GamePlayScreen game = new GamePlayScreen(gameProps, messageProps, in.readUTF(), new SeededRandom());
+        game.readState(in);
+        return game;
+    }
+
+    private static DataInputStream openSnapshot(byte[] snapshot) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot));
+        if (in.readInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a game snapshot");
+        }
+        int version = in.readUnsignedShort();
+        if (version != SNAPSHOT_VERSION) {
+            throw new IOException("Unsupported snapshot version: " + version);
+        }
+        return in;
+    }
+
+    /**
+     * Restores this game to a snapshot taken from it, or from a game played with the same
+     * properties, as when a replay jumps to a keyframe.
+     *
+     * @param snapshot The snapshot.
+     */
+    public void loadSnapshot(byte[] snapshot) {
+        try {
+            DataInputStream in = openSnapshot(snapshot);
+            in.readUTF();
+            clearState();
+            readState(in);
+        } catch (IOException e) {
+            // Only snapshots saved by this game are loaded back into it
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void clearState() {
+        destroyedTaxis.clear();
+        COINS.clear();
+        INVINCIBLE_POWERS.clear();
+        PASSENGERS.clear();
+        takenPassengers.clear();
+        CARS.clear();
+        FIREBALLS.clear();
+        coinIndex.clear();
+        powerIndex.clear();
+        waitingPassengers.clear();
+        standingPassengers.clear();
+        traffic.clear();
+        ridePool.clear();
+        lastTrip = null;
     }
 
-}
\ No newline at end of file
+    /* Rewind */
+    private void recordFrame(GameControls input) {
+        boolean autosave = autosaver != null && frameCounter % AUTOSAVE_INTERVAL == 0;
+        boolean keyframe = replay != null && replay.needsKeyframe(frameCounter);
+        if (!autosave && rewindBuffer == null && !keyframe) {
+            if (replay != null) {
+                replay.record(frameCounter, keyMask(input), null);
+            }
+            return;
+        }
+        byte[] snapshot = saveSnapshot();
+        if (autosave) {
+            autosaver.save(snapshot);
+        }
+        if (rewindBuffer != null) {
+            rewindBuffer.record(frameCounter, keyMask(input), snapshot);
+        }
+        if (replay != null) {
+            replay.record(frameCounter, keyMask(input), snapshot);
+        }
+    }
+
+    private void rewind(int frames) {
+        int oldest = rewindBuffer.getOldestFrame();
+        if (oldest < 0 || oldest >= frameCounter) {
+            return;
+        }
+        // Go back to the frame before the target and play the target again with the keys it
+        // had, which draws it on the screen just as it was the first time without writing it
+        // to the trace or the event log again
+        int target = Math.max(frameCounter - frames, oldest + 1);
+        byte keys = rewindBuffer.getKeys(target);
+        loadSnapshot(rewindBuffer.getSnapshot(target - 1));
+        rewindBuffer.truncate(target - 1);
+        for (int i = 0; i < RECORDED_KEYS.length; i++) {
+            replayKeys.set(RECORDED_KEYS[i], (keys & (1 << i)) != 0);
+        }
+        update(replayKeys);
+    }
+
+    private static byte keyMask(GameControls input) {
+        int mask = 0;
+        for (int i = 0; i < RECORDED_KEYS.length; i++) {
+            if (input.isDown(RECORDED_KEYS[i])) {
+                mask |= 1 << i;
+            }
+        }
+        return (byte) mask;
+    }
+
+    /**
+     * Saves the game to the autosave file straight away and waits until it is written,
+     * as when the player quits in the middle of a game. Nothing is saved after this.
+     */
+    public void suspend() {
+        if (autosaver != null) {
+            autosaver.save(saveSnapshot());
+            autosaver.close();
+        }
+        if (trace != null) {
+            trace.close();
+        }
+        if (replay != null) {
+            replay.close();
+        }
+    }
+
+    private void writeState(DataOutput out) throws IOException {
+        out.writeLong(random.getState());
+        out.writeInt(frameCounter);
+        out.writeInt(currentWeatherIndex);
+        out.writeBoolean(isRaining);
+        out.writeDouble(bg_Y);
+        out.writeBoolean(coinPowered);
+        out.writeInt(coinPowerFrames);
+        out.writeBoolean(invinciblePowered);
+        out.writeInt(invinciblePowerFrames);
+        out.writeBoolean(playerWon);
+        stats.writeState(out);
+        if (trafficAI != null) {
+            trafficAI.writeState(out);
+        }
+        if (trafficScheduler != null) {
+            trafficScheduler.writeState(out);
+        }
+        if (road != null) {
+            out.writeLong(roadSeed);
+            out.writeInt(nextChunk);
+        }
+        out.writeInt(nextPassengerId);
+        out.writeInt(nextCoinId);
+        out.writeInt(nextPowerId);
+        out.writeInt(nextCarId);
+        out.writeInt(nextFireballId);
+        out.writeInt(nextDestroyedTaxiId);
+        out.writeInt(takenPassengers.size());
+        for (int id : takenPassengers) {
+            out.writeInt(id);
+        }
+
+        taxi.writeState(out);
+        driver.writeState(out);
+        writeEntities(out, destroyedTaxis);
+        writeEntities(out, COINS);
+        writeEntities(out, INVINCIBLE_POWERS);
+        // Passengers carry their trips, since they may come from a world that was since reloaded
+        // or from an endless road
+        out.writeInt(PASSENGERS.size());
+        for (Passenger passenger : PASSENGERS) {
+            out.writeInt(passenger.getOriginalPriority());
+            out.writeDouble(passenger.getEndX());
+            out.writeDouble(passenger.getYDistance());
+            out.writeByte(passenger.getHasUmbrella());
+            passenger.writeState(out);
+        }
+        out.writeInt(CARS.size());
+        for (Car car : CARS) {
+            // The type of an other car, or 0 for an enemy car
+            out.writeByte(car instanceof OtherCar otherCar ? otherCar.getCarType() : 0);
+            car.writeState(out);
+        }
+        // Fireballs that hit something have no part in the game any more
+        int aliveFireballs = 0;
+        for (Fireball fireball : FIREBALLS) {
+            if (fireball.getAlive()) {
+                aliveFireballs++;
+            }
+        }
+        out.writeInt(aliveFireballs);
+        for (Fireball fireball : FIREBALLS) {
+            if (fireball.getAlive()) {
+                fireball.writeState(out);
+            }
+        }
+
+        // Trips refer to their passenger by index, and own their flag
+        List<Trip> activeTrips = ridePool.getActiveTrips();
+        out.writeInt(activeTrips.size());
+        for (Trip trip : activeTrips) {
+            out.writeInt(PASSENGERS.indexOf(trip.getPassenger()));
+            trip.getTripEndFlag().writeState(out);
+            trip.writeState(out);
+        }
+        List<Passenger> droppedPassengers = ridePool.getDroppedPassengers();
+        out.writeInt(droppedPassengers.size());
+        for (Passenger passenger : droppedPassengers) {
+            out.writeInt(PASSENGERS.indexOf(passenger));
+            ridePool.getFlag(passenger).writeState(out);
+        }
+        out.writeBoolean(lastTrip != null);
+        if (lastTrip != null) {
+            out.writeInt(PASSENGERS.indexOf(lastTrip.getPassenger()));
+            lastTrip.writeState(out);
+        }
+
+        particles.writeState(out);
+    }
+
+    private void readState(DataInput in) throws IOException {
+        random.setState(in.readLong());
+        frameCounter = in.readInt();
+        // The entities schedule their countdowns again as they are restored
+        timers.reset(frameCounter);
+        currentWeatherIndex = in.readInt();
+        isRaining = in.readBoolean();
+        BACKGROUND = isRaining ? rainyBackground : sunnyBackground;
+        bg_Y = in.readDouble();
+        coinPowered = in.readBoolean();
+        coinPowerFrames = in.readInt();
+        invinciblePowered = in.readBoolean();
+        invinciblePowerFrames = in.readInt();
+        playerWon = in.readBoolean();
+        stats.readState(in);
+        if (trafficAI != null) {
+            trafficAI.readState(in);
+        }
+        if (trafficScheduler != null) {
+            trafficScheduler.readState(in);
+        }
+        if (road != null) {
+            long seed = in.readLong();
+            if (seed != roadSeed) {
+                road.close();
+                roadSeed = seed;
+                road = new RoadGenerator(gameProps, roadSeed);
+            }
+            nextChunk = in.readInt();
+        }
+        nextPassengerId = in.readInt();
+        nextCoinId = in.readInt();
+        nextPowerId = in.readInt();
+        nextCarId = in.readInt();
+        nextFireballId = in.readInt();
+        nextDestroyedTaxiId = in.readInt();
+        for (int i = in.readInt(); i > 0; i--) {
+            takenPassengers.add(in.readInt());
+        }
+
+        taxi = withTimers(new Taxi(0, 0, gameProps));
+        taxi.readState(in);
+        driver = withTimers(new Driver(0, 0, gameProps));
+        driver.readState(in);
+        for (int i = in.readInt(); i > 0; i--) {
+            TaxiDamaged destroyedTaxi = withTimers(new TaxiDamaged(0, 0, gameProps));
+            destroyedTaxi.readState(in);
+            destroyedTaxis.add(destroyedTaxi);
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            Coin coin = new Coin(0, 0, gameProps);
+            coin.readState(in);
+            COINS.add(coin);
+            if (!coin.isCollected()) {
+                coinIndex.add(coin);
+            }
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            InvinciblePower power = new InvinciblePower(0, 0, gameProps);
+            power.readState(in);
+            INVINCIBLE_POWERS.add(power);
+            if (!power.isCollected()) {
+                powerIndex.add(power);
+            }
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            Passenger passenger = withTimers(new Passenger(0, 0, in.readInt(), in.readDouble(), in.readDouble(),
+                    in.readByte(), gameProps));
+            passenger.readState(in);
+            PASSENGERS.add(passenger);
+            if (!passenger.isOnGoingTrip() && !passenger.isAtDestination()) {
+                waitingPassengers.add(passenger);
+            }
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            int carType = in.readByte();
+            Car car = carType == 0 ? new EnemyCar(0, 0, gameProps) : new OtherCar(0, 0, carType, gameProps);
+            car.setTimers(timers);
+            car.readState(in);
+            CARS.add(car);
+        }
+        traffic.addAll(CARS);
+        for (int i = in.readInt(); i > 0; i--) {
+            Fireball fireball = new Fireball(0, 0, gameProps);
+            fireball.readState(in);
+            FIREBALLS.add(fireball);
+        }
+
+        for (int i = in.readInt(); i > 0; i--) {
+            Passenger passenger = PASSENGERS.get(in.readInt());
+            TripEndFlag flag = new TripEndFlag(0, 0, passenger, gameProps);
+            flag.readState(in);
+            Trip trip = new Trip(passenger, flag, gameProps);
+            trip.readState(in);
+            ridePool.startTrip(trip, flag);
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            Passenger passenger = PASSENGERS.get(in.readInt());
+            TripEndFlag flag = new TripEndFlag(0, 0, passenger, gameProps);
+            flag.readState(in);
+            ridePool.restoreDroppedPassenger(passenger, flag);
+        }
+        if (in.readBoolean()) {
+            lastTrip = new Trip(PASSENGERS.get(in.readInt()), null, gameProps);
+            lastTrip.readState(in);
+        }
+        // Passengers who reached their flag stand there for the rest of the game
+        for (Passenger passenger : PASSENGERS) {
+            if (passenger.isAtDestination() && ridePool.getFlag(passenger) == null) {
+                standingPassengers.add(passenger);
+            }
+        }
+
+        particles.readState(in);
+    }
+
+    private static void writeEntities(DataOutput out, List<? extends GameEntity> entities) throws IOException {
+        out.writeInt(entities.size());
+        for (GameEntity entity : entities) {
+            entity.writeState(out);
+        }
+    }
+}
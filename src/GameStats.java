@@ -0,0 +1,121 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The GameStats class keeps the running statistics of a game, including the player's score,
+ * by handling the events of the game on the game thread.
+ */
+public class GameStats implements GameEventHandler {
+    private double score = 0.0;
+    private int collisions = 0;
+    private int pickups = 0;
+    private int tripsCompleted = 0;
+    private int taxisDestroyed = 0;
+    private int fireballHits = 0;
+
+    /**
+     * Updates the statistics for one event.
+     *
+     * @param event The event.
+     * @param endOfBatch true if this is the last event available for now.
+     */
+    @Override
+    public void onEvent(GameEvent event, boolean endOfBatch) {
+        switch (event.getType()) {
+            case CAR_COLLISION -> collisions++;
+            case PASSENGER_PICKED_UP -> pickups++;
+            case TRIP_COMPLETED -> {
+                tripsCompleted++;
+                score += event.getValue();
+            }
+            case TAXI_DESTROYED -> taxisDestroyed++;
+            case FIREBALL_HIT -> fireballHits++;
+            default -> { }
+        }
+    }
+
+    /**
+     * Returns the player's total earnings.
+     *
+     * @return The score.
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * Returns the number of collisions between cars, including the taxi.
+     *
+     * @return The number of collisions.
+     */
+    public int getCollisions() {
+        return collisions;
+    }
+
+    /**
+     * Returns the number of passengers picked up.
+     *
+     * @return The number of pickups.
+     */
+    public int getPickups() {
+        return pickups;
+    }
+
+    /**
+     * Returns the number of trips completed.
+     *
+     * @return The number of completed trips.
+     */
+    public int getTripsCompleted() {
+        return tripsCompleted;
+    }
+
+    /**
+     * Returns the number of taxis destroyed.
+     *
+     * @return The number of destroyed taxis.
+     */
+    public int getTaxisDestroyed() {
+        return taxisDestroyed;
+    }
+
+    /**
+     * Returns the number of fireballs that hit something.
+     *
+     * @return The number of fireball hits.
+     */
+    public int getFireballHits() {
+        return fireballHits;
+    }
+
+    /**
+     * Writes the score and counters to a game snapshot.
+     *
+     * @param out The snapshot to write to.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeDouble(score);
+        out.writeInt(collisions);
+        out.writeInt(pickups);
+        out.writeInt(tripsCompleted);
+        out.writeInt(taxisDestroyed);
+        out.writeInt(fireballHits);
+    }
+
+    /**
+     * Restores the score and counters from a game snapshot.
+     *
+     * @param in The snapshot to read from.
+     * @throws IOException If the snapshot cannot be read.
+     */
+    public void readState(DataInput in) throws IOException {
+        score = in.readDouble();
+        collisions = in.readInt();
+        pickups = in.readInt();
+        tripsCompleted = in.readInt();
+        taxisDestroyed = in.readInt();
+        fireballHits = in.readInt();
+    }
+}
@@ -24,14 +24,14 @@ public class HomeScreen {
      */
     public HomeScreen(Properties gameProps, Properties messageProps) {
 
-        BACKGROUND = new Image(gameProps.getProperty("backgroundImage.home"));
+        BACKGROUND = Assets.getImage(gameProps.getProperty("backgroundImage.home"));
 
-        TITLE_FONT = new Font(gameProps.getProperty("font"),
+        TITLE_FONT = Assets.getFont(gameProps.getProperty("font"),
                 Integer.parseInt(gameProps.getProperty("home.title.fontSize")));
         TITLE_TEXT = messageProps.getProperty("home.title");
         TITLE_Y = Double.parseDouble(gameProps.getProperty("home.title.y"));
 
-        INSTRUCTION_FONT = new Font(gameProps.getProperty("font"),
+        INSTRUCTION_FONT = Assets.getFont(gameProps.getProperty("font"),
                 Integer.parseInt(gameProps.getProperty("home.instruction.fontSize")));
         INSTRUCTION_TEXT = messageProps.getProperty("home.instruction");
         INSTRUCTION_Y = Double.parseDouble(gameProps.getProperty("home.instruction.y"));
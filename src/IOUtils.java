@@ -1,4 +1,10 @@
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 /**
@@ -13,26 +19,7 @@ public class IOUtils {
      */
     public static String[][] readCommaSeparatedFile(String file) {
         try {
-            // checking number of lines in file
-            BufferedReader reader = new BufferedReader(new FileReader(file));
-            int numLines = 0;
-
-            while (reader.readLine() != null) {
-                numLines++;
-            }
-            reader.close();
-
-            reader = new BufferedReader(new FileReader(file));
-            String[][] lines = new String[numLines][];
-            String textRead;
-            int lineIndex = 0;
-
-            while ((textRead = reader.readLine()) != null) {
-                String[] splitText = textRead.split(",");
-                lines[lineIndex++] = splitText;
-            }
-            return lines;
-
+            return readCommaSeparatedRows(file);
         } catch (IOException ex) {
             ex.printStackTrace();
             System.exit(-1);
@@ -41,6 +28,24 @@ public class IOUtils {
         return null;
     }
 
+    /**
+     * Read a CSV file like readCommaSeparatedFile, but leave it to the caller to handle a file
+     * that cannot be read, as when the file may be missing for a moment
+     * @param file The path to the CSV file
+     * @return The elements of each line of the file
+     * @throws IOException If the file cannot be read
+     */
+    public static String[][] readCommaSeparatedRows(String file) throws IOException {
+        List<String[]> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String textRead;
+            while ((textRead = reader.readLine()) != null) {
+                lines.add(textRead.split(","));
+            }
+        }
+        return lines.toArray(new String[0][]);
+    }
+
     /***
      * Read a properties file and return a Properties object
      * @param configFile: the path to the properties file
@@ -73,4 +78,35 @@ public class IOUtils {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Read the whole of a binary file
+     * @param filename The name of the file
+     * @return The contents of the file, or null if it cannot be read
+     */
+    public static byte[] readBytesFromFile(String filename) {
+        try {
+            return Files.readAllBytes(Paths.get(filename));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Replace the contents of a binary file. The data is written to a temporary file next to it
+     * first and then moved into place, so the file is never left half written
+     * @param filename The name of the file
+     * @param data The new contents of the file
+     */
+    public static void writeBytesToFile(String filename, byte[] data) {
+        Path target = Paths.get(filename);
+        Path temporary = Paths.get(filename + ".tmp");
+        try {
+            Files.write(temporary, data);
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+import bagel.Keys;
+
+import java.util.Arrays;
+
+/**
+ * The KeyStates class is a reusable set of held-down keys. Autopilots fill it in once
+ * per frame and the game play screen reads it in place of the keyboard, so driving a
+ * session never allocates.
+ */
+public class KeyStates implements GameControls {
+    private final boolean[] down = new boolean[Keys.values().length];
+
+    /**
+     * Releases every key.
+     */
+    public void clear() {
+        Arrays.fill(down, false);
+    }
+
+    /**
+     * Sets whether the given key is held down.
+     *
+     * @param key The key to set.
+     * @param isDown true to hold the key down, false to release it.
+     */
+    public void set(Keys key, boolean isDown) {
+        down[key.ordinal()] = isDown;
+    }
+
+    /**
+     * Checks whether the given key is currently held down.
+     *
+     * @param key The key to check.
+     * @return true if the key is held down, false otherwise.
+     */
+    @Override
+    public boolean isDown(Keys key) {
+        return down[key.ordinal()];
+    }
+}
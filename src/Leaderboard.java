@@ -0,0 +1,100 @@
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The Leaderboard interface is implemented by the keepers of the players' scores. Games submit
+ * the score of every game that ends, and the game end screen shows the best scores. The scores
+ * are kept by the game itself, or by a {@link LeaderboardServer} several games share.
+ */
+public interface Leaderboard {
+    /**
+     * The Score class is one score submitted by a player.
+     */
+    final class Score {
+        private final String player;
+        private final double score;
+
+        /**
+         * Constructs a new Score.
+         *
+         * @param player The name of the player.
+         * @param score The score.
+         */
+        public Score(String player, double score) {
+            this.player = player;
+            this.score = score;
+        }
+
+        /**
+         * Returns the name of the player.
+         *
+         * @return The player name.
+         */
+        public String getPlayer() {
+            return player;
+        }
+
+        /**
+         * Returns the score.
+         *
+         * @return The score.
+         */
+        public double getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * Submits the score of a game. Never waits for the score to be written to the scores file.
+     *
+     * @param player The name of the player.
+     * @param score The score.
+     */
+    void submit(String player, double score);
+
+    /**
+     * Returns the best scores submitted, best first. A player may have more than one of them.
+     *
+     * @return The best scores, as many as the leaderboard keeps at most.
+     */
+    List<Score> getTopScores();
+
+    /**
+     * Returns the best score a player submitted.
+     *
+     * @param player The name of the player.
+     * @return The best score, or null if the player submitted none.
+     */
+    Score getBest(String player);
+
+    /**
+     * Saves the scores still waiting to be saved, and stops the leaderboard's threads.
+     */
+    void close();
+
+    /**
+     * Opens the leaderboard named in the given properties: the one served at leaderboard.server
+     * if it is set, or the one the game keeps in the scores file. Every call with the same
+     * properties returns the same leaderboard.
+     *
+     * @param gameProps Properties containing the leaderboard settings and the scores file.
+     * @return The leaderboard.
+     */
+    static Leaderboard open(Properties gameProps) {
+        String server = gameProps.getProperty("leaderboard.server", "");
+        if (!server.isEmpty()) {
+            return LeaderboardClient.shared(server);
+        }
+        return LocalLeaderboard.shared(gameProps.getProperty("gameEnd.scoresFile"),
+                Integer.parseInt(gameProps.getProperty("leaderboard.topCount")));
+    }
+
+    /**
+     * Closes every leaderboard returned by {@link #open(Properties)}, saving the scores still
+     * waiting to be saved. Called when the game exits.
+     */
+    static void closeAll() {
+        LocalLeaderboard.closeShared();
+        LeaderboardClient.closeShared();
+    }
+}
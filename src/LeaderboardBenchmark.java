@@ -0,0 +1,136 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+/**
+ * The LeaderboardBenchmark class is a command-line benchmark of the leaderboard. Several
+ * threads, each standing for a game, submit scores at once while another thread asks for the
+ * top scores over and over, first to a {@link LocalLeaderboard} in the same process and then
+ * to a {@link LeaderboardServer} over the loopback network. It reports the submissions per
+ * second, counting the time the clients take to send them all, and the time a top scores query
+ * takes, checks that the top scores and every player's best are right, and counts the scores
+ * that reached the scores file.
+ *
+ * Usage:
+ *   java LeaderboardBenchmark [threads] [scores per thread]
+ */
+public class LeaderboardBenchmark {
+    private static final int TOP_COUNT = 5;
+    private static final int PLAYERS = 100;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Optional number of submitting threads and number of scores each submits.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int scoresPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+        System.out.println("leaderboard,threads,scores,submits per second,top query ns,correct");
+        File file = File.createTempFile("scores", ".csv");
+        file.deleteOnExit();
+        LocalLeaderboard local = new LocalLeaderboard(file.getPath(), TOP_COUNT);
+        List<Leaderboard> locals = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            locals.add(local);
+        }
+        run("local", locals, local, local, () -> { }, threads, scoresPerThread);
+        local.close();
+        check("local", threads * scoresPerThread, file);
+
+        // The server is given fewer scores, as each submission waits for the network
+        int remoteScores = Math.max(1, scoresPerThread / 10);
+        File serverFile = File.createTempFile("scores", ".csv");
+        serverFile.deleteOnExit();
+        LocalLeaderboard served = new LocalLeaderboard(serverFile.getPath(), TOP_COUNT);
+        LeaderboardServer server = new LeaderboardServer(served, 0);
+        String address = "localhost:" + server.getPort();
+        List<Leaderboard> clients = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            clients.add(new LeaderboardClient(address));
+        }
+        LeaderboardClient reader = new LeaderboardClient(address);
+        // The clients send the scores in the background, and closing them waits until they are sent
+        run("loopback", clients, reader, served, () -> clients.forEach(Leaderboard::close), threads, remoteScores);
+        reader.close();
+        server.close();
+        check("loopback", threads * remoteScores, serverFile);
+    }
+
+    private static void run(String name, List<Leaderboard> leaderboards, Leaderboard reader, Leaderboard checked,
+                            Runnable flush, int threads, int scoresPerThread) throws InterruptedException {
+        double[] bests = new double[PLAYERS];
+        List<Double> all = new ArrayList<>();
+        double[][] scores = new double[threads][scoresPerThread];
+        Random random = new Random(threads);
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < scoresPerThread; i++) {
+                scores[t][i] = Math.round(random.nextDouble() * 100000) / 100.0;
+                int player = (t * scoresPerThread + i) % PLAYERS;
+                bests[player] = Math.max(bests[player], scores[t][i]);
+                all.add(scores[t][i]);
+            }
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Thread submitter = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < scoresPerThread; i++) {
+                    leaderboards.get(thread).submit("player" + (thread * scoresPerThread + i) % PLAYERS,
+                            scores[thread][i]);
+                }
+                done.countDown();
+            }, "submitter-" + t);
+            submitter.setDaemon(true);
+            submitter.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        long queries = 0;
+        long queryNanos = 0;
+        while (done.getCount() > 0) {
+            long before = System.nanoTime();
+            reader.getTopScores();
+            queryNanos += System.nanoTime() - before;
+            queries++;
+        }
+        flush.run();
+        long elapsed = System.nanoTime() - begin;
+
+        all.sort(null);
+        boolean correct = true;
+        List<Leaderboard.Score> top = checked.getTopScores();
+        for (int i = 0; i < TOP_COUNT; i++) {
+            correct &= top.get(i).getScore() == all.get(all.size() - 1 - i);
+        }
+        for (int p = 0; p < PLAYERS; p++) {
+            Leaderboard.Score best = checked.getBest("player" + p);
+            correct &= best != null && best.getScore() == bests[p];
+        }
+        int submitted = threads * scoresPerThread;
+        System.out.printf(Locale.ROOT, "%s,%d,%d,%.0f,%.0f,%b%n", name, threads, submitted,
+                submitted * 1e9 / elapsed, (double) queryNanos / Math.max(1, queries), correct);
+    }
+
+    // Counts the lines of the scores file, which should hold every score submitted once
+    private static void check(String name, int submitted, File file) throws IOException {
+        try (Stream<String> lines = Files.lines(file.toPath())) {
+            System.out.printf(Locale.ROOT, "%s: %d of %d scores saved%n", name, lines.count(), submitted);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The LeaderboardClient class is a game's connection to a {@link LeaderboardServer}. The game
+ * never waits for the network: a background thread sends the scores submitted and asks for the
+ * best scores every so often, and the game reads the best scores received last.
+ * A score is kept until the server has taken it, and sent again after the connection is lost,
+ * so none is lost while the server is down for a while. A score whose answer was lost with the
+ * connection may be sent twice. The thread connects again a while after the connection is lost,
+ * and only reports the first failure.
+ */
+public class LeaderboardClient implements Leaderboard {
+    private static final Map<String, LeaderboardClient> SHARED = new ConcurrentHashMap<>();
+    // How long to wait for the server to connect or answer
+    private static final int TIMEOUT_MILLIS = 1000;
+    private static final long REFRESH_MILLIS = 500;
+    private static final long RETRY_MILLIS = 2000;
+
+    private final String host;
+    private final int port;
+    private final Thread sender;
+
+    // Shared with the sending thread, guarded by this
+    private final ArrayDeque<Score> unsent = new ArrayDeque<>();
+    private boolean refreshWanted = true;
+    private boolean closing = false;
+
+    // The best scores received last
+    private volatile List<Score> topScores = Collections.emptyList();
+    private volatile long topScoresMillis;
+
+    // The connection, guarded by connectionLock
+    private final Object connectionLock = new Object();
+    private Socket socket;
+    private BufferedReader in;
+    private PrintWriter out;
+    private boolean failing = false;
+
+    /**
+     * Returns the client of the server at the given address, creating it on first use.
+     *
+     * @param server The address of the server, as host:port.
+     * @return The client.
+     */
+    public static LeaderboardClient shared(String server) {
+        return SHARED.computeIfAbsent(server, LeaderboardClient::new);
+    }
+
+    /**
+     * Closes every client returned by {@link #shared(String)}.
+     */
+    public static void closeShared() {
+        for (LeaderboardClient client : new ArrayList<>(SHARED.values())) {
+            client.close();
+        }
+    }
+
+    /**
+     * Constructs a new LeaderboardClient of the server at the given address, and starts the
+     * thread that talks to the server.
+     *
+     * @param server The address of the server, as host:port.
+     */
+    public LeaderboardClient(String server) {
+        int colon = server.lastIndexOf(':');
+        host = server.substring(0, colon);
+        port = Integer.parseInt(server.substring(colon + 1));
+        sender = new Thread(this::run, "leaderboard-client");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    @Override
+    public void submit(String player, double score) {
+        synchronized (this) {
+            unsent.addLast(new Score(player, score));
+            notifyAll();
+        }
+    }
+
+    /**
+     * Returns the best scores received last from the server, and has them asked for again if
+     * they are getting old. Never waits for the network.
+     *
+     * @return The best scores, best first, or none if the server was never reached.
+     */
+    @Override
+    public List<Score> getTopScores() {
+        if (System.currentTimeMillis() - topScoresMillis >= REFRESH_MILLIS) {
+            synchronized (this) {
+                refreshWanted = true;
+                notifyAll();
+            }
+        }
+        return topScores;
+    }
+
+    /**
+     * Asks the server for the best score a player submitted, and waits for the answer, so it
+     * is not meant to be called while a frame is drawn.
+     *
+     * @param player The name of the player.
+     * @return The best score, or null if the player submitted none or the server cannot be reached.
+     */
+    @Override
+    public Score getBest(String player) {
+        synchronized (connectionLock) {
+            try {
+                String best = request("BEST " + player);
+                return best.equals("NONE") ? null : new Score(player, Double.parseDouble(best));
+            } catch (IOException | NumberFormatException e) {
+                failed(e);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Sends the scores still waiting to be sent, if the server can be reached within a timeout,
+     * and closes the connection.
+     */
+    @Override
+    public void close() {
+        SHARED.values().remove(this);
+        synchronized (this) {
+            closing = true;
+            notifyAll();
+        }
+        try {
+            sender.join(2L * TIMEOUT_MILLIS + 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (!unsent.isEmpty()) {
+                System.err.println(unsent.size() + " scores could not be sent to the leaderboard server");
+            }
+        }
+    }
+
+    private void run() {
+        // While the server is down, nothing is sent before this time
+        long retryMillis = 0;
+        while (true) {
+            boolean refresh;
+            boolean last;
+            synchronized (this) {
+                try {
+                    while (!closing) {
+                        boolean work = !unsent.isEmpty() || refreshWanted;
+                        long delay = retryMillis - System.currentTimeMillis();
+                        if (work && delay <= 0) {
+                            break;
+                        }
+                        if (work) {
+                            wait(delay);
+                        } else {
+                            wait();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                refresh = refreshWanted;
+                refreshWanted = false;
+                last = closing;
+            }
+            boolean done;
+            synchronized (connectionLock) {
+                done = sendUnsent() && (!refresh || readTopScores());
+                if (last) {
+                    disconnect();
+                    return;
+                }
+            }
+            if (!done) {
+                retryMillis = System.currentTimeMillis() + RETRY_MILLIS;
+                if (refresh) {
+                    synchronized (this) {
+                        refreshWanted = true;
+                    }
+                }
+            }
+        }
+    }
+
+    // Sends the scores waiting in turn, each taken off only once the server took it
+    private boolean sendUnsent() {
+        while (true) {
+            Score score;
+            synchronized (this) {
+                score = unsent.peekFirst();
+            }
+            if (score == null) {
+                return true;
+            }
+            try {
+                request("SUBMIT " + score.getScore() + " " + score.getPlayer());
+            } catch (IOException e) {
+                failed(e);
+                return false;
+            }
+            synchronized (this) {
+                unsent.removeFirst();
+            }
+        }
+    }
+
+    private boolean readTopScores() {
+        try {
+            int count = Integer.parseInt(request("TOP"));
+            List<Score> scores = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                String line = in.readLine();
+                if (line == null) {
+                    throw new IOException("The leaderboard server closed the connection");
+                }
+                scores.add(LeaderboardServer.parseScore(line));
+            }
+            topScores = Collections.unmodifiableList(scores);
+            topScoresMillis = System.currentTimeMillis();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            failed(e);
+            return false;
+        }
+    }
+
+    // Sends a request and returns the first line of the answer
+    private String request(String line) throws IOException {
+        if (socket == null) {
+            connect();
+        }
+        out.print(line + "\n");
+        out.flush();
+        String answer = in.readLine();
+        if (answer == null) {
+            throw new IOException("The leaderboard server closed the connection");
+        }
+        failing = false;
+        return answer;
+    }
+
+    private void failed(Exception e) {
+        if (!failing) {
+            e.printStackTrace();
+            failing = true;
+        }
+        disconnect();
+    }
+
+    private void connect() throws IOException {
+        socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), TIMEOUT_MILLIS);
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            disconnect();
+            throw e;
+        }
+    }
+
+    private void disconnect() {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        socket = null;
+        in = null;
+        out = null;
+    }
+}
@@ -0,0 +1,180 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * The LeaderboardServer class shares one leaderboard between several games, which talk to it
+ * through a {@link LeaderboardClient} over a loopback socket. It is the only one to write the
+ * scores file, so the games never read the whole file or append to it at the same time.
+ * Each game is served on a thread of its own, and they all submit to and read from the same
+ * {@link LocalLeaderboard}, which needs no locks.
+ *
+ * Each request is a line, and so is each answer:
+ * <pre>
+ *   SUBMIT score name   answers OK
+ *   TOP                 answers the number of scores, then a "score name" line for each, best first
+ *   BEST name           answers the player's best score, or NONE
+ * </pre>
+ *
+ * Usage:
+ *   java LeaderboardServer [port]
+ */
+public class LeaderboardServer implements Closeable {
+    private final LocalLeaderboard leaderboard;
+    private final ServerSocket serverSocket;
+    private final Thread acceptor;
+    private int connections = 0;
+
+    /**
+     * Constructs a new LeaderboardServer listening on the given loopback port, and starts
+     * accepting games.
+     *
+     * @param leaderboard The leaderboard to serve.
+     * @param port The TCP port to listen on, or 0 for any free port.
+     * @throws IOException If the port cannot be opened.
+     */
+    public LeaderboardServer(LocalLeaderboard leaderboard, int port) throws IOException {
+        this.leaderboard = leaderboard;
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        acceptor = new Thread(this::accept, "leaderboard-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return The port.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stops accepting games and saves the scores still waiting to be saved.
+     */
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        leaderboard.close();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread connection = new Thread(() -> serve(socket), "leaderboard-client-" + ++connections);
+                connection.setDaemon(true);
+                connection.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                     StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(),
+                     StandardCharsets.UTF_8))) {
+            String request;
+            while ((request = in.readLine()) != null) {
+                answer(request, out);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The game went away
+        }
+    }
+
+    private void answer(String request, PrintWriter out) {
+        String[] parts = request.split(" ", 3);
+        try {
+            switch (parts[0]) {
+                case "SUBMIT":
+                    leaderboard.submit(parts[2], Double.parseDouble(parts[1]));
+                    out.print("OK\n");
+                    break;
+                case "TOP":
+                    List<Leaderboard.Score> top = leaderboard.getTopScores();
+                    out.print(top.size() + "\n");
+                    for (Leaderboard.Score score : top) {
+                        out.print(formatScore(score) + "\n");
+                    }
+                    break;
+                case "BEST":
+                    Leaderboard.Score best = leaderboard.getBest(request.substring("BEST ".length()));
+                    out.print((best == null ? "NONE" : Double.toString(best.getScore())) + "\n");
+                    break;
+                default:
+                    out.print("ERROR Unknown request\n");
+            }
+        } catch (RuntimeException e) {
+            out.print("ERROR Bad request\n");
+        }
+    }
+
+    /**
+     * Formats a score as it is sent over the socket: the score, a space and the player name.
+     *
+     * @param score The score.
+     * @return The formatted score.
+     */
+    static String formatScore(Leaderboard.Score score) {
+        return Double.toString(score.getScore()) + " " + score.getPlayer();
+    }
+
+    /**
+     * Parses a score sent over the socket.
+     *
+     * @param line The score, as formatted by {@link #formatScore(Leaderboard.Score)}.
+     * @return The score.
+     */
+    static Leaderboard.Score parseScore(String line) {
+        int space = line.indexOf(' ');
+        return new Leaderboard.Score(line.substring(space + 1), Double.parseDouble(line.substring(0, space)));
+    }
+
+    /**
+     * Runs the server until it is stopped, keeping the scores in the scores file of the game
+     * properties.
+     *
+     * @param args Optional port, leaderboard.port by default.
+     */
+    public static void main(String[] args) throws IOException {
+        Properties gameProps = IOUtils.readPropertiesFile("res/app.properties");
+        int port = args.length > 0 ? Integer.parseInt(args[0])
+                : Integer.parseInt(gameProps.getProperty("leaderboard.port"));
+        LocalLeaderboard leaderboard = new LocalLeaderboard(gameProps.getProperty("gameEnd.scoresFile"),
+                Integer.parseInt(gameProps.getProperty("leaderboard.topCount")));
+        LeaderboardServer server = new LeaderboardServer(leaderboard, port);
+        // The scores submitted last are saved when the server is stopped
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.out.printf(Locale.ROOT, "Serving the leaderboard on port %d%n", server.getPort());
+        try {
+            server.acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The LocalLeaderboard class keeps the scores in memory and saves them to the scores file, one
+ * "name,score" line each. The file is read when the leaderboard is opened, and the best scores
+ * are kept up to date as scores are submitted, so asking for them never reads the file.
+ * Other games may append to the same file, as kiosks sharing a folder do: every second, and
+ * whenever it saves, the background thread reads the lines added past where it read last, and
+ * adds those it did not write itself. Two games that append at the very same moment may mix up
+ * their lines, which are then left out, so games that must never lose a score should share a
+ * {@link LeaderboardServer} instead.
+ *
+ * Scores can be submitted from any number of threads at once without locks: the best score of
+ * each player is kept in a concurrent map, and the top scores in a small sorted array that a
+ * submission replaces with a copy holding its score, retrying if another submission replaced it
+ * first. Reading the top scores is a single read of the current array. A background thread
+ * appends the submitted scores to the file, all those waiting in one write, so the game never
+ * waits for the disk and the lines of two submissions are never mixed up.
+ */
+public class LocalLeaderboard implements Leaderboard {
+    private static final Map<String, LocalLeaderboard> SHARED = new ConcurrentHashMap<>();
+    private static final Score[] NO_SCORES = new Score[0];
+    // How often the scores file is read for the scores other games appended
+    private static final long REREAD_MILLIS = 1000;
+
+    private final String scoresFile;
+    private final int topCount;
+    private final Map<String, Score> bests = new ConcurrentHashMap<>();
+    // Best first; a score equal to another comes after it, as it was submitted later
+    private final AtomicReference<Score[]> top = new AtomicReference<>(NO_SCORES);
+    private final BlockingQueue<Score> unsaved = new LinkedBlockingQueue<>();
+    private final Thread writer;
+
+    // Used by the saving thread only, once the leaderboard is opened
+    private long readOffset = 0;
+    // The lines this leaderboard appended that were not read back yet, and how many of each
+    private final Map<String, Integer> ownLines = new HashMap<>();
+
+    /**
+     * Returns the leaderboard of the given scores file, opening it on first use. Games that
+     * share the file in the same process share its leaderboard.
+     *
+     * @param scoresFile The name of the scores file, or an empty name to keep the scores in memory only.
+     * @param topCount The number of best scores kept.
+     * @return The leaderboard.
+     */
+    public static LocalLeaderboard shared(String scoresFile, int topCount) {
+        return SHARED.computeIfAbsent(scoresFile + "," + topCount, key -> new LocalLeaderboard(scoresFile, topCount));
+    }
+
+    /**
+     * Closes every leaderboard returned by {@link #shared(String, int)}.
+     */
+    public static void closeShared() {
+        for (LocalLeaderboard leaderboard : new ArrayList<>(SHARED.values())) {
+            leaderboard.close();
+        }
+    }
+
+    /**
+     * Constructs a new LocalLeaderboard with the scores already in the given file, and starts
+     * the thread that saves the scores submitted.
+     *
+     * @param scoresFile The name of the scores file, or an empty name to keep the scores in memory only.
+     * @param topCount The number of best scores kept.
+     */
+    public LocalLeaderboard(String scoresFile, int topCount) {
+        this.scoresFile = scoresFile;
+        this.topCount = topCount;
+        readAppended();
+        writer = new Thread(this::save, "leaderboard-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void submit(String player, double score) {
+        Score entry = new Score(player, score);
+        add(entry);
+        if (!scoresFile.isEmpty()) {
+            unsaved.add(entry);
+        }
+    }
+
+    @Override
+    public List<Score> getTopScores() {
+        return Arrays.asList(top.get());
+    }
+
+    @Override
+    public Score getBest(String player) {
+        return bests.get(player);
+    }
+
+    /**
+     * Saves the scores still waiting to be saved and stops the saving thread.
+     */
+    @Override
+    public void close() {
+        SHARED.values().remove(this);
+        writer.interrupt();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Score> batch = new ArrayList<>();
+        unsaved.drainTo(batch);
+        append(batch);
+    }
+
+    private void add(Score entry) {
+        bests.merge(entry.getPlayer(), entry, (older, newer) -> newer.getScore() > older.getScore() ? newer : older);
+        while (true) {
+            Score[] current = top.get();
+            int place = current.length;
+            while (place > 0 && current[place - 1].getScore() < entry.getScore()) {
+                place--;
+            }
+            if (place >= topCount) {
+                return;
+            }
+            Score[] updated = new Score[Math.min(current.length + 1, topCount)];
+            System.arraycopy(current, 0, updated, 0, place);
+            updated[place] = entry;
+            System.arraycopy(current, place, updated, place + 1, updated.length - place - 1);
+            if (top.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+
+    private void save() {
+        List<Score> batch = new ArrayList<>();
+        try {
+            while (true) {
+                Score entry = scoresFile.isEmpty() ? unsaved.take()
+                        : unsaved.poll(REREAD_MILLIS, TimeUnit.MILLISECONDS);
+                if (entry != null) {
+                    batch.add(entry);
+                    unsaved.drainTo(batch);
+                    append(batch);
+                    batch.clear();
+                }
+                readAppended();
+            }
+        } catch (InterruptedException e) {
+            // Closed; close writes what is left
+        }
+    }
+
+    private void append(List<Score> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        StringBuilder lines = new StringBuilder();
+        for (Score entry : batch) {
+            String line = entry.getPlayer() + "," + String.format("%.2f", entry.getScore());
+            ownLines.merge(line, 1, Integer::sum);
+            lines.append(line).append(System.lineSeparator());
+        }
+        try (FileWriter out = new FileWriter(scoresFile, true)) {
+            out.write(lines.toString());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Adds the scores in the whole lines appended to the scores file since it was read last
+    private void readAppended() {
+        if (scoresFile.isEmpty() || !Files.exists(Paths.get(scoresFile))) {
+            return;
+        }
+        byte[] appended;
+        try (RandomAccessFile in = new RandomAccessFile(scoresFile, "r")) {
+            // A file that got shorter was replaced; the scores already read are kept
+            readOffset = Math.min(readOffset, in.length());
+            appended = new byte[(int) (in.length() - readOffset)];
+            in.seek(readOffset);
+            in.readFully(appended);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        // A line still being written is read once it is whole
+        int end = appended.length;
+        while (end > 0 && appended[end - 1] != '\n') {
+            end--;
+        }
+        readOffset += end;
+        for (String line : new String(appended, 0, end, StandardCharsets.UTF_8).split("\r?\n")) {
+            Integer own = ownLines.get(line);
+            if (own != null) {
+                // Added when it was submitted
+                if (own == 1) {
+                    ownLines.remove(line);
+                } else {
+                    ownLines.put(line, own - 1);
+                }
+                continue;
+            }
+            String[] row = line.split(",");
+            try {
+                if (row.length >= 2) {
+                    add(new Score(row[0], Double.parseDouble(row[1])));
+                }
+            } catch (NumberFormatException e) {
+                // A line cut off by a crash is left out
+            }
+        }
+    }
+}
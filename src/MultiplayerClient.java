@@ -0,0 +1,355 @@
+import bagel.Keys;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+/**
+ * The MultiplayerClient class is one player's connection to a {@link MultiplayerHost}. It sends
+ * the player's keys every frame and keeps the latest state the host sent.
+ * So the taxi answers the keys at once rather than a round trip later, the client predicts the
+ * effect of the keys the host has not played yet: the taxi or driver moves sideways and the
+ * road scrolls as they would in the game, and the host's state takes over again once it has
+ * played them.
+ */
+public class MultiplayerClient implements Closeable {
+    /** Key bits of an input. */
+    public static final int UP = 1;
+    public static final int DOWN = 2;
+    public static final int LEFT = 4;
+    public static final int RIGHT = 8;
+
+    // States kept to decode deltas against, and inputs kept for prediction and round trips
+    private static final int HISTORY = 64;
+    // Each input datagram repeats this many of the newest inputs, so a lost one loses no keys
+    private static final int REDUNDANCY = 8;
+    private static final int JOIN_RETRY_FRAMES = 30;
+
+    private final DatagramChannel channel;
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocate(NetCodec.MAX_DATAGRAM);
+    private final ByteBuffer sendBuffer = ByteBuffer.allocate(256);
+    private final NetState[] states = new NetState[HISTORY];
+    private final NetState decoded = new NetState();
+    private NetState latest = null;
+
+    private final double taxiSpeedX;
+    private final double taxiSpeedY;
+    private final double driverSpeedX;
+    private final double driverSpeedY;
+
+    private String name = null;
+    private int joinWait = 0;
+    private int player = -1;
+
+    private int seq = 0;
+    private final byte[] masks = new byte[HISTORY];
+    private final long[] sendTimes = new long[HISTORY];
+    private int lastAcked = 0;
+
+    private long bytesSent = 0;
+    private long bytesReceived = 0;
+    private long statesReceived = 0;
+    private long statesDropped = 0;
+    private long roundTripNanos = 0;
+    private long roundTrips = 0;
+
+    /**
+     * Constructs a new MultiplayerClient for a host.
+     *
+     * @param gameProps Properties containing the taxi and driver speeds.
+     * @param host The host's address.
+     * @throws IOException If the socket cannot be opened.
+     */
+    public MultiplayerClient(Properties gameProps, SocketAddress host) throws IOException {
+        taxiSpeedX = Double.parseDouble(gameProps.getProperty("gameObjects.taxi.speedX"));
+        taxiSpeedY = Double.parseDouble(gameProps.getProperty("gameObjects.taxi.speedY"));
+        driverSpeedX = Double.parseDouble(gameProps.getProperty("gameObjects.driver.walkSpeedX"));
+        driverSpeedY = Double.parseDouble(gameProps.getProperty("gameObjects.driver.walkSpeedY"));
+        for (int i = 0; i < HISTORY; i++) {
+            states[i] = new NetState();
+        }
+        channel = DatagramChannel.open();
+        channel.connect(host);
+        channel.configureBlocking(false);
+    }
+
+    /**
+     * Asks the host to join the game. The request is repeated by {@link #poll()} until the host
+     * answers.
+     *
+     * @param playerName The player's name.
+     * @throws IOException If the socket fails.
+     */
+    public void join(String playerName) throws IOException {
+        name = playerName;
+        sendJoin();
+    }
+
+    /**
+     * Reads every datagram waiting from the host.
+     *
+     * @throws IOException If the socket fails.
+     */
+    public void poll() throws IOException {
+        if (player < 0 && name != null && ++joinWait == JOIN_RETRY_FRAMES) {
+            sendJoin();
+        }
+        while (true) {
+            receiveBuffer.clear();
+            if (channel.receive(receiveBuffer) == null) {
+                return;
+            }
+            receiveBuffer.flip();
+            bytesReceived += receiveBuffer.remaining();
+            if (!receiveBuffer.hasRemaining()) {
+                continue;
+            }
+            byte type = receiveBuffer.get(0);
+            if (type == NetCodec.WELCOME && receiveBuffer.remaining() > 1) {
+                player = receiveBuffer.get(1);
+            } else if (type == NetCodec.STATE) {
+                try {
+                    receiveState();
+                } catch (RuntimeException e) {
+                    // A cut off or malformed state is dropped
+                    statesDropped++;
+                }
+            }
+        }
+    }
+
+    private void receiveState() {
+        int baseFrame = NetCodec.peekBaseFrame(receiveBuffer);
+        NetState baseline = null;
+        if (baseFrame != 0) {
+            baseline = states[baseFrame % HISTORY];
+            if (baseline.getFrame() != baseFrame) {
+                // The baseline is gone; the host sends full states again once acks stop advancing
+                statesDropped++;
+                return;
+            }
+        }
+        // Decode aside first, as the state's slot may hold the baseline
+        NetCodec.decodeState(receiveBuffer, baseline, decoded);
+        int frame = decoded.getFrame();
+        if (latest != null && frame <= latest.getFrame() - HISTORY / 2) {
+            statesDropped++;
+            return;
+        }
+        NetState slot = states[frame % HISTORY];
+        slot.copyFrom(decoded);
+        statesReceived++;
+        if (latest == null || frame > latest.getFrame()) {
+            latest = slot;
+            int acked = latest.getAckedInput();
+            if (acked > lastAcked) {
+                roundTripNanos += System.nanoTime() - sendTimes[acked % HISTORY];
+                roundTrips++;
+                lastAcked = acked;
+            }
+        }
+    }
+
+    /**
+     * Sends the keys held down this frame, and acknowledges the latest state received.
+     *
+     * @param keyMask The keys, as a combination of the key bits.
+     * @throws IOException If the socket fails.
+     */
+    public void sendInput(int keyMask) throws IOException {
+        if (player < 0) {
+            return;
+        }
+        seq++;
+        masks[seq % HISTORY] = (byte) keyMask;
+        sendTimes[seq % HISTORY] = System.nanoTime();
+        int count = Math.min(seq, REDUNDANCY);
+        sendBuffer.clear();
+        sendBuffer.put(NetCodec.INPUT);
+        NetCodec.putVarInt(sendBuffer, latest == null ? 0 : latest.getFrame());
+        NetCodec.putVarInt(sendBuffer, seq);
+        sendBuffer.put((byte) count);
+        for (int i = 0; i < count; i++) {
+            sendBuffer.put(masks[(seq - i) % HISTORY]);
+        }
+        sendBuffer.flip();
+        bytesSent += sendBuffer.remaining();
+        channel.write(sendBuffer);
+    }
+
+    /**
+     * Returns the latest state received.
+     *
+     * @return The state, or null if none has arrived yet.
+     */
+    public NetState getState() {
+        return latest;
+    }
+
+    /**
+     * Returns the x-coordinate of an entity of the latest state on screen, in pixels, with the
+     * player's own taxi or driver moved by the inputs the host has not played yet.
+     *
+     * @param i The entity's position in the latest state.
+     * @return The x-coordinate.
+     */
+    public double getScreenX(int i) {
+        double x = NetState.dequantise(latest.getX(i));
+        if (isControlled(latest.getId(i))) {
+            x += predict(RIGHT, latest.hasStatus(NetState.DRIVER_IN_TAXI) ? taxiSpeedX : driverSpeedX)
+                    - predict(LEFT, latest.hasStatus(NetState.DRIVER_IN_TAXI) ? taxiSpeedX : driverSpeedX);
+        }
+        return x;
+    }
+
+    /**
+     * Returns the y-coordinate of an entity of the latest state on screen, in pixels, with the
+     * road scrolled by the inputs the host has not played yet. The player's own taxi or driver
+     * stays put on screen as the road scrolls.
+     *
+     * @param i The entity's position in the latest state.
+     * @return The y-coordinate.
+     */
+    public double getScreenY(int i) {
+        double y = NetState.dequantise(latest.getY(i) + latest.getOffset());
+        if (isControlled(latest.getId(i))) {
+            return latest.hasStatus(NetState.DRIVER_IN_TAXI) ? y : y + predict(DOWN, driverSpeedY);
+        }
+        return y + getPredictedScroll();
+    }
+
+    /**
+     * Returns how far the road has scrolled, in pixels, with the inputs the host has not
+     * played yet.
+     *
+     * @return The offset.
+     */
+    public double getScreenOffset() {
+        return NetState.dequantise(latest.getOffset()) + getPredictedScroll();
+    }
+
+    private double getPredictedScroll() {
+        return predict(UP, latest.hasStatus(NetState.DRIVER_IN_TAXI) ? taxiSpeedY : driverSpeedY);
+    }
+
+    private boolean isControlled(int id) {
+        int kind = NetState.kindOf(id);
+        return latest.hasStatus(NetState.DRIVER_IN_TAXI) ? kind == NetState.TAXI : kind == NetState.DRIVER;
+    }
+
+    private double predict(int key, double speed) {
+        if (latest.hasStatus(NetState.GAME_OVER)) {
+            return 0;
+        }
+        // Only the inputs still remembered are predicted; older ones are long played
+        int count = 0;
+        for (int s = Math.max(latest.getAckedInput() + 1, seq - HISTORY + 1); s <= seq; s++) {
+            if ((masks[s % HISTORY] & key) != 0) {
+                count++;
+            }
+        }
+        return count * speed;
+    }
+
+    /**
+     * Returns the player's number, given by the host.
+     *
+     * @return The number, or -1 before the host answered.
+     */
+    public int getPlayer() {
+        return player;
+    }
+
+    /**
+     * Returns the number of bytes sent.
+     *
+     * @return The number of bytes.
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * Returns the number of bytes received.
+     *
+     * @return The number of bytes.
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Returns the number of states received and decoded.
+     *
+     * @return The number of states.
+     */
+    public long getStatesReceived() {
+        return statesReceived;
+    }
+
+    /**
+     * Returns the number of states that could not be decoded, or arrived too late.
+     *
+     * @return The number of states.
+     */
+    public long getStatesDropped() {
+        return statesDropped;
+    }
+
+    /**
+     * Returns the average time from sending an input to receiving the first state it was
+     * played in.
+     *
+     * @return The time in milliseconds, or 0 before any input was played.
+     */
+    public double getAverageRoundTrip() {
+        return roundTrips == 0 ? 0 : roundTripNanos / 1e6 / roundTrips;
+    }
+
+    /**
+     * Closes the socket.
+     *
+     * @throws IOException If the socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void sendJoin() throws IOException {
+        joinWait = 0;
+        sendBuffer.clear();
+        sendBuffer.put(NetCodec.JOIN);
+        sendBuffer.put(StandardCharsets.UTF_8.encode(name));
+        sendBuffer.flip();
+        channel.write(sendBuffer);
+    }
+
+    /**
+     * Returns the keys held down, as a combination of the key bits.
+     *
+     * @param input The key states.
+     * @return The key mask.
+     */
+    public static int toMask(GameControls input) {
+        return (input.isDown(Keys.UP) ? UP : 0) | (input.isDown(Keys.DOWN) ? DOWN : 0)
+                | (input.isDown(Keys.LEFT) ? LEFT : 0) | (input.isDown(Keys.RIGHT) ? RIGHT : 0);
+    }
+
+    /**
+     * Holds down the keys of a key mask.
+     *
+     * @param keyMask The keys, as a combination of the key bits.
+     * @param keys The key states to set.
+     */
+    public static void toKeys(int keyMask, KeyStates keys) {
+        keys.set(Keys.UP, (keyMask & UP) != 0);
+        keys.set(Keys.DOWN, (keyMask & DOWN) != 0);
+        keys.set(Keys.LEFT, (keyMask & LEFT) != 0);
+        keys.set(Keys.RIGHT, (keyMask & RIGHT) != 0);
+    }
+}
@@ -0,0 +1,174 @@
+import bagel.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.Properties;
+
+/**
+ * The MultiplayerGame class is the window of a player in a multiplayer game. It sends the arrow
+ * keys to the host and draws the latest state the host sent: the road, every entity in view,
+ * the player's score and health, and every player's score. The player's own taxi answers the
+ * keys at once, as the client predicts it until the host has played them.
+ *
+ * Usage:
+ *   java MultiplayerGame host[:port] [player name]
+ */
+public class MultiplayerGame extends AbstractGame {
+    private static final DrawOptions HALF_OPACITY = new DrawOptions().setBlendColour(1, 1, 1, 0.5);
+
+    private final Properties messageProps;
+    private final MultiplayerClient client;
+    private final int windowWidth;
+    private final int windowHeight;
+    private final Image sunnyBackground;
+    private final Image rainyBackground;
+    private final Image[] images = new Image[NetState.KINDS];
+    private final Font infoFont;
+    private final Font passengerFont;
+    private final Font statusFont;
+
+    private final int scoreX;
+    private final int scoreY;
+    private final int taxiHealthX;
+    private final int taxiHealthY;
+    private final int driverHealthX;
+    private final int driverHealthY;
+    private final int framesX;
+    private final int framesY;
+    private final int scoresX;
+    private final int scoresY;
+    private final int statusY;
+
+    /**
+     * Constructs a new MultiplayerGame window playing through the given client.
+     *
+     * @param gameProps Properties containing the window size, images, fonts and text positions.
+     * @param messageProps Properties containing in-game messages.
+     * @param client The client, already asked to join.
+     */
+    public MultiplayerGame(Properties gameProps, Properties messageProps, MultiplayerClient client) {
+        super(Integer.parseInt(gameProps.getProperty("window.width")),
+                Integer.parseInt(gameProps.getProperty("window.height")),
+                messageProps.getProperty("home.title"));
+        this.messageProps = messageProps;
+        this.client = client;
+        windowWidth = Integer.parseInt(gameProps.getProperty("window.width"));
+        windowHeight = Integer.parseInt(gameProps.getProperty("window.height"));
+        sunnyBackground = Assets.getImage(gameProps.getProperty("backgroundImage.sunny"));
+        rainyBackground = Assets.getImage(gameProps.getProperty("backgroundImage.raining"));
+
+        images[NetState.TAXI] = Assets.getImage(gameProps.getProperty("gameObjects.taxi.image"));
+        images[NetState.OTHER_TAXI] = images[NetState.TAXI];
+        images[NetState.DRIVER] = Assets.getImage(gameProps.getProperty("gameObjects.driver.image"));
+        images[NetState.OTHER_CAR_1] = Assets.getImage(String.format(gameProps.getProperty("gameObjects.otherCar.image"), 1));
+        images[NetState.OTHER_CAR_2] = Assets.getImage(String.format(gameProps.getProperty("gameObjects.otherCar.image"), 2));
+        images[NetState.ENEMY_CAR] = Assets.getImage(gameProps.getProperty("gameObjects.enemyCar.image"));
+        images[NetState.FIREBALL] = Assets.getImage(gameProps.getProperty("gameObjects.fireball.image"));
+        images[NetState.PASSENGER] = Assets.getImage(gameProps.getProperty("gameObjects.passenger.image"));
+        images[NetState.COIN] = Assets.getImage(gameProps.getProperty("gameObjects.coin.image"));
+        images[NetState.INVINCIBLE_POWER] = Assets.getImage(gameProps.getProperty("gameObjects.invinciblePower.image"));
+        images[NetState.TRIP_END_FLAG] = Assets.getImage(gameProps.getProperty("gameObjects.tripEndFlag.image"));
+        images[NetState.DAMAGED_TAXI] = Assets.getImage(gameProps.getProperty("gameObjects.taxi.damagedImage"));
+
+        String font = gameProps.getProperty("font");
+        infoFont = Assets.getFont(font, Integer.parseInt(gameProps.getProperty("gamePlay.info.fontSize")));
+        passengerFont = Assets.getFont(font, Integer.parseInt(gameProps.getProperty("gameObjects.passenger.fontSize")));
+        statusFont = Assets.getFont(font, Integer.parseInt(gameProps.getProperty("gameEnd.status.fontSize")));
+
+        scoreX = Integer.parseInt(gameProps.getProperty("gamePlay.earnings.x"));
+        scoreY = Integer.parseInt(gameProps.getProperty("gamePlay.earnings.y"));
+        taxiHealthX = Integer.parseInt(gameProps.getProperty("gamePlay.taxiHealth.x"));
+        taxiHealthY = Integer.parseInt(gameProps.getProperty("gamePlay.taxiHealth.y"));
+        driverHealthX = Integer.parseInt(gameProps.getProperty("gamePlay.driverHealth.x"));
+        driverHealthY = Integer.parseInt(gameProps.getProperty("gamePlay.driverHealth.y"));
+        framesX = Integer.parseInt(gameProps.getProperty("gamePlay.maxFrames.x"));
+        framesY = Integer.parseInt(gameProps.getProperty("gamePlay.maxFrames.y"));
+        scoresX = Integer.parseInt(gameProps.getProperty("multiplayer.scores.x"));
+        scoresY = Integer.parseInt(gameProps.getProperty("multiplayer.scores.y"));
+        statusY = Integer.parseInt(gameProps.getProperty("gameEnd.status.y"));
+    }
+
+    /**
+     * Sends the keys held down and draws the latest state received.
+     *
+     * @param input The current mouse/keyboard input.
+     */
+    @Override
+    protected void update(Input input) {
+        if (input.wasPressed(Keys.ESCAPE)) {
+            Window.close();
+        }
+        try {
+            client.poll();
+            client.sendInput(MultiplayerClient.toMask(input::isDown));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        NetState state = client.getState();
+        if (state == null) {
+            return;
+        }
+
+        Image background = state.hasStatus(NetState.RAINING) ? rainyBackground : sunnyBackground;
+        double bgPos = (windowHeight / 2.0) + (client.getScreenOffset() % windowHeight);
+        background.draw(windowWidth / 2.0, bgPos);
+        background.draw(windowWidth / 2.0, bgPos - windowHeight);
+
+        for (int i = 0; i < state.size(); i++) {
+            int kind = NetState.kindOf(state.getId(i));
+            int flags = state.getFlags(i);
+            double x = client.getScreenX(i);
+            double y = client.getScreenY(i);
+            if ((flags & NetState.FLAG_INVINCIBLE) != 0 || kind == NetState.OTHER_TAXI) {
+                images[kind].draw(x, y, HALF_OPACITY);
+            } else {
+                images[kind].draw(x, y);
+            }
+            // Waiting passengers show their priority, as in a game of one
+            if ((flags & NetState.FLAG_IDLE) != 0) {
+                passengerFont.drawString(Integer.toString(flags >>> NetState.PRIORITY_SHIFT), x - 30, y);
+            }
+        }
+        renderInfo(state);
+    }
+
+    private void renderInfo(NetState state) {
+        infoFont.drawString(messageProps.getProperty("gamePlay.earnings")
+                + String.format("%.2f", state.getScore() / 100.0), scoreX, scoreY);
+        infoFont.drawString(messageProps.getProperty("gamePlay.remFrames") + state.getFramesLeft(), framesX, framesY);
+        infoFont.drawString(messageProps.getProperty("gamePlay.taxiHealth")
+                + state.getTaxiHealth() / 100.0, taxiHealthX, taxiHealthY);
+        infoFont.drawString(messageProps.getProperty("gamePlay.driverHealth")
+                + state.getDriverHealth() / 100.0, driverHealthX, driverHealthY);
+
+        int[] scores = state.getScores();
+        for (int i = 0; i < scores.length; i++) {
+            String marker = i == client.getPlayer() ? "*" : "";
+            infoFont.drawString(marker + messageProps.getProperty("multiplayer.player") + (i + 1) + " "
+                    + String.format("%.2f", scores[i] / 100.0), scoresX, scoresY + 30 * i);
+        }
+
+        if (state.hasStatus(NetState.GAME_OVER)) {
+            String status = messageProps.getProperty(state.hasStatus(NetState.WON)
+                    ? "multiplayer.won" : "multiplayer.lost");
+            statusFont.drawString(status, (windowWidth - statusFont.getWidth(status)) / 2.0, statusY);
+        }
+    }
+
+    /**
+     * Joins a multiplayer game and opens the player's window.
+     *
+     * @param args The host, optionally with a port, and optionally the player's name.
+     */
+    public static void main(String[] args) throws IOException {
+        Properties gameProps = IOUtils.readPropertiesFile("res/app.properties");
+        Properties messageProps = IOUtils.readPropertiesFile("res/message_en.properties");
+        String[] host = (args.length > 0 ? args[0] : "localhost").split(":");
+        int port = host.length > 1 ? Integer.parseInt(host[1]) : Integer.parseInt(gameProps.getProperty("multiplayer.port"));
+        MultiplayerClient client = new MultiplayerClient(gameProps, new InetSocketAddress(host[0], port));
+        client.join(args.length > 1 ? args[1] : System.getProperty("user.name"));
+        new MultiplayerGame(gameProps, messageProps, client).run();
+        client.close();
+    }
+}
@@ -0,0 +1,472 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The MultiplayerHost class runs a multiplayer game for two to four players over UDP. The host
+ * is authoritative: it plays every player's game and the clients only send their keys and draw
+ * what they are sent.
+ * The game world is laid out in screen coordinates that scroll with the taxi, so each player
+ * has a game of their own, all started from the same seed and so on the same road, with their
+ * own taxi and driver. The players compete for the same passengers: once a player picks up a
+ * passenger, the passenger is taken off the road in every other player's game. Every player
+ * also sees the other players' taxis at their place on the road.
+ * Each frame, every player is sent what they can see as a delta against the latest state they
+ * acknowledged, so the traffic only grows with what changes on screen, however many cars and
+ * fireballs there are further up or down the road.
+ *
+ * Usage:
+ *   java MultiplayerHost [port] [seed]
+ */
+public class MultiplayerHost implements Closeable {
+    // Sent states kept per player, to delta against whichever one the player acknowledges
+    private static final int HISTORY = 64;
+
+    private final Properties gameProps;
+    private final Properties messageProps;
+    private final long seed;
+    private final DatagramChannel channel;
+    private final int maxPlayers;
+    private final int maxQueuedInputs;
+    private final int windowHeight;
+    private final double viewMargin;
+    private final int maxFrames;
+    private final List<Player> players = new ArrayList<>();
+    // The ids of the passengers picked up by a player
+    private final Set<Integer> claimed = new HashSet<>();
+
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocate(NetCodec.MAX_DATAGRAM);
+    private final ByteBuffer sendBuffer = ByteBuffer.allocate(NetCodec.MAX_DATAGRAM);
+    private final ByteBuffer measureBuffer = ByteBuffer.allocate(NetCodec.MAX_DATAGRAM);
+    private boolean measureFullStates = false;
+    private int frame = 0;
+    private long bytesSent = 0;
+    private long fullStateBytes = 0;
+    private long statesSent = 0;
+    private long entitiesSent = 0;
+    private long carsInGames = 0;
+    private long datagramsDropped = 0;
+
+    /**
+     * Constructs a new MultiplayerHost listening on the given port.
+     *
+     * @param gameProps Properties containing the game and multiplayer settings.
+     * @param messageProps Properties containing in-game messages.
+     * @param port The UDP port to listen on, or 0 for any free port.
+     * @param seed The seed every player's game is started from.
+     * @throws IOException If the port cannot be opened.
+     */
+    public MultiplayerHost(Properties gameProps, Properties messageProps, int port, long seed) throws IOException {
+        this.gameProps = gameProps;
+        this.messageProps = messageProps;
+        this.seed = seed;
+        maxPlayers = Integer.parseInt(gameProps.getProperty("multiplayer.maxPlayers"));
+        maxQueuedInputs = Integer.parseInt(gameProps.getProperty("multiplayer.maxQueuedInputs"));
+        viewMargin = Double.parseDouble(gameProps.getProperty("multiplayer.viewMargin"));
+        windowHeight = Integer.parseInt(gameProps.getProperty("window.height"));
+        maxFrames = Integer.parseInt(gameProps.getProperty("gamePlay.maxFrames"));
+        channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(port));
+        channel.configureBlocking(false);
+    }
+
+    /**
+     * Returns the port the host listens on.
+     *
+     * @return The port.
+     */
+    public int getPort() {
+        try {
+            return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads every datagram waiting: players joining and players' keys.
+     *
+     * @throws IOException If the socket fails.
+     */
+    public void poll() throws IOException {
+        while (true) {
+            receiveBuffer.clear();
+            SocketAddress from = channel.receive(receiveBuffer);
+            if (from == null) {
+                return;
+            }
+            receiveBuffer.flip();
+            if (!receiveBuffer.hasRemaining()) {
+                continue;
+            }
+            byte type = receiveBuffer.get();
+            try {
+                if (type == NetCodec.JOIN) {
+                    join(from);
+                } else if (type == NetCodec.INPUT) {
+                    Player player = find(from);
+                    if (player != null) {
+                        player.receiveInput(receiveBuffer);
+                    }
+                }
+            } catch (RuntimeException e) {
+                // A cut off or malformed datagram is dropped, and the games carry on
+                datagramsDropped++;
+            }
+        }
+    }
+
+    /**
+     * Plays one frame of every player's game with the player's next keys, shares out the
+     * passengers picked up, and sends each player what they see.
+     *
+     * @throws IOException If the socket fails.
+     */
+    public void tick() throws IOException {
+        if (players.isEmpty()) {
+            return;
+        }
+        frame++;
+        // Passengers are shared out after each game's frame, so a passenger picked up in one
+        // game is gone before the next game plays. Who goes first turns around every frame
+        for (int i = 0; i < players.size(); i++) {
+            players.get((frame + i) % players.size()).play();
+            claimPassengers();
+        }
+
+        double[] scores = new double[players.size()];
+        for (int i = 0; i < players.size(); i++) {
+            scores[i] = players.get(i).game.getPlayerScore();
+        }
+        for (int i = 0; i < players.size(); i++) {
+            sendState(i, scores);
+        }
+    }
+
+    /**
+     * Runs the host at the game's frame rate until the thread is interrupted.
+     *
+     * @throws IOException If the socket fails.
+     */
+    public void run() throws IOException {
+        long frameNanos = 1_000_000_000L / Integer.parseInt(gameProps.getProperty("multiplayer.frameRate"));
+        long next = System.nanoTime();
+        while (!Thread.currentThread().isInterrupted()) {
+            poll();
+            tick();
+            next += frameNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                // Running late: carry on from now rather than rushing to catch up
+                next = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Closes the socket.
+     *
+     * @throws IOException If the socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Sets whether every state is also encoded in full, to measure what delta compression saves.
+     *
+     * @param measure true to measure.
+     */
+    public void setMeasureFullStates(boolean measure) {
+        measureFullStates = measure;
+    }
+
+    /**
+     * Returns the number of players who joined.
+     *
+     * @return The number of players.
+     */
+    public int getPlayerCount() {
+        return players.size();
+    }
+
+    /**
+     * Returns the number of frames played.
+     *
+     * @return The number of frames.
+     */
+    public int getFrame() {
+        return frame;
+    }
+
+    /**
+     * Returns the number of bytes sent in states.
+     *
+     * @return The number of bytes.
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * Returns the number of bytes the states sent would have taken in full, if measured.
+     *
+     * @return The number of bytes.
+     */
+    public long getFullStateBytes() {
+        return fullStateBytes;
+    }
+
+    /**
+     * Returns the number of states sent.
+     *
+     * @return The number of states.
+     */
+    public long getStatesSent() {
+        return statesSent;
+    }
+
+    /**
+     * Returns the number of entities in the states sent.
+     *
+     * @return The number of entities.
+     */
+    public long getEntitiesSent() {
+        return entitiesSent;
+    }
+
+    /**
+     * Returns the number of cars in the players' games, summed over the states sent.
+     *
+     * @return The number of cars.
+     */
+    public long getCarsInGames() {
+        return carsInGames;
+    }
+
+    /**
+     * Returns the number of datagrams dropped because they could not be read.
+     *
+     * @return The number of datagrams.
+     */
+    public long getDatagramsDropped() {
+        return datagramsDropped;
+    }
+
+    /**
+     * Checks whether every player's game is over.
+     *
+     * @return true if there are players and all their games are over, false otherwise.
+     */
+    public boolean isOver() {
+        for (Player player : players) {
+            if (!player.over) {
+                return false;
+            }
+        }
+        return !players.isEmpty();
+    }
+
+    private void join(SocketAddress from) throws IOException {
+        String name = StandardCharsets.UTF_8.decode(receiveBuffer).toString();
+        Player player = find(from);
+        if (player == null) {
+            if (players.size() == maxPlayers) {
+                return;
+            }
+            player = new Player(from, new GamePlayScreen(gameProps, messageProps, name, seed));
+            players.add(player);
+            // Passengers already picked up by the other players are gone from the new game
+            for (int id : claimed) {
+                player.game.takePassenger(id);
+            }
+        }
+        // A repeated join means the welcome was lost, so it is sent again
+        sendBuffer.clear();
+        sendBuffer.put(NetCodec.WELCOME);
+        sendBuffer.put((byte) players.indexOf(player));
+        sendBuffer.flip();
+        channel.send(sendBuffer, from);
+    }
+
+    private Player find(SocketAddress address) {
+        for (Player player : players) {
+            if (player.address.equals(address)) {
+                return player;
+            }
+        }
+        return null;
+    }
+
+    // Passengers are matched by id, since on an endless road each game drops the passengers
+    // behind its own taxi and the same passenger sits at a different index in each game
+    private void claimPassengers() {
+        // The player who picked up a passenger keeps them
+        for (int i = 0; i < players.size(); i++) {
+            for (Passenger passenger : players.get(i).game.getPassengers()) {
+                if (!passenger.isOnGoingTrip() || !claimed.add(passenger.getId())) {
+                    continue;
+                }
+                for (int other = 0; other < players.size(); other++) {
+                    if (other != i) {
+                        players.get(other).game.takePassenger(passenger.getId());
+                    }
+                }
+            }
+        }
+    }
+
+    private void sendState(int index, double[] scores) throws IOException {
+        Player player = players.get(index);
+        NetState state = player.history[frame % HISTORY];
+        GamePlayScreen game = player.game;
+        state.capture(game, frame, player.appliedSeq, Math.max(0, maxFrames - game.getFrameCounter()),
+                windowHeight, viewMargin);
+        for (int i = 0; i < players.size(); i++) {
+            if (i != index) {
+                state.addOtherTaxi(i, players.get(i).game, windowHeight, viewMargin);
+            }
+        }
+        state.setScores(scores);
+        if (player.over) {
+            state.setGameOver(game.didPlayerWin());
+        }
+
+        NetState baseline = player.baseline();
+        sendBuffer.clear();
+        NetCodec.encodeState(state, baseline, sendBuffer);
+        sendBuffer.flip();
+        bytesSent += sendBuffer.remaining();
+        channel.send(sendBuffer, player.address);
+        statesSent++;
+        entitiesSent += state.size();
+        carsInGames += game.getCars().size();
+        if (measureFullStates) {
+            measureBuffer.clear();
+            NetCodec.encodeState(state, null, measureBuffer);
+            fullStateBytes += measureBuffer.position();
+        }
+    }
+
+    /**
+     * Runs a host until it is stopped.
+     *
+     * @param args Optional port and seed.
+     */
+    public static void main(String[] args) throws IOException {
+        Assets.setHeadless(true);
+        Properties gameProps = IOUtils.readPropertiesFile("res/app.properties");
+        Properties messageProps = IOUtils.readPropertiesFile("res/message_en.properties");
+        int port = args.length > 0 ? Integer.parseInt(args[0])
+                : Integer.parseInt(gameProps.getProperty("multiplayer.port"));
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        try (MultiplayerHost host = new MultiplayerHost(gameProps, messageProps, port, seed)) {
+            System.out.printf(Locale.ROOT, "hosting on port %d, seed %d%n", host.getPort(), seed);
+            host.run();
+        }
+    }
+
+    private class Player {
+        private final SocketAddress address;
+        private final GamePlayScreen game;
+        private final NetState[] history = new NetState[HISTORY];
+        private final KeyStates keys = new KeyStates();
+        private boolean over = false;
+
+        // Keys received but not yet played, as a ring of sequence numbers and key masks
+        private final int[] queuedSeqs = new int[HISTORY];
+        private final byte[] queuedMasks = new byte[HISTORY];
+        private int queueHead = 0;
+        private int queued = 0;
+        private int receivedSeq = 0;
+        private int appliedSeq = 0;
+        private byte mask = 0;
+        private int ackedFrame = 0;
+
+        private Player(SocketAddress address, GamePlayScreen game) {
+            this.address = address;
+            this.game = game;
+            for (int i = 0; i < HISTORY; i++) {
+                history[i] = new NetState();
+            }
+        }
+
+        /*
+         * An input datagram holds the frame the client has last, the newest sequence number and
+         * the key masks of the newest few inputs, newest first, so one lost datagram loses no keys.
+         * Only the masks the datagram holds are read, whatever count it gives.
+         */
+        private void receiveInput(ByteBuffer in) {
+            int ack = NetCodec.getVarInt(in);
+            int seq = NetCodec.getVarInt(in);
+            int count = Math.min(Math.min(in.get() & 0xFF, in.remaining()), HISTORY);
+            if (ack > ackedFrame && ack <= frame) {
+                ackedFrame = ack;
+            }
+            int oldest = Math.max(seq - count + 1, receivedSeq + 1);
+            for (int s = oldest; s <= seq; s++) {
+                // The mask of sequence number s is (seq - s) places from the newest
+                enqueue(s, in.get(in.position() + seq - s));
+            }
+            receivedSeq = Math.max(receivedSeq, seq);
+        }
+
+        private void enqueue(int seq, byte keyMask) {
+            if (queued == HISTORY) {
+                dequeue();
+            }
+            int tail = (queueHead + queued) % HISTORY;
+            queuedSeqs[tail] = seq;
+            queuedMasks[tail] = keyMask;
+            queued++;
+        }
+
+        private void dequeue() {
+            appliedSeq = queuedSeqs[queueHead];
+            mask = queuedMasks[queueHead];
+            queueHead = (queueHead + 1) % HISTORY;
+            queued--;
+        }
+
+        private void play() {
+            // A burst of late inputs is played down to a few frames behind, so the delay
+            // between a key and its effect cannot grow without bound
+            while (queued > maxQueuedInputs) {
+                dequeue();
+            }
+            // With no new input, the keys held last are still held
+            if (queued > 0) {
+                dequeue();
+            }
+            if (over) {
+                return;
+            }
+            keys.clear();
+            MultiplayerClient.toKeys(mask, keys);
+            over = game.update(keys);
+        }
+
+        private NetState baseline() {
+            NetState baseline = history[ackedFrame % HISTORY];
+            return ackedFrame > 0 && frame - ackedFrame < HISTORY && baseline.getFrame() == ackedFrame
+                    ? baseline : null;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * The MultiplayerLoopback class is a command-line test of multiplayer games over the loopback
+ * network. It runs a headless host on one thread and a few scripted players on another, each
+ * with a client of its own talking to the host over UDP, and reports the traffic each player
+ * sends and receives, how much delta compression saves over sending full states, and the round
+ * trip from a key being sent to the state it was played in.
+ *
+ * Usage:
+ *   java MultiplayerLoopback [players] [frames] [car spawn rate]
+ */
+public class MultiplayerLoopback {
+    private static final long SEED = 1;
+
+    /**
+     * Runs the test.
+     *
+     * @param args Optional number of players, number of frames and car spawn rate.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int playerCount = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : 1800;
+
+        Assets.setHeadless(true);
+        Properties gameProps = IOUtils.readPropertiesFile("res/app.properties");
+        Properties messageProps = IOUtils.readPropertiesFile("res/message_en.properties");
+        if (args.length > 2) {
+            gameProps.setProperty("gameObjects.otherCar.spawnRate", args[2]);
+        }
+        long frameNanos = 1_000_000_000L / Integer.parseInt(gameProps.getProperty("multiplayer.frameRate"));
+
+        MultiplayerHost host = new MultiplayerHost(gameProps, messageProps, 0, SEED);
+        host.setMeasureFullStates(true);
+        Thread hostThread = new Thread(() -> {
+            try {
+                host.run();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "multiplayer-host");
+        hostThread.start();
+
+        InetSocketAddress address = new InetSocketAddress("localhost", host.getPort());
+        List<MultiplayerClient> clients = new ArrayList<>();
+        List<Bot> bots = new ArrayList<>();
+        for (int i = 0; i < playerCount; i++) {
+            MultiplayerClient client = new MultiplayerClient(gameProps, address);
+            client.join("PLAYER" + (i + 1));
+            clients.add(client);
+            bots.add(new Bot(gameProps));
+        }
+
+        // The players send their keys at the same frame rate as the host plays
+        long start = System.nanoTime();
+        long next = start;
+        int played = 0;
+        while (played < frames && !allOver(clients)) {
+            for (int i = 0; i < playerCount; i++) {
+                MultiplayerClient client = clients.get(i);
+                client.poll();
+                client.sendInput(bots.get(i).decide(client));
+            }
+            played++;
+            next += frameNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        hostThread.interrupt();
+        hostThread.join();
+        host.close();
+
+        for (int i = 0; i < playerCount; i++) {
+            MultiplayerClient client = clients.get(i);
+            NetState state = client.getState();
+            System.out.printf(Locale.ROOT,
+                    "player %d: received %.1f KB/s (%d states, %d dropped), sent %.1f KB/s, round trip %.2f ms, score %.2f%n",
+                    client.getPlayer() + 1, client.getBytesReceived() / 1024.0 / seconds, client.getStatesReceived(),
+                    client.getStatesDropped(), client.getBytesSent() / 1024.0 / seconds, client.getAverageRoundTrip(),
+                    state == null ? 0 : state.getScore() / 100.0);
+            client.close();
+        }
+        long states = Math.max(1, host.getStatesSent());
+        System.out.printf(Locale.ROOT, "%d frames in %.1f s: %.1f bytes per state, %.1f in full (%.1fx smaller)%n",
+                host.getFrame(), seconds, host.getBytesSent() / (double) states,
+                host.getFullStateBytes() / (double) states,
+                host.getFullStateBytes() / (double) Math.max(1, host.getBytesSent()));
+        System.out.printf(Locale.ROOT, "%.1f entities per state, from %.1f cars per game, %d datagrams dropped%n",
+                host.getEntitiesSent() / (double) states, host.getCarsInGames() / (double) states,
+                host.getDatagramsDropped());
+    }
+
+    private static boolean allOver(List<MultiplayerClient> clients) {
+        for (MultiplayerClient client : clients) {
+            NetState state = client.getState();
+            if (state == null || !state.hasStatus(NetState.GAME_OVER)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * A scripted player that only knows what the host sends it, as a human player would: it
+     * drives up the road towards the nearest waiting passenger, or towards the flag of the trip
+     * under way, and stops next to it. Players chasing the same passenger compete for them.
+     */
+    private static class Bot {
+        private static final double STOP_DISTANCE = 60;
+        private static final double FLAG_DISTANCE = 10;
+
+        private final double[] lanes;
+
+        private Bot(Properties gameProps) {
+            lanes = new double[Integer.parseInt(gameProps.getProperty("roadLanes.count"))];
+            for (int i = 0; i < lanes.length; i++) {
+                lanes[i] = Double.parseDouble(gameProps.getProperty("roadLaneCenter" + (i + 1)));
+            }
+        }
+
+        private int decide(MultiplayerClient client) {
+            NetState state = client.getState();
+            if (state == null || state.hasStatus(NetState.GAME_OVER)) {
+                return 0;
+            }
+            int self = state.hasStatus(NetState.DRIVER_IN_TAXI) ? NetState.TAXI : NetState.DRIVER;
+            int selfIndex = -1;
+            int target = -1;
+            for (int i = 0; i < state.size(); i++) {
+                int kind = NetState.kindOf(state.getId(i));
+                if (kind == self) {
+                    selfIndex = i;
+                } else if (kind == NetState.TRIP_END_FLAG
+                        || (kind == NetState.PASSENGER && (state.getFlags(i) & NetState.FLAG_IDLE) != 0)) {
+                    // A flag comes before any passenger; otherwise the passenger furthest down the screen
+                    if (target < 0 || (NetState.kindOf(state.getId(target)) != NetState.TRIP_END_FLAG
+                            && (kind == NetState.TRIP_END_FLAG || client.getScreenY(i) > client.getScreenY(target)))) {
+                        target = i;
+                    }
+                }
+            }
+            if (selfIndex < 0) {
+                return MultiplayerClient.UP;
+            }
+            double x = client.getScreenX(selfIndex);
+            double y = client.getScreenY(selfIndex);
+            double laneX = lanes[lanes.length / 2];
+            int keys = MultiplayerClient.UP;
+            if (target >= 0 && client.getScreenY(target) < y + STOP_DISTANCE) {
+                // Passengers walk over to a taxi in the nearest lane, but a trip only ends
+                // with the taxi right on the flag
+                boolean isFlag = NetState.kindOf(state.getId(target)) == NetState.TRIP_END_FLAG;
+                laneX = isFlag ? client.getScreenX(target) : nearestLane(client.getScreenX(target));
+                if (Math.abs(client.getScreenY(target) - y) < (isFlag ? FLAG_DISTANCE : STOP_DISTANCE)) {
+                    keys = 0;
+                }
+            }
+            double dx = laneX - x;
+            if (Math.abs(dx) >= 1) {
+                keys |= dx < 0 ? MultiplayerClient.LEFT : MultiplayerClient.RIGHT;
+            }
+            return keys;
+        }
+
+        private double nearestLane(double x) {
+            double nearest = lanes[0];
+            for (double lane : lanes) {
+                if (Math.abs(lane - x) < Math.abs(nearest - x)) {
+                    nearest = lane;
+                }
+            }
+            return nearest;
+        }
+    }
+}
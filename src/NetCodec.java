@@ -0,0 +1,269 @@
+import java.nio.ByteBuffer;
+
+/**
+ * The NetCodec class turns the messages of a multiplayer game into datagrams and back.
+ * A state is sent as a delta against a baseline, an earlier state the client said it has:
+ * the ids of the entities that left the view, then only the entities that are new or whose
+ * position or flags changed, each field as the difference from the baseline. Numbers are
+ * written as variable-length integers, signed ones zigzag-encoded first, so small changes
+ * take a byte. Without a baseline, every entity is sent as new.
+ */
+public class NetCodec {
+    /** Message types, the first byte of every datagram. */
+    public static final byte JOIN = 1;
+    public static final byte WELCOME = 2;
+    public static final byte INPUT = 3;
+    public static final byte STATE = 4;
+
+    /** The largest datagram sent. */
+    public static final int MAX_DATAGRAM = 65507;
+
+    // What an entity record holds
+    private static final int HAS_X = 1;
+    private static final int HAS_Y = 2;
+    private static final int HAS_FLAGS = 4;
+    private static final int IS_NEW = 8;
+
+    private NetCodec() {
+    }
+
+    /**
+     * Writes a state as a delta against a baseline.
+     *
+     * @param state The state.
+     * @param baseline The state the client has, or null to send every entity.
+     * @param out The buffer to write to.
+     */
+    public static void encodeState(NetState state, NetState baseline, ByteBuffer out) {
+        out.put(STATE);
+        putVarInt(out, state.getFrame());
+        putVarInt(out, baseline == null ? 0 : baseline.getFrame());
+        putVarInt(out, state.getAckedInput());
+        putSigned(out, state.getOffset());
+        putSigned(out, state.getScore());
+        putSigned(out, state.getTaxiHealth());
+        putSigned(out, state.getDriverHealth());
+        putVarInt(out, state.getFramesLeft());
+        out.put((byte) state.getStatus());
+        int[] scores = state.getScores();
+        out.put((byte) scores.length);
+        for (int score : scores) {
+            putSigned(out, score);
+        }
+
+        // Entities that left the view, then entities that are new or changed, both in id order
+        // with each id written as the difference from the one before
+        int baseCount = baseline == null ? 0 : baseline.size();
+        int removed = 0;
+        for (int i = 0, j = 0; j < baseCount; j++) {
+            while (i < state.size() && state.getId(i) < baseline.getId(j)) {
+                i++;
+            }
+            if (i == state.size() || state.getId(i) != baseline.getId(j)) {
+                removed++;
+            }
+        }
+        putVarInt(out, removed);
+        int previousId = 0;
+        for (int i = 0, j = 0; j < baseCount; j++) {
+            while (i < state.size() && state.getId(i) < baseline.getId(j)) {
+                i++;
+            }
+            if (i == state.size() || state.getId(i) != baseline.getId(j)) {
+                putVarInt(out, baseline.getId(j) - previousId);
+                previousId = baseline.getId(j);
+            }
+        }
+
+        // The number of records is only known at the end, so it is written in a fixed width
+        int countPosition = out.position();
+        out.putInt(0);
+        int records = 0;
+        previousId = 0;
+        for (int i = 0, j = 0; i < state.size(); i++) {
+            int id = state.getId(i);
+            while (j < baseCount && baseline.getId(j) < id) {
+                j++;
+            }
+            int mask;
+            if (j < baseCount && baseline.getId(j) == id) {
+                mask = (state.getX(i) != baseline.getX(j) ? HAS_X : 0)
+                        | (state.getY(i) != baseline.getY(j) ? HAS_Y : 0)
+                        | (state.getFlags(i) != baseline.getFlags(j) ? HAS_FLAGS : 0);
+                if (mask == 0) {
+                    continue;
+                }
+            } else {
+                mask = IS_NEW | HAS_X | HAS_Y | (state.getFlags(i) != 0 ? HAS_FLAGS : 0);
+            }
+            boolean isNew = (mask & IS_NEW) != 0;
+            putVarInt(out, id - previousId);
+            previousId = id;
+            out.put((byte) mask);
+            if ((mask & HAS_X) != 0) {
+                putSigned(out, isNew ? state.getX(i) : state.getX(i) - baseline.getX(j));
+            }
+            if ((mask & HAS_Y) != 0) {
+                putSigned(out, isNew ? state.getY(i) : state.getY(i) - baseline.getY(j));
+            }
+            if ((mask & HAS_FLAGS) != 0) {
+                putVarInt(out, state.getFlags(i));
+            }
+            records++;
+        }
+        out.putInt(countPosition, records);
+    }
+
+    /**
+     * Returns the frame of the baseline a state datagram was written against, so the client
+     * can look it up before decoding. Does not move the buffer's position.
+     *
+     * @param in The datagram, positioned at its type byte.
+     * @return The baseline frame, or 0 if the state holds every entity.
+     */
+    public static int peekBaseFrame(ByteBuffer in) {
+        ByteBuffer view = in.duplicate();
+        view.get();
+        getVarInt(view);
+        return getVarInt(view);
+    }
+
+    /**
+     * Reads a state written by {@link #encodeState}.
+     *
+     * @param in The datagram, positioned at its type byte.
+     * @param baseline The state the datagram was written against, or null if it holds every entity.
+     * @param state The state to read into, which is left in any order if the datagram is malformed.
+     * @throws RuntimeException If the datagram is cut off or malformed.
+     */
+    public static void decodeState(ByteBuffer in, NetState baseline, NetState state) {
+        in.get();
+        int frame = getVarInt(in);
+        getVarInt(in);
+        int ackedInput = getVarInt(in);
+        int offset = getSigned(in);
+        int score = getSigned(in);
+        int taxiHealth = getSigned(in);
+        int driverHealth = getSigned(in);
+        int framesLeft = getVarInt(in);
+        int status = in.get();
+        int[] scores = new int[in.get() & 0xFF];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = getSigned(in);
+        }
+        state.setHeader(frame, ackedInput, offset, score, taxiHealth, driverHealth, framesLeft, status);
+        state.setRawScores(scores);
+        state.clearEntities();
+
+        int removed = checkCount(getVarInt(in), in);
+        int[] removedIds = new int[removed];
+        int id = 0;
+        for (int i = 0; i < removed; i++) {
+            id += getVarInt(in);
+            removedIds[i] = id;
+        }
+        int records = checkCount(in.getInt(), in);
+
+        // Merge the baseline, less the removed entities, with the records, both in id order
+        int baseCount = baseline == null ? 0 : baseline.size();
+        int j = 0;
+        int r = 0;
+        id = 0;
+        for (int k = 0; k < records; k++) {
+            id += getVarInt(in);
+            int mask = in.get();
+            while (j < baseCount && baseline.getId(j) < id) {
+                r = copyUnlessRemoved(baseline, j++, removedIds, r, state);
+            }
+            boolean isNew = (mask & IS_NEW) != 0;
+            if (!isNew && (j == baseCount || baseline.getId(j) != id)) {
+                throw new IllegalArgumentException("Change to entity " + id + ", which the baseline does not hold");
+            }
+            int x = isNew ? 0 : baseline.getX(j);
+            int y = isNew ? 0 : baseline.getY(j);
+            int entityFlags = isNew ? 0 : baseline.getFlags(j);
+            if ((mask & HAS_X) != 0) {
+                x += getSigned(in);
+            }
+            if ((mask & HAS_Y) != 0) {
+                y += getSigned(in);
+            }
+            if ((mask & HAS_FLAGS) != 0) {
+                entityFlags = getVarInt(in);
+            }
+            state.add(id, x, y, entityFlags);
+            if (!isNew) {
+                j++;
+            }
+        }
+        while (j < baseCount) {
+            r = copyUnlessRemoved(baseline, j++, removedIds, r, state);
+        }
+    }
+
+    // Every id or record takes at least a byte, so a count past the bytes left is malformed
+    private static int checkCount(int count, ByteBuffer in) {
+        if (count < 0 || count > in.remaining()) {
+            throw new IllegalArgumentException("Malformed count " + count);
+        }
+        return count;
+    }
+
+    private static int copyUnlessRemoved(NetState baseline, int j, int[] removedIds, int r, NetState state) {
+        int id = baseline.getId(j);
+        while (r < removedIds.length && removedIds[r] < id) {
+            r++;
+        }
+        if (r < removedIds.length && removedIds[r] == id) {
+            return r + 1;
+        }
+        state.add(id, baseline.getX(j), baseline.getY(j), baseline.getFlags(j));
+        return r;
+    }
+
+    /**
+     * Writes a non-negative integer in as few bytes as it needs, seven bits per byte.
+     *
+     * @param out The buffer to write to.
+     * @param value The integer.
+     */
+    public static void putVarInt(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Reads an integer written by {@link #putVarInt}.
+     *
+     * @param in The buffer to read from.
+     * @return The integer.
+     * @throws java.nio.BufferUnderflowException If the buffer ends inside the integer.
+     * @throws IllegalArgumentException If the integer takes more bytes than an int ever needs.
+     */
+    public static int getVarInt(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 28) {
+                throw new IllegalArgumentException("Malformed variable-length integer");
+            }
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static void putSigned(ByteBuffer out, int value) {
+        putVarInt(out, (value << 1) ^ (value >> 31));
+    }
+
+    private static int getSigned(ByteBuffer in) {
+        int value = getVarInt(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,458 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The NetState class is what one player of a multiplayer game sees on one frame, in the compact
+ * form sent over the network. Only the entities within the player's view are kept, and each is
+ * reduced to an id, a quantised position and a few flags.
+ * An entity's id is its kind in the high bits and, in the low bits, the id the game gave it when
+ * it came into the game, so it stays the same for as long as the entity exists, even as the
+ * entities before it are dropped from the game's lists. Entities are kept in id order.
+ * Positions are in quarter pixels, and y is measured along the road rather than down the screen:
+ * an entity standing on the road keeps the same y as the road scrolls, so it only has to be sent
+ * again when it moves by itself.
+ */
+public class NetState {
+    /** The kinds of entity, one per image the client draws. */
+    public static final int TAXI = 0;
+    public static final int DRIVER = 1;
+    public static final int OTHER_CAR_1 = 2;
+    public static final int OTHER_CAR_2 = 3;
+    public static final int ENEMY_CAR = 4;
+    public static final int FIREBALL = 5;
+    public static final int PASSENGER = 6;
+    public static final int COIN = 7;
+    public static final int INVINCIBLE_POWER = 8;
+    public static final int TRIP_END_FLAG = 9;
+    public static final int DAMAGED_TAXI = 10;
+    public static final int OTHER_TAXI = 11;
+    public static final int KINDS = 12;
+
+    /** Entity flags: drawn at half opacity, and a passenger waiting for a taxi. */
+    public static final int FLAG_INVINCIBLE = 1;
+    public static final int FLAG_IDLE = 2;
+    // A waiting passenger's priority is kept in the flags above this shift
+    public static final int PRIORITY_SHIFT = 4;
+
+    /** Status bits. */
+    public static final int RAINING = 1;
+    public static final int DRIVER_IN_TAXI = 2;
+    public static final int GAME_OVER = 4;
+    public static final int WON = 8;
+
+    private static final int INDEX_BITS = 20;
+    private static final int SCALE = 4;
+
+    // Header
+    private int frame;
+    private int ackedInput;
+    private int offset;
+    private int score;
+    private int taxiHealth;
+    private int driverHealth;
+    private int framesLeft;
+    private int status;
+    private int[] scores = new int[0];
+
+    // Entities, in id order
+    private int count;
+    private int[] ids = new int[64];
+    private int[] xs = new int[64];
+    private int[] ys = new int[64];
+    private int[] flags = new int[64];
+
+    /**
+     * Replaces this state with what a player sees of a game: every entity of the game within
+     * the margin of the window, the player's score and health, and the game status.
+     * Other players' taxis and scores are added by the caller.
+     *
+     * @param game The player's game.
+     * @param frame The frame number.
+     * @param ackedInput The sequence number of the player's latest input applied.
+     * @param framesLeft The number of frames left in the game.
+     * @param windowHeight The height of the window.
+     * @param margin How far outside the window an entity is still seen.
+     */
+    public void capture(GamePlayScreen game, int frame, int ackedInput, int framesLeft,
+                        int windowHeight, double margin) {
+        this.frame = frame;
+        this.ackedInput = ackedInput;
+        this.framesLeft = framesLeft;
+        offset = quantise(game.getBackgroundOffset());
+        score = (int) Math.round(game.getPlayerScore() * 100);
+        Taxi taxi = game.getTaxi();
+        Driver driver = game.getDriver();
+        taxiHealth = (int) Math.round(taxi.getHealth() * 100);
+        driverHealth = (int) Math.round(driver.getHealth() * 100);
+        status = (game.isRaining() ? RAINING : 0) | (driver.isInTaxi() ? DRIVER_IN_TAXI : 0);
+        count = 0;
+
+        double top = -margin;
+        double bottom = windowHeight + margin;
+        double screenOffset = game.getBackgroundOffset();
+        if (!taxi.getDestroyed()) {
+            addIfSeen(TAXI, 0, taxi, taxi.getInvincible() ? FLAG_INVINCIBLE : 0, top, bottom, screenOffset);
+        }
+        if (!driver.isInTaxi()) {
+            addIfSeen(DRIVER, 0, driver, driver.getInvincible() ? FLAG_INVINCIBLE : 0, top, bottom, screenOffset);
+        }
+        for (Car car : game.getCars()) {
+            if (car.getDestroyed()) {
+                continue;
+            }
+            int kind = car instanceof OtherCar otherCar ? OTHER_CAR_1 + otherCar.getCarType() - 1 : ENEMY_CAR;
+            addIfSeen(kind, car.getId(), car, car.getInvincible() ? FLAG_INVINCIBLE : 0, top, bottom, screenOffset);
+        }
+        for (Fireball fireball : game.getFireballs()) {
+            if (fireball.getAlive()) {
+                addIfSeen(FIREBALL, fireball.getId(), fireball, 0, top, bottom, screenOffset);
+            }
+        }
+        List<Passenger> passengers = game.getPassengers();
+        for (Passenger passenger : passengers) {
+            // Passengers riding in the taxi are not drawn, nor those taken by other players
+            if ((passenger.isInTaxi() && !passenger.isAtDestination()) || passenger.getX() < -margin) {
+                continue;
+            }
+            int passengerFlags = !passenger.isAtDestination() && !passenger.isOnGoingTrip()
+                    ? FLAG_IDLE | passenger.getPriority() << PRIORITY_SHIFT : 0;
+            addIfSeen(PASSENGER, passenger.getId(), passenger, passengerFlags, top, bottom, screenOffset);
+        }
+        for (Coin coin : game.getCoins()) {
+            if (!coin.isCollected()) {
+                addIfSeen(COIN, coin.getId(), coin, 0, top, bottom, screenOffset);
+            }
+        }
+        for (InvinciblePower power : game.getInvinciblePowers()) {
+            if (!power.isCollected()) {
+                addIfSeen(INVINCIBLE_POWER, power.getId(), power, 0, top, bottom, screenOffset);
+            }
+        }
+        // A flag belongs to one passenger, so it takes the passenger's id
+        for (TripEndFlag flag : game.getTripEndFlags()) {
+            for (Passenger passenger : passengers) {
+                if (flag.isForPassenger(passenger)) {
+                    addIfSeen(TRIP_END_FLAG, passenger.getId(), flag, 0, top, bottom, screenOffset);
+                    break;
+                }
+            }
+        }
+        for (TaxiDamaged destroyedTaxi : game.getDestroyedTaxis()) {
+            addIfSeen(DAMAGED_TAXI, destroyedTaxi.getId(), destroyedTaxi, 0, top, bottom, screenOffset);
+        }
+        sort();
+    }
+
+    /**
+     * Adds another player's taxi, given in the other player's game. Since every game plays the
+     * same road, the taxi is placed at the same point of the road in this player's view.
+     * Must be called after {@link #capture}, and the taxis in player order.
+     *
+     * @param player The other player's number.
+     * @param game The other player's game.
+     * @param windowHeight The height of the window.
+     * @param margin How far outside the window an entity is still seen.
+     */
+    public void addOtherTaxi(int player, GamePlayScreen game, int windowHeight, double margin) {
+        Taxi taxi = game.getTaxi();
+        int roadY = quantise(taxi.getY() - game.getBackgroundOffset());
+        double screenY = dequantise(roadY + offset);
+        if (!taxi.getDestroyed() && screenY >= -margin && screenY <= windowHeight + margin) {
+            add(id(OTHER_TAXI, player), quantise(taxi.getX()), roadY, 0);
+        }
+    }
+
+    /**
+     * Sets every player's score, in player order.
+     *
+     * @param playerScores The scores.
+     */
+    public void setScores(double[] playerScores) {
+        if (scores.length != playerScores.length) {
+            scores = new int[playerScores.length];
+        }
+        for (int i = 0; i < playerScores.length; i++) {
+            scores[i] = (int) Math.round(playerScores[i] * 100);
+        }
+    }
+
+    /**
+     * Marks the player's game as over.
+     *
+     * @param won true if the player won.
+     */
+    public void setGameOver(boolean won) {
+        status |= GAME_OVER | (won ? WON : 0);
+    }
+
+    /**
+     * Copies another state into this one.
+     *
+     * @param other The state to copy.
+     */
+    public void copyFrom(NetState other) {
+        setHeader(other.frame, other.ackedInput, other.offset, other.score, other.taxiHealth,
+                other.driverHealth, other.framesLeft, other.status);
+        scores = Arrays.copyOf(other.scores, other.scores.length);
+        count = 0;
+        for (int i = 0; i < other.count; i++) {
+            add(other.ids[i], other.xs[i], other.ys[i], other.flags[i]);
+        }
+    }
+
+    void setHeader(int frame, int ackedInput, int offset, int score, int taxiHealth, int driverHealth,
+                   int framesLeft, int status) {
+        this.frame = frame;
+        this.ackedInput = ackedInput;
+        this.offset = offset;
+        this.score = score;
+        this.taxiHealth = taxiHealth;
+        this.driverHealth = driverHealth;
+        this.framesLeft = framesLeft;
+        this.status = status;
+    }
+
+    void setRawScores(int[] rawScores) {
+        scores = rawScores;
+    }
+
+    void clearEntities() {
+        count = 0;
+    }
+
+    void add(int id, int x, int y, int entityFlags) {
+        if (count == ids.length) {
+            int capacity = count * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+        ids[count] = id;
+        xs[count] = x;
+        ys[count] = y;
+        flags[count] = entityFlags;
+        count++;
+    }
+
+    private void addIfSeen(int kind, int index, GameEntity entity, int entityFlags,
+                           double top, double bottom, double screenOffset) {
+        if (entity.getY() >= top && entity.getY() <= bottom) {
+            add(id(kind, index), quantise(entity.getX()), quantise(entity.getY() - screenOffset), entityFlags);
+        }
+    }
+
+    private void sort() {
+        // Entities are captured kind by kind and mostly in id order within a kind, as the game
+        // keeps them in the order they came in, so only the occasional car or flag is out of
+        // place; an insertion sort handles that in one pass
+        for (int i = 1; i < count; i++) {
+            int id = ids[i], x = xs[i], y = ys[i], f = flags[i];
+            int j = i - 1;
+            while (j >= 0 && ids[j] > id) {
+                ids[j + 1] = ids[j];
+                xs[j + 1] = xs[j];
+                ys[j + 1] = ys[j];
+                flags[j + 1] = flags[j];
+                j--;
+            }
+            ids[j + 1] = id;
+            xs[j + 1] = x;
+            ys[j + 1] = y;
+            flags[j + 1] = f;
+        }
+    }
+
+    /**
+     * Returns the id of an entity. Only the low bits of the index are kept, so the indices of a
+     * very long game wrap around.
+     *
+     * @param kind The kind of entity.
+     * @param index The entity's index within its kind.
+     * @return The id.
+     */
+    public static int id(int kind, int index) {
+        return kind << INDEX_BITS | index & ((1 << INDEX_BITS) - 1);
+    }
+
+    /**
+     * Returns the kind of entity an id belongs to.
+     *
+     * @param id The id.
+     * @return The kind.
+     */
+    public static int kindOf(int id) {
+        return id >>> INDEX_BITS;
+    }
+
+    /**
+     * Returns the index within its kind of the entity an id belongs to.
+     *
+     * @param id The id.
+     * @return The index.
+     */
+    public static int indexOf(int id) {
+        return id & ((1 << INDEX_BITS) - 1);
+    }
+
+    /**
+     * Returns a coordinate in quarter pixels.
+     *
+     * @param value The coordinate in pixels.
+     * @return The quantised coordinate.
+     */
+    public static int quantise(double value) {
+        return (int) Math.round(value * SCALE);
+    }
+
+    /**
+     * Returns a coordinate in pixels.
+     *
+     * @param value The coordinate in quarter pixels.
+     * @return The coordinate.
+     */
+    public static double dequantise(int value) {
+        return value / (double) SCALE;
+    }
+
+    /**
+     * Returns the frame number.
+     *
+     * @return The frame.
+     */
+    public int getFrame() {
+        return frame;
+    }
+
+    /**
+     * Returns the sequence number of the player's latest input applied.
+     *
+     * @return The sequence number.
+     */
+    public int getAckedInput() {
+        return ackedInput;
+    }
+
+    /**
+     * Returns how far the road has scrolled, in quarter pixels.
+     *
+     * @return The offset.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the player's score, in hundredths.
+     *
+     * @return The score.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Returns the taxi's health, in hundredths.
+     *
+     * @return The health.
+     */
+    public int getTaxiHealth() {
+        return taxiHealth;
+    }
+
+    /**
+     * Returns the driver's health, in hundredths.
+     *
+     * @return The health.
+     */
+    public int getDriverHealth() {
+        return driverHealth;
+    }
+
+    /**
+     * Returns the number of frames left in the game.
+     *
+     * @return The frames left.
+     */
+    public int getFramesLeft() {
+        return framesLeft;
+    }
+
+    /**
+     * Returns the status bits.
+     *
+     * @return The status.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Checks whether a status bit is set.
+     *
+     * @param bit The status bit.
+     * @return true if the bit is set, false otherwise.
+     */
+    public boolean hasStatus(int bit) {
+        return (status & bit) != 0;
+    }
+
+    /**
+     * Returns every player's score, in hundredths and in player order. The array must not be changed.
+     *
+     * @return The scores.
+     */
+    public int[] getScores() {
+        return scores;
+    }
+
+    /**
+     * Returns the number of entities.
+     *
+     * @return The number of entities.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the id of an entity.
+     *
+     * @param i The entity's position in this state.
+     * @return The id.
+     */
+    public int getId(int i) {
+        return ids[i];
+    }
+
+    /**
+     * Returns the x-coordinate of an entity, in quarter pixels.
+     *
+     * @param i The entity's position in this state.
+     * @return The x-coordinate.
+     */
+    public int getX(int i) {
+        return xs[i];
+    }
+
+    /**
+     * Returns the y-coordinate of an entity along the road, in quarter pixels.
+     * Adding the offset gives the y-coordinate on screen.
+     *
+     * @param i The entity's position in this state.
+     * @return The y-coordinate.
+     */
+    public int getY(int i) {
+        return ys[i];
+    }
+
+    /**
+     * Returns the flags of an entity.
+     *
+     * @param i The entity's position in this state.
+     * @return The flags.
+     */
+    public int getFlags(int i) {
+        return flags[i];
+    }
+}
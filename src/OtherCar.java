@@ -7,8 +7,8 @@ import java.util.Properties;
  * the player and other entities in the game.
  */
 public class OtherCar extends Car{
-    private static final Random random = new Random();
     private static final int NUM_TYPES = 2; // Number of other car types
+    private final int carType;
 
     /**
      * Constructs a new OtherCar instance with a randomly selected car type and speed,
@@ -17,17 +17,44 @@ public class OtherCar extends Car{
      * @param x The initial x-coordinate of the car.
      * @param y The initial y-coordinate of the car.
      * @param gameProps Properties containing car-specific configurations such as image, radius, speed, and health.
+     * @param random The random number generator of the game session.
      */
-    public OtherCar(double x, double y, Properties gameProps){
-        super(x, y, String.format(gameProps.getProperty("gameObjects.otherCar.image"), getRandomCarType()));
+    public OtherCar(double x, double y, Properties gameProps, Random random){
+        this(x, y, getRandomCarType(random), gameProps);
+        this.setSpeedY(getRandomSpeedY(gameProps, random));
+    }
+
+    /**
+     * Constructs a new OtherCar instance of the given car type that stands still until its
+     * speed is set, as when a saved game is restored.
+     *
+     * @param x The initial x-coordinate of the car.
+     * @param y The initial y-coordinate of the car.
+     * @param carType The car type, between 1 and the number of types.
+     * @param gameProps Properties containing car-specific configurations such as image, radius, speed, and health.
+     */
+    public OtherCar(double x, double y, int carType, Properties gameProps){
+        super(x, y, String.format(gameProps.getProperty("gameObjects.otherCar.image"), carType));
+        this.carType = carType;
         this.setRadius(Double.parseDouble(gameProps.getProperty("gameObjects.otherCar.radius")));
         this.setHealth(Double.parseDouble(gameProps.getProperty("gameObjects.otherCar.health")));
         this.setDamage(Double.parseDouble(gameProps.getProperty("gameObjects.otherCar.damage")));
         this.setSpeedX(Double.parseDouble(gameProps.getProperty("gameObjects.otherCar.speedX")));
-        this.setSpeedY(getRandomSpeedY(gameProps));
     }
 
-    private static int getRandomCarType() {
+    /**
+     * Reads the damage and sideways speed of the car again from the game properties. The
+     * speed along the Y-axis drawn for the car is kept.
+     *
+     * @param gameProps The game properties.
+     */
+    @Override
+    public void applySettings(Properties gameProps) {
+        this.setDamage(Double.parseDouble(gameProps.getProperty("gameObjects.otherCar.damage")));
+        this.setSpeedX(Double.parseDouble(gameProps.getProperty("gameObjects.otherCar.speedX")));
+    }
+
+    private static int getRandomCarType(Random random) {
         return random.nextInt(NUM_TYPES) + 1; // Returns either 1 or 2
     }
 
@@ -36,20 +63,32 @@ public class OtherCar extends Car{
      * and maximum Y-axis speed values defined in the game properties.
      *
      * @param gameProps Properties containing the minimum and maximum Y-axis speed values.
+     * @param random The random number generator of the game session.
      * @return A randomly generated Y-axis speed within the specified range.
      */
-    public static double getRandomSpeedY(Properties gameProps) {
+    public static double getRandomSpeedY(Properties gameProps, Random random) {
         double minSpeedY = Double.parseDouble(gameProps.getProperty("gameObjects.otherCar.minSpeedY"));
         double maxSpeedY = Double.parseDouble(gameProps.getProperty("gameObjects.otherCar.maxSpeedY"));
         return minSpeedY + (maxSpeedY - minSpeedY) * random.nextDouble();
     }
 
+    /**
+     * Returns the type of the car, which decides its image.
+     *
+     * @return The car type, between 1 and the number of types.
+     */
+    public int getCarType() {
+        return carType;
+    }
+
     /**
      * Updates the position of the car by moving it along the Y-axis.
-     * The car moves upwards based on its speed along the Y-axis.
+     * The car moves upwards based on its speed along the Y-axis, and sideways while
+     * changing lane.
      */
     @Override
     public void update() {
+        steer();
         setY(getY() - getSpeedY());
     }
 }
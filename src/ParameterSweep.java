@@ -0,0 +1,391 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The ParameterSweep class is a command-line tool for balancing the values in app.properties.
+ * It expands parameter ranges into a grid (or a random sample) of configurations, plays a number
+ * of headless seeded games for every configuration on all cores, and streams one result row per
+ * game into a CSV file. A summary with 95% confidence intervals on win rate and mean score is
+ * written next to it. Every row is flushed as soon as its game finishes, so an interrupted sweep
+ * keeps its partial results, and running the same command again resumes where it stopped.
+ *
+ * Games are played by the ReferenceAutopilot unless another Autopilot class is named.
+ *
+ * Usage:
+ *   java ParameterSweep --param key=min:max:step --param key=v1,v2,... [--samples n]
+ *                       [--games n] [--seed s] [--threads n] [--out results.csv] [--autopilot class]
+ */
+public class ParameterSweep {
+    private static final String GAME_PROPS_FILE = "res/app.properties";
+    private static final String MESSAGE_PROPS_FILE = "res/message_en.properties";
+    private static final String PLAYER_NAME = "SWEEP";
+    private static final double Z_95 = 1.96;
+
+    private final List<Parameter> parameters = new ArrayList<>();
+    private int samples = 0;
+    private int games = 20;
+    private long seed = 1;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private Path resultsFile = Paths.get("sweep.csv");
+    private String autopilotClass = ReferenceAutopilot.class.getName();
+
+    private final Object writeLock = new Object();
+    private final AtomicBoolean summaryWritten = new AtomicBoolean(false);
+    private ExecutorService pool;
+    private PrintWriter results;
+
+    /**
+     * Runs a parameter sweep as described by the command-line arguments.
+     *
+     * @param args Command-line arguments.
+     */
+    public static void main(String[] args) {
+        ParameterSweep sweep = new ParameterSweep();
+        try {
+            sweep.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: java ParameterSweep --param key=min:max:step --param key=v1,v2,... "
+                    + "[--samples n] [--games n] [--seed s] [--threads n] [--out results.csv] [--autopilot class]");
+            return;
+        }
+        try {
+            sweep.run();
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            String value = args[++i];
+            switch (args[i - 1]) {
+                case "--param" -> parameters.add(Parameter.parse(value));
+                case "--samples" -> samples = Integer.parseInt(value);
+                case "--games" -> games = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                case "--threads" -> threads = Integer.parseInt(value);
+                case "--out" -> resultsFile = Paths.get(value);
+                case "--autopilot" -> autopilotClass = Autopilot.forName(value).getClass().getName();
+                default -> throw new IllegalArgumentException("Unknown option " + args[i - 1]);
+            }
+        }
+        if (parameters.isEmpty()) {
+            throw new IllegalArgumentException("At least one --param is required");
+        }
+    }
+
+    private void run() {
+        Assets.setHeadless(true);
+        Properties gameProps = IOUtils.readPropertiesFile(GAME_PROPS_FILE);
+        Properties messageProps = IOUtils.readPropertiesFile(MESSAGE_PROPS_FILE);
+
+        List<String[]> configs = samples > 0 ? sampleConfigs() : gridConfigs();
+        Set<String> completed = readCompletedGames();
+
+        pool = Executors.newFixedThreadPool(threads);
+        CompletionService<String> completion = new ExecutorCompletionService<>(pool);
+        int submitted = 0;
+        for (int config = 0; config < configs.size(); config++) {
+            for (int game = 0; game < games; game++) {
+                long gameSeed = seed + game; // the same seeds for every config keep comparisons fair
+                if (completed.contains(config + "," + gameSeed)) {
+                    continue;
+                }
+                int configId = config;
+                String[] values = configs.get(config);
+                completion.submit(() -> playGame(gameProps, messageProps, configId, values, gameSeed));
+                submitted++;
+            }
+        }
+        System.out.printf("%d configs x %d games: %d already done, %d to play on %d threads%n",
+                configs.size(), games, completed.size(), submitted, threads);
+
+        Thread onInterrupt = new Thread(this::finish);
+        Runtime.getRuntime().addShutdownHook(onInterrupt);
+        try {
+            openResults();
+            for (int i = 0; i < submitted; i++) {
+                String row = completion.take().get();
+                if (row == null) {
+                    continue;
+                }
+                synchronized (writeLock) {
+                    results.println(row);
+                    results.flush();
+                }
+                if ((i + 1) % Math.max(1, submitted / 20) == 0) {
+                    System.out.printf("%d/%d games played%n", i + 1, submitted);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | IOException e) {
+            e.printStackTrace();
+        }
+        Runtime.getRuntime().removeShutdownHook(onInterrupt);
+        finish();
+    }
+
+    private String playGame(Properties gameProps, Properties messageProps, int configId, String[] values,
+                            long gameSeed) {
+        Properties props = new Properties();
+        props.putAll(gameProps);
+        for (int i = 0; i < parameters.size(); i++) {
+            props.setProperty(parameters.get(i).key, values[i]);
+        }
+
+        GamePlayScreen game = new GamePlayScreen(props, messageProps, PLAYER_NAME, gameSeed);
+        Autopilot autopilot = Autopilot.forName(autopilotClass);
+        KeyStates keys = new KeyStates();
+        do {
+            if (Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+            keys.clear();
+            autopilot.decide(game, keys);
+        } while (!game.update(keys));
+        return configId + "," + gameSeed + "," + String.join(",", values) + ","
+                + (game.didPlayerWin() ? 1 : 0) + "," + String.format(Locale.ROOT, "%.2f", game.getPlayerScore())
+                + "," + game.getFrameCounter();
+    }
+
+    /* Configurations */
+    private List<String[]> gridConfigs() {
+        List<String[]> configs = new ArrayList<>();
+        int total = 1;
+        for (Parameter parameter : parameters) {
+            total = Math.multiplyExact(total, parameter.values.size());
+        }
+        for (int index = 0; index < total; index++) {
+            String[] values = new String[parameters.size()];
+            int rest = index;
+            for (int i = parameters.size() - 1; i >= 0; i--) {
+                List<String> choices = parameters.get(i).values;
+                values[i] = choices.get(rest % choices.size());
+                rest /= choices.size();
+            }
+            configs.add(values);
+        }
+        return configs;
+    }
+
+    private List<String[]> sampleConfigs() {
+        // Seeded so that a resumed sweep draws exactly the same configurations
+        Random random = new Random(seed);
+        List<String[]> configs = new ArrayList<>();
+        for (int index = 0; index < samples; index++) {
+            String[] values = new String[parameters.size()];
+            for (int i = 0; i < parameters.size(); i++) {
+                values[i] = parameters.get(i).sample(random);
+            }
+            configs.add(values);
+        }
+        return configs;
+    }
+
+    /* Results file */
+    private String resultsHeader() {
+        StringJoiner header = new StringJoiner(",");
+        header.add("config").add("seed");
+        parameters.forEach(parameter -> header.add(parameter.key));
+        return header.add("won").add("score").add("frames").toString();
+    }
+
+    private Set<String> readCompletedGames() {
+        Set<String> completed = new HashSet<>();
+        if (!Files.exists(resultsFile)) {
+            return completed;
+        }
+        String[][] rows = IOUtils.readCommaSeparatedFile(resultsFile.toString());
+        if (rows.length == 0) {
+            return completed;
+        }
+        if (!String.join(",", rows[0]).equals(resultsHeader())) {
+            throw new IllegalStateException(resultsFile + " was written by a sweep over different parameters");
+        }
+        int columns = parameters.size() + 5;
+        for (int i = 1; i < rows.length; i++) {
+            // A row cut short by an interrupted write is simply played again
+            if (rows[i].length == columns) {
+                completed.add(rows[i][0] + "," + rows[i][1]);
+            }
+        }
+        return completed;
+    }
+
+    private void openResults() throws IOException {
+        boolean exists = Files.exists(resultsFile) && Files.size(resultsFile) > 0;
+        boolean needsNewline = exists && !endsWithNewline();
+        results = new PrintWriter(Files.newBufferedWriter(resultsFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        if (needsNewline) {
+            results.println();
+        }
+        if (!exists) {
+            results.println(resultsHeader());
+        }
+        results.flush();
+    }
+
+    private boolean endsWithNewline() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(resultsFile.toFile(), "r")) {
+            file.seek(file.length() - 1);
+            return file.read() == '\n';
+        }
+    }
+
+    /* Summary */
+    private void finish() {
+        if (!summaryWritten.compareAndSet(false, true)) {
+            return;
+        }
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+        synchronized (writeLock) {
+            if (results != null) {
+                results.close();
+            }
+        }
+        if (Files.exists(resultsFile)) {
+            writeSummary();
+        }
+    }
+
+    private void writeSummary() {
+        String[][] rows = IOUtils.readCommaSeparatedFile(resultsFile.toString());
+        int columns = parameters.size() + 5;
+        Map<Integer, String[]> configValues = new TreeMap<>();
+        Map<Integer, double[]> totals = new TreeMap<>(); // games, wins, score sum, squared score sum
+
+        for (int i = 1; i < rows.length; i++) {
+            if (rows[i].length != columns) {
+                continue;
+            }
+            int config = Integer.parseInt(rows[i][0]);
+            configValues.putIfAbsent(config, Arrays.copyOfRange(rows[i], 2, 2 + parameters.size()));
+            double[] total = totals.computeIfAbsent(config, key -> new double[4]);
+            double score = Double.parseDouble(rows[i][columns - 2]);
+            total[0]++;
+            total[1] += Integer.parseInt(rows[i][columns - 3]);
+            total[2] += score;
+            total[3] += score * score;
+        }
+
+        String fileName = resultsFile.getFileName().toString();
+        String baseName = fileName.endsWith(".csv") ? fileName.substring(0, fileName.length() - 4) : fileName;
+        Path summaryFile = resultsFile.resolveSibling(baseName + "-summary.csv");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(summaryFile, StandardCharsets.UTF_8))) {
+            StringJoiner header = new StringJoiner(",");
+            header.add("config");
+            parameters.forEach(parameter -> header.add(parameter.key));
+            out.println(header.add("games").add("winRate").add("winRateLow").add("winRateHigh")
+                    .add("meanScore").add("meanScoreLow").add("meanScoreHigh"));
+
+            for (Map.Entry<Integer, double[]> entry : totals.entrySet()) {
+                double[] total = entry.getValue();
+                double n = total[0];
+                double winRate = total[1] / n;
+                double meanScore = total[2] / n;
+
+                // Wilson score interval for the win rate
+                double z2 = Z_95 * Z_95;
+                double centre = (winRate + z2 / (2 * n)) / (1 + z2 / n);
+                double spread = Z_95 * Math.sqrt(winRate * (1 - winRate) / n + z2 / (4 * n * n)) / (1 + z2 / n);
+
+                // Normal interval for the mean score
+                double variance = n > 1 ? Math.max(0, (total[3] - n * meanScore * meanScore) / (n - 1)) : 0;
+                double scoreSpread = Z_95 * Math.sqrt(variance / n);
+
+                out.println(entry.getKey() + "," + String.join(",", configValues.get(entry.getKey())) + ","
+                        + (int) n + "," + String.format(Locale.ROOT, "%.4f,%.4f,%.4f,%.2f,%.2f,%.2f",
+                        winRate, centre - spread, centre + spread,
+                        meanScore, meanScore - scoreSpread, meanScore + scoreSpread));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        System.out.println("Summary written to " + summaryFile);
+    }
+
+    /**
+     * A parameter to sweep: a property key with either an explicit list of values
+     * or a numeric range given as min:max:step.
+     */
+    private static class Parameter {
+        private final String key;
+        private final List<String> values = new ArrayList<>();
+        private BigDecimal min;
+        private BigDecimal max;
+        private boolean integral;
+
+        private Parameter(String key) {
+            this.key = key;
+        }
+
+        private static Parameter parse(String spec) {
+            int equals = spec.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Expected key=min:max:step or key=v1,v2,... but got " + spec);
+            }
+            Parameter parameter = new Parameter(spec.substring(0, equals));
+            String range = spec.substring(equals + 1);
+            String[] bounds = range.split(":");
+            if (bounds.length == 3) {
+                parameter.min = new BigDecimal(bounds[0]);
+                parameter.max = new BigDecimal(bounds[1]);
+                BigDecimal step = new BigDecimal(bounds[2]);
+                if (step.signum() <= 0 || parameter.max.compareTo(parameter.min) < 0) {
+                    throw new IllegalArgumentException("Invalid range " + spec);
+                }
+                parameter.integral = isIntegral(parameter.min) && isIntegral(parameter.max) && isIntegral(step);
+                for (BigDecimal value = parameter.min; value.compareTo(parameter.max) <= 0; value = value.add(step)) {
+                    parameter.values.add(value.stripTrailingZeros().toPlainString());
+                }
+            } else {
+                parameter.values.addAll(Arrays.asList(range.split(",")));
+            }
+            return parameter;
+        }
+
+        private static boolean isIntegral(BigDecimal value) {
+            return value.stripTrailingZeros().scale() <= 0;
+        }
+
+        private String sample(Random random) {
+            if (min == null) {
+                return values.get(random.nextInt(values.size()));
+            }
+            double value = min.doubleValue() + (max.doubleValue() - min.doubleValue()) * random.nextDouble();
+            return integral ? Long.toString(Math.round(value)) : String.format(Locale.ROOT, "%.4f", value);
+        }
+    }
+}
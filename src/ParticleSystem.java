@@ -0,0 +1,234 @@
+import bagel.Image;
+import bagel.Window;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import java.util.Properties;
+
+/**
+ * The ParticleSystem class draws the short-lived smoke and fire effects. Instead of one object
+ * per effect, every particle is a slot in a set of parallel primitive arrays used as a ring
+ * buffer: when the buffer is full the oldest particle is overwritten. Particles are moved in
+ * a single pass, in the order they were emitted, and a particle disappears once its
+ * time-to-live runs out.
+ * The particle system is fed by the game's events: smoke rises from cars in a collision and
+ * fire bursts from the cars destroyed.
+ */
+public class ParticleSystem implements GameEventHandler {
+    /**
+     * The kinds of particle, each with its own image, time-to-live, speed and burst size,
+     * read from the game properties under "gameObjects.&lt;type&gt;.".
+     */
+    public enum Type {
+        SMOKE, FIRE
+    }
+
+    private static final Type[] TYPES = Type.values();
+
+    private final float[] x;
+    private final float[] y;
+    private final float[] vy;
+    private final int[] ttl;
+    private final byte[] type;
+    private int tail = 0; // oldest particle that may still be alive
+    private int count = 0; // slots in use from the tail onwards
+
+    private final Image[] images = new Image[TYPES.length];
+    private final int[] typeTtl = new int[TYPES.length];
+    private final float[] typeSpeedY = new float[TYPES.length];
+    private final int[] burstCount = new int[TYPES.length];
+    private final double[] burstSpread = new double[TYPES.length];
+    private int seed = 1; // for the scatter of bursts, kept apart from the game's random events
+
+    /**
+     * Constructs a new ParticleSystem with the capacity and particle settings given in the
+     * game properties.
+     *
+     * @param gameProps Properties containing the particle capacity and each type's settings.
+     */
+    public ParticleSystem(Properties gameProps) {
+        int capacity = Integer.parseInt(gameProps.getProperty("gameObjects.particles.capacity"));
+        x = new float[capacity];
+        y = new float[capacity];
+        vy = new float[capacity];
+        ttl = new int[capacity];
+        type = new byte[capacity];
+
+        for (Type particleType : TYPES) {
+            String prefix = "gameObjects." + particleType.name().toLowerCase() + ".";
+            int i = particleType.ordinal();
+            images[i] = Assets.getImage(gameProps.getProperty(prefix + "image"));
+            typeTtl[i] = Integer.parseInt(gameProps.getProperty(prefix + "ttl"));
+            typeSpeedY[i] = Float.parseFloat(gameProps.getProperty(prefix + "speedY"));
+            burstCount[i] = Integer.parseInt(gameProps.getProperty(prefix + "burstCount"));
+            burstSpread[i] = Double.parseDouble(gameProps.getProperty(prefix + "burstSpread"));
+        }
+    }
+
+    /**
+     * Emits a burst of particles of the given type at a position, such as a collision site.
+     * The particles are scattered around the position by the type's burst spread.
+     *
+     * @param particleType The type of particle.
+     * @param x The x-coordinate of the burst.
+     * @param y The y-coordinate of the burst.
+     */
+    public void emit(Type particleType, double x, double y) {
+        int t = particleType.ordinal();
+        for (int i = 0; i < burstCount[t]; i++) {
+            double dx = burstSpread[t] == 0 ? 0 : (nextScatter() * 2 - 1) * burstSpread[t];
+            double dy = burstSpread[t] == 0 ? 0 : (nextScatter() * 2 - 1) * burstSpread[t];
+            add(t, x + dx, y + dy);
+        }
+    }
+
+    /**
+     * Emits the smoke and fire of a collision.
+     *
+     * @param event The event.
+     * @param endOfBatch true if this is the last event available for now.
+     */
+    @Override
+    public void onEvent(GameEvent event, boolean endOfBatch) {
+        if (event.getType() != GameEvent.Type.CAR_COLLISION) {
+            return;
+        }
+        if (event.hasFlag(GameEvent.FIRST_SMOKES)) {
+            emit(Type.SMOKE, event.getX(), event.getY());
+        }
+        if (event.hasFlag(GameEvent.SECOND_SMOKES)) {
+            emit(Type.SMOKE, event.getOtherX(), event.getOtherY());
+        }
+        if (event.hasFlag(GameEvent.FIRST_DESTROYED)) {
+            emit(Type.FIRE, event.getX(), event.getY());
+        }
+        if (event.hasFlag(GameEvent.SECOND_DESTROYED)) {
+            emit(Type.FIRE, event.getOtherX(), event.getOtherY());
+        }
+    }
+
+    /**
+     * Records every live particle on the screen in the render queue. Nothing is drawn when
+     * running headless.
+     *
+     * @param queue The render queue of the frame.
+     */
+    public void render(RenderQueue queue) {
+        int capacity = ttl.length;
+        for (int n = 0, i = tail; n < count; n++, i = (i + 1) % capacity) {
+            Image image = images[type[i]];
+            if (ttl[i] > 0 && image != null && y[i] + image.getHeight() / 2 >= 0
+                    && y[i] - image.getHeight() / 2 <= Window.getHeight()) {
+                queue.draw(RenderQueue.EFFECTS, image, x[i], y[i]);
+            }
+        }
+    }
+
+    /**
+     * Moves every live particle down by its speed and counts down its time-to-live.
+     */
+    public void update() {
+        int capacity = ttl.length;
+        for (int n = 0, i = tail; n < count; n++, i = (i + 1) % capacity) {
+            if (ttl[i] > 0) {
+                y[i] += vy[i];
+                ttl[i]--;
+            }
+        }
+        // Drop the particles that expired at the old end of the buffer
+        while (count > 0 && ttl[tail] <= 0) {
+            tail = (tail + 1) % capacity;
+            count--;
+        }
+    }
+
+    /**
+     * Moves every live particle down by a specified speed value, as the camera moves.
+     *
+     * @param speed The distance to move down.
+     */
+    public void moveDown(double speed) {
+        int capacity = ttl.length;
+        for (int n = 0, i = tail; n < count; n++, i = (i + 1) % capacity) {
+            y[i] += (float) speed;
+        }
+    }
+
+    /**
+     * Returns the number of slots in use, including expired particles not yet dropped.
+     *
+     * @return The number of particles.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Writes every particle still in the buffer, oldest first, and the scatter generator
+     * to a game snapshot.
+     *
+     * @param out The snapshot to write to.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeInt(seed);
+        out.writeInt(count);
+        int capacity = ttl.length;
+        for (int n = 0, i = tail; n < count; n++, i = (i + 1) % capacity) {
+            out.writeFloat(x[i]);
+            out.writeFloat(y[i]);
+            out.writeFloat(vy[i]);
+            out.writeInt(ttl[i]);
+            out.writeByte(type[i]);
+        }
+    }
+
+    /**
+     * Replaces the particles with those of a game snapshot. If the snapshot holds more particles
+     * than the buffer, the oldest are dropped.
+     *
+     * @param in The snapshot to read from.
+     * @throws IOException If the snapshot cannot be read.
+     */
+    public void readState(DataInput in) throws IOException {
+        seed = in.readInt();
+        int particles = in.readInt();
+        tail = 0;
+        count = 0;
+        for (int n = 0; n < particles; n++) {
+            put(in.readFloat(), in.readFloat(), in.readFloat(), in.readInt(), in.readByte());
+        }
+    }
+
+    private void add(int t, double px, double py) {
+        put((float) px, (float) py, typeSpeedY[t], typeTtl[t], (byte) t);
+    }
+
+    private void put(float px, float py, float speedY, int life, byte particleType) {
+        int capacity = ttl.length;
+        int i;
+        if (count < capacity) {
+            i = (tail + count) % capacity;
+            count++;
+        } else {
+            // Overwrite the oldest particle
+            i = tail;
+            tail = (tail + 1) % capacity;
+        }
+        x[i] = px;
+        y[i] = py;
+        vy[i] = speedY;
+        ttl[i] = life;
+        type[i] = particleType;
+    }
+
+    private double nextScatter() {
+        // Xorshift, so bursts look the same from one run to the next
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return (seed >>> 1) / (double) Integer.MAX_VALUE;
+    }
+}
@@ -1,5 +1,9 @@
 import bagel.Font;
 import bagel.util.Point;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Properties;
 
 /**
@@ -22,9 +26,16 @@ public class Passenger extends GameEntity implements Collision {
     private boolean onGoingTrip;
     private boolean priorityAdjusted = false;
     private boolean isDead = false;
-    private int collisionDuration = 0;
+    // Counts down until the passenger can be hurt again, and does nothing when it runs out
+    private final TimingWheel.Timer recovery = new TimingWheel.Timer(() -> { });
     private int collisionTimeout = 200;
 
+    // Quoted fare shown above an idle passenger, cached until their priority changes
+    private int quotedPriority = -1;
+    private double quotedFare;
+    private String priorityText;
+    private String fareText;
+
     /**
      * Constructs a new Passenger instance with the given properties.
      *
@@ -45,7 +56,7 @@ public class Passenger extends GameEntity implements Collision {
         this.Y_DIST = yDistance;
         this.hasUmbrella = hasUmbrella;
         this.TRIP = new Trip(this, null, gameProps);
-        this.FONT = new Font(gameProps.getProperty("font"),
+        this.FONT = Assets.getFont(gameProps.getProperty("font"),
                 Integer.parseInt(gameProps.getProperty("gameObjects.passenger.fontSize")));
         this.WALK_SPEED_X = Double.parseDouble(gameProps.getProperty("gameObjects.passenger.walkSpeedX"));
         this.WALK_SPEED_Y = Double.parseDouble(gameProps.getProperty("gameObjects.passenger.walkSpeedY"));
@@ -56,27 +67,39 @@ public class Passenger extends GameEntity implements Collision {
      * Renders the passenger and their details such as priority and expected earnings if they are
      * idle or at their destination. If the passenger is not in the taxi or has reached the destination,
      * it displays their information on the screen.
+     *
+     * @param queue The render queue of the frame.
      */
     @Override
-    public void render(){
-        if (collisionDuration > 0){
-            collisionDuration--;
-        }
+    public void render(RenderQueue queue){
         if (!inTaxi || atDestination) {
-            super.render();
+            super.render(queue);
 
             // If idle
-            if (!atDestination && !onGoingTrip) {
+            if (!atDestination && !onGoingTrip && FONT != null) {
+                if (priorityText == null || quotedPriority != priority) {
+                    priorityText = Integer.toString(priority);
+                    fareText = String.format("%.1f", getQuotedFare());
+                }
                 // Render priority
-                FONT.drawString(Integer.toString(priority), getX() - 30, getY());
+                queue.drawString(RenderQueue.LABELS, FONT, priorityText, getX() - 30, getY());
 
                 // Render expected trip earnings
-                double expectedEarnings = TRIP.calculateEarnings();
-                FONT.drawString(String.format("%.1f", expectedEarnings), getX() - 100, getY());
+                queue.drawString(RenderQueue.LABELS, FONT, fareText, getX() - 100, getY());
             }
         }
     }
 
+    /**
+     * Returns the layer passengers are drawn in.
+     *
+     * @return The layer.
+     */
+    @Override
+    public int getLayer() {
+        return RenderQueue.PASSENGERS;
+    }
+
     /* Passenger pickup logic */
     /**
      * Picks up the passenger, marking them as being in a taxi and starting their trip.
@@ -179,13 +202,14 @@ public class Passenger extends GameEntity implements Collision {
      * the passenger does not have an umbrella, their priority is set to 1.
      *
      * @param isRaining true if it's raining, false otherwise.
+     * @param coinPowered true if the coin power is currently active, false otherwise.
      */
-    public void adjustPriorityForWeather(boolean isRaining) {
+    public void adjustPriorityForWeather(boolean isRaining, boolean coinPowered) {
         if (isRaining && hasUmbrella == 0) {
             this.priority = 1;  // Set priority to 1 if raining and no umbrella
         } else {
             // Revert to original priority when it's sunny and adjust for coin power
-            if (GamePlayScreen.isCoinPowered() && originalPriority > 1){
+            if (coinPowered && originalPriority > 1){
                 this.priority = originalPriority-1;
             } else {
                 this.priority = originalPriority;
@@ -224,6 +248,7 @@ public class Passenger extends GameEntity implements Collision {
         this.inTaxi = false;
         this.setX(taxiDamaged.getX()-100);
         this.setY(taxiDamaged.getY());
+        this.jumped();
     }
 
     /**
@@ -235,9 +260,8 @@ public class Passenger extends GameEntity implements Collision {
     @Override
     public boolean checkCollision(Collision other) {
         if (other instanceof Car car){
-            double distance = this.distanceTo(car.getPosition());
             double collisionRange = this.getRadius() + car.getRadius();
-            return distance <= collisionRange;
+            return this.isWithin(car, collisionRange);
         }
         return false;
     }
@@ -250,14 +274,14 @@ public class Passenger extends GameEntity implements Collision {
      */
     @Override
     public void onCollision(Collision other) {
-        if (collisionDuration == 0){
+        if (!recovery.isScheduled()){
             if (other instanceof OtherCar otherCar){
                 this.health -= otherCar.getDamage();
             } else if (other instanceof EnemyCar enemyCar){
                 this.health -= enemyCar.getDamage();
             }
 
-            collisionDuration = collisionTimeout;
+            getTimers().schedule(recovery, collisionTimeout);
         }
         if (this.health <= 0){
             isDead = true;
@@ -266,6 +290,20 @@ public class Passenger extends GameEntity implements Collision {
 
     /* Getters */
 
+    /**
+     * Returns the fare this passenger is quoted for their trip at their current priority.
+     * The fare is only recalculated when the priority changes.
+     *
+     * @return The quoted fare.
+     */
+    public double getQuotedFare() {
+        if (quotedPriority != priority) {
+            quotedPriority = priority;
+            quotedFare = TRIP.calculateEarnings();
+        }
+        return quotedFare;
+    }
+
     /**
      * Returns whether the passenger is currently in a taxi.
      *
@@ -284,6 +322,15 @@ public class Passenger extends GameEntity implements Collision {
         return atDestination;
     }
 
+    /**
+     * Returns whether the passenger has been picked up and not yet dropped off.
+     *
+     * @return true if the passenger's trip is in progress, false otherwise.
+     */
+    public boolean isOnGoingTrip() {
+        return onGoingTrip;
+    }
+
     /**
      * Returns the x-coordinate of the passenger's destination.
      *
@@ -302,6 +349,24 @@ public class Passenger extends GameEntity implements Collision {
         return Y_DIST;
     }
 
+    /**
+     * Returns the priority level the passenger was created with.
+     *
+     * @return The original priority level.
+     */
+    public int getOriginalPriority() {
+        return originalPriority;
+    }
+
+    /**
+     * Returns whether the passenger has an umbrella, as given in the world file.
+     *
+     * @return 1 if the passenger has an umbrella, 0 otherwise.
+     */
+    public int getHasUmbrella() {
+        return hasUmbrella;
+    }
+
     /**
      * Returns the priority level of the passenger.
      *
@@ -328,4 +393,46 @@ public class Passenger extends GameEntity implements Collision {
     public boolean isDead(){
         return isDead;
     }
+
+    /* Snapshots */
+    /**
+     * Writes the passenger's position, priority, health and trip progress to a game snapshot.
+     *
+     * @param out The snapshot to write to.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        super.writeState(out);
+        out.writeInt(priority);
+        out.writeDouble(health);
+        out.writeBoolean(inTaxi);
+        out.writeBoolean(atDestination);
+        out.writeBoolean(onGoingTrip);
+        out.writeBoolean(priorityAdjusted);
+        out.writeBoolean(isDead);
+        out.writeInt(getTimers().getRemaining(recovery));
+    }
+
+    /**
+     * Restores the passenger's position, priority, health and trip progress from a game snapshot.
+     *
+     * @param in The snapshot to read from.
+     * @throws IOException If the snapshot cannot be read.
+     */
+    @Override
+    public void readState(DataInput in) throws IOException {
+        super.readState(in);
+        priority = in.readInt();
+        health = in.readDouble();
+        inTaxi = in.readBoolean();
+        atDestination = in.readBoolean();
+        onGoingTrip = in.readBoolean();
+        priorityAdjusted = in.readBoolean();
+        isDead = in.readBoolean();
+        int recovering = in.readInt();
+        if (recovering > 0) {
+            getTimers().schedule(recovery, recovering);
+        }
+    }
 }
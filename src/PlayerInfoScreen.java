@@ -26,8 +26,8 @@ public class PlayerInfoScreen {
      */
     public PlayerInfoScreen(Properties gameProps, Properties messageProps) {
 
-        BACKGROUND = new Image(gameProps.getProperty("backgroundImage.playerInfo"));
-        FONT = new Font(gameProps.getProperty("font"), Integer.parseInt(gameProps.getProperty("playerInfo.fontSize")));
+        BACKGROUND = Assets.getImage(gameProps.getProperty("backgroundImage.playerInfo"));
+        FONT = Assets.getFont(gameProps.getProperty("font"), Integer.parseInt(gameProps.getProperty("playerInfo.fontSize")));
 
         ENTER_NAME_TEXT = messageProps.getProperty("playerInfo.playerName");
         START_INSTRUCTIONS = messageProps.getProperty("playerInfo.start");
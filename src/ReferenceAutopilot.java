@@ -0,0 +1,135 @@
+import bagel.Keys;
+
+/**
+ * The ReferenceAutopilot is the autopilot shipped with the game. While the taxi has a free seat it
+ * drives up the road towards the nearest waiting passenger and stops to let them get in, and it
+ * stops whenever a passenger riding along has reached their trip end flag.
+ * On the way it brakes for cars ahead, drives on to escape cars closing in from behind and steers
+ * away from fireballs. Each decision only scans the entity lists once, so it costs a few
+ * microseconds per frame.
+ */
+public class ReferenceAutopilot implements Autopilot {
+    private static final double LOOKAHEAD = 160;
+    private static final double MARGIN = 8;
+
+    private boolean up, down, left, right;
+
+    /**
+     * Decides the key states for the next frame.
+     *
+     * @param game The game play session to read the simulation state from.
+     * @param keys The key states to fill in.
+     */
+    @Override
+    public void decide(GamePlayScreen game, KeyStates keys) {
+        up = down = left = right = false;
+        Taxi taxi = game.getTaxi();
+        Driver driver = game.getDriver();
+
+        if (!driver.isInTaxi()) {
+            // Walk back to the replacement taxi after the old one was destroyed
+            steer(driver.getX(), taxi.getX());
+            up = taxi.getY() < driver.getY();
+            down = !up;
+        } else {
+            seekGoal(game, taxi);
+            if (!taxi.getInvincible() && !driver.getInvincible()) {
+                avoidCars(game, taxi);
+                avoidFireballs(game, taxi);
+            }
+        }
+
+        keys.set(Keys.UP, up);
+        keys.set(Keys.DOWN, down);
+        keys.set(Keys.LEFT, left);
+        keys.set(Keys.RIGHT, right);
+    }
+
+    private void seekGoal(GamePlayScreen game, Taxi taxi) {
+        // Stop to drop off as soon as a passenger riding along has reached their flag
+        for (Trip trip : game.getActiveTrips()) {
+            if (trip.getPassenger().isInTaxi() && trip.getTripEndFlag().atFlag(taxi.getPosition())) {
+                return;
+            }
+        }
+        if (!game.hasFreeSeat()) {
+            up = true;
+            return;
+        }
+
+        double detectRadius = game.getTaxiDetectRadius();
+        Passenger target = null;
+        double nearest = Double.MAX_VALUE;
+        for (Passenger waiting : game.getPassengers()) {
+            if (!waiting.isInTaxi() && !waiting.isAtDestination() && waiting.getY() < taxi.getY() + detectRadius) {
+                double distance = waiting.distanceTo(taxi.getPosition());
+                if (distance < nearest) {
+                    nearest = distance;
+                    target = waiting;
+                }
+            }
+        }
+        if (target == null) {
+            up = true;
+        } else if (nearest > detectRadius * 0.9) {
+            // Line up with the passenger while they come closer, then wait for them to walk in
+            if (Math.abs(target.getX() - taxi.getX()) > detectRadius * 0.5) {
+                steer(taxi.getX(), target.getX());
+            }
+            up = target.getY() < taxi.getY() - detectRadius * 0.5;
+        }
+    }
+
+    private void avoidCars(GamePlayScreen game, Taxi taxi) {
+        boolean blockedAhead = false;
+        boolean chasedFromBehind = false;
+        double chaserX = 0;
+        for (Car car : game.getCars()) {
+            if (car.getDestroyed() || car.getInvincible()
+                    || Math.abs(car.getX() - taxi.getX()) > taxi.getRadius() + car.getRadius() + MARGIN) {
+                continue;
+            }
+            double ahead = taxi.getY() - car.getY();
+            if (ahead > 0 && ahead < LOOKAHEAD && car.getSpeedY() < taxi.getSPEED_Y()) {
+                // Driving on would close in on a slower car ahead
+                blockedAhead = true;
+            } else if (ahead <= 0 && -ahead < LOOKAHEAD && car.getSpeedY() > 0) {
+                chasedFromBehind = true;
+                chaserX = car.getX();
+            }
+        }
+
+        if (blockedAhead && chasedFromBehind) {
+            // Boxed in: brake and steer out of the lane
+            up = false;
+            left = chaserX >= taxi.getX();
+            right = !left;
+        } else if (blockedAhead) {
+            up = false;
+        } else if (chasedFromBehind) {
+            up = true;
+        }
+    }
+
+    private void avoidFireballs(GamePlayScreen game, Taxi taxi) {
+        for (Fireball fireball : game.getFireballs()) {
+            if (!fireball.getAlive()) {
+                continue;
+            }
+            double behind = fireball.getY() - taxi.getY();
+            double offset = taxi.getX() - fireball.getX();
+            if (behind > 0 && behind < LOOKAHEAD * 2
+                    && Math.abs(offset) < taxi.getRadius() + fireball.getRadius() + MARGIN) {
+                // Fireballs only travel up, so steering sideways is the only way out
+                left = offset < 0;
+                right = !left;
+                return;
+            }
+        }
+    }
+
+    private void steer(double fromX, double toX) {
+        left = toX < fromX - 1;
+        right = toX > fromX + 1;
+    }
+}
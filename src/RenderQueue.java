@@ -0,0 +1,192 @@
+import bagel.DrawOptions;
+import bagel.Font;
+import bagel.Image;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The RenderQueue class records what is drawn during a frame and draws it all at the end.
+ * Every sprite and string is a command with a layer; when the frame is flushed, the commands
+ * are sorted by layer, then by image or font, then in the order they were recorded, and drawn.
+ * Layers keep the picture in the right order, and commands sharing an image are drawn one after
+ * the other, so the graphics card switches textures once per image and layer rather than once
+ * per sprite. The commands are kept in arrays that are reused every frame.
+ */
+public class RenderQueue {
+    /** The layer of the road. */
+    public static final int BACKGROUND = 0;
+    /** The layer of the taxi and the wrecks of destroyed taxis. */
+    public static final int TAXIS = 1;
+    /** The layer of coins and invincible powers. */
+    public static final int ITEMS = 2;
+    /** The layer of passengers. */
+    public static final int PASSENGERS = 3;
+    /** The layer of the priorities and fares shown next to passengers. */
+    public static final int LABELS = 4;
+    /** The layer of trip end flags. */
+    public static final int FLAGS = 5;
+    /** The layer of other cars and enemy cars. */
+    public static final int CARS = 6;
+    /** The layer of smoke, fire, blood and fireballs. */
+    public static final int EFFECTS = 7;
+    /** The layer of the driver out of the taxi. */
+    public static final int DRIVER = 8;
+    /** The layer of the score, health and trip details. */
+    public static final int INFO = 9;
+
+    // A sort key is the layer, the texture and the command's position, from high bits to low
+    private static final int LAYER_SHIFT = 56;
+    private static final int TEXTURE_SHIFT = 32;
+    private static final long INDEX_MASK = 0xFFFFFFFFL;
+
+    private int size = 0;
+    private long[] keys = new long[256];
+    private Image[] images = new Image[256];
+    private Font[] fonts = new Font[256];
+    private String[] texts = new String[256];
+    private double[] xs = new double[256];
+    private double[] ys = new double[256];
+    private DrawOptions[] options = new DrawOptions[256];
+    private final Map<Object, Integer> textures = new IdentityHashMap<>();
+    private int batches = 0;
+    private int commands = 0;
+
+    /**
+     * Records an image drawn centred at the given position.
+     *
+     * @param layer The layer.
+     * @param image The image, or null to draw nothing.
+     * @param x The x-coordinate of the centre.
+     * @param y The y-coordinate of the centre.
+     */
+    public void draw(int layer, Image image, double x, double y) {
+        draw(layer, image, x, y, null);
+    }
+
+    /**
+     * Records an image drawn centred at the given position with the given options.
+     *
+     * @param layer The layer.
+     * @param image The image, or null to draw nothing.
+     * @param x The x-coordinate of the centre.
+     * @param y The y-coordinate of the centre.
+     * @param drawOptions The options, such as opacity, or null for none. They must not be changed
+     *                    before the frame is flushed.
+     */
+    public void draw(int layer, Image image, double x, double y, DrawOptions drawOptions) {
+        if (image == null) {
+            return;
+        }
+        int i = add(layer, image);
+        images[i] = image;
+        xs[i] = x;
+        ys[i] = y;
+        options[i] = drawOptions;
+    }
+
+    /**
+     * Records a string drawn from the given position.
+     *
+     * @param layer The layer.
+     * @param font The font, or null to draw nothing.
+     * @param text The string.
+     * @param x The x-coordinate of the bottom left of the string.
+     * @param y The y-coordinate of the bottom left of the string.
+     */
+    public void drawString(int layer, Font font, String text, double x, double y) {
+        if (font == null) {
+            return;
+        }
+        int i = add(layer, font);
+        fonts[i] = font;
+        texts[i] = text;
+        xs[i] = x;
+        ys[i] = y;
+    }
+
+    private int add(int layer, Object texture) {
+        if (size == keys.length) {
+            int capacity = size * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            images = Arrays.copyOf(images, capacity);
+            fonts = Arrays.copyOf(fonts, capacity);
+            texts = Arrays.copyOf(texts, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            options = Arrays.copyOf(options, capacity);
+        }
+        Integer id = textures.get(texture);
+        if (id == null) {
+            id = textures.size();
+            textures.put(texture, id);
+        }
+        keys[size] = (long) layer << LAYER_SHIFT | (long) id << TEXTURE_SHIFT | size;
+        return size++;
+    }
+
+    /**
+     * Draws every command recorded since the last flush, in order of layer and texture, and
+     * empties the queue.
+     */
+    public void flush() {
+        Arrays.sort(keys, 0, size);
+        long texture = -1;
+        batches = 0;
+        for (int k = 0; k < size; k++) {
+            if (keys[k] >>> TEXTURE_SHIFT != texture) {
+                texture = keys[k] >>> TEXTURE_SHIFT;
+                batches++;
+            }
+            int i = (int) (keys[k] & INDEX_MASK);
+            if (images[i] != null) {
+                if (options[i] == null) {
+                    images[i].draw(xs[i], ys[i]);
+                } else {
+                    images[i].draw(xs[i], ys[i], options[i]);
+                }
+                images[i] = null;
+                options[i] = null;
+            } else {
+                fonts[i].drawString(texts[i], xs[i], ys[i]);
+                fonts[i] = null;
+                texts[i] = null;
+            }
+        }
+        commands = size;
+        size = 0;
+    }
+
+    /**
+     * Empties the queue without drawing anything, as for a frame that is played but not shown.
+     */
+    public void clear() {
+        Arrays.fill(images, 0, size, null);
+        Arrays.fill(fonts, 0, size, null);
+        Arrays.fill(texts, 0, size, null);
+        Arrays.fill(options, 0, size, null);
+        commands = 0;
+        batches = 0;
+        size = 0;
+    }
+
+    /**
+     * Returns the number of commands drawn by the last flush.
+     *
+     * @return The number of commands.
+     */
+    public int getCommands() {
+        return commands;
+    }
+
+    /**
+     * Returns the number of runs of commands sharing a layer and texture in the last flush,
+     * which is the number of texture switches it took.
+     *
+     * @return The number of batches.
+     */
+    public int getBatches() {
+        return batches;
+    }
+}
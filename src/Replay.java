@@ -0,0 +1,243 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The Replay class reads a replay file written by {@link ReplayWriter}. It reads the index of
+ * the chunks when opened, and the keyframes and keys of a chunk only when they are needed,
+ * so jumping to a frame of a long game reads one chunk of the file however long it is.
+ * Chunks superseded by a rewind are left out of the index, so the chunks kept start at
+ * increasing frames and the chunk of a frame is found by binary search.
+ */
+public class Replay {
+    private final RandomAccessFile file;
+    private final Properties gameProps = new Properties();
+    private final int keyframeInterval;
+
+    // The chunks of the game as it was played: first frame, offset in the file, key count
+    private int[] frames;
+    private long[] offsets;
+    private int[] keyCounts;
+
+    // The keys of the chunk read last
+    private int keysChunk = -1;
+    private byte[] keys;
+
+    /**
+     * Opens a replay file and reads its index.
+     *
+     * @param filename The name of the file.
+     * @throws IOException If the file cannot be read or is not a replay.
+     */
+    public Replay(String filename) throws IOException {
+        file = new RandomAccessFile(filename, "r");
+        try {
+            if (file.readInt() != ReplayWriter.MAGIC) {
+                throw new IOException("Not a replay file");
+            }
+            int version = file.readInt();
+            if (version != ReplayWriter.VERSION) {
+                throw new IOException("Unsupported replay version: " + version);
+            }
+            keyframeInterval = file.readInt();
+            byte[] propertyBytes = new byte[file.readInt()];
+            file.readFully(propertyBytes);
+            gameProps.load(new StringReader(new String(propertyBytes, StandardCharsets.UTF_8)));
+            List<int[]> chunks = hasIndex() ? readIndex() : scanChunks(file.getFilePointer());
+            keepPlayedChunks(chunks);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+        if (frames.length == 0) {
+            file.close();
+            throw new IOException("The replay has no frames");
+        }
+    }
+
+    /**
+     * Returns the properties the game was played with.
+     *
+     * @return The game properties.
+     */
+    public Properties getGameProperties() {
+        return gameProps;
+    }
+
+    /**
+     * Returns the number of frames between keyframes.
+     *
+     * @return The keyframe interval.
+     */
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    /**
+     * Returns the frame the replay starts from, whose keyframe is the first.
+     *
+     * @return The first frame.
+     */
+    public int getFirstFrame() {
+        return frames[0];
+    }
+
+    /**
+     * Returns the last frame recorded.
+     *
+     * @return The last frame.
+     */
+    public int getLastFrame() {
+        int last = frames.length - 1;
+        return frames[last] + keyCounts[last];
+    }
+
+    /**
+     * Returns the frame of the keyframe a jump to the given frame starts from, the latest
+     * keyframe at or before it.
+     *
+     * @param frame The frame, between the first and the last frame.
+     * @return The frame of the keyframe.
+     */
+    public int getKeyframeBefore(int frame) {
+        return frames[chunkOf(frame)];
+    }
+
+    /**
+     * Reads the keyframe a jump to the given frame starts from.
+     *
+     * @param frame The frame, between the first and the last frame.
+     * @return The snapshot of the game after {@link #getKeyframeBefore(int)}.
+     * @throws IOException If the file cannot be read.
+     */
+    public byte[] readKeyframe(int frame) throws IOException {
+        file.seek(offsets[chunkOf(frame)] + Integer.BYTES);
+        byte[] snapshot = new byte[file.readInt()];
+        file.readFully(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Returns the keys held down during a frame.
+     *
+     * @param frame The frame, after the first frame and not after the last frame.
+     * @return The keys, as a bit mask.
+     * @throws IOException If the file cannot be read.
+     */
+    public byte getKeys(int frame) throws IOException {
+        // The keys of a frame are in the chunk of the frame before, after its keyframe
+        int chunk = chunkOf(frame - 1);
+        if (chunk != keysChunk) {
+            file.seek(offsets[chunk] + Integer.BYTES);
+            file.skipBytes(file.readInt());
+            keys = new byte[file.readInt()];
+            file.readFully(keys);
+            keysChunk = chunk;
+        }
+        return keys[frame - frames[chunk] - 1];
+    }
+
+    /**
+     * Closes the file.
+     */
+    public void close() {
+        try {
+            file.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private int chunkOf(int frame) {
+        int low = 0;
+        int high = frames.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (frames[middle] <= frame) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private boolean hasIndex() throws IOException {
+        if (file.length() < 2 * Integer.BYTES) {
+            return false;
+        }
+        long position = file.getFilePointer();
+        file.seek(file.length() - Integer.BYTES);
+        boolean indexed = file.readInt() == ReplayWriter.MAGIC;
+        file.seek(position);
+        return indexed;
+    }
+
+    private List<int[]> readIndex() throws IOException {
+        file.seek(file.length() - 2 * Integer.BYTES);
+        file.seek(file.readInt());
+        if (file.readInt() != -1) {
+            throw new IOException("Broken replay index");
+        }
+        int count = file.readInt();
+        List<int[]> chunks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            chunks.add(new int[] {file.readInt(), file.readInt(), file.readInt()});
+        }
+        return chunks;
+    }
+
+    // Finds the chunks of a file that was never closed, up to the last one written in full
+    private List<int[]> scanChunks(long position) throws IOException {
+        List<int[]> chunks = new ArrayList<>();
+        try {
+            while (position < file.length()) {
+                file.seek(position);
+                int frame = file.readInt();
+                if (frame < 0) {
+                    break;
+                }
+                file.seek(position + 2 * Integer.BYTES + file.readInt());
+                int keyCount = file.readInt();
+                long end = file.getFilePointer() + keyCount;
+                if (end > file.length()) {
+                    break;
+                }
+                chunks.add(new int[] {frame, (int) position, keyCount});
+                position = end;
+            }
+        } catch (EOFException e) {
+            // The last chunk was cut off
+        }
+        return chunks;
+    }
+
+    // A chunk supersedes the chunks before it from its first frame on, so those starting at or
+    // after it are dropped and the one before it ends where it starts
+    private void keepPlayedChunks(List<int[]> chunks) {
+        List<int[]> kept = new ArrayList<>();
+        for (int[] chunk : chunks) {
+            while (!kept.isEmpty() && kept.get(kept.size() - 1)[0] >= chunk[0]) {
+                kept.remove(kept.size() - 1);
+            }
+            if (!kept.isEmpty()) {
+                int[] before = kept.get(kept.size() - 1);
+                before[2] = Math.min(before[2], chunk[0] - before[0]);
+            }
+            kept.add(chunk);
+        }
+        frames = new int[kept.size()];
+        offsets = new long[kept.size()];
+        keyCounts = new int[kept.size()];
+        for (int i = 0; i < kept.size(); i++) {
+            frames[i] = kept.get(i)[0];
+            offsets[i] = kept.get(i)[1];
+            keyCounts[i] = kept.get(i)[2];
+        }
+    }
+}
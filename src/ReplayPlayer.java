@@ -0,0 +1,182 @@
+import bagel.Input;
+import bagel.Keys;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Properties;
+
+/**
+ * The ReplayPlayer class plays a recorded game back on the game play screen. The game is
+ * played again from the keyframes and keys in the replay, so playing back is as exact as the
+ * game itself.
+ * The player can jump to any frame, which restores the keyframe before it and plays the frames
+ * in between without drawing them, and play at 1x to 64x, drawing only the last frame of each
+ * step, or as fast as the frame time allows.
+ *
+ * Keys: SPACE pauses, LEFT and RIGHT jump back and forward by a jump of frames (a tenth of one
+ * with LEFT_SHIFT), 1 to 7 play at 1x, 2x, 4x up to 64x, and 0 plays as fast as possible.
+ */
+public class ReplayPlayer {
+    private static final Keys[] SPEED_KEYS = {Keys.NUM_1, Keys.NUM_2, Keys.NUM_3, Keys.NUM_4,
+            Keys.NUM_5, Keys.NUM_6, Keys.NUM_7};
+    private static final Keys[] RECORDED_KEYS = {Keys.UP, Keys.DOWN, Keys.LEFT, Keys.RIGHT};
+    // Playing as fast as possible stops short of the 60 frames a second the window draws at
+    private static final long UNLIMITED_NANOS = 12_000_000L;
+
+    private final Replay replay;
+    private final GamePlayScreen game;
+    private final KeyStates keys = new KeyStates();
+    private final int jumpFrames;
+    private int speed = 1;
+    private boolean paused = false;
+    // While paused, the game before the frame shown, which is played again every tick
+    private byte[] pausedState;
+
+    /**
+     * Constructs a new ReplayPlayer for a replay, with the game at the first frame of the replay.
+     *
+     * @param replay The replay.
+     * @param messageProps Properties containing in-game messages.
+     * @param jumpFrames The number of frames LEFT and RIGHT jump by.
+     * @throws IOException If the replay cannot be read.
+     */
+    public ReplayPlayer(Replay replay, Properties messageProps, int jumpFrames) throws IOException {
+        this.replay = replay;
+        this.jumpFrames = jumpFrames;
+        game = GamePlayScreen.restoreSnapshot(replay.readKeyframe(replay.getFirstFrame()),
+                playbackProperties(replay.getGameProperties()), messageProps);
+    }
+
+    /**
+     * Returns the game being played back.
+     *
+     * @return The game.
+     */
+    public GamePlayScreen getGame() {
+        return game;
+    }
+
+    /**
+     * Sets how many frames are played every tick.
+     *
+     * @param framesPerTick The number of frames, or 0 to play as many as the frame time allows.
+     */
+    public void setSpeed(int framesPerTick) {
+        speed = framesPerTick;
+    }
+
+    /**
+     * Pauses or carries on playing.
+     *
+     * @param paused true to pause, false to play.
+     */
+    public void setPaused(boolean paused) {
+        if (paused && !this.paused) {
+            pausedState = game.saveSnapshot();
+        } else if (!paused && this.paused) {
+            game.loadSnapshot(pausedState);
+        }
+        this.paused = paused;
+    }
+
+    /**
+     * Jumps to a frame: the next frame played is the one after it. Restores the keyframe at
+     * or before the frame and plays the frames after the keyframe without drawing them.
+     *
+     * @param frame The frame, which is kept within the replay.
+     */
+    public void seek(int frame) {
+        // A paused game shows the frame after the one it stands at
+        int target = Math.max(replay.getFirstFrame(), Math.min(frame, replay.getLastFrame() - 1));
+        try {
+            game.loadSnapshot(replay.readKeyframe(target));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        while (game.getFrameCounter() < target) {
+            step(false);
+        }
+        if (paused) {
+            pausedState = game.saveSnapshot();
+        }
+    }
+
+    /**
+     * Handles the playback keys and plays the frames of one tick, drawing the last of them.
+     * Playback pauses on the last frame of the replay.
+     *
+     * @param input The current mouse/keyboard input.
+     * @return true if the game ended, false otherwise.
+     */
+    public boolean update(Input input) {
+        handleKeys(input);
+        if (paused) {
+            game.loadSnapshot(pausedState);
+            return step(true);
+        }
+        long deadline = System.nanoTime() + UNLIMITED_NANOS;
+        int played = 0;
+        while (true) {
+            if (game.getFrameCounter() + 1 >= replay.getLastFrame()) {
+                setPaused(true);
+                return step(true);
+            }
+            played++;
+            boolean drawn = speed > 0 ? played >= speed : System.nanoTime() >= deadline;
+            if (step(drawn)) {
+                return true;
+            }
+            if (drawn) {
+                return false;
+            }
+        }
+    }
+
+    private void handleKeys(Input input) {
+        if (input.wasPressed(Keys.SPACE)) {
+            setPaused(!paused);
+        }
+        int jump = input.isDown(Keys.LEFT_SHIFT) ? Math.max(jumpFrames / 10, 1) : jumpFrames;
+        if (input.wasPressed(Keys.LEFT)) {
+            seek(game.getFrameCounter() - jump);
+        } else if (input.wasPressed(Keys.RIGHT)) {
+            seek(game.getFrameCounter() + jump);
+        }
+        for (int i = 0; i < SPEED_KEYS.length; i++) {
+            if (input.wasPressed(SPEED_KEYS[i])) {
+                speed = 1 << i;
+            }
+        }
+        if (input.wasPressed(Keys.NUM_0)) {
+            speed = 0;
+        }
+    }
+
+    // Plays the next frame with the keys it was recorded with
+    private boolean step(boolean render) {
+        byte mask;
+        try {
+            mask = replay.getKeys(game.getFrameCounter() + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (int i = 0; i < RECORDED_KEYS.length; i++) {
+            keys.set(RECORDED_KEYS[i], (mask & (1 << i)) != 0);
+        }
+        game.setRendering(render);
+        return game.update(keys);
+    }
+
+    // The game is played back as it was recorded, without recording or saving anything
+    private static Properties playbackProperties(Properties recorded) {
+        Properties props = new Properties();
+        props.putAll(recorded);
+        props.setProperty("gamePlay.replay.file", "");
+        props.setProperty("gamePlay.autosave.file", "");
+        props.setProperty("gamePlay.trace.file", "");
+        props.setProperty("gamePlay.eventLog", "");
+        props.setProperty("gamePlay.rewind.frames", "0");
+        props.setProperty("gameEnd.scoresFile", "");
+        return props;
+    }
+}
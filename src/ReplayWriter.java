@@ -0,0 +1,182 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The ReplayWriter class records a game to a replay file, which {@link Replay} reads back.
+ * A game is the same every time it is played from the same state with the same keys, so the
+ * file holds the keys held down in every frame, and every so many frames a keyframe, a whole
+ * snapshot of the game. A player jumps to any frame by restoring the keyframe before it and
+ * playing the few frames after it again, instead of playing the game from the start.
+ *
+ * The frames are written in chunks, each a keyframe followed by the keys of the frames after
+ * it, and the file ends with an index of the chunks. When the game is rewound, the chunks
+ * already written stay in the file and a new chunk starts from the frame rewound to, so a
+ * chunk stands for the frames from its keyframe until the next chunk that starts at or before
+ * them. Should the game stop without closing the file, the chunks can still be found by
+ * reading the file from the start.
+ *
+ * The file is laid out as follows:
+ * <pre>
+ *   int magic, int version, int keyframe interval,
+ *   int length and UTF-8 bytes of the game properties
+ *   chunks: int frame, int length and bytes of the snapshot after the frame,
+ *           int key count, then the keys of each frame after it as a byte
+ *   int -1, int chunk count, then int frame, int offset and int key count of each chunk,
+ *   int offset of the index, int magic
+ * </pre>
+ */
+public class ReplayWriter {
+    /** "STRP", the first and last int of a replay file. */
+    public static final int MAGIC = 0x53545250;
+    public static final int VERSION = 1;
+
+    private final DataOutputStream out;
+    private final int keyframeInterval;
+    private final List<int[]> index = new ArrayList<>();
+    private boolean failed = false;
+    private boolean closed = false;
+
+    // The chunk being recorded, written once it is full or superseded
+    private int chunkFrame = -1;
+    private byte[] keyframe;
+    private final byte[] keys;
+    private int keyCount = 0;
+
+    /**
+     * Constructs a new ReplayWriter writing to the given file.
+     *
+     * @param filename The name of the file, which is replaced.
+     * @param gameProps The properties the game is played with, recorded in the file so the
+     *                  game is played back the same way.
+     * @param keyframeInterval The number of frames between keyframes.
+     * @throws IOException If the file cannot be created.
+     */
+    public ReplayWriter(String filename, Properties gameProps, int keyframeInterval) throws IOException {
+        this.keyframeInterval = keyframeInterval;
+        keys = new byte[keyframeInterval];
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16));
+        StringWriter properties = new StringWriter();
+        gameProps.store(properties, null);
+        byte[] propertyBytes = properties.toString().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(keyframeInterval);
+        out.writeInt(propertyBytes.length);
+        out.write(propertyBytes);
+    }
+
+    /**
+     * Checks whether the first keyframe was recorded.
+     *
+     * @return true if the recording started, false otherwise.
+     */
+    public boolean isStarted() {
+        return keyframe != null;
+    }
+
+    /**
+     * Starts the recording from the given frame.
+     *
+     * @param frame The frame the game is on.
+     * @param snapshot The snapshot of the game after the frame.
+     */
+    public void start(int frame, byte[] snapshot) {
+        chunkFrame = frame;
+        keyframe = snapshot;
+        keyCount = 0;
+    }
+
+    /**
+     * Checks whether recording the given frame takes a snapshot of the game after it, which is
+     * the case every keyframe interval and for a frame the game was rewound to.
+     *
+     * @param frame The frame.
+     * @return true if {@link #record(int, byte, byte[])} needs a snapshot, false otherwise.
+     */
+    public boolean needsKeyframe(int frame) {
+        return isStarted() && (frame < chunkFrame || frame - chunkFrame == keyframeInterval);
+    }
+
+    /**
+     * Records the keys held down during a frame. A frame that does not follow the last frame
+     * recorded, as after a rewind, replaces the frames from it on.
+     *
+     * @param frame The frame.
+     * @param frameKeys The keys held down during the frame, as a bit mask.
+     * @param snapshot The snapshot of the game after the frame if {@link #needsKeyframe(int)}
+     *                 is true, or null.
+     */
+    public void record(int frame, byte frameKeys, byte[] snapshot) {
+        if (!isStarted() || closed) {
+            return;
+        }
+        if (frame <= chunkFrame) {
+            if (frame < chunkFrame) {
+                // The chunk being recorded is entirely in the frames rewound over
+                start(frame, snapshot);
+            } else {
+                keyCount = 0;
+            }
+            return;
+        }
+        keyCount = Math.min(keyCount, frame - chunkFrame - 1);
+        keys[keyCount++] = frameKeys;
+        if (keyCount == keyframeInterval) {
+            writeChunk();
+            start(frame, snapshot);
+        }
+    }
+
+    /**
+     * Writes the chunk being recorded and the index, and closes the file.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (isStarted()) {
+            writeChunk();
+        }
+        try {
+            int indexOffset = out.size();
+            out.writeInt(-1);
+            out.writeInt(index.size());
+            for (int[] chunk : index) {
+                out.writeInt(chunk[0]);
+                out.writeInt(chunk[1]);
+                out.writeInt(chunk[2]);
+            }
+            out.writeInt(indexOffset);
+            out.writeInt(MAGIC);
+            out.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void writeChunk() {
+        if (failed) {
+            return;
+        }
+        try {
+            index.add(new int[] {chunkFrame, out.size(), keyCount});
+            out.writeInt(chunkFrame);
+            out.writeInt(keyframe.length);
+            out.write(keyframe);
+            out.writeInt(keyCount);
+            out.write(keys, 0, keyCount);
+        } catch (IOException e) {
+            // A replay that cannot be written is given up rather than stopping the game
+            e.printStackTrace();
+            failed = true;
+        }
+    }
+}
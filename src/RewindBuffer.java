@@ -0,0 +1,335 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The RewindBuffer class keeps the recent history of a game as snapshots, one per frame, so the
+ * game can be stepped backwards. Frames are stored in groups: the first frame of a group is a
+ * keyframe holding the whole snapshot, and every other frame is a delta against the frame
+ * before it that only holds the bytes that changed.
+ * A delta compares the bytes at the same offsets of the two snapshots, so an entity added or
+ * removed shifts the bytes after it and they count as changed too. As every entity on the road
+ * moves each frame, a delta is about a quarter of a snapshot in play, whether or not the
+ * entities changed.
+ * Neither limit is ever gone over: before a frame is stored, whole groups are dropped from the
+ * old end until it fits. A group is closed early, and the frame stored as a new keyframe, once
+ * the group would take more than half the byte limit, so dropping the groups before it always
+ * makes room. A snapshot bigger than the byte limit is not kept at all.
+ * Along with each frame, the buffer keeps the keys held down during it, so a frame can be
+ * played again.
+ */
+public class RewindBuffer {
+    // Bookkeeping counted against the byte limit for every stored frame
+    private static final int FRAME_OVERHEAD = 32;
+
+    private final int maxFrames;
+    private final int keyframeInterval;
+    private final long maxBytes;
+    private final ArrayDeque<Group> groups = new ArrayDeque<>();
+    private long bytes = 0;
+    private int frames = 0;
+
+    // The latest snapshot, which the next delta is taken against
+    private byte[] latest;
+
+    // The frame decoded last, so scrubbing back one frame at a time decodes little
+    private int decodedFrame = -1;
+    private byte[] decoded;
+
+    private byte[] scratch = new byte[4096];
+
+    /**
+     * Constructs a new, empty RewindBuffer.
+     *
+     * @param maxFrames The largest number of frames kept.
+     * @param keyframeInterval The number of frames in a group, starting with a keyframe.
+     * @param maxBytes The largest amount of memory the stored frames may take.
+     */
+    public RewindBuffer(int maxFrames, int keyframeInterval, long maxBytes) {
+        this.maxFrames = maxFrames;
+        this.keyframeInterval = keyframeInterval;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Records the snapshot taken at the end of a frame and the keys held down during it.
+     * Frames are recorded in order; a frame that does not follow the newest frame starts the
+     * history over. The buffer keeps the snapshot, so it must not be changed afterwards.
+     *
+     * @param frame The frame number.
+     * @param keys The keys held down during the frame, as a bit mask.
+     * @param snapshot The snapshot of the game after the frame.
+     */
+    public void record(int frame, byte keys, byte[] snapshot) {
+        if (!groups.isEmpty() && frame != getNewestFrame() + 1) {
+            clear();
+        }
+        Group group = groups.peekLast();
+        byte[] delta = null;
+        if (group != null && group.size() < keyframeInterval) {
+            delta = encodeDelta(latest, snapshot);
+            if (group.bytes + delta.length + FRAME_OVERHEAD > maxBytes / 2) {
+                delta = null;
+            }
+        }
+        // Drop the oldest groups until the frame fits, keeping the group a delta belongs to;
+        // if only that group is left, the frame is stored as a keyframe instead
+        while (true) {
+            long size = (delta == null ? snapshot.length : delta.length) + FRAME_OVERHEAD;
+            int kept = delta == null ? 0 : 1;
+            while (groups.size() > kept && (frames + 1 > maxFrames || bytes + size > maxBytes)) {
+                Group oldest = groups.removeFirst();
+                bytes -= oldest.bytes;
+                frames -= oldest.size();
+            }
+            if (frames + 1 <= maxFrames && bytes + size <= maxBytes) {
+                break;
+            }
+            if (delta == null) {
+                clear();
+                return;
+            }
+            delta = null;
+        }
+
+        if (delta == null) {
+            group = new Group(frame, snapshot);
+            groups.addLast(group);
+            bytes += group.bytes;
+        } else {
+            group.deltas.add(delta);
+            group.bytes += delta.length + FRAME_OVERHEAD;
+            bytes += delta.length + FRAME_OVERHEAD;
+        }
+        group.keys[group.size() - 1] = keys;
+        latest = snapshot;
+        frames++;
+    }
+
+    /**
+     * Returns the snapshot recorded for a frame.
+     *
+     * @param frame The frame number, between the oldest and the newest frame.
+     * @return The snapshot of the game after the frame, which must not be changed.
+     */
+    public byte[] getSnapshot(int frame) {
+        Group group = groupOf(frame);
+        int offset = frame - group.firstFrame;
+        // Carry on from the frame decoded last when it is earlier in the same group
+        byte[] snapshot;
+        int from;
+        if (decoded != null && decodedFrame >= group.firstFrame && decodedFrame <= frame) {
+            snapshot = decoded;
+            from = decodedFrame - group.firstFrame;
+        } else {
+            snapshot = group.keyframe;
+            from = 0;
+        }
+        for (int i = from; i < offset; i++) {
+            snapshot = applyDelta(snapshot, group.deltas.get(i));
+        }
+        decoded = snapshot;
+        decodedFrame = frame;
+        return snapshot;
+    }
+
+    /**
+     * Returns the keys held down during a frame.
+     *
+     * @param frame The frame number, between the oldest and the newest frame.
+     * @return The keys, as a bit mask.
+     */
+    public byte getKeys(int frame) {
+        Group group = groupOf(frame);
+        return group.keys[frame - group.firstFrame];
+    }
+
+    /**
+     * Forgets every frame after the given frame, as when the game carries on from a frame
+     * it was rewound to.
+     *
+     * @param frame The newest frame to keep.
+     */
+    public void truncate(int frame) {
+        if (groups.isEmpty() || frame >= getNewestFrame()) {
+            return;
+        }
+        if (frame < getOldestFrame()) {
+            clear();
+            return;
+        }
+        byte[] snapshot = getSnapshot(frame);
+        while (groups.peekLast().firstFrame > frame) {
+            Group group = groups.removeLast();
+            bytes -= group.bytes;
+            frames -= group.size();
+        }
+        Group last = groups.peekLast();
+        while (last.firstFrame + last.size() - 1 > frame) {
+            byte[] delta = last.deltas.remove(last.deltas.size() - 1);
+            last.bytes -= delta.length + FRAME_OVERHEAD;
+            bytes -= delta.length + FRAME_OVERHEAD;
+            frames--;
+        }
+        latest = snapshot;
+        if (decodedFrame > frame) {
+            decoded = null;
+            decodedFrame = -1;
+        }
+    }
+
+    /**
+     * Forgets every frame.
+     */
+    public void clear() {
+        groups.clear();
+        bytes = 0;
+        frames = 0;
+        latest = null;
+        decoded = null;
+        decodedFrame = -1;
+    }
+
+    /**
+     * Returns the oldest frame still kept.
+     *
+     * @return The frame number, or -1 if the buffer is empty.
+     */
+    public int getOldestFrame() {
+        return groups.isEmpty() ? -1 : groups.peekFirst().firstFrame;
+    }
+
+    /**
+     * Returns the newest frame recorded.
+     *
+     * @return The frame number, or -1 if the buffer is empty.
+     */
+    public int getNewestFrame() {
+        if (groups.isEmpty()) {
+            return -1;
+        }
+        Group last = groups.peekLast();
+        return last.firstFrame + last.size() - 1;
+    }
+
+    /**
+     * Returns the memory taken by the stored frames.
+     *
+     * @return The number of bytes.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    private Group groupOf(int frame) {
+        if (frame < getOldestFrame() || frame > getNewestFrame()) {
+            throw new IllegalArgumentException("Frame " + frame + " is not in the rewind buffer");
+        }
+        // Recent frames are asked for most often, so search from the new end
+        Iterator<Group> iterator = groups.descendingIterator();
+        while (true) {
+            Group group = iterator.next();
+            if (group.firstFrame <= frame) {
+                return group;
+            }
+        }
+    }
+
+    /*
+     * A delta is the length of the new snapshot followed by pairs of runs: a run of bytes that
+     * are the same as in the previous snapshot, and a run of bytes that changed, given in full.
+     * Run lengths are written as variable-length integers.
+     */
+    private byte[] encodeDelta(byte[] previous, byte[] next) {
+        int size = 0;
+        size = putVarInt(size, next.length);
+        int common = Math.min(previous.length, next.length);
+        int i = 0;
+        while (i < next.length) {
+            int start = i;
+            while (i < common && previous[i] == next[i]) {
+                i++;
+            }
+            int same = i - start;
+            start = i;
+            // A changed run ends at the first few bytes in a row that are the same again,
+            // since splitting it for fewer costs more than it saves
+            while (i < next.length && !(i + 2 < common && previous[i] == next[i]
+                    && previous[i + 1] == next[i + 1] && previous[i + 2] == next[i + 2])) {
+                i++;
+            }
+            int changed = i - start;
+            size = putVarInt(size, same);
+            size = putVarInt(size, changed);
+            ensureScratch(size + changed);
+            System.arraycopy(next, start, scratch, size, changed);
+            size += changed;
+        }
+        return Arrays.copyOf(scratch, size);
+    }
+
+    private static byte[] applyDelta(byte[] previous, byte[] delta) {
+        int[] position = {0};
+        byte[] next = new byte[getVarInt(delta, position)];
+        int i = 0;
+        while (position[0] < delta.length) {
+            int same = getVarInt(delta, position);
+            System.arraycopy(previous, i, next, i, same);
+            i += same;
+            int changed = getVarInt(delta, position);
+            System.arraycopy(delta, position[0], next, i, changed);
+            position[0] += changed;
+            i += changed;
+        }
+        return next;
+    }
+
+    private int putVarInt(int size, int value) {
+        ensureScratch(size + 5);
+        while ((value & ~0x7F) != 0) {
+            scratch[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        scratch[size++] = (byte) value;
+        return size;
+    }
+
+    private static int getVarInt(byte[] data, int[] position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[position[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private void ensureScratch(int size) {
+        if (size > scratch.length) {
+            scratch = Arrays.copyOf(scratch, Math.max(size, scratch.length * 2));
+        }
+    }
+
+    private class Group {
+        private final int firstFrame;
+        private final byte[] keyframe;
+        private final List<byte[]> deltas = new ArrayList<>();
+        private final byte[] keys = new byte[keyframeInterval];
+        // The memory taken by the keyframe and the deltas
+        private long bytes;
+
+        private Group(int firstFrame, byte[] keyframe) {
+            this.firstFrame = firstFrame;
+            this.keyframe = keyframe;
+            bytes = keyframe.length + FRAME_OVERHEAD;
+        }
+
+        private int size() {
+            return deltas.size() + 1;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+import bagel.util.Point;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * The RidePool class manages the trips of the passengers riding in the taxi. The taxi can carry
+ * up to a fixed number of passengers at once, each with their own Trip and TripEndFlag.
+ * Flags are looked up by passenger in an identity-keyed map. The flags still waiting for a
+ * drop-off are also kept ordered by road position (screen y minus the scrolled distance), so
+ * finding the flags the taxi has reached costs O(log n) plus the number of drop-offs.
+ */
+public class RidePool {
+    // Covers the rounding difference between a flag's y and the scrolled distance
+    private static final double EPSILON = 1;
+
+    private final int capacity;
+    private final List<Trip> activeTrips = new ArrayList<>();
+    private final Map<Passenger, TripEndFlag> flags = new IdentityHashMap<>();
+    private final Map<TripEndFlag, FlagEntry> pendingEntries = new IdentityHashMap<>();
+    private final NavigableSet<FlagEntry> pendingFlags = new TreeSet<>();
+    private final List<Passenger> droppedPassengers = new ArrayList<>();
+    private final FlagEntry probe = new FlagEntry(null, null, 0, Integer.MIN_VALUE);
+    private double scrolled = 0;
+    private int nextOrder = 0;
+
+    /**
+     * Constructs a new RidePool for a taxi with the given number of passenger seats.
+     *
+     * @param capacity The maximum number of passengers riding at once.
+     */
+    public RidePool(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns whether another passenger can be picked up.
+     *
+     * @return true if a seat is free, false otherwise.
+     */
+    public boolean hasFreeSeat() {
+        return activeTrips.size() < capacity;
+    }
+
+    /**
+     * Starts a trip for a passenger who just got into the taxi.
+     *
+     * @param trip The passenger's trip.
+     * @param flag The flag marking the end of the trip.
+     */
+    public void startTrip(Trip trip, TripEndFlag flag) {
+        activeTrips.add(trip);
+        flags.put(trip.getPassenger(), flag);
+        FlagEntry entry = new FlagEntry(trip, flag, flag.getY() - scrolled, nextOrder++);
+        pendingEntries.put(flag, entry);
+        pendingFlags.add(entry);
+    }
+
+    /**
+     * Puts back a dropped passenger who was still walking to their flag, as when a saved
+     * game is restored.
+     *
+     * @param passenger The dropped passenger.
+     * @param flag The flag the passenger walks to.
+     */
+    public void restoreDroppedPassenger(Passenger passenger, TripEndFlag flag) {
+        flags.put(passenger, flag);
+        droppedPassengers.add(passenger);
+    }
+
+    /**
+     * Ends every trip and forgets every flag, as when a saved game is restored in place of
+     * the current one.
+     */
+    public void clear() {
+        activeTrips.clear();
+        flags.clear();
+        pendingEntries.clear();
+        pendingFlags.clear();
+        droppedPassengers.clear();
+        scrolled = 0;
+        nextOrder = 0;
+    }
+
+    /**
+     * Records that the road, and every flag with it, moved down the screen.
+     *
+     * @param speed The distance moved down.
+     */
+    public void scroll(double speed) {
+        scrolled += speed;
+    }
+
+    /**
+     * Finds the trips whose passenger is in the taxi and whose flag the taxi has reached,
+     * either by being within the flag's radius or by having driven past it.
+     *
+     * @param taxiPosition The position of the taxi.
+     * @param flagRadius The radius of the trip end flags.
+     * @param arrived The list to add the arrived trips to, ordered by flag position.
+     */
+    public void findArrivals(Point taxiPosition, double flagRadius, List<Trip> arrived) {
+        // Every flag below the top of the taxi's reach has been reached
+        probe.roadY = taxiPosition.y - scrolled - flagRadius - EPSILON;
+        for (FlagEntry entry : pendingFlags.tailSet(probe, true)) {
+            if (entry.trip.getPassenger().isInTaxi() && entry.flag.atFlag(taxiPosition)) {
+                arrived.add(entry.trip);
+            }
+        }
+    }
+
+    /**
+     * Ends a trip once its passenger has been dropped off. The passenger then walks to their flag.
+     *
+     * @param trip The completed trip.
+     */
+    public void dropOff(Trip trip) {
+        activeTrips.remove(trip);
+        FlagEntry entry = pendingEntries.remove(flags.get(trip.getPassenger()));
+        if (entry != null) {
+            pendingFlags.remove(entry);
+        }
+        droppedPassengers.add(trip.getPassenger());
+    }
+
+    /**
+     * Moves every dropped passenger towards their flag, and removes the flags that were reached.
+     *
+     * @param arrived The list to add the passengers who reached their flag this frame to.
+     */
+    public void moveDroppedPassengers(List<Passenger> arrived) {
+        Iterator<Passenger> iterator = droppedPassengers.iterator();
+        while (iterator.hasNext()) {
+            Passenger passenger = iterator.next();
+            TripEndFlag flag = flags.get(passenger);
+            passenger.moveToEndFlag(flag.getPosition());
+            if (passenger.reachedFlag(flag.getPosition())) {
+                flags.remove(passenger); // Remove the flag once reached
+                iterator.remove();
+                arrived.add(passenger);
+            }
+        }
+    }
+
+    /**
+     * Returns the dropped passengers still walking to their flags.
+     *
+     * @return A read-only view of the walking passengers.
+     */
+    public List<Passenger> getDroppedPassengers() {
+        return Collections.unmodifiableList(droppedPassengers);
+    }
+
+    /**
+     * Returns the flag marking the end of the given passenger's trip.
+     *
+     * @param passenger The passenger.
+     * @return The passenger's flag, or null if they have no trip or already reached it.
+     */
+    public TripEndFlag getFlag(Passenger passenger) {
+        return flags.get(passenger);
+    }
+
+    /**
+     * Returns every flag on the road, including those of dropped passengers still walking to them.
+     *
+     * @return The flags.
+     */
+    public Collection<TripEndFlag> getFlags() {
+        return flags.values();
+    }
+
+    /**
+     * Returns the trips in progress, in the order the passengers were picked up.
+     *
+     * @return A read-only view of the active trips.
+     */
+    public List<Trip> getActiveTrips() {
+        return Collections.unmodifiableList(activeTrips);
+    }
+
+    /**
+     * Returns the trip of the passenger picked up most recently, if any is in progress.
+     *
+     * @return The latest trip, or null if no trip is in progress.
+     */
+    public Trip getLatestTrip() {
+        return activeTrips.isEmpty() ? null : activeTrips.get(activeTrips.size() - 1);
+    }
+
+    /**
+     * Returns the maximum number of passengers riding at once.
+     *
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private static class FlagEntry implements Comparable<FlagEntry> {
+        private final Trip trip;
+        private final TripEndFlag flag;
+        private final int order;
+        private double roadY;
+
+        private FlagEntry(Trip trip, TripEndFlag flag, double roadY, int order) {
+            this.trip = trip;
+            this.flag = flag;
+            this.roadY = roadY;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(FlagEntry other) {
+            int byY = Double.compare(roadY, other.roadY);
+            return byY != 0 ? byY : Integer.compare(order, other.order);
+        }
+    }
+}
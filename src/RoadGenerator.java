@@ -0,0 +1,201 @@
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The RoadGenerator class makes up an endless road one chunk at a time: each chunk is a stretch
+ * of road of a fixed length with its own passengers, coins, invincible powers and weather, laid
+ * out as rows of the world and weather files and parsed into a {@link WorldTemplate}.
+ * A chunk depends only on the seed and its number, so the same seed always gives the same road,
+ * and a chunk dropped from memory can be made again exactly as it was.
+ * A worker thread makes the chunks ahead of the one the game needs next, and the chunks behind
+ * it are dropped, so only a few chunks are ever held however long the game goes on.
+ *
+ * Chunk k covers the road from k chunk lengths to k + 1 chunk lengths ahead of the top of the
+ * window at the start of the game, so its entities have y-coordinates between -(k + 1) times and
+ * -k times the chunk length, as if the world file went on forever. Its weather row covers the
+ * same stretch, by distance rather than by frame.
+ */
+public class RoadGenerator {
+    // Spreads the chunk numbers over the seed's bits
+    private static final long CHUNK_MIX = 0x9E3779B97F4A7C15L;
+
+    private final long seed;
+    private final double chunkLength;
+    private final int chunksAhead;
+    private final int passengers;
+    private final int coins;
+    private final int powers;
+    private final double rainChance;
+    private final String[] passengerXs;
+    private final int minYDistance;
+    private final int maxYDistance;
+    private final double[] laneCenters;
+    private final Map<Integer, WorldTemplate> chunks = new ConcurrentHashMap<>();
+    private final Thread thread;
+    private volatile int first = 0;
+    private volatile boolean running = true;
+    private int misses = 0;
+
+    /**
+     * Constructs a new RoadGenerator for the given seed, and starts its thread.
+     *
+     * @param gameProps Properties containing the chunk settings and the lane centres.
+     * @param seed The seed of the road.
+     */
+    public RoadGenerator(Properties gameProps, long seed) {
+        this.seed = seed;
+        chunkLength = Double.parseDouble(gameProps.getProperty("endless.chunkLength"));
+        chunksAhead = Integer.parseInt(gameProps.getProperty("endless.chunksAhead"));
+        passengers = Integer.parseInt(gameProps.getProperty("endless.passengers"));
+        coins = Integer.parseInt(gameProps.getProperty("endless.coins"));
+        powers = Integer.parseInt(gameProps.getProperty("endless.powers"));
+        rainChance = Double.parseDouble(gameProps.getProperty("endless.rainChance"));
+        passengerXs = gameProps.getProperty("endless.passenger.x").split(",");
+        String[] yDistances = gameProps.getProperty("endless.passenger.yDistance").split(",");
+        minYDistance = Integer.parseInt(yDistances[0]);
+        maxYDistance = Integer.parseInt(yDistances[1]);
+        laneCenters = new double[Integer.parseInt(gameProps.getProperty("roadLanes.count"))];
+        for (int i = 0; i < laneCenters.length; i++) {
+            laneCenters[i] = Double.parseDouble(gameProps.getProperty("roadLaneCenter" + (i + 1)));
+        }
+        thread = new Thread(this::run, "road-generator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns a chunk of the road. A chunk the worker has not made yet is made on the spot,
+     * which counts as a miss.
+     *
+     * @param index The number of the chunk.
+     * @return The chunk.
+     */
+    public WorldTemplate getChunk(int index) {
+        // A chunk behind the ones held, as after a rewind, is not kept
+        if (index < first) {
+            misses++;
+            return generate(index);
+        }
+        WorldTemplate chunk = chunks.get(index);
+        if (chunk == null) {
+            misses++;
+            chunk = generate(index);
+            WorldTemplate made = chunks.putIfAbsent(index, chunk);
+            if (made != null) {
+                chunk = made;
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Drops the chunks before the given one and lets the worker make the chunks up to the
+     * given number of chunks ahead of it.
+     *
+     * @param index The number of the first chunk still needed.
+     */
+    public void advance(int index) {
+        if (index == first) {
+            return;
+        }
+        first = index;
+        chunks.keySet().removeIf(k -> k < index);
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Returns the length of a chunk.
+     *
+     * @return The length, in pixels of road.
+     */
+    public double getChunkLength() {
+        return chunkLength;
+    }
+
+    /**
+     * Returns the number of chunks the worker had not made in time.
+     *
+     * @return The number of misses.
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of chunks held.
+     *
+     * @return The number of chunks.
+     */
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * Stops the thread.
+     */
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    private void run() {
+        while (running) {
+            int from = first;
+            boolean made = false;
+            for (int k = from; k <= from + chunksAhead && running && from == first; k++) {
+                if (!chunks.containsKey(k)) {
+                    chunks.putIfAbsent(k, generate(k));
+                    made = true;
+                }
+            }
+            // A chunk made just as the game moved past it is dropped again
+            if (from != first) {
+                chunks.keySet().removeIf(k -> k < first);
+            } else if (!made) {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    private WorldTemplate generate(int index) {
+        SeededRandom random = new SeededRandom(seed ^ (index + 1) * CHUNK_MIX);
+        double bottom = -index * chunkLength;
+        String[][] world = new String[passengers + coins + powers][];
+        int row = 0;
+
+        // Passengers are spread along the chunk, one to each equal part of it
+        double part = chunkLength / Math.max(passengers, 1);
+        for (int i = 0; i < passengers; i++) {
+            double y = bottom - part * (i + 0.1 + 0.8 * random.nextDouble());
+            world[row++] = new String[] {"PASSENGER",
+                    passengerXs[random.nextInt(passengerXs.length)],
+                    format(y),
+                    Integer.toString(1 + random.nextInt(3)),
+                    passengerXs[random.nextInt(passengerXs.length)],
+                    Integer.toString(minYDistance + random.nextInt(maxYDistance - minYDistance + 1)),
+                    Integer.toString(random.nextInt(2))};
+        }
+        for (int i = 0; i < coins; i++) {
+            world[row++] = item("COIN", random, bottom);
+        }
+        for (int i = 0; i < powers; i++) {
+            world[row++] = item("INVINCIBLE_POWER", random, bottom);
+        }
+
+        String[][] weather = {{random.nextDouble() < rainChance ? "RAINING" : "SUNNY",
+                format(index * chunkLength), format((index + 1) * chunkLength)}};
+        return WorldTemplate.fromRows(world, weather);
+    }
+
+    private String[] item(String type, SeededRandom random, double bottom) {
+        return new String[] {type,
+                format(laneCenters[random.nextInt(laneCenters.length)]),
+                format(bottom - chunkLength * random.nextDouble())};
+    }
+
+    private static String format(double value) {
+        return Integer.toString((int) Math.round(value));
+    }
+}
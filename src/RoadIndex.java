@@ -0,0 +1,164 @@
+import bagel.util.Point;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * The RoadIndex class keeps entities that stand still on the road in an index sorted by their
+ * y-coordinate, so the entities near a point or within a band of the screen can be found in
+ * logarithmic time instead of checking every entity in the world each frame.
+ * Entities are stored by their road position (screen y minus the distance the road has
+ * scrolled), which stays the same while the road scrolls and only changes when an entity
+ * moves by itself.
+ *
+ * @param <T> The type of entity in the index.
+ */
+public class RoadIndex<T extends GameEntity> {
+    // Covers the rounding difference between an entity's y and the scrolled distance
+    private static final double EPSILON = 1;
+
+    private final NavigableSet<Entry<T>> entities = new TreeSet<>();
+    private final Map<T, Entry<T>> entries = new IdentityHashMap<>();
+    private final Entry<T> lowProbe = new Entry<>(null, 0, Integer.MIN_VALUE);
+    private final Entry<T> highProbe = new Entry<>(null, 0, Integer.MAX_VALUE);
+    private double scrolled = 0;
+    private int nextOrder = 0;
+    // The entities within the band of a search, tested against its radius in one batch
+    private final List<T> candidates = new ArrayList<>();
+    private final CollisionKernel kernel = new CollisionKernel();
+
+    /**
+     * Adds an entity to the index. Entities found together by
+     * {@link #findNear(Point, double, List)} are returned in the order they were added.
+     *
+     * @param entity The entity to add.
+     */
+    public void add(T entity) {
+        Entry<T> entry = new Entry<>(entity, entity.getY() - scrolled, nextOrder++);
+        entries.put(entity, entry);
+        entities.add(entry);
+    }
+
+    /**
+     * Removes an entity from the index.
+     *
+     * @param entity The entity to remove.
+     */
+    public void remove(T entity) {
+        Entry<T> entry = entries.remove(entity);
+        if (entry != null) {
+            entities.remove(entry);
+        }
+    }
+
+    /**
+     * Re-indexes an entity after it moved by itself.
+     *
+     * @param entity The entity that moved.
+     */
+    public void moved(T entity) {
+        Entry<T> entry = entries.get(entity);
+        if (entry != null) {
+            entities.remove(entry);
+            entry.roadY = entity.getY() - scrolled;
+            entities.add(entry);
+        }
+    }
+
+    /**
+     * Records that the road, and every entity in the index with it, moved down the screen.
+     *
+     * @param speed The distance moved down.
+     */
+    public void scroll(double speed) {
+        scrolled += speed;
+    }
+
+    /**
+     * Finds the entities within the given distance of a position.
+     *
+     * @param position The position to search around.
+     * @param radius The search radius.
+     * @param found The list to add the entities to, in the order they were added to the index.
+     */
+    public void findNear(Point position, double radius, List<T> found) {
+        int first = found.size();
+        candidates.clear();
+        kernel.clear();
+        for (Entry<T> entry : between(position.y - radius, position.y + radius)) {
+            candidates.add(entry.entity);
+            kernel.add(entry.entity.getX(), entry.entity.getY(), radius);
+        }
+        kernel.test(position.x, position.y);
+        for (int i = 0; i < candidates.size(); i++) {
+            if (kernel.isHit(i)) {
+                found.add(candidates.get(i));
+            }
+        }
+        if (found.size() - first > 1) {
+            found.subList(first, found.size()).sort((a, b) -> Integer.compare(entries.get(a).order, entries.get(b).order));
+        }
+    }
+
+    /**
+     * Performs an action for every entity whose y-coordinate lies within a band of the screen,
+     * from the top of the band down.
+     *
+     * @param top The screen y-coordinate of the top of the band.
+     * @param bottom The screen y-coordinate of the bottom of the band.
+     * @param action The action to perform.
+     */
+    public void forEachBetween(double top, double bottom, Consumer<? super T> action) {
+        for (Entry<T> entry : between(top, bottom)) {
+            action.accept(entry.entity);
+        }
+    }
+
+    /**
+     * Removes every entity from the index.
+     */
+    public void clear() {
+        entities.clear();
+        entries.clear();
+        scrolled = 0;
+        nextOrder = 0;
+    }
+
+    /**
+     * Returns the number of entities in the index.
+     *
+     * @return The number of entities.
+     */
+    public int size() {
+        return entities.size();
+    }
+
+    private NavigableSet<Entry<T>> between(double top, double bottom) {
+        lowProbe.roadY = top - scrolled - EPSILON;
+        highProbe.roadY = bottom - scrolled + EPSILON;
+        return entities.subSet(lowProbe, true, highProbe, true);
+    }
+
+    private static class Entry<T> implements Comparable<Entry<T>> {
+        private final T entity;
+        private final int order;
+        private double roadY;
+
+        private Entry(T entity, double roadY, int order) {
+            this.entity = entity;
+            this.roadY = roadY;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Entry<T> other) {
+            int byY = Double.compare(roadY, other.roadY);
+            return byY != 0 ? byY : Integer.compare(order, other.order);
+        }
+    }
+}
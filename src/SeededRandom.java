@@ -0,0 +1,73 @@
+import java.util.Random;
+
+/**
+ * The SeededRandom class is a random number generator whose state can be read and restored,
+ * so a saved game carries on with the same random events it would have had.
+ * It produces exactly the same numbers as java.util.Random for the same seed, using the same
+ * 48-bit linear congruential generator, but keeps the generator's state in a field of its own.
+ */
+public class SeededRandom extends Random {
+    private static final long serialVersionUID = 1L;
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    private long state;
+
+    /**
+     * Constructs a new SeededRandom with a seed that is different on every call.
+     */
+    public SeededRandom() {
+        this(new Random().nextLong());
+    }
+
+    /**
+     * Constructs a new SeededRandom with the given seed.
+     *
+     * @param seed The initial seed.
+     */
+    public SeededRandom(long seed) {
+        super(seed);
+    }
+
+    /**
+     * Resets the generator to the given seed, as java.util.Random does.
+     *
+     * @param seed The new seed.
+     */
+    @Override
+    public synchronized void setSeed(long seed) {
+        super.setSeed(seed);
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    /**
+     * Generates the next random number with the given number of random bits.
+     *
+     * @param bits The number of random bits.
+     * @return The next random number.
+     */
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    /**
+     * Returns the internal state of the generator.
+     *
+     * @return The state.
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Restores the internal state of the generator, as returned by {@link #getState()}.
+     *
+     * @param state The state.
+     */
+    public void setState(long state) {
+        this.state = state & MASK;
+    }
+}
@@ -1,4 +1,5 @@
 import bagel.*;
+import java.io.IOException;
 import java.util.Properties;
 
 /**
@@ -12,16 +13,28 @@ public class ShadowTaxi extends AbstractGame {
 
     // Game Screens
     private final HomeScreen homeScreen;
+    private final AssetPreloader preloader;
     private PlayerInfoScreen playerInfoScreen;
     private GamePlayScreen gamePlayScreen;
     private GameEndScreen gameEndScreen;
+    private ReplayPlayer replayPlayer;
 
     private enum ScreenState {
-        HOME, PLAYER_INFO, GAME_PLAY, GAME_END
+        HOME, PLAYER_INFO, GAME_PLAY, REPLAY, GAME_END
     }
 
     private ScreenState currentScreen;
 
+    // Scripted driver for the game play screen, or null when the player drives
+    private final Autopilot autopilot;
+    private final KeyStates autopilotKeys = new KeyStates();
+
+    // Notices changes to the properties and world files, or null when they are not watched
+    private ConfigWatcher configWatcher;
+    // Changes held back while the game in progress is recorded to a replay
+    private Properties heldProperties;
+    private WorldTemplate heldWorld;
+
     /**
      * Constructs a new ShadowTaxi game instance with the given game and message properties.
      * Initializes the home screen and sets the initial screen state to HOME.
@@ -30,15 +43,31 @@ public class ShadowTaxi extends AbstractGame {
      * @param messageProps Properties related to in-game messages such as screen titles.
      */
     public ShadowTaxi(Properties gameProps, Properties messageProps) {
+        this(gameProps, messageProps, null);
+    }
+
+    /**
+     * Constructs a new ShadowTaxi game instance whose game play is driven by the given autopilot
+     * instead of the keyboard. Used to generate realistic load for performance tests.
+     *
+     * @param gameProps Properties related to the game such as window size.
+     * @param messageProps Properties related to in-game messages such as screen titles.
+     * @param autopilot The autopilot that drives the taxi, or null to drive with the keyboard.
+     */
+    public ShadowTaxi(Properties gameProps, Properties messageProps, Autopilot autopilot) {
         super(Integer.parseInt(gameProps.getProperty("window.width")),
                 Integer.parseInt(gameProps.getProperty("window.height")),
                 messageProps.getProperty("home.title"));
 
         this.GAME_PROPS = gameProps;
         this.MESSAGE_PROPS = messageProps;
+        this.autopilot = autopilot;
 
-        // Initialize game screens
+        // Initialize game screens. The assets of the other screens are loaded in the background
+        // while the home screen shows
         homeScreen = new HomeScreen(gameProps, messageProps);
+        preloader = new AssetPreloader(gameProps);
+        preloader.start();
 
         // Start at the home screen
         currentScreen = ScreenState.HOME;
@@ -53,10 +82,25 @@ public class ShadowTaxi extends AbstractGame {
     protected void
     update(Input input) {
         if (input.wasPressed(Keys.ESCAPE)){
+            // A game in progress is saved so it can be restored later
+            if (currentScreen == ScreenState.GAME_PLAY) {
+                gamePlayScreen.suspend();
+            }
+            if (configWatcher != null) {
+                configWatcher.close();
+            }
+            // The scores of the games played are saved before the window goes
+            Leaderboard.closeAll();
             Window.close();
+            // No more frames are played, so the autosave just written stays
+            return;
         }
+        applyConfigChanges();
 
         // Switch between game screens
+        if (!preloader.isDone()) {
+            preloader.uploadSome();
+        }
         switch (currentScreen) {
             case HOME:
                 // Render the HomeScreen. Checks if ENTER is pressed. If so, switch to Player Info
@@ -69,13 +113,14 @@ public class ShadowTaxi extends AbstractGame {
             case PLAYER_INFO:
                 // Render the Player Info Screen. Checks if ENTER is pressed. If so, switch to Game Play Screen
                 if (playerInfoScreen.update(input)) {
+                    preloader.finish();
                     gamePlayScreen = new GamePlayScreen(GAME_PROPS, MESSAGE_PROPS, playerInfoScreen.getPlayerName());
                     currentScreen = ScreenState.GAME_PLAY;
                 }
                 break;
 
             case GAME_PLAY:
-                if (gamePlayScreen.update(input)) {
+                if (updateGamePlay(input)) {
                     // Render the Game Play Screen and handle the game end and transition to the Game End Screen
                     boolean won = gamePlayScreen.didPlayerWin();
                     gameEndScreen = new GameEndScreen(GAME_PROPS, MESSAGE_PROPS, won);
@@ -83,6 +128,15 @@ public class ShadowTaxi extends AbstractGame {
                 }
                 break;
 
+            case REPLAY:
+                // Play the replay back, and show how the game ended once it is over
+                if (replayPlayer.update(input)) {
+                    boolean won = replayPlayer.getGame().didPlayerWin();
+                    gameEndScreen = new GameEndScreen(GAME_PROPS, MESSAGE_PROPS, won);
+                    currentScreen = ScreenState.GAME_END;
+                }
+                break;
+
             case GAME_END:
                 // Render the Game End Screen. If SPACE is pressed, go back to the Home Screen
                 if (gameEndScreen.update(input)) {
@@ -92,16 +146,144 @@ public class ShadowTaxi extends AbstractGame {
         }
     }
 
+    /**
+     * Restores a saved game from a snapshot file and goes straight to the game play screen.
+     * If the file cannot be restored, the game starts at the home screen as usual.
+     *
+     * @param snapshotFile The name of the snapshot file.
+     */
+    public void restoreGame(String snapshotFile) {
+        byte[] snapshot = IOUtils.readBytesFromFile(snapshotFile);
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            gamePlayScreen = GamePlayScreen.restoreSnapshot(snapshot, GAME_PROPS, MESSAGE_PROPS);
+            currentScreen = ScreenState.GAME_PLAY;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Plays a recorded game back from a replay file, from the given frame, and goes straight to
+     * the replay. If the file cannot be read, the game starts at the home screen as usual.
+     *
+     * @param replayFile The name of the replay file.
+     * @param frame The frame to start from.
+     */
+    public void playReplay(String replayFile, int frame) {
+        try {
+            Replay replay = new Replay(replayFile);
+            replayPlayer = new ReplayPlayer(replay, MESSAGE_PROPS,
+                    Integer.parseInt(GAME_PROPS.getProperty("gamePlay.replay.jumpFrames")));
+            replayPlayer.seek(frame);
+            currentScreen = ScreenState.REPLAY;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Watches the game properties file and the world and weather files it names, and applies
+     * their changes while the game runs: to the game in progress between two frames, and to
+     * every game after. A game recorded to a replay is left as it started, and the changes
+     * wait for the next game.
+     *
+     * @param propertiesFile The name of the game properties file.
+     */
+    public void watchConfig(String propertiesFile) {
+        try {
+            configWatcher = new ConfigWatcher(propertiesFile, GAME_PROPS);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void applyConfigChanges() {
+        if (configWatcher == null) {
+            return;
+        }
+        ConfigWatcher.Changes changes = configWatcher.poll();
+        if (changes != null) {
+            if (changes.getGameProperties() != null) {
+                if (heldProperties == null) {
+                    heldProperties = new Properties();
+                }
+                heldProperties.putAll(changes.getGameProperties());
+            }
+            if (changes.getWorld() != null) {
+                heldWorld = changes.getWorld();
+            }
+        }
+        if (heldProperties == null && heldWorld == null) {
+            return;
+        }
+        // A replay holds the properties the game started with and plays it back with them, so
+        // the game it records carries on unchanged and the changes wait for the next game
+        boolean playing = currentScreen == ScreenState.GAME_PLAY;
+        if (playing && gamePlayScreen.isRecordingReplay()) {
+            if (changes != null) {
+                System.out.println("The changes apply from the next game, as this one is recorded to a replay");
+            }
+            return;
+        }
+        if (heldProperties != null) {
+            // Keys are only added or replaced, so a removed key keeps its old value
+            GAME_PROPS.putAll(heldProperties);
+            heldProperties = null;
+            if (playing) {
+                gamePlayScreen.applySettings();
+            }
+        }
+        if (heldWorld != null) {
+            WorldTemplate.put(GAME_PROPS, heldWorld);
+            if (playing) {
+                gamePlayScreen.applyWorld(heldWorld);
+            }
+            heldWorld = null;
+        }
+    }
+
+    private boolean updateGamePlay(Input input) {
+        if (autopilot == null) {
+            return gamePlayScreen.update(input);
+        }
+        autopilotKeys.clear();
+        autopilot.decide(gamePlayScreen, autopilotKeys);
+        return gamePlayScreen.update(autopilotKeys);
+    }
+
     /**
      * The main method for launching the game.
      * Reads the game and message properties files and starts the game loop.
+     * Passing "--autopilot" (optionally followed by an Autopilot class name) lets
+     * the autopilot drive the taxi. Passing "--restore" (optionally followed by a snapshot
+     * file, the autosave file by default) carries on with a saved game. Passing "--replay"
+     * followed by a replay file (and optionally a frame to start from) plays a recorded game back.
+     * With hot reload turned on, the properties and world files are read again when they change.
      *
      * @param args Command-line arguments.
      */
     public static void main(String[] args) {
         Properties game_props = IOUtils.readPropertiesFile("res/app.properties");
         Properties message_props = IOUtils.readPropertiesFile("res/message_en.properties");
-        ShadowTaxi game = new ShadowTaxi(game_props, message_props);
+        Autopilot autopilot = null;
+        if (args.length > 0 && args[0].equals("--autopilot")) {
+            autopilot = Autopilot.forName(args.length > 1 ? args[1] : ReferenceAutopilot.class.getName());
+        }
+        ShadowTaxi game = new ShadowTaxi(game_props, message_props, autopilot);
+        if (args.length > 0 && args[0].equals("--restore")) {
+            game.restoreGame(args.length > 1 ? args[1] : game_props.getProperty("gamePlay.autosave.file"));
+        }
+        if (args.length > 1 && args[0].equals("--replay")) {
+            game.playReplay(args[1], args.length > 2 ? Integer.parseInt(args[2]) : 0);
+        }
+        if (Boolean.parseBoolean(game_props.getProperty("hotReload.enabled"))) {
+            game.watchConfig("res/app.properties");
+        }
+        // Closing the window does not go through ESC, so the scores are also saved on exit
+        Runtime.getRuntime().addShutdownHook(new Thread(Leaderboard::closeAll));
         game.run();
     }
 }
@@ -0,0 +1,92 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * The SnapshotBenchmark class is a command-line benchmark of game snapshots. It plays a headless
+ * seeded session driven by the reference autopilot with a raised car spawn rate, so thousands of
+ * entities are on the road, then reports the size of a snapshot and the cost of saving and
+ * restoring it. It also checks that a restored game saves the same snapshot and plays on to
+ * the same end as the game it was saved from.
+ *
+ * Usage:
+ *   java SnapshotBenchmark [frames] [car spawn rate] [seed]
+ */
+public class SnapshotBenchmark {
+    private static final int REPEATS = 200;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Optional number of frames to play before saving, car spawn rate and seed.
+     */
+    public static void main(String[] args) throws IOException {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+        String spawnRate = args.length > 1 ? args[1] : "2";
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+
+        Assets.setHeadless(true);
+        Properties gameProps = IOUtils.readPropertiesFile("res/app.properties");
+        Properties messageProps = IOUtils.readPropertiesFile("res/message_en.properties");
+        gameProps.setProperty("gameObjects.otherCar.spawnRate", spawnRate);
+
+        GamePlayScreen game = new GamePlayScreen(gameProps, messageProps, "BENCHMARK", seed);
+        Autopilot autopilot = new ReferenceAutopilot();
+        KeyStates keys = new KeyStates();
+        boolean over = false;
+        while (!over && game.getFrameCounter() < frames) {
+            over = play(game, autopilot, keys);
+        }
+        if (over) {
+            System.out.println("The game ended on frame " + game.getFrameCounter() + ", try fewer frames");
+            return;
+        }
+
+        byte[] snapshot = game.saveSnapshot();
+        long saveNanos = 0;
+        long restoreNanos = 0;
+        // The first round only warms up
+        for (int round = 0; round < 2; round++) {
+            saveNanos = 0;
+            restoreNanos = 0;
+            for (int i = 0; i < REPEATS; i++) {
+                long start = System.nanoTime();
+                game.saveSnapshot();
+                saveNanos += System.nanoTime() - start;
+                start = System.nanoTime();
+                GamePlayScreen.restoreSnapshot(snapshot, gameProps, messageProps);
+                restoreNanos += System.nanoTime() - start;
+            }
+        }
+        System.out.printf(Locale.ROOT, "frame %d, %d cars, %d bytes%n",
+                game.getFrameCounter(), game.getCars().size(), snapshot.length);
+        System.out.printf(Locale.ROOT, "save %.3f ms, restore %.3f ms%n",
+                saveNanos / 1e6 / REPEATS, restoreNanos / 1e6 / REPEATS);
+
+        GamePlayScreen restored = GamePlayScreen.restoreSnapshot(snapshot, gameProps, messageProps);
+        boolean sameSnapshot = Arrays.equals(snapshot, restored.saveSnapshot());
+        Autopilot restoredAutopilot = new ReferenceAutopilot();
+        KeyStates restoredKeys = new KeyStates();
+        boolean restoredOver = false;
+        while (!over || !restoredOver) {
+            if (!over) {
+                over = play(game, autopilot, keys);
+            }
+            if (!restoredOver) {
+                restoredOver = play(restored, restoredAutopilot, restoredKeys);
+            }
+        }
+        boolean sameEnd = game.getFrameCounter() == restored.getFrameCounter()
+                && game.getPlayerScore() == restored.getPlayerScore()
+                && game.didPlayerWin() == restored.didPlayerWin();
+        System.out.printf(Locale.ROOT, "restored snapshot identical: %b, same end: %b (frame %d, score %.2f)%n",
+                sameSnapshot, sameEnd, restored.getFrameCounter(), restored.getPlayerScore());
+    }
+
+    private static boolean play(GamePlayScreen game, Autopilot autopilot, KeyStates keys) {
+        keys.clear();
+        autopilot.decide(game, keys);
+        return game.update(keys);
+    }
+}
@@ -24,6 +24,18 @@ public class Taxi extends Car {
         this.setDamage(Double.parseDouble(gameProps.getProperty("gameObjects.taxi.damage")));
     }
 
+    /**
+     * Reads the speeds and damage of the taxi again from the game properties.
+     *
+     * @param gameProps The game properties.
+     */
+    @Override
+    public void applySettings(Properties gameProps) {
+        this.setSpeedX(Double.parseDouble(gameProps.getProperty("gameObjects.taxi.speedX")));
+        this.setSpeedY(Double.parseDouble(gameProps.getProperty("gameObjects.taxi.speedY")));
+        this.setDamage(Double.parseDouble(gameProps.getProperty("gameObjects.taxi.damage")));
+    }
+
     /**
      * Moves the taxi to the left by decreasing its x-coordinate by its speed along the X-axis.
      */
@@ -55,4 +67,14 @@ public class Taxi extends Car {
     public void update() {
         // Logic for updating the taxi can be added here
     }
+
+    /**
+     * Returns the layer the taxi is drawn in, beneath everything on the road.
+     *
+     * @return The layer.
+     */
+    @Override
+    public int getLayer() {
+        return RenderQueue.TAXIS;
+    }
 }
@@ -20,10 +20,22 @@ public class TaxiDamaged extends Car {
 
     /**
      * Renders the damaged taxi on the screen.
+     *
+     * @param queue The render queue of the frame.
+     */
+    @Override
+    public void render(RenderQueue queue) {
+        super.render(queue);
+    }
+
+    /**
+     * Returns the layer the wrecks of taxis are drawn in, with the taxi.
+     *
+     * @return The layer.
      */
     @Override
-    public void render() {
-        super.render();
+    public int getLayer() {
+        return RenderQueue.TAXIS;
     }
 
     /**
@@ -0,0 +1,190 @@
+/**
+ * The TimingWheel class counts down the timers of a game, such as a car's invincibility after a
+ * collision, and runs each timer's action on the frame it runs out. Rather than every entity
+ * counting down its own timers every frame, a timer is filed once under the frame it is due,
+ * so a frame only costs as much as the timers that run out on it, however many entities there are.
+ *
+ * The wheel is hierarchical, like a clock: the first level has a slot for each of the next 256
+ * frames, the second a slot for each of the 256 spans of 256 frames after that, and so on.
+ * When the first level comes round to its start, the timers of the next span of the second
+ * level are filed again into the first, and likewise up the levels. Timers are kept in linked
+ * lists, so scheduling and cancelling a timer take constant time.
+ */
+public class TimingWheel {
+    private static final int SLOT_BITS = 8;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    /**
+     * The Timer class is a countdown with an action, scheduled on a timing wheel.
+     * A timer is scheduled at most once at a time, and may be scheduled again by its own action.
+     */
+    public static class Timer {
+        private final Runnable action;
+        private long due = -1;
+        private Timer previous;
+        private Timer next;
+
+        /**
+         * Constructs a new Timer, not yet scheduled.
+         *
+         * @param action What to do when the timer runs out.
+         */
+        public Timer(Runnable action) {
+            this.action = action;
+        }
+
+        /**
+         * Checks whether the timer is counting down.
+         *
+         * @return true if the timer is scheduled, false otherwise.
+         */
+        public boolean isScheduled() {
+            return due >= 0;
+        }
+    }
+
+    // Each slot is a circular list headed by a timer with no action
+    private final Timer[][] slots = new Timer[LEVELS][SLOTS];
+    private long now = 0;
+    private int size = 0;
+
+    /**
+     * Constructs a new, empty TimingWheel on frame 0.
+     */
+    public TimingWheel() {
+        for (Timer[] level : slots) {
+            for (int i = 0; i < SLOTS; i++) {
+                Timer head = new Timer(null);
+                head.previous = head;
+                head.next = head;
+                level[i] = head;
+            }
+        }
+    }
+
+    /**
+     * Schedules a timer to run out the given number of frames from now, in place of its
+     * current countdown if it has one.
+     *
+     * @param timer The timer.
+     * @param frames The number of frames, at least 1.
+     */
+    public void schedule(Timer timer, int frames) {
+        cancel(timer);
+        timer.due = now + Math.max(frames, 1);
+        file(timer);
+        size++;
+    }
+
+    /**
+     * Stops a timer without running its action. Does nothing if the timer is not scheduled.
+     *
+     * @param timer The timer.
+     */
+    public void cancel(Timer timer) {
+        if (timer.isScheduled()) {
+            unlink(timer);
+            timer.due = -1;
+            size--;
+        }
+    }
+
+    /**
+     * Returns the number of frames left before a timer runs out.
+     *
+     * @param timer The timer.
+     * @return The number of frames, or 0 if the timer is not scheduled.
+     */
+    public int getRemaining(Timer timer) {
+        return timer.isScheduled() ? (int) (timer.due - now) : 0;
+    }
+
+    /**
+     * Moves on to the next frame and runs the actions of the timers that run out on it,
+     * in the order they were scheduled.
+     */
+    public void advance() {
+        now++;
+        // Coming round to the start of a level brings the next span of the level above down
+        for (int level = 1; level < LEVELS && (now & ((1L << (SLOT_BITS * level)) - 1)) == 0; level++) {
+            cascade(level, (int) (now >>> (SLOT_BITS * level)) & SLOT_MASK);
+        }
+        Timer head = slots[0][(int) now & SLOT_MASK];
+        while (head.next != head) {
+            Timer timer = head.next;
+            unlink(timer);
+            timer.due = -1;
+            size--;
+            timer.action.run();
+        }
+    }
+
+    /**
+     * Returns the frame the wheel is on.
+     *
+     * @return The frame.
+     */
+    public long getFrame() {
+        return now;
+    }
+
+    /**
+     * Cancels every timer and moves the wheel to the given frame, as when a saved game is
+     * restored; the timers are then scheduled again from what was saved.
+     *
+     * @param frame The frame.
+     */
+    public void reset(long frame) {
+        for (Timer[] level : slots) {
+            for (Timer head : level) {
+                while (head.next != head) {
+                    Timer timer = head.next;
+                    unlink(timer);
+                    timer.due = -1;
+                }
+            }
+        }
+        size = 0;
+        now = frame;
+    }
+
+    /**
+     * Returns the number of timers counting down.
+     *
+     * @return The number of timers.
+     */
+    public int size() {
+        return size;
+    }
+
+    private void cascade(int level, int slot) {
+        Timer head = slots[level][slot];
+        while (head.next != head) {
+            Timer timer = head.next;
+            unlink(timer);
+            file(timer);
+        }
+    }
+
+    private void file(Timer timer) {
+        long frames = timer.due - now;
+        int level = 0;
+        while (level < LEVELS - 1 && frames >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        Timer head = slots[level][(int) (timer.due >>> (SLOT_BITS * level)) & SLOT_MASK];
+        timer.previous = head.previous;
+        timer.next = head;
+        head.previous.next = timer;
+        head.previous = timer;
+    }
+
+    private static void unlink(Timer timer) {
+        timer.previous.next = timer.next;
+        timer.next.previous = timer.previous;
+        timer.previous = null;
+        timer.next = null;
+    }
+}
@@ -0,0 +1,366 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The TraceReader class reads back a trace file written by {@link TraceWriter}, one frame at a
+ * time. It needs nothing of the game but the file, so traces can be analysed anywhere.
+ * Every frame gives the entities as a {@link NetState}, with positions along the road, and the
+ * game events of the frame, also with positions along the road.
+ *
+ * Usage, to print a summary of a trace:
+ *   java TraceReader [trace file]
+ */
+public class TraceReader implements Closeable {
+    // x, y, other x, other y, value, penalty and flags of an event
+    private static final int EVENT_FIELDS = 7;
+
+    private final DataInputStream in;
+    private final String playerName;
+    private final int windowHeight;
+    private final String[] eventTypeNames;
+
+    private final ByteBuffer[] columns = new ByteBuffer[TraceWriter.COLUMNS];
+    private int chunkFramesLeft = 0;
+    private boolean ended = false;
+    private int totalFrames = 0;
+    private int stalls = 0;
+
+    private NetState state = new NetState();
+    private NetState previous = new NetState();
+    private int frame = 0;
+
+    private int eventCount = 0;
+    private int[] eventTypes = new int[8];
+    private int[] eventValues = new int[8 * EVENT_FIELDS];
+
+    /**
+     * Constructs a new TraceReader and reads the header of the trace.
+     *
+     * @param filename The name of the trace file.
+     * @throws IOException If the file cannot be read or is not a trace.
+     */
+    public TraceReader(String filename) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename), 1 << 16));
+        if (in.readInt() != TraceWriter.MAGIC) {
+            in.close();
+            throw new IOException(filename + " is not a trace");
+        }
+        int version = in.readInt();
+        if (version != TraceWriter.VERSION) {
+            in.close();
+            throw new IOException("Unsupported trace version " + version);
+        }
+        playerName = in.readUTF();
+        windowHeight = in.readInt();
+        eventTypeNames = new String[in.readUnsignedByte()];
+        for (int i = 0; i < eventTypeNames.length; i++) {
+            eventTypeNames[i] = in.readUTF();
+        }
+    }
+
+    /**
+     * Moves on to the next frame.
+     *
+     * @return true if there was another frame, false at the end of the trace.
+     * @throws IOException If the file cannot be read.
+     */
+    public boolean next() throws IOException {
+        if (chunkFramesLeft == 0 && !readChunk()) {
+            return false;
+        }
+        chunkFramesLeft--;
+
+        // The new frame is a difference from the one before, which is kept aside
+        NetState swap = previous;
+        previous = state;
+        state = swap;
+        ByteBuffer headers = columns[1];
+        frame += getSigned(columns[0]);
+        int offset = previous.getOffset() + getSigned(headers);
+        int score = previous.getScore() + getSigned(headers);
+        int taxiHealth = previous.getTaxiHealth() + getSigned(headers);
+        int driverHealth = previous.getDriverHealth() + getSigned(headers);
+        int status = NetCodec.getVarInt(headers);
+        int entities = NetCodec.getVarInt(headers);
+        state.setHeader(frame, 0, offset, score, taxiHealth, driverHealth, 0, status);
+        state.clearEntities();
+        int id = 0;
+        for (int i = 0, j = 0; i < entities; i++) {
+            id += NetCodec.getVarInt(columns[2]);
+            while (j < previous.size() && previous.getId(j) < id) {
+                j++;
+            }
+            boolean known = j < previous.size() && previous.getId(j) == id;
+            int x = getSigned(columns[3]) + (known ? previous.getX(j) : 0);
+            int y = getSigned(columns[4]) + (known ? previous.getY(j) : 0);
+            state.add(id, x, y, NetCodec.getVarInt(columns[5]));
+        }
+
+        ByteBuffer events = columns[6];
+        eventCount = NetCodec.getVarInt(events);
+        if (eventCount > eventTypes.length) {
+            eventTypes = new int[eventCount];
+            eventValues = new int[eventCount * EVENT_FIELDS];
+        }
+        for (int e = 0; e < eventCount; e++) {
+            eventTypes[e] = NetCodec.getVarInt(events);
+            for (int v = 0; v < EVENT_FIELDS - 1; v++) {
+                eventValues[e * EVENT_FIELDS + v] = getSigned(events);
+            }
+            eventValues[e * EVENT_FIELDS + EVENT_FIELDS - 1] = NetCodec.getVarInt(events);
+        }
+        return true;
+    }
+
+    private boolean readChunk() throws IOException {
+        if (ended) {
+            return false;
+        }
+        chunkFramesLeft = in.readInt();
+        if (chunkFramesLeft == 0) {
+            totalFrames = in.readInt();
+            stalls = in.readInt();
+            ended = true;
+            return false;
+        }
+        for (int i = 0; i < columns.length; i++) {
+            int length = in.readInt();
+            if (columns[i] == null || columns[i].capacity() < length) {
+                columns[i] = ByteBuffer.allocate(Math.max(length, 4096));
+            }
+            columns[i].clear();
+            in.readFully(columns[i].array(), 0, length);
+            columns[i].limit(length);
+        }
+        // Each chunk starts afresh
+        frame = 0;
+        state.setHeader(0, 0, 0, 0, 0, 0, 0, 0);
+        state.clearEntities();
+        return true;
+    }
+
+    private static int getSigned(ByteBuffer column) {
+        int value = NetCodec.getVarInt(column);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Returns the entities of the current frame, with the frame number, road offset, score,
+     * health and status in its header. The state is reused by the next frame.
+     *
+     * @return The state.
+     */
+    public NetState getState() {
+        return state;
+    }
+
+    /**
+     * Returns the number of game events of the current frame.
+     *
+     * @return The number of events.
+     */
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Returns the type of a game event, as its position in {@link #getEventTypeNames()}.
+     *
+     * @param i The event's position in the frame.
+     * @return The event type.
+     */
+    public int getEventType(int i) {
+        return eventTypes[i];
+    }
+
+    /**
+     * Returns the x-coordinate of a game event.
+     *
+     * @param i The event's position in the frame.
+     * @return The x-coordinate, in pixels.
+     */
+    public double getEventX(int i) {
+        return NetState.dequantise(eventValues[i * EVENT_FIELDS]);
+    }
+
+    /**
+     * Returns the y-coordinate of a game event along the road. Adding the road offset of the
+     * frame gives the y-coordinate on screen.
+     *
+     * @param i The event's position in the frame.
+     * @return The y-coordinate, in pixels.
+     */
+    public double getEventY(int i) {
+        return NetState.dequantise(eventValues[i * EVENT_FIELDS + 1]);
+    }
+
+    /**
+     * Returns the x-coordinate of the second party of a collision.
+     *
+     * @param i The event's position in the frame.
+     * @return The x-coordinate, in pixels.
+     */
+    public double getEventOtherX(int i) {
+        return NetState.dequantise(eventValues[i * EVENT_FIELDS + 2]);
+    }
+
+    /**
+     * Returns the y-coordinate along the road of the second party of a collision.
+     *
+     * @param i The event's position in the frame.
+     * @return The y-coordinate, in pixels.
+     */
+    public double getEventOtherY(int i) {
+        return NetState.dequantise(eventValues[i * EVENT_FIELDS + 3]);
+    }
+
+    /**
+     * Returns the value of a game event, such as a fare or a profit.
+     *
+     * @param i The event's position in the frame.
+     * @return The value, to the hundredth.
+     */
+    public double getEventValue(int i) {
+        return eventValues[i * EVENT_FIELDS + 4] / 100.0;
+    }
+
+    /**
+     * Returns the penalty of a completed trip.
+     *
+     * @param i The event's position in the frame.
+     * @return The penalty, to the hundredth, or 0 for other events.
+     */
+    public double getEventPenalty(int i) {
+        return eventValues[i * EVENT_FIELDS + 5] / 100.0;
+    }
+
+    /**
+     * Returns the flags of a game event.
+     *
+     * @param i The event's position in the frame.
+     * @return The flags.
+     */
+    public int getEventFlags(int i) {
+        return eventValues[i * EVENT_FIELDS + 6];
+    }
+
+    /**
+     * Returns the name of the player of the traced game.
+     *
+     * @return The name.
+     */
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    /**
+     * Returns the height of the window of the traced game, so entities on screen can be told
+     * from those further along the road.
+     *
+     * @return The height.
+     */
+    public int getWindowHeight() {
+        return windowHeight;
+    }
+
+    /**
+     * Returns the names of the game event types, in the order of their numbers.
+     *
+     * @return The names, which must not be changed.
+     */
+    public String[] getEventTypeNames() {
+        return eventTypeNames;
+    }
+
+    /**
+     * Returns the number of times the game waited for the trace writer, once the end of the
+     * trace was reached.
+     *
+     * @return The number of waits.
+     */
+    public int getStalls() {
+        return stalls;
+    }
+
+    /**
+     * Checks whether the whole trace was read, up to the end the writer marks when it is
+     * closed. A trace cut short, as when the game was killed, has no end.
+     *
+     * @return true if the end was reached, false otherwise.
+     */
+    public boolean isComplete() {
+        return ended;
+    }
+
+    /**
+     * Returns the number of frames written, once the end of the trace was reached.
+     *
+     * @return The number of frames.
+     */
+    public int getTotalFrames() {
+        return totalFrames;
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Prints a summary of a trace: the frames, the number of entities as the game went on,
+     * and the number of events of each type.
+     *
+     * @param args Optional name of the trace file, the configured trace file by default.
+     */
+    public static void main(String[] args) throws IOException {
+        String filename = args.length > 0 ? args[0]
+                : IOUtils.readPropertiesFile("res/app.properties").getProperty("gamePlay.trace.file");
+        int[] kindCounts = new int[NetState.KINDS];
+        long entities = 0;
+        int maxEntities = 0;
+        int frames = 0;
+        int[] eventCounts;
+        try (TraceReader reader = new TraceReader(filename)) {
+            eventCounts = new int[reader.getEventTypeNames().length];
+            while (reader.next()) {
+                NetState frameState = reader.getState();
+                frames++;
+                entities += frameState.size();
+                maxEntities = Math.max(maxEntities, frameState.size());
+                for (int i = 0; i < frameState.size(); i++) {
+                    kindCounts[NetState.kindOf(frameState.getId(i))]++;
+                }
+                for (int e = 0; e < reader.getEventCount(); e++) {
+                    eventCounts[reader.getEventType(e)]++;
+                }
+                // The entity count every 1000 frames shows how the road fills up
+                if (frameState.getFrame() % 1000 == 0) {
+                    System.out.printf(Locale.ROOT, "frame %d: %d entities, score %.2f%n",
+                            frameState.getFrame(), frameState.size(), frameState.getScore() / 100.0);
+                }
+            }
+            System.out.printf(Locale.ROOT, "%s: %d frames%s in %d bytes (%.1f per frame), %d waits for the writer%n",
+                    reader.getPlayerName(), frames, reader.isComplete() ? "" : " (cut short)",
+                    new File(filename).length(), new File(filename).length() / (double) Math.max(1, frames),
+                    reader.getStalls());
+            System.out.printf(Locale.ROOT, "entities per frame: %.1f on average, %d at most%n",
+                    entities / (double) Math.max(1, frames), maxEntities);
+            System.out.println("entity frames by kind: " + Arrays.toString(kindCounts));
+            for (int i = 0; i < eventCounts.length; i++) {
+                System.out.printf(Locale.ROOT, "%s: %d%n", reader.getEventTypeNames()[i], eventCounts[i]);
+            }
+        }
+    }
+}
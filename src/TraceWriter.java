@@ -0,0 +1,334 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The TraceWriter class streams every frame of a game to a trace file for offline analysis:
+ * every entity with its position and flags, as in a {@link NetState} that sees the whole road,
+ * and every game event of the frame. The file is read back by {@link TraceReader}.
+ * The game thread only fills in a frame record and hands it over; the records are encoded and
+ * written on a background thread. There is a fixed number of records, reused once written, so
+ * the memory taken is bounded. Should the writer fall that far behind, the game thread waits
+ * for a record rather than leave a frame out of the trace.
+ * The file is columnar: frames are written in chunks, and each chunk holds one column per
+ * field, such as every x-coordinate of every frame in the chunk one after the other. Numbers
+ * are variable-length integers, and positions and header fields are differences from the
+ * frame before, so an entity that stands still takes a byte or two per frame. Each chunk
+ * starts afresh, so it can be decoded without the chunks before it.
+ *
+ * The file is laid out as follows:
+ * <pre>
+ *   int magic, int version, UTF player name, int window height,
+ *   byte event type count, UTF event type names
+ *   chunks: int frame count, then int length and bytes of each column, in the order
+ *           frames, headers, ids, xs, ys, flags, events
+ *   int 0, then int number of frames and int number of waits for a free record
+ * </pre>
+ */
+public class TraceWriter implements GameEventHandler {
+    /** "STXT", the first int of every trace file. */
+    public static final int MAGIC = 0x53545854;
+    public static final int VERSION = 2;
+    /** The number of columns in a chunk. */
+    public static final int COLUMNS = 7;
+
+    private static final GameEvent.Type[] EVENT_TYPES = GameEvent.Type.values();
+
+    private final DataOutputStream out;
+    private final int windowHeight;
+    private final int chunkFrames;
+    private final BlockingQueue<Frame> free;
+    private final BlockingQueue<Frame> written;
+    private final Frame end = new Frame();
+    private final Thread thread;
+    private Frame current = null;
+    private int stalls = 0;
+    private boolean closed = false;
+
+    // Owned by the writer thread
+    private final Column[] columns = new Column[COLUMNS];
+    private final NetState previous = new NetState();
+    private int chunkFrameCount = 0;
+    private int previousFrame = 0;
+    private int frames = 0;
+
+    /**
+     * Constructs a new TraceWriter writing to the given file, and starts its thread.
+     *
+     * @param filename The name of the file, which is replaced.
+     * @param playerName The name of the player, recorded in the file.
+     * @param windowHeight The height of the window.
+     * @param bufferFrames The number of frame records, and so how far the writer may fall behind.
+     * @param chunkFrames The number of frames in a chunk.
+     * @throws IOException If the file cannot be created.
+     */
+    public TraceWriter(String filename, String playerName, int windowHeight, int bufferFrames, int chunkFrames)
+            throws IOException {
+        this.windowHeight = windowHeight;
+        this.chunkFrames = chunkFrames;
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(playerName);
+        out.writeInt(windowHeight);
+        out.writeByte(EVENT_TYPES.length);
+        for (GameEvent.Type type : EVENT_TYPES) {
+            out.writeUTF(type.name());
+        }
+
+        free = new ArrayBlockingQueue<>(bufferFrames);
+        written = new ArrayBlockingQueue<>(bufferFrames + 1);
+        for (int i = 0; i < bufferFrames; i++) {
+            free.add(new Frame());
+        }
+        for (int i = 0; i < COLUMNS; i++) {
+            columns[i] = new Column();
+        }
+        thread = new Thread(this::run, "trace");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Adds an event to the frame being recorded, unless it is of a frame played again after a
+     * rewind.
+     *
+     * @param event The event.
+     * @param endOfBatch true if this is the last event available for now.
+     */
+    @Override
+    public void onEvent(GameEvent event, boolean endOfBatch) {
+        if (closed || event.isReplayed()) {
+            return;
+        }
+        if (current == null) {
+            current = acquire();
+        }
+        current.addEvent(event);
+    }
+
+    /**
+     * Records the state of the game at the end of a frame, with the events since the last
+     * frame, and hands the frame over to be written.
+     *
+     * @param game The game.
+     * @param gameOver true if the game ended on this frame.
+     */
+    public void endFrame(GamePlayScreen game, boolean gameOver) {
+        if (closed) {
+            return;
+        }
+        if (current == null) {
+            current = acquire();
+        }
+        current.state.capture(game, game.getFrameCounter(), 0, 0, windowHeight, Double.POSITIVE_INFINITY);
+        if (gameOver) {
+            current.state.setGameOver(game.didPlayerWin());
+        }
+        written.add(current);
+        current = null;
+    }
+
+    /**
+     * Writes the frames still waiting, closes the file and stops the thread.
+     * Frames recorded after this are ignored.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        written.add(end);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of times the game thread waited for the writer.
+     *
+     * @return The number of waits.
+     */
+    public int getStalls() {
+        return stalls;
+    }
+
+    private Frame acquire() {
+        Frame frame = free.poll();
+        if (frame != null) {
+            return frame;
+        }
+        stalls++;
+        try {
+            return free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Frame();
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Frame frame = written.take();
+                if (frame == end) {
+                    break;
+                }
+                encode(frame);
+                frame.eventCount = 0;
+                free.add(frame);
+                if (chunkFrameCount == chunkFrames) {
+                    writeChunk();
+                }
+            }
+            if (chunkFrameCount > 0) {
+                writeChunk();
+            }
+            out.writeInt(0);
+            out.writeInt(frames);
+            out.writeInt(stalls);
+            out.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void encode(Frame frame) {
+        NetState state = frame.state;
+        boolean first = chunkFrameCount == 0;
+        Column frameColumn = columns[0];
+        Column headers = columns[1];
+        Column ids = columns[2];
+        Column xs = columns[3];
+        Column ys = columns[4];
+        Column flags = columns[5];
+        Column events = columns[6];
+
+        // The first frame of a chunk is a difference from nothing
+        if (first) {
+            previousFrame = 0;
+            previous.clearEntities();
+            previous.setHeader(0, 0, 0, 0, 0, 0, 0, 0);
+        }
+        frameColumn.putSigned(state.getFrame() - previousFrame);
+        headers.putSigned(state.getOffset() - previous.getOffset());
+        headers.putSigned(state.getScore() - previous.getScore());
+        headers.putSigned(state.getTaxiHealth() - previous.getTaxiHealth());
+        headers.putSigned(state.getDriverHealth() - previous.getDriverHealth());
+        headers.putVarInt(state.getStatus());
+        headers.putVarInt(state.size());
+
+        int previousId = 0;
+        for (int i = 0, j = 0; i < state.size(); i++) {
+            int id = state.getId(i);
+            ids.putVarInt(id - previousId);
+            previousId = id;
+            while (j < previous.size() && previous.getId(j) < id) {
+                j++;
+            }
+            boolean known = j < previous.size() && previous.getId(j) == id;
+            xs.putSigned(state.getX(i) - (known ? previous.getX(j) : 0));
+            ys.putSigned(state.getY(i) - (known ? previous.getY(j) : 0));
+            flags.putVarInt(state.getFlags(i));
+        }
+
+        // Events are on screen; they are kept along the road, like the entities
+        events.putVarInt(frame.eventCount);
+        for (int e = 0; e < frame.eventCount; e++) {
+            events.putVarInt(frame.eventTypes[e]);
+            events.putSigned(frame.eventXs[e]);
+            events.putSigned(frame.eventYs[e] - state.getOffset());
+            events.putSigned(frame.eventOtherXs[e]);
+            events.putSigned(frame.eventOtherYs[e] - state.getOffset());
+            events.putSigned(frame.eventValues[e]);
+            events.putSigned(frame.eventPenalties[e]);
+            events.putVarInt(frame.eventFlags[e]);
+        }
+
+        previousFrame = state.getFrame();
+        previous.copyFrom(state);
+        chunkFrameCount++;
+        frames++;
+    }
+
+    private void writeChunk() throws IOException {
+        out.writeInt(chunkFrameCount);
+        for (Column column : columns) {
+            out.writeInt(column.size);
+            out.write(column.bytes, 0, column.size);
+            column.size = 0;
+        }
+        chunkFrameCount = 0;
+    }
+
+    /*
+     * One frame on its way to the writer: the entities and the events of the frame, copied
+     * out of the event slots, which are reused as soon as the handler returns.
+     */
+    private static class Frame {
+        private final NetState state = new NetState();
+        private int eventCount = 0;
+        private byte[] eventTypes = new byte[8];
+        private int[] eventXs = new int[8];
+        private int[] eventYs = new int[8];
+        private int[] eventOtherXs = new int[8];
+        private int[] eventOtherYs = new int[8];
+        private int[] eventValues = new int[8];
+        private int[] eventPenalties = new int[8];
+        private int[] eventFlags = new int[8];
+
+        private void addEvent(GameEvent event) {
+            if (eventCount == eventTypes.length) {
+                int capacity = eventCount * 2;
+                eventTypes = Arrays.copyOf(eventTypes, capacity);
+                eventXs = Arrays.copyOf(eventXs, capacity);
+                eventYs = Arrays.copyOf(eventYs, capacity);
+                eventOtherXs = Arrays.copyOf(eventOtherXs, capacity);
+                eventOtherYs = Arrays.copyOf(eventOtherYs, capacity);
+                eventValues = Arrays.copyOf(eventValues, capacity);
+                eventPenalties = Arrays.copyOf(eventPenalties, capacity);
+                eventFlags = Arrays.copyOf(eventFlags, capacity);
+            }
+            eventTypes[eventCount] = (byte) event.getType().ordinal();
+            eventXs[eventCount] = NetState.quantise(event.getX());
+            eventYs[eventCount] = NetState.quantise(event.getY());
+            eventOtherXs[eventCount] = NetState.quantise(event.getOtherX());
+            eventOtherYs[eventCount] = NetState.quantise(event.getOtherY());
+            eventValues[eventCount] = (int) Math.round(event.getValue() * 100);
+            eventPenalties[eventCount] = (int) Math.round(event.getPenalty() * 100);
+            eventFlags[eventCount] = event.getFlags();
+            eventCount++;
+        }
+    }
+
+    /*
+     * A growable array of bytes holding one column of a chunk.
+     */
+    private static class Column {
+        private byte[] bytes = new byte[4096];
+        private int size = 0;
+
+        private void putVarInt(int value) {
+            if (size + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            while ((value & ~0x7F) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        private void putSigned(int value) {
+            putVarInt((value << 1) ^ (value >> 31));
+        }
+    }
+}
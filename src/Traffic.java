@@ -0,0 +1,426 @@
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Traffic class keeps the cars on the road grouped by lane, with each lane's cars ordered
+ * by y-coordinate from the top of the screen down. Cars never change lane by themselves, so
+ * keeping the lanes sorted costs one insertion-sort pass over nearly sorted lists per frame,
+ * and a neighbour query only looks at the few cars close by in the lanes within reach.
+ * Cars whose x-coordinate is not a lane centre (such as wrecks moved off the road) are kept
+ * in a separate off-road group that is searched the same way.
+ */
+public class Traffic {
+    private final double[] laneCenters;
+    private final List<List<Entry>> lanes = new ArrayList<>();
+    private final List<Entry> offRoad = new ArrayList<>();
+    private final Map<Car, Entry> entries = new IdentityHashMap<>();
+    private double maxRadius = 0;
+    private double reachMargin = 0;
+    private int nextOrder = 0;
+
+    /**
+     * Constructs a new Traffic model for a road with the given lanes.
+     *
+     * @param laneCenters The x-coordinates of the lane centres, from left to right.
+     */
+    public Traffic(double[] laneCenters) {
+        this.laneCenters = laneCenters.clone();
+        for (int i = 0; i < laneCenters.length; i++) {
+            lanes.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Adds a newly spawned car to its lane.
+     *
+     * @param car The car to add.
+     */
+    public void add(Car car) {
+        Entry entry = new Entry(car, nextOrder++);
+        entries.put(car, entry);
+        maxRadius = Math.max(maxRadius, car.getRadius());
+        insert(groupFor(car.getX()), entry);
+    }
+
+    /**
+     * Adds many cars at once, in the order they were spawned, as when a saved game is restored.
+     * Each lane is sorted once, rather than once per car.
+     *
+     * @param cars The cars to add.
+     */
+    public void addAll(List<? extends Car> cars) {
+        for (Car car : cars) {
+            Entry entry = new Entry(car, nextOrder++);
+            entries.put(car, entry);
+            maxRadius = Math.max(maxRadius, car.getRadius());
+            List<Entry> group = groupFor(car.getX());
+            group.add(entry);
+            entry.group = group;
+        }
+        for (List<Entry> lane : lanes) {
+            sortByY(lane);
+        }
+        sortByY(offRoad);
+    }
+
+    /**
+     * Removes a car that has left the road for good.
+     *
+     * @param car The car to remove.
+     */
+    public void remove(Car car) {
+        Entry entry = entries.remove(car);
+        if (entry != null) {
+            entry.group.remove(entry);
+            renumber(entry.group);
+        }
+    }
+
+    /**
+     * Removes every car, as when a saved game is restored in place of the current one.
+     */
+    public void clear() {
+        for (List<Entry> lane : lanes) {
+            lane.clear();
+        }
+        offRoad.clear();
+        entries.clear();
+        maxRadius = 0;
+        nextOrder = 0;
+    }
+
+    /**
+     * Widens every neighbour query by the given distance, so that it also finds the cars that
+     * came close enough to touch during the frame rather than only those touching at its end.
+     *
+     * @param margin The distance, 0 to find only the cars touching now.
+     */
+    public void setReachMargin(double margin) {
+        reachMargin = margin;
+    }
+
+    /**
+     * Restores the y-order of every lane after the cars moved, and moves the cars whose
+     * x-coordinate changed to the matching lane. Runs in linear time when few cars overtook
+     * each other since the last call.
+     */
+    public void update() {
+        for (List<Entry> lane : lanes) {
+            sortLane(lane);
+        }
+        sortLane(offRoad);
+        for (int i = 0; i < lanes.size(); i++) {
+            regroup(lanes.get(i), laneCenters[i]);
+        }
+        regroup(offRoad, Double.NaN);
+        for (List<Entry> lane : lanes) {
+            renumber(lane);
+        }
+        renumber(offRoad);
+    }
+
+    /**
+     * Finds the cars that may be touching the given entity, that is, whose centre lies within
+     * the entity's radius plus the largest car radius along both axes. Cars already in the list
+     * are not added again.
+     *
+     * @param entity The entity to search around.
+     * @param found The list to add the cars to.
+     */
+    public void findNear(GameEntity entity, List<Car> found) {
+        findNear(entity, -1, found);
+    }
+
+    /**
+     * Finds the cars spawned after the given car that may be touching the given entity.
+     * Cars already in the list are not added again.
+     *
+     * @param entity The entity to search around.
+     * @param after The car spawned last among those already checked.
+     * @param found The list to add the cars to.
+     */
+    public void findNear(GameEntity entity, Car after, List<Car> found) {
+        findNear(entity, entries.get(after).order, found);
+    }
+
+    private void findNear(GameEntity entity, int afterOrder, List<Car> found) {
+        double reach = entity.getRadius() + maxRadius + reachMargin;
+        for (int i = 0; i < lanes.size(); i++) {
+            if (Math.abs(laneCenters[i] - entity.getX()) <= reach) {
+                collect(lanes.get(i), entity.getX(), entity.getY(), reach, afterOrder, found);
+            }
+        }
+        collect(offRoad, entity.getX(), entity.getY(), reach, afterOrder, found);
+    }
+
+    /**
+     * Finds the cars spawned after the given car that may be touching it, in the order they
+     * were spawned. Checking every car against the cars it finds covers every pair of cars
+     * that can collide, the same as checking every pair in spawn order.
+     *
+     * @param car The car to search around.
+     * @param found The list to add the cars to.
+     */
+    public void findLaterNeighbours(Car car, List<Car> found) {
+        findLaterNeighbours(car, car, found);
+    }
+
+    /**
+     * Finds the cars spawned after another car that may be touching the given car, in the
+     * order they were spawned. Used to resume a search after the car was moved mid-way.
+     *
+     * @param car The car to search around.
+     * @param after The car spawned last among those already checked.
+     * @param found The list to add the cars to.
+     */
+    public void findLaterNeighbours(Car car, Car after, List<Car> found) {
+        int afterOrder = entries.get(after).order;
+        int first = found.size();
+        double reach = car.getRadius() + maxRadius + reachMargin;
+        for (int i = 0; i < lanes.size(); i++) {
+            if (Math.abs(laneCenters[i] - car.getX()) <= reach) {
+                collect(lanes.get(i), car.getX(), car.getY(), reach, afterOrder, found);
+            }
+        }
+        collect(offRoad, car.getX(), car.getY(), reach, afterOrder, found);
+        if (found.size() - first > 1) {
+            found.subList(first, found.size()).sort((a, b) -> Integer.compare(entries.get(a).order, entries.get(b).order));
+        }
+    }
+
+    /**
+     * Moves cars to their place in the lanes straight away, after they were moved by something
+     * other than driving, such as being wrecked in a collision. Cars moved at the same time
+     * must be passed together, as the lanes are only in order once all of them are placed.
+     *
+     * @param cars The cars that moved.
+     */
+    public void moved(Car... cars) {
+        for (Car car : cars) {
+            Entry entry = entries.get(car);
+            entry.group.remove(entry);
+            renumber(entry.group);
+        }
+        for (Car car : cars) {
+            insert(groupFor(car.getX()), entries.get(car));
+        }
+    }
+
+    /**
+     * Sorts a list of cars into the order they were spawned.
+     *
+     * @param cars The cars to sort.
+     */
+    public void sortBySpawnOrder(List<Car> cars) {
+        cars.sort((a, b) -> Integer.compare(entries.get(a).order, entries.get(b).order));
+    }
+
+    /**
+     * Returns the car directly ahead of the given car in its lane. Cars drive up the screen,
+     * so the car ahead is the nearest one above.
+     *
+     * @param car The car to look ahead of.
+     * @return The car ahead, or null if the lane is clear ahead.
+     */
+    public Car getCarAhead(Car car) {
+        Entry entry = entries.get(car);
+        return entry.index > 0 ? entry.group.get(entry.index - 1).car : null;
+    }
+
+    /**
+     * Returns the car directly behind the given car in its lane.
+     *
+     * @param car The car to look behind.
+     * @return The car behind, or null if the lane is clear behind.
+     */
+    public Car getCarBehind(Car car) {
+        Entry entry = entries.get(car);
+        return entry.index < entry.group.size() - 1 ? entry.group.get(entry.index + 1).car : null;
+    }
+
+    /**
+     * Returns the gap between the given car and the car ahead of it in its lane,
+     * measured between their edges.
+     *
+     * @param car The car to measure from.
+     * @return The headway, or positive infinity if the lane is clear ahead.
+     */
+    public double getHeadway(Car car) {
+        Car ahead = getCarAhead(car);
+        if (ahead == null) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return car.getY() - ahead.getY() - car.getRadius() - ahead.getRadius();
+    }
+
+    /**
+     * Checks whether a car could move into a lane at its current height, that is, whether
+     * every car in the lane, or moving into it, is at least the given gap away from it.
+     *
+     * @param car The car that wants to change lane.
+     * @param lane The lane to move into.
+     * @param gap The smallest gap allowed between the car's edge and another car's edge.
+     * @return true if the lane is clear, false otherwise.
+     */
+    public boolean isLaneClear(Car car, int lane, double gap) {
+        return isClear(lanes.get(lane), car, laneCenters[lane], car.getY(), car.getRadius(), gap)
+                && isClear(offRoad, car, laneCenters[lane], car.getY(), car.getRadius(), gap);
+    }
+
+    /**
+     * Checks whether a new car could be placed in a lane at the given height, that is, whether
+     * every car in the lane, or moving into it, is at least the given gap away from it.
+     *
+     * @param lane The lane.
+     * @param y The y-coordinate of the new car's centre.
+     * @param radius The new car's radius.
+     * @param gap The smallest gap allowed between the new car's edge and another car's edge.
+     * @return true if the spot is clear, false otherwise.
+     */
+    public boolean isSpotClear(int lane, double y, double radius, double gap) {
+        return isClear(lanes.get(lane), null, laneCenters[lane], y, radius, gap)
+                && isClear(offRoad, null, laneCenters[lane], y, radius, gap);
+    }
+
+    /**
+     * Returns the lane whose centre is at the given x-coordinate.
+     *
+     * @param x The x-coordinate.
+     * @return The lane index, or -1 if the x-coordinate is not a lane centre.
+     */
+    public int getLane(double x) {
+        for (int i = 0; i < laneCenters.length; i++) {
+            if (laneCenters[i] == x) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of lanes on the road.
+     *
+     * @return The lane count.
+     */
+    public int getLaneCount() {
+        return laneCenters.length;
+    }
+
+    /**
+     * Returns the x-coordinate of the centre of a lane.
+     *
+     * @param lane The lane index.
+     * @return The lane centre.
+     */
+    public double getLaneCenter(int lane) {
+        return laneCenters[lane];
+    }
+
+    private List<Entry> groupFor(double x) {
+        int lane = getLane(x);
+        return lane >= 0 ? lanes.get(lane) : offRoad;
+    }
+
+    private static void insert(List<Entry> group, Entry entry) {
+        int index = group.size();
+        while (index > 0 && group.get(index - 1).car.getY() > entry.car.getY()) {
+            index--;
+        }
+        group.add(index, entry);
+        entry.group = group;
+        renumber(group);
+    }
+
+    private static void sortByY(List<Entry> group) {
+        // Stable, so cars at the same y stay in the order they were added
+        group.sort((a, b) -> Double.compare(a.car.getY(), b.car.getY()));
+        renumber(group);
+    }
+
+    private static void renumber(List<Entry> group) {
+        for (int i = 0; i < group.size(); i++) {
+            group.get(i).index = i;
+        }
+    }
+
+    private static void sortLane(List<Entry> group) {
+        for (int i = 1; i < group.size(); i++) {
+            Entry entry = group.get(i);
+            int j = i - 1;
+            while (j >= 0 && group.get(j).car.getY() > entry.car.getY()) {
+                group.set(j + 1, group.get(j));
+                j--;
+            }
+            group.set(j + 1, entry);
+        }
+    }
+
+    private void regroup(List<Entry> group, double center) {
+        for (int i = group.size() - 1; i >= 0; i--) {
+            Entry entry = group.get(i);
+            if (entry.car.getX() != center) {
+                List<Entry> target = groupFor(entry.car.getX());
+                if (target != group) {
+                    group.remove(i);
+                    insert(target, entry);
+                }
+            }
+        }
+    }
+
+    private boolean isClear(List<Entry> group, Car car, double x, double y, double radius, double gap) {
+        double reachX = radius + maxRadius;
+        double reachY = gap + reachX;
+        for (int i = firstAtOrBelow(group, y - reachY); i < group.size(); i++) {
+            Car other = group.get(i).car;
+            if (other.getY() > y + reachY) {
+                break;
+            }
+            if (other != car && Math.abs(other.getX() - x) < reachX
+                    && Math.abs(other.getY() - y) - radius - other.getRadius() < gap) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int firstAtOrBelow(List<Entry> group, double y) {
+        int low = 0;
+        int high = group.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (group.get(mid).car.getY() < y) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static void collect(List<Entry> group, double x, double y, double reach, int afterOrder, List<Car> found) {
+        for (int i = firstAtOrBelow(group, y - reach); i < group.size(); i++) {
+            Entry entry = group.get(i);
+            if (entry.car.getY() > y + reach) {
+                break;
+            }
+            if (entry.order > afterOrder && Math.abs(entry.car.getX() - x) <= reach && !found.contains(entry.car)) {
+                found.add(entry.car);
+            }
+        }
+    }
+
+    private static class Entry {
+        private final Car car;
+        private final int order;
+        private List<Entry> group;
+        private int index;
+
+        private Entry(Car car, int order) {
+            this.car = car;
+            this.order = order;
+        }
+    }
+}
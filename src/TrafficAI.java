@@ -0,0 +1,104 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The TrafficAI class drives the other cars and enemy cars on the road. Every car keeps a safe
+ * distance by slowing to the speed of a slower car ahead in its lane, and a car held up this way
+ * moves into a neighbouring lane when the gap there is wide enough.
+ * Following only needs the car directly ahead, which the Traffic model knows, so it is updated
+ * for every car each frame. Lane changes need gap queries, so only a fixed number of cars is
+ * considered per frame, taking turns, which keeps the cost of a frame bounded however many
+ * cars are on the road.
+ */
+public class TrafficAI {
+    private final double FOLLOW_DISTANCE;
+    private final double LANE_CHANGE_GAP;
+    private final int DECISIONS_PER_FRAME;
+    private int nextDecision = 0;
+
+    /**
+     * Constructs a new TrafficAI with the following distance, lane change gap and decision
+     * budget given in the game properties.
+     *
+     * @param gameProps Properties containing the traffic settings.
+     */
+    public TrafficAI(Properties gameProps) {
+        FOLLOW_DISTANCE = Double.parseDouble(gameProps.getProperty("traffic.ai.followDistance"));
+        LANE_CHANGE_GAP = Double.parseDouble(gameProps.getProperty("traffic.ai.laneChangeGap"));
+        DECISIONS_PER_FRAME = Integer.parseInt(gameProps.getProperty("traffic.ai.decisionsPerFrame"));
+    }
+
+    /**
+     * Adjusts the speed of every car to the car ahead of it, and lets the cars whose turn it is
+     * change lane. The traffic must be up to date with the cars' positions.
+     *
+     * @param traffic The traffic model the cars are registered with.
+     * @param cars The cars on the road.
+     */
+    public void update(Traffic traffic, List<Car> cars) {
+        for (Car car : cars) {
+            if (canDrive(traffic, car)) {
+                Car ahead = traffic.getCarAhead(car);
+                if (ahead != null && traffic.getHeadway(car) < FOLLOW_DISTANCE) {
+                    car.follow(ahead.getSpeedY());
+                } else {
+                    car.cruise();
+                }
+            }
+        }
+
+        int decisions = Math.min(DECISIONS_PER_FRAME, cars.size());
+        for (int i = 0; i < decisions; i++) {
+            if (nextDecision >= cars.size()) {
+                nextDecision = 0;
+            }
+            Car car = cars.get(nextDecision++);
+            if (canDrive(traffic, car) && isHeldUp(traffic, car)) {
+                changeLane(traffic, car);
+            }
+        }
+    }
+
+    /**
+     * Writes whose turn it is to consider a lane change to a game snapshot.
+     *
+     * @param out The snapshot to write to.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeInt(nextDecision);
+    }
+
+    /**
+     * Restores whose turn it is to consider a lane change from a game snapshot.
+     *
+     * @param in The snapshot to read from.
+     * @throws IOException If the snapshot cannot be read.
+     */
+    public void readState(DataInput in) throws IOException {
+        nextDecision = in.readInt();
+    }
+
+    private boolean canDrive(Traffic traffic, Car car) {
+        // Cars recovering from a collision, wrecks and cars already changing lane are left alone
+        return !car.getInvincible() && !car.getDestroyed() && !car.isChangingLane()
+                && traffic.getLane(car.getX()) >= 0;
+    }
+
+    private boolean isHeldUp(Traffic traffic, Car car) {
+        return traffic.getHeadway(car) < FOLLOW_DISTANCE && car.getSpeedY() < car.getCruiseSpeedY();
+    }
+
+    private void changeLane(Traffic traffic, Car car) {
+        int lane = traffic.getLane(car.getX());
+        // Try the lane to the left first, then the lane to the right
+        if (lane > 0 && traffic.isLaneClear(car, lane - 1, LANE_CHANGE_GAP)) {
+            car.changeLane(traffic.getLaneCenter(lane - 1));
+        } else if (lane < traffic.getLaneCount() - 1 && traffic.isLaneClear(car, lane + 1, LANE_CHANGE_GAP)) {
+            car.changeLane(traffic.getLaneCenter(lane + 1));
+        }
+    }
+}
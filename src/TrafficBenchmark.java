@@ -0,0 +1,83 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * The TrafficBenchmark class is a command-line benchmark of the traffic AI. For growing numbers
+ * of cars spread over the lanes at the same density, it drives the cars headless for a number
+ * of frames and reports the cost of a frame of traffic decisions (re-sorting the lanes, car
+ * following and lane changes) in total and per car.
+ *
+ * Usage:
+ *   java TrafficBenchmark [max cars] [frames]
+ */
+public class TrafficBenchmark {
+    // Road length per car in each lane, so every run has the same traffic density
+    private static final double SPACING = 150;
+    private static final int WARMUP_FRAMES = 2000;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Optional largest car count and number of measured frames per car count.
+     */
+    public static void main(String[] args) {
+        int maxCars = args.length > 0 ? Integer.parseInt(args[0]) : 3200;
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+
+        Assets.setHeadless(true);
+        Properties gameProps = IOUtils.readPropertiesFile("res/app.properties");
+        double[] laneCenters = new double[Integer.parseInt(gameProps.getProperty("roadLanes.count"))];
+        for (int i = 0; i < laneCenters.length; i++) {
+            laneCenters[i] = Double.parseDouble(gameProps.getProperty("roadLaneCenter" + (i + 1)));
+        }
+
+        System.out.println("cars,us per frame,ns per car,lane changes per 1000 frames");
+        for (int cars = 100; cars <= maxCars; cars *= 2) {
+            run(gameProps, laneCenters, cars, WARMUP_FRAMES);
+            long[] result = run(gameProps, laneCenters, cars, frames);
+            System.out.printf(Locale.ROOT, "%d,%.2f,%.1f,%.1f%n", cars,
+                    result[0] / 1000.0 / frames, (double) result[0] / frames / cars, result[1] * 1000.0 / frames);
+        }
+    }
+
+    private static long[] run(Properties gameProps, double[] laneCenters, int carCount, int frames) {
+        Random random = new Random(carCount);
+        Traffic traffic = new Traffic(laneCenters);
+        TrafficAI trafficAI = new TrafficAI(gameProps);
+        List<Car> cars = new ArrayList<>();
+        double roadLength = SPACING * carCount / laneCenters.length;
+        for (int i = 0; i < carCount; i++) {
+            double lane = laneCenters[random.nextInt(laneCenters.length)];
+            Car car = new OtherCar(lane, random.nextDouble() * roadLength, gameProps, random);
+            cars.add(car);
+            traffic.add(car);
+        }
+
+        long nanos = 0;
+        long laneChanges = 0;
+        boolean[] changing = new boolean[carCount];
+        for (int frame = 0; frame < frames; frame++) {
+            long start = System.nanoTime();
+            traffic.update();
+            trafficAI.update(traffic, cars);
+            nanos += System.nanoTime() - start;
+
+            for (int i = 0; i < carCount; i++) {
+                Car car = cars.get(i);
+                if (car.isChangingLane() && !changing[i]) {
+                    laneChanges++;
+                }
+                car.update();
+                changing[i] = car.isChangingLane();
+                // Wrap the road around so the density stays the same
+                if (car.getY() < 0) {
+                    car.setY(car.getY() + roadLength);
+                }
+            }
+        }
+        return new long[] {nanos, laneChanges};
+    }
+}
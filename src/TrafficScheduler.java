@@ -0,0 +1,196 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * The TrafficScheduler class decides when and where other cars and enemy cars come onto the road.
+ * Every lane has an arrival process for each type of car, set in the game properties: a Poisson
+ * process, with random gaps between arrivals that average a given number of frames, or a
+ * schedule of frames that repeats every period. The next arrival of every process is kept in a
+ * priority queue ordered by frame, so a frame on which no car is due costs one look at the head
+ * of the queue.
+ * A car only comes onto the road where its lane is clear of other cars. An arrival whose spot
+ * is taken is put off for a few frames rather than dropped, so cars never appear on top of
+ * each other and the traffic still reaches the density it was set to.
+ */
+public class TrafficScheduler {
+    /** The type of an other car. */
+    public static final int OTHER_CAR = 0;
+    /** The type of an enemy car. */
+    public static final int ENEMY_CAR = 1;
+
+    private static final String[] TYPE_NAMES = {"otherCar", "enemyCar"};
+    // Cars come onto the road just above or just below the window
+    private static final double TOP_Y = -50;
+
+    /**
+     * The Spawner interface puts a car the scheduler decided on onto the road.
+     */
+    public interface Spawner {
+        /**
+         * Puts a car onto the road.
+         *
+         * @param type The type of car, {@link TrafficScheduler#OTHER_CAR} or {@link TrafficScheduler#ENEMY_CAR}.
+         * @param x The x-coordinate of the car, the centre of its lane.
+         * @param y The y-coordinate of the car.
+         */
+        void spawn(int type, double x, double y);
+    }
+
+    private final double[] laneCenters;
+    private final double bottomY;
+    private final double[] radii = new double[TYPE_NAMES.length];
+    private final double clearance;
+    private final int retryFrames;
+    private final Random random;
+    private final Arrivals[] arrivals;
+    private final PriorityQueue<Arrivals> due = new PriorityQueue<>(
+            Comparator.comparingInt((Arrivals a) -> a.nextFrame).thenComparingInt(a -> a.order));
+    private int postponed = 0;
+
+    /**
+     * Constructs a new TrafficScheduler with the arrival processes given in the game properties,
+     * and schedules the first arrival of each.
+     *
+     * @param gameProps Properties containing the arrival processes and the car radii.
+     * @param laneCenters The x-coordinates of the lane centres, from left to right.
+     * @param windowHeight The height of the window.
+     * @param random The random number generator of the game session.
+     */
+    public TrafficScheduler(Properties gameProps, double[] laneCenters, int windowHeight, Random random) {
+        this.laneCenters = laneCenters.clone();
+        this.random = random;
+        bottomY = windowHeight;
+        clearance = Double.parseDouble(gameProps.getProperty("traffic.scheduler.clearance"));
+        retryFrames = Integer.parseInt(gameProps.getProperty("traffic.scheduler.retryFrames"));
+        arrivals = new Arrivals[TYPE_NAMES.length * laneCenters.length];
+        for (int type = 0; type < TYPE_NAMES.length; type++) {
+            radii[type] = Double.parseDouble(gameProps.getProperty("gameObjects." + TYPE_NAMES[type] + ".radius"));
+            for (int lane = 0; lane < laneCenters.length; lane++) {
+                int order = type * laneCenters.length + lane;
+                arrivals[order] = new Arrivals(gameProps, type, lane, order);
+            }
+        }
+        for (Arrivals process : arrivals) {
+            process.scheduleNext(0);
+            if (process.isActive()) {
+                due.add(process);
+            }
+        }
+    }
+
+    /**
+     * Brings on the cars due by the given frame whose spot on the road is clear, and puts off
+     * the others.
+     *
+     * @param frame The current frame.
+     * @param traffic The traffic model the cars on the road are registered with.
+     * @param spawner Puts each car onto the road.
+     */
+    public void update(int frame, Traffic traffic, Spawner spawner) {
+        while (!due.isEmpty() && due.peek().nextFrame <= frame) {
+            Arrivals process = due.poll();
+            double y = random.nextBoolean() ? TOP_Y : bottomY;
+            if (traffic.isSpotClear(process.lane, y, radii[process.type], clearance)) {
+                spawner.spawn(process.type, laneCenters[process.lane], y);
+                process.scheduleNext(frame);
+            } else {
+                process.nextFrame = frame + retryFrames;
+                postponed++;
+            }
+            due.add(process);
+        }
+    }
+
+    /**
+     * Returns the number of arrivals put off because their spot was taken.
+     *
+     * @return The number of arrivals put off.
+     */
+    public int getPostponed() {
+        return postponed;
+    }
+
+    /**
+     * Writes the next arrival of every process to a game snapshot.
+     *
+     * @param out The snapshot to write to.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public void writeState(DataOutput out) throws IOException {
+        for (Arrivals process : arrivals) {
+            out.writeInt(process.nextFrame);
+            out.writeInt(process.count);
+        }
+    }
+
+    /**
+     * Restores the next arrival of every process from a game snapshot.
+     *
+     * @param in The snapshot to read from.
+     * @throws IOException If the snapshot cannot be read.
+     */
+    public void readState(DataInput in) throws IOException {
+        due.clear();
+        for (Arrivals process : arrivals) {
+            process.nextFrame = in.readInt();
+            process.count = in.readInt();
+            if (process.isActive()) {
+                due.add(process);
+            }
+        }
+    }
+
+    /*
+     * The arrival process of one type of car in one lane, with its next arrival.
+     */
+    private class Arrivals {
+        private final int type;
+        private final int lane;
+        private final int order;
+        private final boolean poisson;
+        private final double meanFrames;
+        private final int[] schedule;
+        private final int period;
+        private int nextFrame = 0;
+        private int count = 0;
+
+        private Arrivals(Properties gameProps, int type, int lane, int order) {
+            this.type = type;
+            this.lane = lane;
+            this.order = order;
+            poisson = setting(gameProps, "arrivals").equals("poisson");
+            meanFrames = Double.parseDouble(setting(gameProps, "meanFrames"));
+            String[] frames = setting(gameProps, "schedule").split(",");
+            schedule = new int[frames.length];
+            for (int i = 0; i < frames.length; i++) {
+                schedule[i] = Integer.parseInt(frames[i].trim());
+            }
+            period = Integer.parseInt(setting(gameProps, "period"));
+        }
+
+        // A setting for this lane, if it has its own, or for every lane
+        private String setting(Properties gameProps, String name) {
+            String prefix = "traffic." + TYPE_NAMES[type] + ".";
+            return gameProps.getProperty(prefix + "lane" + (lane + 1) + "." + name, gameProps.getProperty(prefix + name));
+        }
+
+        private boolean isActive() {
+            return poisson ? meanFrames > 0 : period > 0;
+        }
+
+        private void scheduleNext(int frame) {
+            if (poisson) {
+                // Gaps between the arrivals of a Poisson process are exponentially distributed
+                nextFrame = frame + Math.max(1, (int) Math.ceil(-meanFrames * Math.log(1 - random.nextDouble())));
+            } else {
+                nextFrame = Math.max(frame + 1, (count / schedule.length) * period + schedule[count % schedule.length]);
+            }
+            count++;
+        }
+    }
+}
@@ -1,4 +1,8 @@
 import bagel.util.Point;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.lang.Math;
 import java.util.Properties;
 
@@ -8,8 +12,10 @@ import java.util.Properties;
  * and completion status. It calculates the profit based on the distance and passenger priority.
  */
 public class Trip {
-    private final Properties GAME_PROPS;
     private final double DISTANCE_RATE;
+    private final double PRIORITY1_RATE;
+    private final double PRIORITY2_RATE;
+    private final double PRIORITY3_RATE;
     private final double PENALTY_RATE;
     private final Passenger passenger;
     private final TripEndFlag tripEndFlag;
@@ -27,7 +33,9 @@ public class Trip {
      * @param gameProps Properties containing the trip's rate configurations such as distance rate and penalty rate.
      */
     public Trip(Passenger passenger, TripEndFlag tripEndFlag, Properties gameProps) {
-        this.GAME_PROPS = gameProps;
+        this.PRIORITY1_RATE = Double.parseDouble(gameProps.getProperty("trip.rate.priority1"));
+        this.PRIORITY2_RATE = Double.parseDouble(gameProps.getProperty("trip.rate.priority2"));
+        this.PRIORITY3_RATE = Double.parseDouble(gameProps.getProperty("trip.rate.priority3"));
         this.passenger = passenger;
         this.tripEndFlag = tripEndFlag;
         this.earnings = calculateEarnings();
@@ -78,13 +86,41 @@ public class Trip {
 
     private double priorityRate(int priority){
         return  switch (priority) {
-            case 1 -> Double.parseDouble(GAME_PROPS.getProperty("trip.rate.priority1"));
-            case 2 -> Double.parseDouble(GAME_PROPS.getProperty("trip.rate.priority2"));
-            case 3 -> Double.parseDouble(GAME_PROPS.getProperty("trip.rate.priority3"));
+            case 1 -> PRIORITY1_RATE;
+            case 2 -> PRIORITY2_RATE;
+            case 3 -> PRIORITY3_RATE;
             default -> 0.0;
         };
     }
 
+    /* Snapshots */
+    /**
+     * Writes the trip's earnings, penalty, profit and completion to a game snapshot.
+     * The passenger and flag are written by the game, which knows how they are shared.
+     *
+     * @param out The snapshot to write to.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeDouble(earnings);
+        out.writeDouble(penalty);
+        out.writeDouble(profit);
+        out.writeBoolean(isCompleted);
+    }
+
+    /**
+     * Restores the trip's earnings, penalty, profit and completion from a game snapshot.
+     *
+     * @param in The snapshot to read from.
+     * @throws IOException If the snapshot cannot be read.
+     */
+    public void readState(DataInput in) throws IOException {
+        earnings = in.readDouble();
+        penalty = in.readDouble();
+        profit = in.readDouble();
+        isCompleted = in.readBoolean();
+    }
+
     /* Getters */
 
     /**
@@ -123,6 +159,15 @@ public class Trip {
         return earnings;
     }
 
+    /**
+     * Returns the flag marking the end of the trip.
+     *
+     * @return The trip end flag, or null for a quoted trip that has not started.
+     */
+    public TripEndFlag getTripEndFlag() {
+        return tripEndFlag;
+    }
+
     /**
      * Returns the passenger associated with the trip.
      *
@@ -45,4 +45,14 @@ public class TripEndFlag extends GameEntity{
         return this.passenger == passenger;
     }
 
+
+    /**
+     * Returns the layer flags are drawn in.
+     *
+     * @return The layer.
+     */
+    @Override
+    public int getLayer() {
+        return RenderQueue.FLAGS;
+    }
 }
@@ -0,0 +1,341 @@
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The WorldTemplate class is the starting world of a game, read from the world and weather
+ * files once and kept for every game after: where the taxi, the driver and each coin, power
+ * and passenger start, each passenger's trip, and the weather of each stretch of frames.
+ * Everything is parsed into numbers up front and never changes, so one template is shared by
+ * every game, on any thread, and a new game only has to create its entities from it.
+ * Templates of generated rows in the same format, such as the stretches of an endless road,
+ * are made with {@link #fromRows(String[][], String[][])} and not cached. When the files change
+ * while the game runs, the template read again replaces the kept one with
+ * {@link #put(Properties, WorldTemplate)}, and the games after use it.
+ */
+public class WorldTemplate {
+    private static final Map<String, WorldTemplate> TEMPLATES = new ConcurrentHashMap<>();
+
+    private final double[] taxi = new double[2];
+    private final double[] driver = new double[2];
+    private final double[] coinXs;
+    private final double[] coinYs;
+    private final double[] powerXs;
+    private final double[] powerYs;
+    private final double[] passengerXs;
+    private final double[] passengerYs;
+    private final int[] passengerPriorities;
+    private final double[] passengerEndXs;
+    private final double[] passengerYDistances;
+    private final int[] passengerUmbrellas;
+    private final boolean[] raining;
+    private final int[] weatherStarts;
+    private final int[] weatherEnds;
+
+    /**
+     * Returns the template of the world and weather files named in the given properties,
+     * reading them on first use.
+     *
+     * @param gameProps Properties containing the world and weather files.
+     * @return The template.
+     */
+    public static WorldTemplate get(Properties gameProps) {
+        String worldFile = gameProps.getProperty("gamePlay.objectsFile");
+        String weatherFile = gameProps.getProperty("gamePlay.weatherFile");
+        return TEMPLATES.computeIfAbsent(worldFile + "," + weatherFile,
+                key -> new WorldTemplate(Assets.getTable(worldFile), Assets.getTable(weatherFile)));
+    }
+
+    /**
+     * Replaces the template of the world and weather files named in the given properties, after
+     * the files were read again.
+     *
+     * @param gameProps Properties containing the world and weather files.
+     * @param template The template read from the files.
+     */
+    public static void put(Properties gameProps, WorldTemplate template) {
+        TEMPLATES.put(gameProps.getProperty("gamePlay.objectsFile") + "," + gameProps.getProperty("gamePlay.weatherFile"),
+                template);
+    }
+
+    /**
+     * Returns a template of the given rows, laid out as the lines of the world and weather files.
+     *
+     * @param world The entity rows, such as "PASSENGER", x, y, priority, end x, y distance, umbrella.
+     * @param weather The weather rows: "SUNNY" or "RAINING", then the start and the end of the stretch.
+     * @return The template.
+     */
+    public static WorldTemplate fromRows(String[][] world, String[][] weather) {
+        return new WorldTemplate(world, weather);
+    }
+
+    private WorldTemplate(String[][] world, String[][] weather) {
+        coinXs = new double[count(world, "COIN")];
+        coinYs = new double[coinXs.length];
+        powerXs = new double[count(world, "INVINCIBLE_POWER")];
+        powerYs = new double[powerXs.length];
+        int passengers = count(world, "PASSENGER");
+        passengerXs = new double[passengers];
+        passengerYs = new double[passengers];
+        passengerPriorities = new int[passengers];
+        passengerEndXs = new double[passengers];
+        passengerYDistances = new double[passengers];
+        passengerUmbrellas = new int[passengers];
+
+        int coin = 0;
+        int power = 0;
+        int passenger = 0;
+        for (String[] entity : world) {
+            double x = Double.parseDouble(entity[1]);
+            double y = Double.parseDouble(entity[2]);
+            switch (entity[0]) {
+                case "TAXI" -> {
+                    taxi[0] = x;
+                    taxi[1] = y;
+                }
+                case "DRIVER" -> {
+                    driver[0] = x;
+                    driver[1] = y;
+                }
+                case "COIN" -> {
+                    coinXs[coin] = x;
+                    coinYs[coin++] = y;
+                }
+                case "INVINCIBLE_POWER" -> {
+                    powerXs[power] = x;
+                    powerYs[power++] = y;
+                }
+                case "PASSENGER" -> {
+                    passengerXs[passenger] = x;
+                    passengerYs[passenger] = y;
+                    passengerPriorities[passenger] = Integer.parseInt(entity[3]);
+                    passengerEndXs[passenger] = Double.parseDouble(entity[4]);
+                    passengerYDistances[passenger] = Double.parseDouble(entity[5]);
+                    passengerUmbrellas[passenger++] = Integer.parseInt(entity[6]);
+                }
+                default -> { }
+            }
+        }
+
+        raining = new boolean[weather.length];
+        weatherStarts = new int[weather.length];
+        weatherEnds = new int[weather.length];
+        for (int i = 0; i < weather.length; i++) {
+            raining[i] = weather[i][0].equals("RAINING");
+            weatherStarts[i] = Integer.parseInt(weather[i][1]);
+            weatherEnds[i] = Integer.parseInt(weather[i][2]);
+        }
+    }
+
+    private static int count(String[][] world, String type) {
+        int count = 0;
+        for (String[] entity : world) {
+            if (entity[0].equals(type)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the x-coordinate the taxi starts at.
+     *
+     * @return The x-coordinate.
+     */
+    public double getTaxiX() {
+        return taxi[0];
+    }
+
+    /**
+     * Returns the y-coordinate the taxi starts at.
+     *
+     * @return The y-coordinate.
+     */
+    public double getTaxiY() {
+        return taxi[1];
+    }
+
+    /**
+     * Returns the x-coordinate the driver starts at.
+     *
+     * @return The x-coordinate.
+     */
+    public double getDriverX() {
+        return driver[0];
+    }
+
+    /**
+     * Returns the y-coordinate the driver starts at.
+     *
+     * @return The y-coordinate.
+     */
+    public double getDriverY() {
+        return driver[1];
+    }
+
+    /**
+     * Returns the number of coins.
+     *
+     * @return The number of coins.
+     */
+    public int getCoinCount() {
+        return coinXs.length;
+    }
+
+    /**
+     * Returns the x-coordinate of a coin.
+     *
+     * @param i The coin's position in the world file, among the coins.
+     * @return The x-coordinate.
+     */
+    public double getCoinX(int i) {
+        return coinXs[i];
+    }
+
+    /**
+     * Returns the y-coordinate of a coin.
+     *
+     * @param i The coin's position in the world file, among the coins.
+     * @return The y-coordinate.
+     */
+    public double getCoinY(int i) {
+        return coinYs[i];
+    }
+
+    /**
+     * Returns the number of invincible powers.
+     *
+     * @return The number of powers.
+     */
+    public int getPowerCount() {
+        return powerXs.length;
+    }
+
+    /**
+     * Returns the x-coordinate of an invincible power.
+     *
+     * @param i The power's position in the world file, among the powers.
+     * @return The x-coordinate.
+     */
+    public double getPowerX(int i) {
+        return powerXs[i];
+    }
+
+    /**
+     * Returns the y-coordinate of an invincible power.
+     *
+     * @param i The power's position in the world file, among the powers.
+     * @return The y-coordinate.
+     */
+    public double getPowerY(int i) {
+        return powerYs[i];
+    }
+
+    /**
+     * Returns the number of passengers.
+     *
+     * @return The number of passengers.
+     */
+    public int getPassengerCount() {
+        return passengerXs.length;
+    }
+
+    /**
+     * Returns the x-coordinate a passenger starts at.
+     *
+     * @param i The passenger's position in the world file, among the passengers.
+     * @return The x-coordinate.
+     */
+    public double getPassengerX(int i) {
+        return passengerXs[i];
+    }
+
+    /**
+     * Returns the y-coordinate a passenger starts at.
+     *
+     * @param i The passenger's position in the world file, among the passengers.
+     * @return The y-coordinate.
+     */
+    public double getPassengerY(int i) {
+        return passengerYs[i];
+    }
+
+    /**
+     * Returns the priority a passenger starts with.
+     *
+     * @param i The passenger's position in the world file, among the passengers.
+     * @return The priority.
+     */
+    public int getPassengerPriority(int i) {
+        return passengerPriorities[i];
+    }
+
+    /**
+     * Returns the x-coordinate of a passenger's destination.
+     *
+     * @param i The passenger's position in the world file, among the passengers.
+     * @return The x-coordinate.
+     */
+    public double getPassengerEndX(int i) {
+        return passengerEndXs[i];
+    }
+
+    /**
+     * Returns how far up the road a passenger's destination is.
+     *
+     * @param i The passenger's position in the world file, among the passengers.
+     * @return The distance.
+     */
+    public double getPassengerYDistance(int i) {
+        return passengerYDistances[i];
+    }
+
+    /**
+     * Returns whether a passenger has an umbrella.
+     *
+     * @param i The passenger's position in the world file, among the passengers.
+     * @return 1 if the passenger has an umbrella, 0 otherwise.
+     */
+    public int getPassengerUmbrella(int i) {
+        return passengerUmbrellas[i];
+    }
+
+    /**
+     * Returns the number of stretches of weather.
+     *
+     * @return The number of stretches.
+     */
+    public int getWeatherCount() {
+        return raining.length;
+    }
+
+    /**
+     * Checks whether it rains during a stretch of weather.
+     *
+     * @param i The stretch's position in the weather file.
+     * @return true if it rains, false if it is sunny.
+     */
+    public boolean isRaining(int i) {
+        return raining[i];
+    }
+
+    /**
+     * Returns the first frame of a stretch of weather.
+     *
+     * @param i The stretch's position in the weather file.
+     * @return The frame.
+     */
+    public int getWeatherStart(int i) {
+        return weatherStarts[i];
+    }
+
+    /**
+     * Returns the last frame of a stretch of weather.
+     *
+     * @param i The stretch's position in the weather file.
+     * @return The frame.
+     */
+    public int getWeatherEnd(int i) {
+        return weatherEnds[i];
+    }
+}